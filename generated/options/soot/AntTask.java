@@ -243,6 +243,7 @@ public class AntTask extends MatchingTask {
                 || arg.equals( "apk" )
                 || arg.equals( "apk-class-jimple" )
                 || arg.equals( "apk-c-j" )
+                || arg.equals( "binary-jimple" )
                 ) {
                 addArg("-src-prec");
                 addArg(arg);
@@ -263,6 +264,10 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-no-bodies-for-excluded");
         }
   
+        public void setfast_jimple_reader(boolean arg) {
+            if(arg) addArg("-fast-jimple-reader");
+        }
+  
         public void setj2me(boolean arg) {
             if(arg) addArg("-j2me");
         }
@@ -322,6 +327,7 @@ public class AntTask extends MatchingTask {
                 || arg.equals( "template" )
                 || arg.equals( "a" )
                 || arg.equals( "asm" )
+                || arg.equals( "binary-jimple" )
                 ) {
                 addArg("-output-format");
                 addArg(arg);
@@ -616,6 +622,11 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-subtract-gc");
         }
   
+        public void setmetrics_file(String arg) {
+            addArg("-metrics-file");
+            addArg(arg);
+        }
+  
         public void setno_writeout_body_releasing(boolean arg) {
             if(arg) addArg("-no-writeout-body-releasing");
         }
@@ -765,6 +776,18 @@ public class AntTask extends MatchingTask {
             addArg("ignore-nullpointer-dereferences:"+(arg?"true":"false"));
           }
       
+          public void setunion_find_typing(boolean arg) {
+            addArg("-p");
+            addArg("jb.tr");
+            addArg("union-find-typing:"+(arg?"true":"false"));
+          }
+      
+          public void setmax_typings(String arg) {
+            addArg("-p");
+            addArg("jb.tr");
+            addArg("max-typings:"+arg);
+          }
+      
         }
     
         public Object createp_jb_ulp() {
@@ -1352,6 +1375,48 @@ public class AntTask extends MatchingTask {
       
         }
     
+        public Object createp_cg_rta() {
+            Object ret = new PhaseOptcg_rta();
+            phaseopts.add(ret);
+            return ret;
+        }
+        public class PhaseOptcg_rta {
+      
+          public void setenabled(boolean arg) {
+            addArg("-p");
+            addArg("cg.rta");
+            addArg("enabled:"+(arg?"true":"false"));
+          }
+      
+          public void setverbose(boolean arg) {
+            addArg("-p");
+            addArg("cg.rta");
+            addArg("verbose:"+(arg?"true":"false"));
+          }
+      
+        }
+    
+        public Object createp_cg_xta() {
+            Object ret = new PhaseOptcg_xta();
+            phaseopts.add(ret);
+            return ret;
+        }
+        public class PhaseOptcg_xta {
+      
+          public void setenabled(boolean arg) {
+            addArg("-p");
+            addArg("cg.xta");
+            addArg("enabled:"+(arg?"true":"false"));
+          }
+      
+          public void setverbose(boolean arg) {
+            addArg("-p");
+            addArg("cg.xta");
+            addArg("verbose:"+(arg?"true":"false"));
+          }
+      
+        }
+    
         public Object createp_cg_spark() {
             Object ret = new PhaseOptcg_spark();
             phaseopts.add(ret);
@@ -1455,6 +1520,12 @@ public class AntTask extends MatchingTask {
             addArg("on-fly-cg:"+(arg?"true":"false"));
           }
       
+          public void setbuild_threads(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("build-threads:"+arg);
+          }
+      
           public void setsimplify_offline(boolean arg) {
             addArg("-p");
             addArg("cg.spark");
@@ -1527,6 +1598,18 @@ public class AntTask extends MatchingTask {
             addArg("set-mass:"+(arg?"true":"false"));
           }
       
+          public void setdump_snapshot(boolean arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("dump-snapshot:"+(arg?"true":"false"));
+          }
+      
+          public void setincremental(boolean arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("incremental:"+(arg?"true":"false"));
+          }
+      
           public void setcs_demand(boolean arg) {
             addArg("-p");
             addArg("cg.spark");
@@ -1587,6 +1670,12 @@ public class AntTask extends MatchingTask {
             addArg("double-set-new:"+arg);
           }
       
+          public void setload_snapshot(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("load-snapshot:"+arg);
+          }
+      
           public void settraversal(String arg) {
             addArg("-p");
             addArg("cg.spark");
@@ -1599,6 +1688,18 @@ public class AntTask extends MatchingTask {
             addArg("passes:"+arg);
           }
       
+          public void setcs_demand_cache_size(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("cs-demand-cache-size:"+arg);
+          }
+      
+          public void setcs_demand_journal(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("cs-demand-journal:"+arg);
+          }
+      
           public void setgeom_encoding(String arg) {
             addArg("-p");
             addArg("cg.spark");
@@ -1611,6 +1712,12 @@ public class AntTask extends MatchingTask {
             addArg("geom-worklist:"+arg);
           }
       
+          public void setgeom_threads(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("geom-threads:"+arg);
+          }
+      
           public void setgeom_dump_verbose(String arg) {
             addArg("-p");
             addArg("cg.spark");
@@ -2289,6 +2396,12 @@ public class AntTask extends MatchingTask {
             addArg("extended:"+(arg?"true":"false"));
           }
       
+          public void setfast_ssa(boolean arg) {
+            addArg("-p");
+            addArg("shimple");
+            addArg("fast-ssa:"+(arg?"true":"false"));
+          }
+      
           public void setdebug(boolean arg) {
             addArg("-p");
             addArg("shimple");
@@ -2799,6 +2912,12 @@ public class AntTask extends MatchingTask {
             addArg("naive:"+(arg?"true":"false"));
           }
       
+          public void setprecompute(boolean arg) {
+            addArg("-p");
+            addArg("jap.sea");
+            addArg("precompute:"+(arg?"true":"false"));
+          }
+      
         }
     
         public Object createp_jap_fieldrw() {
@@ -3144,6 +3263,12 @@ public class AntTask extends MatchingTask {
             addArg("sll2:"+(arg?"true":"false"));
           }
       
+          public void setblock_local(boolean arg) {
+            addArg("-p");
+            addArg("bb.lso");
+            addArg("block-local:"+(arg?"true":"false"));
+          }
+      
         }
     
         public Object createp_bb_sco() {
@@ -3321,6 +3446,18 @@ public class AntTask extends MatchingTask {
             addArg("source-is-javac:"+(arg?"true":"false"));
           }
       
+          public void setmethod_timeout(String arg) {
+            addArg("-p");
+            addArg("db");
+            addArg("method-timeout:"+arg);
+          }
+      
+          public void setmax_iterations(String arg) {
+            addArg("-p");
+            addArg("db");
+            addArg("max-iterations:"+arg);
+          }
+      
         }
     
         public Object createp_db_transformations() {
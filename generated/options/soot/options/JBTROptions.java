@@ -83,5 +83,35 @@ public class JBTROptions
         return soot.PhaseOptions.getBoolean( options, "ignore-nullpointer-dereferences" );
     }
     
+    /** Union-find typing --
+    
+     * Types locals connected by copies together first.
+    
+     * If this option is enabled, the locals that are connected by copy 
+     * statements are first merged, and each group of merged locals is 
+     * given a single type, without exploring alternative typings. This 
+     * typing is used if it is unambiguous and needs no casts. 
+     * Otherwise, the alternative typings are searched as usual. The 
+     * typing found this way is valid but may be less narrow than the 
+     * one found by the search. 
+     */
+    public boolean union_find_typing() {
+        return soot.PhaseOptions.getBoolean( options, "union-find-typing" );
+    }
+    
+    /** Maximum typings --
+    
+     * Limits the number of typings explored per method.
+    
+     * The maximum number of alternative typings that are explored when 
+     * the assignment constraints of a method are solved. Once this 
+     * number is reached, only the first candidate type is kept at each 
+     * further branch point, and casts are inserted where needed. 0 
+     * means no limit. 
+     */
+    public int max_typings() {
+        return soot.PhaseOptions.getInt( options, "max-typings" );
+    }
+    
 }
         
\ No newline at end of file
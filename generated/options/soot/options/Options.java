@@ -43,6 +43,7 @@ public class Options extends OptionsBase {
     public static final int src_prec_apk = 5;
     public static final int src_prec_apk_class_jimple = 6;
     public static final int src_prec_apk_c_j = 6;
+    public static final int src_prec_binary_jimple = 7;
     public static final int output_format_J = 1;
     public static final int output_format_jimple = 1;
     public static final int output_format_j = 2;
@@ -73,6 +74,7 @@ public class Options extends OptionsBase {
     public static final int output_format_template = 16;
     public static final int output_format_a = 17;
     public static final int output_format_asm = 17;
+    public static final int output_format_binary_jimple = 18;
     public static final int java_version_default = 1;
     public static final int java_version_1_1 = 2;
     public static final int java_version_1 = 2;
@@ -420,6 +422,17 @@ public class Options extends OptionsBase {
                     src_prec = src_prec_apk_c_j;
                 }
     
+                else if( false
+                || value.equals( "binary-jimple" )
+                ) {
+                    if( src_prec != 0
+                    && src_prec != src_prec_binary_jimple ) {
+                        G.v().out.println( "Multiple values given for option "+option );
+                        return false;
+                    }
+                    src_prec = src_prec_binary_jimple;
+                }
+    
                 else {
                     G.v().out.println( "Invalid value "+value+" given for option -"+option );
                     return false;
@@ -441,6 +454,11 @@ public class Options extends OptionsBase {
             )
                 no_bodies_for_excluded = true;
     	
+            else if( false 
+            || option.equals( "fast-jimple-reader" )
+            )
+                fast_jimple_reader = true;
+    	
             else if( false 
             || option.equals( "j2me" )
             )
@@ -708,6 +726,17 @@ public class Options extends OptionsBase {
                     output_format = output_format_asm;
                 }
     
+                else if( false
+                || value.equals( "binary-jimple" )
+                ) {
+                    if( output_format != 0
+                    && output_format != output_format_binary_jimple ) {
+                        G.v().out.println( "Multiple values given for option "+option );
+                        return false;
+                    }
+                    output_format = output_format_binary_jimple;
+                }
+    
                 else {
                     G.v().out.println( "Invalid value "+value+" given for option -"+option );
                     return false;
@@ -1427,6 +1456,23 @@ public class Options extends OptionsBase {
             )
                 subtract_gc = true;
     	
+            else if( false
+            || option.equals( "metrics-file" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                if( metrics_file.length() == 0 )
+                    metrics_file = value;
+                else {
+                    G.v().out.println( "Duplicate values "+metrics_file+" and "+value+" for option -"+option );
+                    return false;
+                }
+            }
+  
             else if( false 
             || option.equals( "no-writeout-body-releasing" )
             )
@@ -1586,6 +1632,10 @@ public class Options extends OptionsBase {
     private boolean no_bodies_for_excluded = false;
     public void set_no_bodies_for_excluded( boolean setting ) { no_bodies_for_excluded = setting; }
   
+    public boolean fast_jimple_reader() { return fast_jimple_reader; }
+    private boolean fast_jimple_reader = false;
+    public void set_fast_jimple_reader( boolean setting ) { fast_jimple_reader = setting; }
+  
     public boolean j2me() { return j2me; }
     private boolean j2me = false;
     public void set_j2me( boolean setting ) { j2me = setting; }
@@ -1780,6 +1830,10 @@ public class Options extends OptionsBase {
     private boolean subtract_gc = false;
     public void set_subtract_gc( boolean setting ) { subtract_gc = setting; }
   
+    public String metrics_file() { return metrics_file; }
+    public void set_metrics_file( String setting ) { metrics_file = setting; }
+    private String metrics_file = "";
+  
     public boolean no_writeout_body_releasing() { return no_writeout_body_releasing; }
     private boolean no_writeout_body_releasing = false;
     public void set_no_writeout_body_releasing( boolean setting ) { no_writeout_body_releasing = setting; }
@@ -1825,9 +1879,11 @@ public class Options extends OptionsBase {
 +padVal(" java", "Favour Java files as Soot source" )
 +padVal(" apk", "Favour APK files as Soot source" )
 +padVal(" apk-class-jimple apk-c-j", "Favour APK files as Soot source, disregard Java files" )
++padVal(" binary-jimple", "Favour binary Jimple files as Soot source" )
 +padOpt(" -full-resolver", "Force transitive resolving of referenced classes" )
 +padOpt(" -allow-phantom-refs", "Allow unresolved classes; may cause errors" )
 +padOpt(" -no-bodies-for-excluded", "Do not load bodies for excluded classes" )
++padOpt(" -fast-jimple-reader", "Read .jimple files without building a parse tree" )
 +padOpt(" -j2me", "Use J2ME mode; changes assignment of types" )
 +padOpt(" -main-class CLASS", "Sets the main class for whole-program analysis." )
 +padOpt(" -polyglot", "Use Java 1.4 Polyglot frontend instead of JastAdd" )
@@ -1854,6 +1910,7 @@ public class Options extends OptionsBase {
 +padVal(" d dava", "Produce dava-decompiled .java files" )
 +padVal(" t template", "Produce .java files with Jimple templates." )
 +padVal(" a asm", "Produce .asm files as textual bytecode representation generated with the ASM back end." )
++padVal(" binary-jimple", "Produce .bjimple files" )
 +padOpt(" -java-version VERSION", "Force Java version of bytecode generated by Soot." )
 +padVal(" default", "Let Soot determine Java version of generated bytecode." )
 +padVal(" 1.1 1", "Force Java 1.1 as output version." )
@@ -1929,6 +1986,7 @@ public class Options extends OptionsBase {
       
 +padOpt(" -time", "Report time required for transformations" )
 +padOpt(" -subtract-gc", "Subtract gc from time" )
++padOpt(" -metrics-file FILE", "Write phase and method metrics to FILE" )
 +padOpt(" -no-writeout-body-releasing", "Disables the release of method bodies after writeout. This flag is used internally." );
     }
 
@@ -1970,6 +2028,8 @@ public class Options extends OptionsBase {
         +padOpt("wspp", "Whole Shimple Pre-processing Pack")
         +padOpt("cg", "Call graph constructor")
         +padVal("cg.cha", "Builds call graph using Class Hierarchy Analysis")
+        +padVal("cg.rta", "Builds call graph using Rapid Type Analysis")
+        +padVal("cg.xta", "Builds call graph using XTA type propagation")
         +padVal("cg.spark", "Spark points-to analysis framework")
         +padVal("cg.paddle", "Paddle points-to analysis framework")
         +padOpt("wstp", "Whole-shimple transformation pack")
@@ -2098,7 +2158,9 @@ public class Options extends OptionsBase {
                 +padOpt( "enabled (true)", "" )
                 +padOpt( "use-older-type-assigner (false)", "Enables the older type assigner" )
                 +padOpt( "compare-type-assigners (false)", "Compares Ben Bellamy's and the older type assigner" )
-                +padOpt( "ignore-nullpointer-dereferences (false)", "Ignores virtual method calls on base objects that may only be null" );
+                +padOpt( "ignore-nullpointer-dereferences (false)", "Ignores virtual method calls on base objects that may only be null" )
+                +padOpt( "union-find-typing (false)", "Types locals connected by copies together first" )
+                +padOpt( "max-typings (0)", "Limits the number of typings explored per method" );
     
         if( phaseName.equals( "jb.ulp" ) )
             return "Phase "+phaseName+":\n"+
@@ -2298,6 +2360,20 @@ public class Options extends OptionsBase {
                 +padOpt( "verbose (false)", "Print statistics about the resulting call graph" )
                 +padOpt( "apponly (false)", "Consider only application classes" );
     
+        if( phaseName.equals( "cg.rta" ) )
+            return "Phase "+phaseName+":\n"+
+                "\nThis phase builds the call graph on the fly, resolving virtual \ncalls only to the types that are instantiated in reachable \nmethods. It is more precise than Class Hierarchy Analysis and \nmuch cheaper than a points-to analysis."
+                +"\n\nRecognized options (with default values):\n"
+                +padOpt( "enabled (false)", "" )
+                +padOpt( "verbose (false)", "Print statistics about the resulting call graph" );
+    
+        if( phaseName.equals( "cg.xta" ) )
+            return "Phase "+phaseName+":\n"+
+                "\nThis phase builds the call graph on the fly like cg.rta, but \nkeeps a set of instantiated types per method and per field. \nTypes flow between the sets along call edges and field \naccesses, restricted to the declared types of parameters, \nreturn values and fields. It is more precise than cg.rta, and \nstill cheaper than Spark."
+                +"\n\nRecognized options (with default values):\n"
+                +padOpt( "enabled (false)", "" )
+                +padOpt( "verbose (false)", "Print statistics about the resulting call graph" );
+    
         if( phaseName.equals( "cg.spark" ) )
             return "Phase "+phaseName+":\n"+
                 "\nSpark is a flexible points-to analysis framework. Aside from \nbuilding a call graph, it also generates information about the \ntargets of pointers. For details about Spark, please see Ondrej \nLhotak's M.Sc. thesis."
@@ -2318,6 +2394,7 @@ public class Options extends OptionsBase {
                 +padOpt( "empties-as-allocs (false)", "Treat singletons for empty sets etc. as allocation sites" )
                 +padOpt( "simple-edges-bidirectional (false)", "Equality-based analysis between variable nodes" )
                 +padOpt( "on-fly-cg (true)", "Build call graph as receiver types become known" )
+                +padOpt( "build-threads (1)", "Number of threads used to build the PAG" )
                 +padOpt( "simplify-offline (false)", "Collapse single-entry subgraphs of the PAG" )
                 +padOpt( "simplify-sccs (false)", "Collapse strongly-connected components of the PAG" )
                 +padOpt( "ignore-types-for-sccs (false)", "Ignore declared types when determining node equivalence for SCCs" )
@@ -2384,10 +2461,15 @@ public class Options extends OptionsBase {
                 +padOpt( "dump-answer (false)", "Dump computed reaching types for comparison with other solvers" )
                 +padOpt( "add-tags (false)", "Output points-to results in tags for viewing with the Jimple" )
                 +padOpt( "set-mass (false)", "Calculate statistics about points-to set sizes" )
+                +padOpt( "dump-snapshot (false)", "Save points-to results and call graph for later runs" )
+                +padOpt( "load-snapshot ()", "Answer points-to queries from a snapshot instead of running Spark" )
+                +padOpt( "incremental (false)", "Update the previous results when Spark is run again" )
                 +padOpt( "cs-demand (false)", "After running Spark, refine points-to sets on demand with context information" )
                 +padOpt( "lazy-pts (true)", "Create lazy points-to sets that create context information only when needed." )
                 +padOpt( "traversal (75000)", "Make the analysis traverse at most this number of nodes per query." )
                 +padOpt( "passes (10)", "Perform at most this number of refinement iterations." )
+                +padOpt( "cs-demand-cache-size (10000)", "Keep at most this number of refined points-to sets in memory." )
+                +padOpt( "cs-demand-journal ()", "Persist refined points-to sets in this file across runs." )
                 +padOpt( "geom-pta (false)", "This switch enables/disables the geometric analysis." )
                 +padOpt( "geom-encoding (Geom)", "Encoding methodology" )
                 +padVal( "Geom (default)", "Geometric Encoding" )
@@ -2401,6 +2483,7 @@ public class Options extends OptionsBase {
                 
                 +padVal( "FIFO", "FIFO Queue" )
                 
+                +padOpt( "geom-threads (1)", "Number of threads used to solve the constraints" )
                 +padOpt( "geom-dump-verbose ()", "Filename for detailed execution log" )
                 +padOpt( "geom-verify-name ()", "Filename for verification file" )
                 +padOpt( "geom-eval (0)", "Precision evaluation methodologies" )
@@ -2698,6 +2781,7 @@ public class Options extends OptionsBase {
                 +padOpt( "node-elim-opt (true)", "Node elimination optimizations" )
                 +padOpt( "standard-local-names (false)", "Uses naming scheme of the Local Name             Standardizer." )
                 +padOpt( "extended (false)", "Compute extended SSA (SSI) form." )
+                +padOpt( "fast-ssa (false)", "Uses faster dominator algorithms and semi-pruned             SSA form." )
                 +padOpt( "debug (false)", "Enables debugging output, if any." );
     
         if( phaseName.equals( "stp" ) )
@@ -2872,7 +2956,8 @@ public class Options extends OptionsBase {
                 "\nThe Side Effect Tagger uses the active invoke graph to produce \nside-effect attributes, as described in the Spark thesis, \nchapter 6."
                 +"\n\nRecognized options (with default values):\n"
                 +padOpt( "enabled (false)", "" )
-                +padOpt( "naive (false)", "" );
+                +padOpt( "naive (false)", "" )
+                +padOpt( "precompute (false)", "Compute the read/write sets of all methods up front" );
     
         if( phaseName.equals( "jap.fieldrw" ) )
             return "Phase "+phaseName+":\n"+
@@ -3000,7 +3085,8 @@ public class Options extends OptionsBase {
                 +padOpt( "sl (true)", "" )
                 +padOpt( "sl2 (false)", "" )
                 +padOpt( "sll (true)", "" )
-                +padOpt( "sll2 (false)", "" );
+                +padOpt( "sll2 (false)", "" )
+                +padOpt( "block-local (false)", "" );
     
         if( phaseName.equals( "bb.sco" ) )
             return "Phase "+phaseName+":\n"+
@@ -3068,7 +3154,9 @@ public class Options extends OptionsBase {
                 "\nThe decompile (Dava) option is set using the -f dava options in \nSoot. Options provided by Dava are added to this dummy phase so \nas not to clutter the soot general arguments. \n-p db (option name):(value) will be used to set all required \nvalues for Dava. "
                 +"\n\nRecognized options (with default values):\n"
                 +padOpt( "enabled (true)", "" )
-                +padOpt( "source-is-javac (true)", "" );
+                +padOpt( "source-is-javac (true)", "" )
+                +padOpt( "method-timeout (0)", "Time budget in seconds for decompiling a method" )
+                +padOpt( "max-iterations (0)", "Bound on the fixed point loops of Dava" );
     
         if( phaseName.equals( "db.transformations" ) )
             return "Phase "+phaseName+":\n"+
@@ -3133,7 +3221,9 @@ public class Options extends OptionsBase {
                 +"enabled "
                 +"use-older-type-assigner "
                 +"compare-type-assigners "
-                +"ignore-nullpointer-dereferences ";
+                +"ignore-nullpointer-dereferences "
+                +"union-find-typing "
+                +"max-typings ";
     
         if( phaseName.equals( "jb.ulp" ) )
             return ""
@@ -3273,6 +3363,16 @@ public class Options extends OptionsBase {
                 +"verbose "
                 +"apponly ";
     
+        if( phaseName.equals( "cg.rta" ) )
+            return ""
+                +"enabled "
+                +"verbose ";
+    
+        if( phaseName.equals( "cg.xta" ) )
+            return ""
+                +"enabled "
+                +"verbose ";
+    
         if( phaseName.equals( "cg.spark" ) )
             return ""
                 +"enabled "
@@ -3291,6 +3391,7 @@ public class Options extends OptionsBase {
                 +"empties-as-allocs "
                 +"simple-edges-bidirectional "
                 +"on-fly-cg "
+                +"build-threads "
                 +"simplify-offline "
                 +"simplify-sccs "
                 +"ignore-types-for-sccs "
@@ -3307,13 +3408,19 @@ public class Options extends OptionsBase {
                 +"dump-answer "
                 +"add-tags "
                 +"set-mass "
+                +"dump-snapshot "
+                +"load-snapshot "
+                +"incremental "
                 +"cs-demand "
                 +"lazy-pts "
                 +"traversal "
                 +"passes "
+                +"cs-demand-cache-size "
+                +"cs-demand-journal "
                 +"geom-pta "
                 +"geom-encoding "
                 +"geom-worklist "
+                +"geom-threads "
                 +"geom-dump-verbose "
                 +"geom-verify-name "
                 +"geom-eval "
@@ -3457,6 +3564,7 @@ public class Options extends OptionsBase {
                 +"node-elim-opt "
                 +"standard-local-names "
                 +"extended "
+                +"fast-ssa "
                 +"debug ";
     
         if( phaseName.equals( "stp" ) )
@@ -3577,7 +3685,8 @@ public class Options extends OptionsBase {
         if( phaseName.equals( "jap.sea" ) )
             return ""
                 +"enabled "
-                +"naive ";
+                +"naive "
+                +"precompute ";
     
         if( phaseName.equals( "jap.fieldrw" ) )
             return ""
@@ -3663,7 +3772,8 @@ public class Options extends OptionsBase {
                 +"sl "
                 +"sl2 "
                 +"sll "
-                +"sll2 ";
+                +"sll2 "
+                +"block-local ";
     
         if( phaseName.equals( "bb.sco" ) )
             return ""
@@ -3709,7 +3819,9 @@ public class Options extends OptionsBase {
         if( phaseName.equals( "db" ) )
             return ""
                 +"enabled "
-                +"source-is-javac ";
+                +"source-is-javac "
+                +"method-timeout "
+                +"max-iterations ";
     
         if( phaseName.equals( "db.transformations" ) )
             return ""
@@ -3766,7 +3878,9 @@ public class Options extends OptionsBase {
               +"enabled:true "
               +"use-older-type-assigner:false "
               +"compare-type-assigners:false "
-              +"ignore-nullpointer-dereferences:false ";
+              +"ignore-nullpointer-dereferences:false "
+              +"union-find-typing:false "
+              +"max-typings:0 ";
     
         if( phaseName.equals( "jb.ulp" ) )
             return ""
@@ -3905,6 +4019,16 @@ public class Options extends OptionsBase {
               +"verbose:false "
               +"apponly:false ";
     
+        if( phaseName.equals( "cg.rta" ) )
+            return ""
+              +"enabled:false "
+              +"verbose:false ";
+    
+        if( phaseName.equals( "cg.xta" ) )
+            return ""
+              +"enabled:false "
+              +"verbose:false ";
+    
         if( phaseName.equals( "cg.spark" ) )
             return ""
               +"enabled:false "
@@ -3923,6 +4047,7 @@ public class Options extends OptionsBase {
               +"empties-as-allocs:false "
               +"simple-edges-bidirectional:false "
               +"on-fly-cg:true "
+              +"build-threads:1 "
               +"simplify-offline:false "
               +"simplify-sccs:false "
               +"ignore-types-for-sccs:false "
@@ -3939,15 +4064,21 @@ public class Options extends OptionsBase {
               +"dump-answer:false "
               +"add-tags:false "
               +"set-mass:false "
+              +"dump-snapshot:false "
+              +"load-snapshot: "
+              +"incremental:false "
               +"cs-demand:false "
               +"lazy-pts:true "
               +"traversal:75000 "
               +"passes:10 "
+              +"cs-demand-cache-size:10000 "
+              +"cs-demand-journal: "
               +"geom-pta:false "
               +"geom-encoding:Geom "
               +"geom-encoding:Geom "
               +"geom-worklist:PQ "
               +"geom-worklist:PQ "
+              +"geom-threads:1 "
               +"geom-dump-verbose: "
               +"geom-verify-name: "
               +"geom-eval:0 "
@@ -4089,6 +4220,7 @@ public class Options extends OptionsBase {
               +"node-elim-opt:true "
               +"standard-local-names:false "
               +"extended:false "
+              +"fast-ssa:false "
               +"debug:false ";
     
         if( phaseName.equals( "stp" ) )
@@ -4209,7 +4341,8 @@ public class Options extends OptionsBase {
         if( phaseName.equals( "jap.sea" ) )
             return ""
               +"enabled:false "
-              +"naive:false ";
+              +"naive:false "
+              +"precompute:false ";
     
         if( phaseName.equals( "jap.fieldrw" ) )
             return ""
@@ -4295,7 +4428,8 @@ public class Options extends OptionsBase {
               +"sl:true "
               +"sl2:false "
               +"sll:true "
-              +"sll2:false ";
+              +"sll2:false "
+              +"block-local:false ";
     
         if( phaseName.equals( "bb.sco" ) )
             return ""
@@ -4341,7 +4475,9 @@ public class Options extends OptionsBase {
         if( phaseName.equals( "db" ) )
             return ""
               +"enabled:true "
-              +"source-is-javac:true ";
+              +"source-is-javac:true "
+              +"method-timeout:0 "
+              +"max-iterations:0 ";
     
         if( phaseName.equals( "db.transformations" ) )
             return ""
@@ -4399,6 +4535,8 @@ public class Options extends OptionsBase {
         if( phaseName.equals( "wspp" ) ) return;
         if( phaseName.equals( "cg" ) ) return;
         if( phaseName.equals( "cg.cha" ) ) return;
+        if( phaseName.equals( "cg.rta" ) ) return;
+        if( phaseName.equals( "cg.xta" ) ) return;
         if( phaseName.equals( "cg.spark" ) ) return;
         if( phaseName.equals( "cg.paddle" ) ) return;
         if( phaseName.equals( "wstp" ) ) return;
@@ -4549,6 +4687,10 @@ public class Options extends OptionsBase {
             G.v().out.println( "Warning: Options exist for non-existent phase cg" );
         if( !PackManager.v().hasPhase( "cg.cha" ) )
             G.v().out.println( "Warning: Options exist for non-existent phase cg.cha" );
+        if( !PackManager.v().hasPhase( "cg.rta" ) )
+            G.v().out.println( "Warning: Options exist for non-existent phase cg.rta" );
+        if( !PackManager.v().hasPhase( "cg.xta" ) )
+            G.v().out.println( "Warning: Options exist for non-existent phase cg.xta" );
         if( !PackManager.v().hasPhase( "cg.spark" ) )
             G.v().out.println( "Warning: Options exist for non-existent phase cg.spark" );
         if( !PackManager.v().hasPhase( "cg.paddle" ) )
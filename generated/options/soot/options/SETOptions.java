@@ -56,5 +56,21 @@ public class SETOptions
         return soot.PhaseOptions.getBoolean( options, "naive" );
     }
     
+    /** Precompute side-effect sets --
+    
+     * Compute the read/write sets of all methods up front.
+    
+     * When set to true, the read and write sets of all methods in the 
+     * call graph, and their transitive closures, are computed once 
+     * before the first method is tagged. The methods are processed 
+     * bottom-up over the strongly connected components of the call 
+     * graph, independent components in parallel. Call sites are then 
+     * answered from the precomputed sets instead of walking the call 
+     * graph again.
+     */
+    public boolean precompute() {
+        return soot.PhaseOptions.getBoolean( options, "precompute" );
+    }
+    
 }
         
\ No newline at end of file
@@ -80,6 +80,22 @@ public class ShimpleOptions
         return soot.PhaseOptions.getBoolean( options, "extended" );
     }
     
+    /** Fast SSA Construction --
+    
+     * Uses faster dominator algorithms and semi-pruned SSA 
+     * form..
+    
+     * If enabled, Shimple computes dominators and dominance 
+     * frontiers with the algorithms of Cooper, Harvey and Kennedy, 
+     * which work on arrays instead of dominator sets. Phi nodes are 
+     * only inserted for locals that are live on entry to some block 
+     * (semi-pruned SSA form), so there are fewer Phi nodes than in the 
+     * default minimal SSA form. 
+     */
+    public boolean fast_ssa() {
+        return soot.PhaseOptions.getBoolean( options, "fast-ssa" );
+    }
+    
     /** Debugging Output --
     
      * Enables debugging output, if any..
@@ -238,6 +238,22 @@ public class SparkOptions
         return soot.PhaseOptions.getBoolean( options, "on-fly-cg" );
     }
     
+    /** Builder Threads --
+    
+     * Number of threads used to build the PAG.
+    
+     * When this value is greater than 1, the parts of the pointer 
+     * assignment graph that belong to the individual reachable methods 
+     * are built concurrently by this number of threads. The points-to 
+     * results are the same as with a single thread, but the nodes are 
+     * numbered in the order in which the threads create them, which is 
+     * not deterministic. Clients that depend on node numbers, such as 
+     * dumps of the graph, should use a single thread. 
+     */
+    public int build_threads() {
+        return soot.PhaseOptions.getInt( options, "build-threads" );
+    }
+    
     /** Simplify Offline --
     
      * Collapse single-entry subgraphs of the PAG.
@@ -395,6 +411,40 @@ public class SparkOptions
         return soot.PhaseOptions.getBoolean( options, "set-mass" );
     }
     
+    /** Dump Snapshot --
+    
+     * Save points-to results and call graph for later runs.
+    
+     * When this option is set to true, the solved points-to sets, the 
+     * allocation sites and the call graph are written to a compact 
+     * binary file called spark.snapshot in the output directory after 
+     * the analysis completes. The snapshot can be loaded in a later 
+     * run with the Load Snapshot option. 
+     */
+    public boolean dump_snapshot() {
+        return soot.PhaseOptions.getBoolean( options, "dump-snapshot" );
+    }
+    
+    /** Incremental --
+    
+     * Update the previous results when Spark is run again.
+    
+     * When this option is set to true, Spark keeps its pointer 
+     * assignment graph after the analysis completes. When Spark is run 
+     * again in the same Soot session, for example after a 
+     * transformation has changed some method bodies, only the changed 
+     * and newly reachable methods are analysed and the points-to sets 
+     * that may depend on them are recomputed. Call edges and reachable 
+     * methods are never retracted, so after code has been deleted the 
+     * results may be less precise than those of a run from scratch. 
+     * This option requires On Fly Call Graph and cannot be combined 
+     * with VTA, RTA, Types For Sites, Simplify Offline, Simplify SCCs, 
+     * geometric analysis or demand-driven refinement. 
+     */
+    public boolean incremental() {
+        return soot.PhaseOptions.getBoolean( options, "incremental" );
+    }
+    
     /** Demand-driven refinement-based context-sensitive points-to analysis --
     
      * After running Spark, refine points-to sets on demand with 
@@ -501,6 +551,34 @@ public class SparkOptions
         return soot.PhaseOptions.getInt( options, "passes" );
     }
     
+    /** Query cache size --
+    
+     * Keep at most this number of refined points-to sets in memory..
+    
+     * Keep at most this number of refined points-to sets in memory. 
+     * When the cache is full, the least recently used points-to sets 
+     * are evicted and recomputed when they are queried again. 
+     * 					
+     */
+    public int cs_demand_cache_size() {
+        return soot.PhaseOptions.getInt( options, "cs-demand-cache-size" );
+    }
+    
+    /** Solver threads --
+    
+     * Number of threads used to solve the constraints.
+    
+     * 						 When this value is greater than 1, the constraint 
+     * graph is split into independent components, which are solved 
+     * concurrently by this number of threads. Two pointers are in the 
+     * same component if they are connected by an assignment or if they 
+     * are dereferenced on the same field. The points-to results are 
+     * identical to those computed with a single thread. 						 
+     */
+    public int geom_threads() {
+        return soot.PhaseOptions.getInt( options, "geom-threads" );
+    }
+    
     /** Precision evaluation methodologies --
     
      * Precision evaluation methodologies.
@@ -539,6 +617,39 @@ public class SparkOptions
         return soot.PhaseOptions.getInt( options, "geom-runs" );
     }
     
+    /** Load Snapshot --
+    
+     * Answer points-to queries from a snapshot instead of running 
+     * Spark.
+    
+     * When this option is set, Spark does not build or solve a 
+     * pointer assignment graph. Instead, the call graph is read from 
+     * the given snapshot, which must have been written by the Dump 
+     * Snapshot option, and points-to queries are answered from the 
+     * memory-mapped snapshot. Locals are matched by method signature 
+     * and name, so the classes should not have changed since the 
+     * snapshot was written. 
+     */
+    public String load_snapshot() {
+        return soot.PhaseOptions.getString( options, "load-snapshot" );
+    }
+    
+    /** Query journal --
+    
+     * Persist refined points-to sets in this file across runs..
+    
+     * When this option is set, every refined points-to set is 
+     * appended to the given file, and the points-to sets found in the 
+     * file are reused by later runs on the same program. Reused 
+     * points-to sets hold the same allocation sites as the original 
+     * ones, but no context information. The file is discarded if the 
+     * pointer assignment graph has changed in size, and points-to 
+     * sets involving methods whose bodies have changed are not reused. 					
+     */
+    public String cs_demand_journal() {
+        return soot.PhaseOptions.getString( options, "cs-demand-journal" );
+    }
+    
     /** Verbose dump file --
     
      * Filename for detailed execution log.
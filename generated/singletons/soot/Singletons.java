@@ -113,6 +113,34 @@ public class Singletons {
     	instance_soot_jimple_toolkits_callgraph_CHATransformer = null;
     }
 
+    private soot.jimple.toolkits.callgraph.RTATransformer instance_soot_jimple_toolkits_callgraph_RTATransformer;
+    public soot.jimple.toolkits.callgraph.RTATransformer soot_jimple_toolkits_callgraph_RTATransformer() {
+        if( instance_soot_jimple_toolkits_callgraph_RTATransformer == null ) {
+	       	synchronized (this) {
+		        if( instance_soot_jimple_toolkits_callgraph_RTATransformer == null )
+	        		instance_soot_jimple_toolkits_callgraph_RTATransformer = new soot.jimple.toolkits.callgraph.RTATransformer( g );
+	       	}
+       	}
+        return instance_soot_jimple_toolkits_callgraph_RTATransformer;
+    }
+    protected void release_soot_jimple_toolkits_callgraph_RTATransformer() {
+    	instance_soot_jimple_toolkits_callgraph_RTATransformer = null;
+    }
+
+    private soot.jimple.toolkits.callgraph.XTATransformer instance_soot_jimple_toolkits_callgraph_XTATransformer;
+    public soot.jimple.toolkits.callgraph.XTATransformer soot_jimple_toolkits_callgraph_XTATransformer() {
+        if( instance_soot_jimple_toolkits_callgraph_XTATransformer == null ) {
+	       	synchronized (this) {
+		        if( instance_soot_jimple_toolkits_callgraph_XTATransformer == null )
+	        		instance_soot_jimple_toolkits_callgraph_XTATransformer = new soot.jimple.toolkits.callgraph.XTATransformer( g );
+	       	}
+       	}
+        return instance_soot_jimple_toolkits_callgraph_XTATransformer;
+    }
+    protected void release_soot_jimple_toolkits_callgraph_XTATransformer() {
+    	instance_soot_jimple_toolkits_callgraph_XTATransformer = null;
+    }
+
     private soot.toolkits.graph.SlowPseudoTopologicalOrderer instance_soot_toolkits_graph_SlowPseudoTopologicalOrderer;
     public soot.toolkits.graph.SlowPseudoTopologicalOrderer soot_toolkits_graph_SlowPseudoTopologicalOrderer() {
         if( instance_soot_toolkits_graph_SlowPseudoTopologicalOrderer == null ) {
@@ -1359,6 +1387,20 @@ public class Singletons {
     	instance_soot_Timers = null;
     }
 
+    private soot.PhaseMetrics instance_soot_PhaseMetrics;
+    public soot.PhaseMetrics soot_PhaseMetrics() {
+        if( instance_soot_PhaseMetrics == null ) {
+	       	synchronized (this) {
+		        if( instance_soot_PhaseMetrics == null )
+	        		instance_soot_PhaseMetrics = new soot.PhaseMetrics( g );
+	       	}
+       	}
+        return instance_soot_PhaseMetrics;
+    }
+    protected void release_soot_PhaseMetrics() {
+    	instance_soot_PhaseMetrics = null;
+    }
+
     private soot.dava.toolkits.base.AST.TryContentsFinder instance_soot_dava_toolkits_base_AST_TryContentsFinder;
     public soot.dava.toolkits.base.AST.TryContentsFinder soot_dava_toolkits_base_AST_TryContentsFinder() {
         if( instance_soot_dava_toolkits_base_AST_TryContentsFinder == null ) {
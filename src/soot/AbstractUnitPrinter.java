@@ -19,6 +19,7 @@
 
 package soot;
 import soot.jimple.*;
+import java.io.PrintWriter;
 import java.util.*;
 
 /**
@@ -91,6 +92,22 @@ public abstract class AbstractUnitPrinter implements UnitPrinter {
         return output;
     }
 
+    /**
+     * Writes what was printed so far to out and empties the buffer, without
+     * building a string of it. Do not call this in the middle of a line when
+     * a position tagger is set, since it measures positions in the buffer.
+     */
+    public void flushTo( PrintWriter out ) {
+        int len = output.length();
+        if( chunk == null ) chunk = new char[CHUNK_SIZE];
+        for( int off = 0; off < len; off += chunk.length ) {
+            int n = Math.min( chunk.length, len - off );
+            output.getChars( off, off + n, chunk, 0 );
+            out.write( chunk, 0, n );
+        }
+        output.setLength(0);
+    }
+
     protected void handleIndent() {
         if( startOfLine ) output.append( indent );
         startOfLine = false;
@@ -106,5 +123,8 @@ public abstract class AbstractUnitPrinter implements UnitPrinter {
     protected StringBuffer output = new StringBuffer();
     protected AttributesUnitPrinter pt;
     protected HashSet<String> quotableLocals;
+
+    private static final int CHUNK_SIZE = 8192;
+    private char[] chunk;
 }
 
@@ -0,0 +1,44 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot;
+
+import soot.options.Options;
+
+/** A class provider that looks for binary Jimple (.bjimple) files written
+ * with the output format binary-jimple.
+ */
+public class BinaryJimpleClassProvider implements ClassProvider
+{
+    /** Look for the specified class. Return a ClassSource for it if found,
+     * or null if it was not found. */
+    public ClassSource find( String className ) {
+        String fileName = className + ".bjimple";
+        SourceLocator.FoundFile file =
+            SourceLocator.v().lookupInClassPath(fileName);
+        if( file == null ){
+            if (Options.v().permissive_resolving()) {
+                fileName = className.replace('.', '/') + ".bjimple";
+                file = SourceLocator.v().lookupInClassPath(fileName);
+            }
+            if( file == null ) return null;
+        }
+        return new BinaryJimpleClassSource(className, file);
+    }
+}
@@ -0,0 +1,90 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import soot.SourceLocator.FoundFile;
+import soot.javaToJimple.IInitialResolver.Dependencies;
+import soot.jimple.binary.BinaryJimpleMethodSource;
+import soot.jimple.binary.BinaryJimpleReader;
+import soot.options.Options;
+
+/** A class source for resolving from binary Jimple files. The bodies are
+ * decoded when they are retrieved.
+ */
+public class BinaryJimpleClassSource extends ClassSource {
+
+	private FoundFile foundFile;
+
+	public BinaryJimpleClassSource(String className, FoundFile foundFile) {
+		super(className);
+		if(foundFile == null)
+			throw new IllegalStateException("Error: The FoundFile must not be null.");
+		this.foundFile = foundFile;
+	}
+
+	public Dependencies resolve( SootClass sc ) {
+		if(Options.v().verbose())
+			G.v().out.println("resolving [from .bjimple]: " + className );
+
+		InputStream classFile = null;
+		try {
+			classFile = foundFile.inputStream();
+			BinaryJimpleReader reader = new BinaryJimpleReader(classFile);
+			reader.getSkeleton(sc);
+
+			BinaryJimpleMethodSource mtdSrc = new BinaryJimpleMethodSource(reader);
+			for (SootMethod sm : sc.getMethods()) {
+				if (sm.isConcrete())
+					sm.setSource(mtdSrc);
+			}
+
+			Dependencies deps = new Dependencies();
+			for (String t : reader.getDependencies()) {
+				deps.typesToSignature.add(RefType.v(t));
+			}
+			return deps;
+		} catch (IOException e) {
+			throw new RuntimeException("Error: Failed to read binary Jimple for class " + className + ".", e);
+		} finally {
+			try {
+				if(classFile != null){
+					classFile.close();
+					classFile = null;
+				}
+			} catch(IOException e) {
+				throw new RuntimeException("Error: Failed to close source input stream.",e);
+			} finally {
+				close();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		if(foundFile != null){
+			foundFile.close();
+			foundFile = null;
+		}
+	}
+
+}
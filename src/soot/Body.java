@@ -54,6 +54,7 @@ import soot.validation.CheckVoidLocalesValidator;
 import soot.validation.LocalsValidator;
 import soot.validation.TrapsValidator;
 import soot.validation.UnitBoxesValidator;
+import soot.validation.UnitValidator;
 import soot.validation.UsesValidator;
 import soot.validation.ValidationException;
 import soot.validation.ValueBoxesValidator;
@@ -251,12 +252,40 @@ public abstract class Body extends AbstractHost implements Serializable
      * @param exceptionList the list of validation errors
      */
     public void validate(List<ValidationException> exceptionList) {
+    	runValidators(exceptionList);
+    }
+
+    /**
+     * Runs the validators of this class and the given validators of the IR
+     * of this body. The checks of all validators that look at one unit at a
+     * time are done in a single pass over the units, before the other
+     * validators are run.
+     * @param exceptionList the list of validation errors
+     * @param irValidators the validators of the subclass
+     */
+    protected void runValidators(List<ValidationException> exceptionList, BodyValidator... irValidators) {
         final boolean runAllValidators = Options.v().debug() || Options.v().validate();
-    	for (BodyValidator validator : getValidators()) {
-    		if (!validator.isBasicValidator() && !runAllValidators)
-    			continue;
-    		validator.validate(this, exceptionList);
-    	}
+        List<UnitValidator> unitValidators = new ArrayList<UnitValidator>();
+        List<BodyValidator> bodyValidators = new ArrayList<BodyValidator>();
+        for (BodyValidator[] validators : Arrays.asList(getValidators(), irValidators)) {
+        	for (BodyValidator validator : validators) {
+        		if (!validator.isBasicValidator() && !runAllValidators)
+        			continue;
+        		if (validator instanceof UnitValidator)
+        			unitValidators.add((UnitValidator) validator);
+        		else
+        			bodyValidators.add(validator);
+        	}
+        }
+
+        if (!unitValidators.isEmpty()) {
+        	for (Unit u : unitChain) {
+        		for (UnitValidator validator : unitValidators)
+        			validator.validate(this, u, exceptionList);
+        	}
+        }
+        for (BodyValidator validator : bodyValidators)
+        	validator.validate(this, exceptionList);
     }
 
 	/** Verifies that a ValueBox is not used in more than one place. */
@@ -27,10 +27,14 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.jimple.SpecialInvokeExpr;
+import soot.toolkits.scalar.Pair;
 import soot.util.ConcurrentHashMultiMap;
 import soot.util.MultiMap;
+import soot.util.NumberedString;
 
 /**
  * Represents the class hierarchy. It is closely linked to a Scene, and must be
@@ -84,6 +88,15 @@ public class FastHierarchy {
 	 */
 	protected Map<SootClass, Interval> classToInterval = new HashMap<SootClass, Interval>();
 
+	/**
+	 * Memoizes resolveConcreteDispatch: for each subsignature, maps concrete
+	 * classes and methods to the method called, or to NO_TARGET if there is
+	 * none.
+	 */
+	private final ConcurrentMap<NumberedString, ConcurrentMap<Pair<SootClass, SootMethod>, Object>> concreteDispatch = new ConcurrentHashMap<NumberedString, ConcurrentMap<Pair<SootClass, SootMethod>, Object>>();
+
+	private static final Object NO_TARGET = new Object();
+
 	protected Scene sc;
 
 	protected class Interval {
@@ -513,6 +526,33 @@ public class FastHierarchy {
 			throw new RuntimeException("A concrete type cannot be an interface: " + concreteType);
 		}
 
+		NumberedString subSig = m.getNumberedSubSignature();
+		ConcurrentMap<Pair<SootClass, SootMethod>, Object> targets = concreteDispatch.get(subSig);
+		if (targets == null) {
+			targets = new ConcurrentHashMap<Pair<SootClass, SootMethod>, Object>();
+			ConcurrentMap<Pair<SootClass, SootMethod>, Object> old = concreteDispatch.putIfAbsent(subSig, targets);
+			if (old != null)
+				targets = old;
+		}
+		Pair<SootClass, SootMethod> key = new Pair<SootClass, SootMethod>(concreteType, m);
+		Object cached = targets.get(key);
+		if (cached != null)
+			return cached == NO_TARGET ? null : (SootMethod) cached;
+		SootMethod ret = findConcreteDispatch(concreteType, m);
+		targets.put(key, ret == null ? NO_TARGET : ret);
+		return ret;
+	}
+
+	/**
+	 * Forgets the concrete dispatch memoized for the given subsignature.
+	 * Called by the scene when a method with this subsignature is added to or
+	 * removed from a class.
+	 */
+	public void forgetDispatch(NumberedString subSig) {
+		concreteDispatch.remove(subSig);
+	}
+
+	private SootMethod findConcreteDispatch(SootClass concreteType, SootMethod m) {
 		String methodSig = m.getSubSignature();
 		while (true) {
 			SootMethod method = concreteType.getMethodUnsafe(methodSig);
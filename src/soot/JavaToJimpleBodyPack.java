@@ -49,12 +49,8 @@ public class JavaToJimpleBodyPack extends BodyPack
         if(options.use_original_names())
             PhaseOptions.v().setPhaseOptionIfUnset( "jj.lns", "only-stack-locals");
         
-        if(Options.v().time()) Timers.v().splitTimer.start();
-
         PackManager.v().getTransform( "jj.ls" ).apply( b );
 
-        if(Options.v().time()) Timers.v().splitTimer.end();
-
         PackManager.v().getTransform( "jj.a" ).apply( b );
         PackManager.v().getTransform( "jj.ule" ).apply( b );
         PackManager.v().getTransform( "jj.ne" ).apply( b );
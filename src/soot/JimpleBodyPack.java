@@ -51,8 +51,6 @@ public class JimpleBodyPack extends BodyPack
         if(options.use_original_names())
             PhaseOptions.v().setPhaseOptionIfUnset( "jb.lns", "only-stack-locals");
         
-        if(Options.v().time()) Timers.v().splitTimer.start();
-
         PackManager.v().getTransform( "jb.tt" ).apply( b );		// TrapTigthener
         PackManager.v().getTransform( "jb.dtr" ).apply( b );	// DuplicateCatchAllTrapRemover
         
@@ -63,8 +61,6 @@ public class JimpleBodyPack extends BodyPack
 		
         PackManager.v().getTransform( "jb.ls" ).apply( b );
 
-        if(Options.v().time()) Timers.v().splitTimer.end();
-
         PackManager.v().getTransform( "jb.a" ).apply( b );
         PackManager.v().getTransform( "jb.ule" ).apply( b );
 
@@ -48,11 +48,21 @@ public class JimpleClassSource extends ClassSource {
         try {
         	//Parse jimple file
         	classFile = foundFile.inputStream();
-        	soot.jimple.parser.JimpleAST jimpAST = new soot.jimple.parser.JimpleAST(classFile);
-        	jimpAST.getSkeleton(sc);
+        	JimpleMethodSource mtdSrc;
+        	Set<String> cstPool;
+        	if(Options.v().fast_jimple_reader()) {
+        		soot.jimple.parser.JimpleReader reader = new soot.jimple.parser.JimpleReader(classFile);
+        		reader.getSkeleton(sc);
+        		mtdSrc = new JimpleMethodSource(reader);
+        		cstPool = reader.getCstPool();
+        	} else {
+        		soot.jimple.parser.JimpleAST jimpAST = new soot.jimple.parser.JimpleAST(classFile);
+        		jimpAST.getSkeleton(sc);
+        		mtdSrc = new JimpleMethodSource(jimpAST);
+        		cstPool = jimpAST.getCstPool();
+        	}
         	
         	//Set method source for all methods
-        	JimpleMethodSource mtdSrc = new JimpleMethodSource(jimpAST);
         	Iterator<SootMethod> mtdIt = sc.methodIterator();
         	while(mtdIt.hasNext()) {
         		SootMethod sm = mtdIt.next();
@@ -80,7 +90,7 @@ public class JimpleClassSource extends ClassSource {
         	//Construct the type dependencies of the class
         	Dependencies deps = new Dependencies();
         	//The method documentation states it returns RefTypes only, so this is a transformation safe
-        	for (String t : jimpAST.getCstPool()){
+        	for (String t : cstPool){
         		deps.typesToSignature.add(RefType.v(t));
         	}
         	if(outerClassName != null)
@@ -35,6 +35,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.util.Date;
 
 import soot.options.CGOptions;
@@ -282,8 +283,13 @@ public class Main {
 			Timers.v().totalTimer.end();
 
 			// Print out time stats.
-			if (Options.v().time())
+			if (Options.v().time()) {
 				Timers.v().printProfilingInformation();
+				G.v().out.println();
+				PhaseMetrics.v().printReport(20);
+			}
+			if (Options.v().metrics_file().length() > 0)
+				writeMetrics(Options.v().metrics_file());
 
 		} catch (CompilationDeathException e) {
 			Timers.v().totalTimer.end();
@@ -306,6 +312,22 @@ public class Main {
 
 	}
 
+	private void writeMetrics(String fileName) {
+		try {
+			Writer out = new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8");
+			try {
+				if (fileName.endsWith(".csv"))
+					PhaseMetrics.v().writeCsv(out);
+				else
+					PhaseMetrics.v().writeJson(out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new CompilationDeathException("Cannot write metrics to " + fileName, e);
+		}
+	}
+
 	public void autoSetOptions() {
 		//when no-bodies-for-excluded is enabled, also enable phantom refs
 		if(Options.v().no_bodies_for_excluded())
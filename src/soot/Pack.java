@@ -115,14 +115,18 @@ public abstract class Pack implements HasPhaseOptions, Iterable<Transform> {
 		Map<String, String> options = PhaseOptions.v().getPhaseOptions(this);
 		if (!PhaseOptions.getBoolean(options, "enabled"))
 			return;
+		PhaseMetrics.Sample sample = PhaseMetrics.v().begin();
 		internalApply();
+		PhaseMetrics.v().end(sample, getPhaseName(), null);
 	}
 
 	public final void apply(Body b) {
 		Map<String, String> options = PhaseOptions.v().getPhaseOptions(this);
 		if (!PhaseOptions.getBoolean(options, "enabled"))
 			return;
+		PhaseMetrics.Sample sample = PhaseMetrics.v().begin();
 		internalApply(b);
+		PhaseMetrics.v().end(sample, getPhaseName(), null);
 	}
 
 	public String getDeclaredOptions() {
@@ -35,6 +35,7 @@ import soot.dava.toolkits.base.misc.ThrowFinder;
 import soot.grimp.Grimp;
 import soot.grimp.toolkits.base.ConstructorFolder;
 import soot.jimple.JimpleBody;
+import soot.jimple.binary.BinaryJimpleWriter;
 import soot.jimple.paddle.PaddleHook;
 import soot.jimple.spark.SparkTransformer;
 import soot.jimple.spark.fieldrw.FieldTagAggregator;
@@ -63,7 +64,9 @@ import soot.jimple.toolkits.base.Aggregator;
 import soot.jimple.toolkits.base.RenameDuplicatedClasses;
 import soot.jimple.toolkits.callgraph.CHATransformer;
 import soot.jimple.toolkits.callgraph.CallGraphPack;
+import soot.jimple.toolkits.callgraph.RTATransformer;
 import soot.jimple.toolkits.callgraph.UnreachableMethodTransformer;
+import soot.jimple.toolkits.callgraph.XTATransformer;
 import soot.jimple.toolkits.invoke.StaticInliner;
 import soot.jimple.toolkits.invoke.StaticMethodBinder;
 import soot.jimple.toolkits.pointer.CastCheckEliminatorDumper;
@@ -94,11 +97,13 @@ import soot.util.Chain;
 import soot.util.EscapedWriter;
 import soot.util.JasminOutputStream;
 import soot.util.PhaseDumper;
+import soot.validation.ValidationException;
 import soot.xml.TagCollector;
 import soot.xml.XMLPrinter;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
@@ -111,6 +116,10 @@ import java.util.zip.ZipEntry;
 /** Manages the Packs containing the various phases and their options. */
 public class PackManager {
 	public static boolean DEBUG = false;
+	// Classes with fewer methods are converted to Baf by a single task
+	private static final int MIN_METHODS_FOR_PARALLEL_BAF = 16;
+	// Size of the character buffer in front of each printed output file
+	private static final int PRINTER_BUFFER_SIZE = 64 * 1024;
     private final Map<String, Pack> packNameToPack = new HashMap<String, Pack>();
     private final List<Pack> packList = new LinkedList<Pack>();
     private boolean onlyStandardPacks = false;
@@ -189,6 +198,8 @@ public class PackManager {
 		addPack(p = new CallGraphPack("cg"));
 		{
 			p.add(new Transform("cg.cha", CHATransformer.v()));
+			p.add(new Transform("cg.rta", RTATransformer.v()));
+			p.add(new Transform("cg.xta", XTATransformer.v()));
 			p.add(new Transform("cg.spark", SparkTransformer.v()));
 			p.add(new Transform("cg.paddle", PaddleHook.v()));
 		}
@@ -427,6 +438,7 @@ public class PackManager {
 				}
 
 				runBodyPacks(clazz);
+				decompileClass(clazz);
 				// generate output
 				writeClass(clazz);
 
@@ -608,16 +620,18 @@ public class PackManager {
 
 	private void runBodyPacks(final Iterator<SootClass> classes) {
 		int threadNum = Runtime.getRuntime().availableProcessors();
-		CountingThreadPoolExecutor executor = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<Runnable>());
+		final CountingThreadPoolExecutor executor = new CountingThreadPoolExecutor(threadNum, threadNum, 30,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 
+		List<SootClass> toDecompile = new ArrayList<SootClass>();
 		while (classes.hasNext()) {
 			final SootClass c = classes.next();
+			toDecompile.add(c);
 			executor.execute(new Runnable() {
 
 				@Override
 				public void run() {
-					runBodyPacks(c);
+					runBodyPacks(c, executor);
 				}
 
 			});
@@ -635,6 +649,12 @@ public class PackManager {
 		// If something went wrong, we tell the world
 		if (executor.getException() != null)
 			throw (RuntimeException) executor.getException();
+
+		// The finders and AST transformations of Dava keep their state in
+		// singletons, hence the classes are decompiled one after the other
+		// once the Grimp bodies have been built concurrently.
+		for (SootClass c : toDecompile)
+			decompileClass(c);
 	}
 
 	private void handleInnerClasses() {
@@ -643,21 +663,25 @@ public class PackManager {
 	}
 
 	private void writeOutput(Iterator<SootClass> classes) {
-		// If we're writing individual class files, we can write them
-		// concurrently. Otherwise, we need to synchronize for not destroying
-		// the shared output stream.
-		int threadNum = Options.v().output_format() == Options.output_format_class && jarFile == null
+		// If we're writing class files or printing bodies, we can generate
+		// the classes concurrently. Classes that go into a jar are generated
+		// into memory, and only adding them to the shared output stream is
+		// synchronized.
+		int threadNum = isConcurrentOutputFormat(Options.v().output_format())
 				? Runtime.getRuntime().availableProcessors() : 1;
 		CountingThreadPoolExecutor executor = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS,
 				new LinkedBlockingQueue<Runnable>());
+		final JarEntryQueue jarQueue = jarFile == null ? null : new JarEntryQueue();
 
+		int index = 0;
 		while (classes.hasNext()) {
 			final SootClass c = classes.next();
+			final int entryIndex = index++;
 			executor.execute(new Runnable() {
 
 				@Override
 				public void run() {
-					writeClass(c);
+					writeClass(c, jarQueue, entryIndex);
 				}
 
 			});
@@ -681,6 +705,30 @@ public class PackManager {
 		}
 	}
 
+	/**
+	 * Returns whether classes can be written concurrently in the given output
+	 * format. The Printer keeps the jimple line numbers for the XML
+	 * attributes in a single field, so they need sequential output.
+	 */
+	private static boolean isConcurrentOutputFormat(int format) {
+		switch (format) {
+		case Options.output_format_class:
+		case Options.output_format_binary_jimple:
+			return true;
+		case Options.output_format_jimp:
+		case Options.output_format_shimp:
+		case Options.output_format_b:
+		case Options.output_format_grimp:
+		case Options.output_format_baf:
+		case Options.output_format_jimple:
+		case Options.output_format_shimple:
+		case Options.output_format_grimple:
+			return !Options.v().xml_attributes();
+		default:
+			return false;
+		}
+	}
+
 	private void tearDownJAR() {
 		try {
 			if (jarFile != null)
@@ -859,22 +907,24 @@ public class PackManager {
 		}
 	}
 
-	@SuppressWarnings("fallthrough")
 	private void runBodyPacks(SootClass c) {
-		final int format = Options.v().output_format();
-		if (format == Options.output_format_dava) {
-			G.v().out.print("Decompiling ");
+		runBodyPacks(c, null);
+	}
 
-			// January 13th, 2006 SootMethodAddedByDava is set to false for
-			// SuperFirstStmtHandler
-			G.v().SootMethodAddedByDava = false;
-		} else {
-			G.v().out.print("Transforming ");
-		}
-		G.v().out.println(c.getName() + "... ");
+	/**
+	 * Runs the body packs on the methods of the given class. If an executor
+	 * is given and the class has many methods, the Baf bodies of its methods
+	 * are built as separate tasks on that executor, so that a large class
+	 * does not keep a single thread busy while the others are idle.
+	 */
+	@SuppressWarnings("fallthrough")
+	private void runBodyPacks(SootClass c, Executor executor) {
+		final int format = Options.v().output_format();
+		// decompileClass() reports the classes decompiled to Dava
+		if (format != Options.output_format_dava)
+			G.v().out.println("Transforming " + c.getName() + "... ");
 
-		boolean produceBaf = false, produceGrimp = false, produceDava = false, produceJimple = true,
-				produceShimple = false;
+		boolean produceBaf = false, produceGrimp = false, produceJimple = true, produceShimple = false;
 
 		switch (format) {
 		case Options.output_format_none:
@@ -884,6 +934,7 @@ public class PackManager {
 		case Options.output_format_template:
 		case Options.output_format_dex:
 		case Options.output_format_force_dex:
+		case Options.output_format_binary_jimple:
 			break;
 		case Options.output_format_shimp:
 		case Options.output_format_shimple:
@@ -892,7 +943,6 @@ public class PackManager {
 			produceJimple = false;
 			break;
 		case Options.output_format_dava:
-			produceDava = true;
 			// FALL THROUGH
 		case Options.output_format_grimp:
 		case Options.output_format_grimple:
@@ -924,6 +974,11 @@ public class PackManager {
 		// resolving a method reference to a non-existing method, then this
 		// method is created as a phantom method when phantom-refs are enabled
 		LinkedList<SootMethod> methodsCopy = new LinkedList<SootMethod>(c.getMethods());
+		Executor bafExecutor = methodsCopy.size() >= MIN_METHODS_FOR_PARALLEL_BAF ? executor : null;
+		// The validation errors of all methods of the class are reported
+		// together once the class is done
+		List<ValidationException> validationErrors = Options.v().validate() ? new ArrayList<ValidationException>()
+				: null;
 		for (SootMethod m : methodsCopy) {
 			if (DEBUG) {
 				if (m.getExceptions().size() != 0)
@@ -967,8 +1022,12 @@ public class PackManager {
 				DeadAssignmentEliminator.v().transform(body);
 				UnusedLocalEliminator.v().transform(body);
 				PackManager.v().getPack("jtp").apply(body);
-				if (Options.v().validate()) {
-					body.validate();
+				if (validationErrors != null) {
+					int errorCount = validationErrors.size();
+					body.validate(validationErrors);
+					// The remaining packs need not cope with an invalid body
+					if (validationErrors.size() > errorCount)
+						continue;
 				}
 				PackManager.v().getPack("jop").apply(body);
 				PackManager.v().getPack("jap").apply(body);
@@ -984,42 +1043,78 @@ public class PackManager {
 				m.setActiveBody(Grimp.v().newBody(m.getActiveBody(), "gb"));
 				PackManager.v().getPack("gop").apply(m.getActiveBody());
 			} else if (produceBaf) {
-				m.setActiveBody(convertJimpleBodyToBaf(m));
+				if (bafExecutor != null) {
+					final SootMethod method = m;
+					bafExecutor.execute(new Runnable() {
+
+						@Override
+						public void run() {
+							method.setActiveBody(convertJimpleBodyToBaf(method));
+						}
+
+					});
+				} else
+					m.setActiveBody(convertJimpleBodyToBaf(m));
 			}
 		}
 
+		if (validationErrors != null && !validationErrors.isEmpty())
+			reportValidationErrors(c, validationErrors);
+
 		if (Options.v().xml_attributes() && Options.v().output_format() != Options.output_format_jimple) {
 			processXMLForClass(c, tc);
 			// System.out.println("processed xml for class");
 		}
+	}
 
-		if (produceDava) {
-			for (SootMethod m : c.getMethods()) {
-				if (!m.isConcrete())
-					continue;
-				// all the work done in decompilation is done in DavaBody which
-				// is invoked from within newBody
-				m.setActiveBody(Dava.v().newBody(m.getActiveBody()));
-			}
+	/**
+	 * Prints all validation errors found in the bodies of the given class and
+	 * throws the first one.
+	 */
+	private void reportValidationErrors(SootClass c, List<ValidationException> errors) {
+		synchronized (G.v().out) {
+			G.v().out.println("Validation of " + c.getName() + " failed with " + errors.size() + " error(s):");
+			for (ValidationException e : errors)
+				G.v().out.println("  " + e);
+		}
+		throw errors.get(0);
+	}
 
-			/*
-			 * January 13th, 2006 SuperFirstStmtHandler might have set
-			 * SootMethodAddedByDava if it needs to create a new method.
-			 */
-			// could use G to add new method...................
-			if (G.v().SootMethodAddedByDava) {
-				// System.out.println("PACKMANAGER SAYS:----------------Have to
-				// add the new method(s)");
-				ArrayList<SootMethod> sootMethodsAdded = G.v().SootMethodsAdded;
-				Iterator<SootMethod> it = sootMethodsAdded.iterator();
-				while (it.hasNext()) {
-                    c.addMethod(it.next());
-                }
-				G.v().SootMethodsAdded = new ArrayList<SootMethod>();
-				G.v().SootMethodAddedByDava = false;
-			}
+	/**
+	 * Decompiles the methods of the given class to Dava bodies, if the output
+	 * format is dava. The methods need to have Grimp bodies.
+	 */
+	private void decompileClass(SootClass c) {
+		if (Options.v().output_format() != Options.output_format_dava)
+			return;
+
+		G.v().out.println("Decompiling " + c.getName() + "... ");
+
+		// January 13th, 2006 SootMethodAddedByDava is set to false for
+		// SuperFirstStmtHandler
+		G.v().SootMethodAddedByDava = false;
+
+		for (SootMethod m : c.getMethods()) {
+			if (!m.isConcrete())
+				continue;
+			// all the work done in decompilation is done in DavaBody which
+			// is invoked from within newBody
+			m.setActiveBody(Dava.v().newBody(m.getActiveBody()));
+		}
 
-		} // end if produceDava
+		/*
+		 * January 13th, 2006 SuperFirstStmtHandler might have set
+		 * SootMethodAddedByDava if it needs to create a new method.
+		 */
+		if (G.v().SootMethodAddedByDava) {
+			ArrayList<SootMethod> sootMethodsAdded = G.v().SootMethodsAdded;
+			Iterator<SootMethod> it = sootMethodsAdded.iterator();
+			while (it.hasNext()) {
+				c.addMethod(it.next());
+			}
+			G.v().SootMethodsAdded = new ArrayList<SootMethod>();
+			G.v().SootMethodAddedByDava = false;
+		}
 	}
 
 	public BafBody convertJimpleBodyToBaf(SootMethod m) {
@@ -1039,6 +1134,16 @@ public class PackManager {
 	}
 
 	private void writeClass(SootClass c) {
+		writeClass(c, null, 0);
+	}
+
+	/**
+	 * Writes the given class to its output file. If an output jar is used,
+	 * the class is generated into memory and then handed to the given
+	 * queue, which adds the jar entries in the order of their indices. Without
+	 * a queue, the entry is added to the jar right away.
+	 */
+	private void writeClass(SootClass c, JarEntryQueue jarQueue, int entryIndex) {
 		// Create code assignments for those values we only have in code
 		// assignments
 		if (Options.v().output_format() == Options.output_format_jimple)
@@ -1059,6 +1164,7 @@ public class PackManager {
 
 		OutputStream streamOut = null;
 		PrintWriter writerOut = null;
+		ByteArrayOutputStream jarEntryOut = null;
 
 		String fileName = SourceLocator.v().getFileNameFor(c, format);
 		if (Options.v().gzip())
@@ -1068,10 +1174,8 @@ public class PackManager {
 			if (jarFile != null) {
 				// Fix path delimiters according to ZIP specification
 				fileName = fileName.replace("\\", "/");
-				JarEntry entry = new JarEntry(fileName);
-				entry.setMethod(ZipEntry.DEFLATED);
-				jarFile.putNextEntry(entry);
-				streamOut = jarFile;
+				jarEntryOut = new ByteArrayOutputStream();
+				streamOut = jarEntryOut;
 			} else {
 				new File(fileName).getParentFile().mkdirs();
 				streamOut = new FileOutputStream(fileName);
@@ -1112,6 +1216,7 @@ public class PackManager {
 		case Options.output_format_shimp:
 		case Options.output_format_b:
 		case Options.output_format_grimp:
+			writerOut = new PrintWriter(new BufferedWriter(new OutputStreamWriter(streamOut), PRINTER_BUFFER_SIZE));
 			Printer.v().setOption(Printer.USE_ABBREVIATIONS);
 			Printer.v().printTo(c, writerOut);
 			break;
@@ -1119,7 +1224,8 @@ public class PackManager {
 		case Options.output_format_jimple:
 		case Options.output_format_shimple:
 		case Options.output_format_grimple:
-			writerOut = new PrintWriter(new EscapedWriter(new OutputStreamWriter(streamOut)));
+			writerOut = new PrintWriter(new EscapedWriter(
+					new BufferedWriter(new OutputStreamWriter(streamOut), PRINTER_BUFFER_SIZE)));
 			Printer.v().printTo(c, writerOut);
 			break;
 		case Options.output_format_xml:
@@ -1133,20 +1239,64 @@ public class PackManager {
 		case Options.output_format_asm:
 			new BafASMBackend(c, java_version).generateTextualRepresentation(writerOut);
 			break;
+		case Options.output_format_binary_jimple:
+			try {
+				new BinaryJimpleWriter(c).writeTo(streamOut);
+			} catch (IOException e) {
+				throw new CompilationDeathException("Cannot output file " + fileName, e);
+			}
+			break;
 		default:
 			throw new RuntimeException();
 		}
 
 		try {
 			writerOut.flush();
-			if (jarFile == null) {
-				streamOut.close();
-				writerOut.close();
-			} else
-				jarFile.closeEntry();
+			streamOut.close();
+			writerOut.close();
 		} catch (IOException e) {
 			throw new CompilationDeathException("Cannot close output file " + fileName);
 		}
+
+		if (jarEntryOut != null) {
+			if (jarQueue != null)
+				jarQueue.add(entryIndex, fileName, jarEntryOut.toByteArray());
+			else
+				writeJarEntry(fileName, jarEntryOut.toByteArray());
+		}
+	}
+
+	private void writeJarEntry(String fileName, byte[] data) {
+		synchronized (jarFile) {
+			try {
+				JarEntry entry = new JarEntry(fileName);
+				entry.setMethod(ZipEntry.DEFLATED);
+				jarFile.putNextEntry(entry);
+				jarFile.write(data);
+				jarFile.closeEntry();
+			} catch (IOException e) {
+				throw new CompilationDeathException("Cannot output file " + fileName, e);
+			}
+		}
+	}
+
+	/**
+	 * Adds the classes to the output jar in the order in which they were
+	 * handed out, although they are generated concurrently. A class that is
+	 * done early is kept in memory until all classes before it are written.
+	 */
+	private class JarEntryQueue {
+		private final Map<Integer, Pair<String, byte[]>> waiting = new HashMap<Integer, Pair<String, byte[]>>();
+		private int next = 0;
+
+		public synchronized void add(int index, String fileName, byte[] data) {
+			waiting.put(index, new Pair<String, byte[]>(fileName, data));
+			Pair<String, byte[]> entry;
+			while ((entry = waiting.remove(next)) != null) {
+				writeJarEntry(entry.getO1(), entry.getO2());
+				next++;
+			}
+		}
 	}
 
 	private void postProcessXML(Iterator<SootClass> classes) {
@@ -0,0 +1,336 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import soot.options.Options;
+
+/**
+ * Collects wall clock time, CPU time and allocated bytes per phase and per
+ * method. Packs and transforms report every run, so the numbers are correct
+ * when body packs are applied by several threads at once.
+ *
+ * <p>
+ * Collection is enabled by <code>-time</code> and <code>-metrics-file</code>,
+ * or programmatically with {@link #setEnabled(boolean)}. Per-method numbers
+ * are the sum over all body transforms applied to the method; pack numbers
+ * include the transforms of the pack.
+ */
+public class PhaseMetrics
+{
+    public PhaseMetrics( Singletons.Global g ) {}
+    public static PhaseMetrics v() { return G.v().soot_PhaseMetrics(); }
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The allocation counters of <code>com.sun.management.ThreadMXBean</code>,
+     * which not every JVM provides. They are looked up reflectively and are
+     * null if the thread bean does not have them.
+     */
+    private static final Method isAllocationSupported, setAllocationEnabled, getAllocatedBytes;
+    static {
+        Method supported = null, enable = null, get = null;
+        try {
+            Class<?> c = Class.forName( "com.sun.management.ThreadMXBean" );
+            if( c.isInstance( threads ) ) {
+                Method m = c.getMethod( "isThreadAllocatedMemorySupported" );
+                enable = c.getMethod( "setThreadAllocatedMemoryEnabled", boolean.class );
+                get = c.getMethod( "getThreadAllocatedBytes", long.class );
+                supported = m;
+            }
+        } catch( Exception e ) {
+            // Allocated bytes are not measured on this JVM
+        }
+        isAllocationSupported = supported;
+        setAllocationEnabled = enable;
+        getAllocatedBytes = get;
+    }
+
+    private final ConcurrentMap<String, Statistics> phases = new ConcurrentHashMap<String, Statistics>();
+    private final ConcurrentMap<SootMethod, Statistics> methods = new ConcurrentHashMap<SootMethod, Statistics>();
+
+    private volatile Boolean enabled;
+    private volatile boolean measureCpu;
+    private volatile boolean measureAllocation;
+
+    /** Accumulated numbers of one phase or method. All updates are atomic. */
+    public static class Statistics
+    {
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong wallNanos = new AtomicLong();
+        private final AtomicLong maxWallNanos = new AtomicLong();
+        private final AtomicLong cpuNanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+
+        Statistics( String name ) { this.name = name; }
+
+        void add( long wall, long cpu, long allocated ) {
+            count.incrementAndGet();
+            wallNanos.addAndGet( wall );
+            cpuNanos.addAndGet( cpu );
+            allocatedBytes.addAndGet( allocated );
+            long max;
+            while( (max = maxWallNanos.get()) < wall ) {
+                if( maxWallNanos.compareAndSet( max, wall ) ) break;
+            }
+        }
+
+        /** Returns the phase name or the method signature. */
+        public String getName() { return name; }
+        /** Returns how often the phase was applied, or how many transforms ran on the method. */
+        public long getCount() { return count.get(); }
+        public long getWallNanos() { return wallNanos.get(); }
+        /** Returns the longest single run. */
+        public long getMaxWallNanos() { return maxWallNanos.get(); }
+        /** Returns the CPU time, or 0 if the JVM cannot measure it. */
+        public long getCpuNanos() { return cpuNanos.get(); }
+        /** Returns the allocated bytes, or 0 if the JVM cannot measure them. */
+        public long getAllocatedBytes() { return allocatedBytes.get(); }
+
+        public String toString() {
+            return name + ": " + getCount() + " runs, " + getWallNanos() / 1000000L + "ms wall, "
+                + getCpuNanos() / 1000000L + "ms cpu, " + getAllocatedBytes() + " bytes";
+        }
+    }
+
+    /** A measurement in progress, created by {@link PhaseMetrics#begin()}. */
+    public static final class Sample
+    {
+        final long wall;
+        final long cpu;
+        final long allocated;
+
+        Sample( long wall, long cpu, long allocated ) {
+            this.wall = wall;
+            this.cpu = cpu;
+            this.allocated = allocated;
+        }
+    }
+
+    private static final Comparator<Statistics> BY_WALL_TIME = new Comparator<Statistics>() {
+        public int compare( Statistics a, Statistics b ) {
+            long x = a.getWallNanos(), y = b.getWallNanos();
+            return x < y ? 1 : (x == y ? a.getName().compareTo( b.getName() ) : -1);
+        }
+    };
+
+    public boolean isEnabled() {
+        Boolean e = enabled;
+        if( e == null ) {
+            e = Options.v().time() || Options.v().metrics_file().length() > 0;
+            setEnabled( e );
+        }
+        return e;
+    }
+
+    /** Turns collection on or off, regardless of the command line options. */
+    public void setEnabled( boolean enabled ) {
+        if( enabled ) {
+            measureCpu = threads.isCurrentThreadCpuTimeSupported();
+            if( measureCpu && !threads.isThreadCpuTimeEnabled() )
+                threads.setThreadCpuTimeEnabled( true );
+            measureAllocation = isAllocationSupported != null
+                && Boolean.TRUE.equals( invoke( isAllocationSupported ) );
+            if( measureAllocation )
+                invoke( setAllocationEnabled, true );
+        }
+        this.enabled = enabled;
+    }
+
+    /** Starts a measurement on the current thread. Returns null if collection is disabled. */
+    public Sample begin() {
+        if( !isEnabled() ) return null;
+        return new Sample( System.nanoTime(), cpuTime(), allocatedBytes() );
+    }
+
+    /**
+     * Ends a measurement started on the current thread and adds it to the
+     * given phase and, if it is not null, to the given method.
+     */
+    public void end( Sample s, String phaseName, SootMethod method ) {
+        if( s == null ) return;
+        long wall = System.nanoTime() - s.wall;
+        long cpu = measureCpu ? cpuTime() - s.cpu : 0;
+        long allocated = measureAllocation ? allocatedBytes() - s.allocated : 0;
+        statistics( phases, phaseName, phaseName ).add( wall, cpu, allocated );
+        if( method != null )
+            statistics( methods, method, method.getSignature() ).add( wall, cpu, allocated );
+    }
+
+    private static <K> Statistics statistics( ConcurrentMap<K, Statistics> map, K key, String name ) {
+        Statistics s = map.get( key );
+        if( s == null ) {
+            Statistics created = new Statistics( name );
+            s = map.putIfAbsent( key, created );
+            if( s == null ) s = created;
+        }
+        return s;
+    }
+
+    private long cpuTime() {
+        return measureCpu ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    private long allocatedBytes() {
+        if( !measureAllocation ) return 0;
+        return (Long) invoke( getAllocatedBytes, Thread.currentThread().getId() );
+    }
+
+    private static Object invoke( Method m, Object... args ) {
+        try {
+            return m.invoke( threads, args );
+        } catch( Exception e ) {
+            throw new RuntimeException( "cannot measure allocated bytes", e );
+        }
+    }
+
+    /** Returns the statistics of the given phase, or null if it never ran. */
+    public Statistics getPhaseStatistics( String phaseName ) {
+        return phases.get( phaseName );
+    }
+
+    /** Returns the statistics of the given method, or null if no transform ran on it. */
+    public Statistics getMethodStatistics( SootMethod method ) {
+        return methods.get( method );
+    }
+
+    /** Returns the statistics of all phases, slowest first. */
+    public List<Statistics> getPhaseStatistics() {
+        return sorted( phases );
+    }
+
+    /** Returns the statistics of the <code>limit</code> slowest methods, slowest first. */
+    public List<Statistics> getMethodStatistics( int limit ) {
+        List<Statistics> result = sorted( methods );
+        return limit < result.size() ? result.subList( 0, limit ) : result;
+    }
+
+    private static List<Statistics> sorted( Map<?, Statistics> map ) {
+        List<Statistics> result = new ArrayList<Statistics>( map.values() );
+        Collections.sort( result, BY_WALL_TIME );
+        return result;
+    }
+
+    /** Forgets all numbers collected so far. */
+    public void reset() {
+        phases.clear();
+        methods.clear();
+    }
+
+    public void printReport( int methodLimit ) {
+        PrintWriter out = new PrintWriter( G.v().out );
+        out.println( "Phase metrics (wall ms, cpu ms, allocated MB, runs)" );
+        for( Statistics s : getPhaseStatistics() )
+            printLine( out, s );
+        if( methodLimit > 0 && !methods.isEmpty() ) {
+            out.println();
+            out.println( "Slowest methods (wall ms, cpu ms, allocated MB, transforms)" );
+            for( Statistics s : getMethodStatistics( methodLimit ) )
+                printLine( out, s );
+        }
+        out.flush();
+    }
+
+    private static void printLine( PrintWriter out, Statistics s ) {
+        out.printf( "%10.1f %10.1f %10.1f %8d  %s%n", s.getWallNanos() / 1e6, s.getCpuNanos() / 1e6,
+                s.getAllocatedBytes() / (1024.0 * 1024.0), s.getCount(), s.getName() );
+    }
+
+    /**
+     * Writes all phase and method statistics as CSV, one row per phase or
+     * method. Times are in nanoseconds.
+     */
+    public void writeCsv( Writer w ) throws IOException {
+        w.write( "kind,name,count,wall_ns,max_wall_ns,cpu_ns,allocated_bytes\n" );
+        for( Statistics s : getPhaseStatistics() )
+            writeCsvRow( w, "phase", s );
+        for( Statistics s : getMethodStatistics( Integer.MAX_VALUE ) )
+            writeCsvRow( w, "method", s );
+        w.flush();
+    }
+
+    private static void writeCsvRow( Writer w, String kind, Statistics s ) throws IOException {
+        w.write( kind );
+        w.write( ",\"" );
+        w.write( s.getName().replace( "\"", "\"\"" ) );
+        w.write( "\"," + s.getCount() + "," + s.getWallNanos() + "," + s.getMaxWallNanos() + ","
+                + s.getCpuNanos() + "," + s.getAllocatedBytes() + "\n" );
+    }
+
+    /**
+     * Writes all phase and method statistics as a JSON object with the
+     * arrays <code>phases</code> and <code>methods</code>. Times are in
+     * nanoseconds.
+     */
+    public void writeJson( Writer w ) throws IOException {
+        w.write( "{\n  \"phases\": [" );
+        writeJsonArray( w, getPhaseStatistics() );
+        w.write( "],\n  \"methods\": [" );
+        writeJsonArray( w, getMethodStatistics( Integer.MAX_VALUE ) );
+        w.write( "]\n}\n" );
+        w.flush();
+    }
+
+    private static void writeJsonArray( Writer w, List<Statistics> stats ) throws IOException {
+        boolean first = true;
+        for( Statistics s : stats ) {
+            w.write( first ? "\n    " : ",\n    " );
+            first = false;
+            w.write( "{\"name\": " );
+            writeJsonString( w, s.getName() );
+            w.write( ", \"count\": " + s.getCount() + ", \"wall_ns\": " + s.getWallNanos()
+                    + ", \"max_wall_ns\": " + s.getMaxWallNanos() + ", \"cpu_ns\": " + s.getCpuNanos()
+                    + ", \"allocated_bytes\": " + s.getAllocatedBytes() + "}" );
+        }
+        if( !first ) w.write( "\n  " );
+    }
+
+    private static void writeJsonString( Writer w, String s ) throws IOException {
+        w.write( '"' );
+        for( int i = 0; i < s.length(); i++ ) {
+            char c = s.charAt( i );
+            if( c == '"' || c == '\\' ) {
+                w.write( '\\' );
+                w.write( c );
+            } else if( c < 0x20 ) {
+                w.write( String.format( "\\u%04x", (int) c ) );
+            } else {
+                w.write( c );
+            }
+        }
+        w.write( '"' );
+    }
+}
@@ -65,6 +65,10 @@ public class Printer {
 
     int jimpleLnNum = 0; // actual line number
 
+    /* The statements of a body are written out whenever this many
+    characters are buffered, unless jimple line numbers are added. */
+    private static final int STREAMING_THRESHOLD = 8192;
+
     public int getJimpleLnNum() {
         return jimpleLnNum;
     }
@@ -175,7 +179,9 @@ public class Printer {
                             out.println("*/");
                         }
                     }
-                    out.println("    " + f.getDeclaration() + ";");
+                    out.print("    ");
+                    out.print(f.getDeclaration());
+                    out.println(";");
                     if (addJimpleLn()) {
                         setJimpleLnNum(addJimpleLnTags(getJimpleLnNum(), f));		
                     }
@@ -265,7 +271,8 @@ public class Printer {
 
         String decl = b.getMethod().getDeclaration();
 
-        out.println("    " + decl);
+        out.print("    ");
+        out.println(decl);
         //incJimpleLnNum();
     
         // only print tags if not printing attributes in a file 
@@ -352,6 +359,12 @@ public class Printer {
             up.literal(";");
             up.newline();
 
+            // The position tagger measures offsets in the buffer, so it
+            // must see the whole body
+            if (up.getPositionTagger() == null
+                    && up.output().length() >= STREAMING_THRESHOLD)
+                up.flushTo(out);
+
             // only print them if not generating attributes files 
             // because they mess up line number
             //if (!addJimpleLn()) {
@@ -379,7 +392,7 @@ public class Printer {
             }
         }
 
-        out.print(up.toString());
+        up.flushTo(out);
 		if (addJimpleLn()){
 			setJimpleLnNum(up.getPositionTagger().getEndLn());
 		}
@@ -397,16 +410,15 @@ public class Printer {
             while (trapIt.hasNext()) {
                 Trap trap = trapIt.next();
 
-                out.println(
-                    "        catch "
-                        + Scene.v().quotedNameOf(trap.getException().getName())
-                        + " from "
-                        + up.labels().get(trap.getBeginUnit())
-                        + " to "
-                        + up.labels().get(trap.getEndUnit())
-                        + " with "
-                        + up.labels().get(trap.getHandlerUnit())
-                        + ";");
+                out.print("        catch ");
+                out.print(Scene.v().quotedNameOf(trap.getException().getName()));
+                out.print(" from ");
+                out.print(up.labels().get(trap.getBeginUnit()));
+                out.print(" to ");
+                out.print(up.labels().get(trap.getEndUnit()));
+                out.print(" with ");
+                out.print(up.labels().get(trap.getHandlerUnit()));
+                out.println(";");
 
                 incJimpleLnNum();
 
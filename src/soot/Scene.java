@@ -59,6 +59,7 @@ import soot.jimple.spark.pag.SparkField;
 import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.ContextSensitiveCallGraph;
 import soot.jimple.toolkits.callgraph.ReachableMethods;
+import soot.jimple.toolkits.callgraph.VirtualCalls;
 import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
 import soot.jimple.toolkits.pointer.SideEffectAnalysis;
 import soot.options.CGOptions;
@@ -70,6 +71,7 @@ import soot.util.ArrayNumberer;
 import soot.util.Chain;
 import soot.util.HashChain;
 import soot.util.MapNumberer;
+import soot.util.NumberedString;
 import soot.util.Numberer;
 import soot.util.StringNumberer;
 import test.AXMLPrinter;
@@ -1151,6 +1153,18 @@ public class Scene // extends AbstractHost
 		activeFastHierarchy = null;
 	}
 
+	/**
+	 * Forgets the dispatch targets memoized for the given subsignature. Called
+	 * when a method with this subsignature is added to or removed from a
+	 * class, since calls may now resolve to another method.
+	 */
+	public void forgetDispatchTargets(NumberedString subSig) {
+		FastHierarchy hierarchy = activeFastHierarchy;
+		if (hierarchy != null)
+			hierarchy.forgetDispatch(subSig);
+		VirtualCalls.v().forgetTargets(subSig);
+	}
+
 	/****************************************************************************/
 	/**
 	 * Retrieves the active hierarchy
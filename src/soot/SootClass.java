@@ -621,6 +621,7 @@ public class SootClass extends AbstractHost implements Numberable {
 		methodList.add(m);
 		m.setDeclared(true);
 		m.setDeclaringClass(this);
+		Scene.v().forgetDispatchTargets(m.getNumberedSubSignature());
 	}
 
 	public synchronized SootMethod getOrAddMethod(SootMethod m) {
@@ -634,6 +635,7 @@ public class SootClass extends AbstractHost implements Numberable {
 		methodList.add(m);
 		m.setDeclared(true);
 		m.setDeclaringClass(this);
+		Scene.v().forgetDispatchTargets(m.getNumberedSubSignature());
 		return m;
 	}
 
@@ -667,6 +669,7 @@ public class SootClass extends AbstractHost implements Numberable {
 		subSigToMethods.put(m.getNumberedSubSignature(), null);
 		methodList.remove(m);
 		m.setDeclared(false);
+		Scene.v().forgetDispatchTargets(m.getNumberedSubSignature());
 	}
 
 	/**
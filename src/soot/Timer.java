@@ -25,6 +25,9 @@
 
 package soot;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import soot.options.*;
 
 import static java.lang.System.gc;
@@ -37,7 +40,7 @@ import static java.lang.System.nanoTime;
 public class Timer {
 	private long duration;
 	private long startTime;
-	private boolean hasStarted;
+	private final Set<Thread> runningThreads = new HashSet<Thread>();
 
 	private String name;
 
@@ -68,16 +71,21 @@ public class Timer {
 		g.Timer_isGarbageCollecting = true;
 		g.Timer_forcedGarbageCollectionTimer.start();
 
-		// Stop all outstanding timers
-		for (Timer t : g.Timer_outstandingTimers) {
-			t.end();
+		// Stop all outstanding timers, which may have been started by other
+		// threads
+		synchronized (g.Timer_outstandingTimers) {
+			for (Timer t : g.Timer_outstandingTimers) {
+				t.suspend();
+			}
 		}
 
 		gc();
 
 		// Start all outstanding timers
-		for (Timer t : g.Timer_outstandingTimers) {
-			t.start();
+		synchronized (g.Timer_outstandingTimers) {
+			for (Timer t : g.Timer_outstandingTimers) {
+				t.resume();
+			}
 		}
 
 		g.Timer_forcedGarbageCollectionTimer.end();
@@ -85,16 +93,21 @@ public class Timer {
 	
 	}
 	
-	/** Starts the given timer. */
+	/**
+	 * Starts the given timer. A timer may be started by several threads at
+	 * once; it then measures the time during which at least one of them is
+	 * running. Each thread must end the timer before starting it again.
+	 */
 	public void start() {
 		doGarbageCollecting();
 
-		startTime = nanoTime();
-
-		if (hasStarted)
-			throw new RuntimeException("timer " + name + " has already been started!");
-
-		hasStarted = true;
+		synchronized (this) {
+			if (!runningThreads.add(Thread.currentThread()))
+				throw new RuntimeException("timer " + name + " has already been started!");
+			if (runningThreads.size() > 1)
+				return;
+			startTime = nanoTime();
+		}
 
 		if (!G.v().Timer_isGarbageCollecting) {
 			synchronized(G.v().Timer_outstandingTimers) {
@@ -110,12 +123,13 @@ public class Timer {
 
 	/** Stops the current timer. */
 	public void end() {
-		if (!hasStarted)
-			throw new RuntimeException("timer " + name + " has not been started!");
-		
-		hasStarted = false;
-
-		duration += nanoTime() - startTime;
+		synchronized (this) {
+			if (!runningThreads.remove(Thread.currentThread()))
+				throw new RuntimeException("timer " + name + " has not been started!");
+			if (!runningThreads.isEmpty())
+				return;
+			duration += nanoTime() - startTime;
+		}
 
 		if (!G.v().Timer_isGarbageCollecting) {
 			synchronized(G.v().Timer_outstandingTimers) {
@@ -124,8 +138,20 @@ public class Timer {
 		}
 	}
 
+	/** Stops measuring while the garbage is collected. */
+	private synchronized void suspend() {
+		if (!runningThreads.isEmpty())
+			duration += nanoTime() - startTime;
+	}
+
+	/** Measures again after the garbage has been collected. */
+	private synchronized void resume() {
+		if (!runningThreads.isEmpty())
+			startTime = nanoTime();
+	}
+
 	/** Returns the sum of the intervals start()-end() of the current timer. */
-	public long getTime() {
+	public synchronized long getTime() {
 		return duration / 1000000L;
 	}
 }
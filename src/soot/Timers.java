@@ -29,6 +29,12 @@ import java.text.DecimalFormat;
 
 import soot.options.Options;
 
+/**
+ * Timers and counters of individual algorithms, printed with
+ * <code>-time</code>. The counters are not updated atomically, so they are
+ * only exact when the body packs run on a single thread; use
+ * {@link PhaseMetrics} for per-phase and per-method numbers.
+ */
 public class Timers
 {
     public Timers( Singletons.Global g ) {}
@@ -0,0 +1,437 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.baf.toolkits.base;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Body;
+import soot.Local;
+import soot.PatchingChain;
+import soot.Trap;
+import soot.Unit;
+import soot.UnitBox;
+import soot.Value;
+import soot.ValueBox;
+import soot.baf.Baf;
+import soot.baf.Dup1Inst;
+import soot.baf.IncInst;
+import soot.baf.Inst;
+import soot.baf.LoadInst;
+import soot.baf.StoreInst;
+
+/**
+ * The block-local mode of the {@link LoadStoreOptimizer}. It removes
+ * store/load pairs and replaces store/load/load trios by a <tt>dup1</tt>,
+ * but it never reorders instructions.
+ *
+ * <p> The units are kept in arrays, one per basic block. Each pass over a
+ * block simulates the stack heights once and finds every store whose loads
+ * can be taken from the stack. A store is only a candidate while the stack
+ * does not drop below the height right after it, which is tracked with a
+ * stack of floors that only grows upwards. Passes are repeated on the
+ * blocks that changed, since removing an inner pair can free an outer one,
+ * but only a bounded number of times per block.
+ *
+ * <p> Whether the stored value is still needed after its last load is
+ * decided with a liveness analysis on the blocks, which is computed once.
+ * Removing a pair never changes the liveness of the other locals.
+ */
+class BlockLocalLoadStoreOptimizer
+{
+    /* Every pass that changes a block removes units from it, so the passes
+    end anyway. The bound keeps long chains of nested pairs from being
+    quadratic. */
+    private static final int MAX_PASSES = 8;
+
+    private final Body body;
+    private final PatchingChain<Unit> units;
+    private final boolean sl, sll;
+
+    private Unit[][] blocks;
+    private int[][] succs;
+    private int[][] handlers;
+    private Map<Local, Integer> localToIndex;
+
+    /* Locals live at the end of each block, and locals live at the start
+    of a handler that covers the block. */
+    private BitSet[] liveOut;
+    private BitSet[] handlerLive;
+    private Set<Unit> trapEnds;
+
+    BlockLocalLoadStoreOptimizer(Body body, boolean sl, boolean sll)
+    {
+        this.body = body;
+        this.units = body.getUnits();
+        this.sl = sl;
+        this.sll = sll;
+    }
+
+    void optimize()
+    {
+        if (units.isEmpty() || !(sl || sll))
+            return;
+
+        buildBlocks();
+        computeLiveness();
+
+        for (int b = 0; b < blocks.length; b++) {
+            for (int pass = 0; pass < MAX_PASSES && optimizeBlock(b); pass++)
+                ;
+        }
+    }
+
+    /* Splits the units into basic blocks. A trap begins and ends at block
+    boundaries, so every block is either covered by a trap or not. */
+    private void buildBlocks()
+    {
+        final int n = units.size();
+        Unit[] code = units.toArray(new Unit[n]);
+        Map<Unit, Integer> unitToIndex = new HashMap<Unit, Integer>(n * 2 + 1, 0.7f);
+        for (int i = 0; i < n; i++)
+            unitToIndex.put(code[i], i);
+
+        boolean[] leader = new boolean[n + 1];
+        leader[0] = true;
+        leader[n] = true;
+        for (int i = 0; i < n; i++) {
+            Unit u = code[i];
+            if (u.branches() || !u.fallsThrough())
+                leader[i + 1] = true;
+            for (UnitBox ub : u.getUnitBoxes())
+                leader[unitToIndex.get(ub.getUnit())] = true;
+        }
+        trapEnds = new HashSet<Unit>();
+        for (Trap t : body.getTraps()) {
+            leader[unitToIndex.get(t.getBeginUnit())] = true;
+            leader[unitToIndex.get(t.getEndUnit())] = true;
+            leader[unitToIndex.get(t.getHandlerUnit())] = true;
+            trapEnds.add(t.getEndUnit());
+        }
+
+        List<Unit[]> blockList = new ArrayList<Unit[]>();
+        int[] blockOf = new int[n];
+        int start = 0;
+        for (int i = 1; i <= n; i++) {
+            if (!leader[i])
+                continue;
+            Unit[] block = new Unit[i - start];
+            System.arraycopy(code, start, block, 0, i - start);
+            for (int k = start; k < i; k++)
+                blockOf[k] = blockList.size();
+            blockList.add(block);
+            start = i;
+        }
+        blocks = blockList.toArray(new Unit[blockList.size()][]);
+
+        // Successors, handlers included
+        succs = new int[blocks.length][];
+        handlers = new int[blocks.length][];
+        List<Integer> s = new ArrayList<Integer>();
+        List<Integer> h = new ArrayList<Integer>();
+        int first = 0;
+        for (int b = 0; b < blocks.length; b++) {
+            Unit[] block = blocks[b];
+            Unit last = block[block.length - 1];
+            s.clear();
+            h.clear();
+            if (last.fallsThrough() && b + 1 < blocks.length)
+                s.add(b + 1);
+            for (UnitBox ub : last.getUnitBoxes())
+                s.add(blockOf[unitToIndex.get(ub.getUnit())]);
+            for (Trap t : body.getTraps()) {
+                int begin = unitToIndex.get(t.getBeginUnit());
+                int end = unitToIndex.get(t.getEndUnit());
+                if (begin <= first && first < end)
+                    h.add(blockOf[unitToIndex.get(t.getHandlerUnit())]);
+            }
+            succs[b] = toArray(s);
+            handlers[b] = toArray(h);
+            first += block.length;
+        }
+    }
+
+    private static int[] toArray(List<Integer> l)
+    {
+        int[] a = new int[l.size()];
+        for (int i = 0; i < a.length; i++)
+            a[i] = l.get(i);
+        return a;
+    }
+
+    private int indexOf(Local l)
+    {
+        Integer i = localToIndex.get(l);
+        if (i == null) {
+            i = localToIndex.size();
+            localToIndex.put(l, i);
+        }
+        return i;
+    }
+
+    /* Standard backward liveness over the blocks. */
+    private void computeLiveness()
+    {
+        final int nb = blocks.length;
+        localToIndex = new HashMap<Local, Integer>(body.getLocalCount() * 2 + 1, 0.7f);
+        BitSet[] use = new BitSet[nb];
+        BitSet[] def = new BitSet[nb];
+        for (int b = 0; b < nb; b++) {
+            use[b] = new BitSet();
+            def[b] = new BitSet();
+            for (Unit u : blocks[b]) {
+                for (ValueBox vb : u.getUseBoxes()) {
+                    Value v = vb.getValue();
+                    if (v instanceof Local) {
+                        int i = indexOf((Local) v);
+                        if (!def[b].get(i))
+                            use[b].set(i);
+                    }
+                }
+                for (ValueBox vb : u.getDefBoxes()) {
+                    Value v = vb.getValue();
+                    if (v instanceof Local)
+                        def[b].set(indexOf((Local) v));
+                }
+            }
+        }
+
+        BitSet[] liveIn = new BitSet[nb];
+        liveOut = new BitSet[nb];
+        for (int b = 0; b < nb; b++) {
+            liveIn[b] = (BitSet) use[b].clone();
+            liveOut[b] = new BitSet();
+        }
+
+        int[][] preds = predecessors();
+        BitSet worklist = new BitSet(nb);
+        worklist.set(0, nb);
+        for (int b = worklist.previousSetBit(nb - 1); b >= 0; b = worklist.previousSetBit(nb - 1)) {
+            worklist.clear(b);
+            BitSet out = liveOut[b];
+            for (int s : succs[b])
+                out.or(liveIn[s]);
+            for (int h : handlers[b])
+                out.or(liveIn[h]);
+            BitSet in = (BitSet) out.clone();
+            in.andNot(def[b]);
+            in.or(use[b]);
+            // A handler can be entered before the block defines anything
+            for (int h : handlers[b])
+                in.or(liveIn[h]);
+            if (!in.equals(liveIn[b])) {
+                liveIn[b] = in;
+                for (int p : preds[b])
+                    worklist.set(p);
+            }
+        }
+
+        handlerLive = new BitSet[nb];
+        for (int b = 0; b < nb; b++) {
+            handlerLive[b] = new BitSet();
+            for (int h : handlers[b])
+                handlerLive[b].or(liveIn[h]);
+        }
+    }
+
+    private int[][] predecessors()
+    {
+        final int nb = blocks.length;
+        int[] count = new int[nb];
+        for (int b = 0; b < nb; b++) {
+            for (int s : succs[b])
+                count[s]++;
+            for (int h : handlers[b])
+                count[h]++;
+        }
+        int[][] preds = new int[nb][];
+        for (int b = 0; b < nb; b++)
+            preds[b] = new int[count[b]];
+        int[] filled = new int[nb];
+        for (int b = 0; b < nb; b++) {
+            for (int s : succs[b])
+                preds[s][filled[s]++] = b;
+            for (int h : handlers[b])
+                preds[h][filled[h]++] = b;
+        }
+        return preds;
+    }
+
+    /* A floor on the stack height. It breaks as soon as an instruction pops
+    below it. */
+    private static class Floor
+    {
+        final int height;
+        boolean broken;
+
+        Floor(int height)
+        {
+            this.height = height;
+        }
+    }
+
+    /* A store and the loads of its value that were seen so far. */
+    private static class Candidate
+    {
+        final int store;
+        final Floor afterStore;
+        int firstLoad = -1, secondLoad = -1;
+        boolean firstLoadOk;
+        // floors for a second load that leaves the stack as it was, or that
+        // finds the first loaded value consumed
+        Floor keepsFirst, consumesFirst;
+        int heightAfterFirst;
+        boolean secondLoadOk;
+        boolean tooManyUses;
+
+        Candidate(int store, Floor afterStore)
+        {
+            this.store = store;
+            this.afterStore = afterStore;
+        }
+    }
+
+    /**
+     * Runs one pass over the given block and applies the eliminations found.
+     * Returns true if the block changed.
+     */
+    private boolean optimizeBlock(int b)
+    {
+        final Unit[] code = blocks[b];
+        final int n = code.length;
+
+        List<Floor> floors = new ArrayList<Floor>();
+        Map<Integer, Candidate> open = new HashMap<Integer, Candidate>();
+        List<Candidate> accepted = new ArrayList<Candidate>();
+
+        int height = 0;
+        for (int k = 0; k < n; k++) {
+            Inst inst = (Inst) code[k];
+            Candidate firstLoaded = null;
+
+            if (inst instanceof LoadInst) {
+                Candidate c = open.get(indexOf(((LoadInst) inst).getLocal()));
+                if (c != null) {
+                    if (c.firstLoad < 0) {
+                        c.firstLoad = k;
+                        c.firstLoadOk = !c.afterStore.broken && height == c.afterStore.height;
+                        c.heightAfterFirst = height + 1;
+                        firstLoaded = c;
+                    } else if (c.secondLoad < 0) {
+                        c.secondLoad = k;
+                        c.secondLoadOk = (height == c.heightAfterFirst && !c.keepsFirst.broken)
+                            || (height == c.heightAfterFirst - 1 && !c.consumesFirst.broken);
+                    } else
+                        c.tooManyUses = true;
+                }
+            } else {
+                // Any other use ends the candidate, a redefinition closes it
+                for (ValueBox vb : inst.getUseBoxes()) {
+                    Value v = vb.getValue();
+                    if (v instanceof Local) {
+                        Candidate c = open.remove(indexOf((Local) v));
+                        if (c != null)
+                            c.tooManyUses = true;
+                    }
+                }
+                for (ValueBox vb : inst.getDefBoxes()) {
+                    Value v = vb.getValue();
+                    if (v instanceof Local) {
+                        Candidate c = open.remove(indexOf((Local) v));
+                        if (c != null && isEliminable(c))
+                            accepted.add(c);
+                    }
+                }
+            }
+
+            // Pop, and break the floors that are now above the stack
+            int low = height - inst.getInCount();
+            for (int f = floors.size() - 1; f >= 0 && floors.get(f).height > low; f--)
+                floors.remove(f).broken = true;
+            height = low + inst.getOutCount();
+
+            // Added after the pop, so that the load does not break them
+            if (firstLoaded != null) {
+                firstLoaded.consumesFirst = new Floor(height - 1);
+                firstLoaded.keepsFirst = new Floor(height);
+                floors.add(firstLoaded.consumesFirst);
+                floors.add(firstLoaded.keepsFirst);
+            }
+
+            if (inst instanceof StoreInst && !(inst instanceof IncInst)) {
+                int local = indexOf(((StoreInst) inst).getLocal());
+                if (!handlerLive[b].get(local) && !trapEnds.contains(inst)) {
+                    Floor floor = new Floor(height);
+                    floors.add(floor);
+                    open.put(local, new Candidate(k, floor));
+                }
+            }
+        }
+        for (Map.Entry<Integer, Candidate> e : open.entrySet()) {
+            Candidate c = e.getValue();
+            if (!liveOut[b].get(e.getKey()) && isEliminable(c))
+                accepted.add(c);
+        }
+
+        if (accepted.isEmpty())
+            return false;
+
+        for (Candidate c : accepted) {
+            Unit store = code[c.store];
+            if (c.secondLoad < 0) {
+                units.remove(store);
+                units.remove(code[c.firstLoad]);
+                code[c.store] = code[c.firstLoad] = null;
+            } else {
+                Dup1Inst dup = Baf.v().newDup1Inst(((LoadInst) code[c.secondLoad]).getOpType());
+                dup.addAllTagsOf(store);
+                units.swapWith(store, dup);
+                units.remove(code[c.firstLoad]);
+                units.remove(code[c.secondLoad]);
+                code[c.store] = dup;
+                code[c.firstLoad] = code[c.secondLoad] = null;
+            }
+        }
+
+        int kept = 0;
+        for (Unit u : code) {
+            if (u != null)
+                code[kept++] = u;
+        }
+        Unit[] shrunk = new Unit[kept];
+        System.arraycopy(code, 0, shrunk, 0, kept);
+        blocks[b] = shrunk;
+        return true;
+    }
+
+    private boolean isEliminable(Candidate c)
+    {
+        if (c.tooManyUses || c.firstLoad < 0 || !c.firstLoadOk)
+            return false;
+        if (c.secondLoad < 0)
+            return sl;
+        return sll && c.secondLoadOk;
+    }
+}
@@ -75,7 +75,13 @@ public class LoadStoreOptimizer extends BodyTransformer
             G.v().out.println("[" + body.getMethod().getName() + "] Performing LoadStore optimizations...");
 
         if(debug) { G.v().out.println("\n\nOptimizing Method: " + body.getMethod().getName());}
-        
+
+        if(PhaseOptions.getBoolean(gOptions, "block-local")) {
+            new BlockLocalLoadStoreOptimizer(body, PhaseOptions.getBoolean(gOptions, "sl"),
+                    PhaseOptions.getBoolean(gOptions, "sll")).optimize();
+            return;
+        }
+
         instance.go();
     }
 class Instance {
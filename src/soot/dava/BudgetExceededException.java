@@ -0,0 +1,35 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.dava;
+
+/**
+ * Thrown by {@link DavaBody#checkBudget()} when the decompilation of a method
+ * takes longer than the time set with the db option method-timeout. The
+ * DavaBody catches it and falls back to a simpler structuring.
+ */
+public class BudgetExceededException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    public BudgetExceededException(String message)
+    {
+	super(message);
+    }
+}
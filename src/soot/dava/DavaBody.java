@@ -20,6 +20,8 @@
 
 package soot.dava;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -35,6 +37,8 @@ import soot.Local;
 import soot.PatchingChain;
 import soot.PhaseOptions;
 import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
 import soot.SootFieldRef;
 import soot.SootMethod;
 import soot.SootMethodRef;
@@ -46,6 +50,7 @@ import soot.Value;
 import soot.ValueBox;
 import soot.dava.internal.AST.ASTMethodNode;
 import soot.dava.internal.AST.ASTNode;
+import soot.dava.internal.AST.ASTStatementSequenceNode;
 import soot.dava.internal.SET.SETNode;
 import soot.dava.internal.SET.SETTopNode;
 import soot.dava.internal.asg.AugmentedStmt;
@@ -102,6 +107,7 @@ import soot.dava.toolkits.base.finders.SwitchFinder;
 import soot.dava.toolkits.base.finders.SynchronizedBlockFinder;
 import soot.dava.toolkits.base.misc.MonitorConverter;
 import soot.dava.toolkits.base.misc.ThrowNullConverter;
+import soot.grimp.Grimp;
 import soot.grimp.GrimpBody;
 import soot.grimp.NewInvokeExpr;
 import soot.jimple.ArrayRef;
@@ -138,6 +144,7 @@ import soot.jimple.SpecialInvokeExpr;
 import soot.jimple.StaticFieldRef;
 import soot.jimple.StaticInvokeExpr;
 import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
 import soot.jimple.TableSwitchStmt;
 import soot.jimple.ThisRef;
 import soot.jimple.ThrowStmt;
@@ -203,6 +210,15 @@ public class DavaBody extends Body {
 
 	private List<CaughtExceptionRef> caughtrefs;
 
+	/*
+	 * Budget of the current stage of the decompilation, see startBudget().
+	 * A deadline of 0 means that there is no time limit.
+	 */
+	private long deadline;
+	private int maxIterations;
+
+	private List<String> diagnostics;
+
 	/**
 	 *  Construct an empty DavaBody 
 	 */
@@ -219,6 +235,7 @@ public class DavaBody extends Body {
 		importList = new IterableSet<String>();
 		//packagesUsed = new IterableSet();
 		caughtrefs = new LinkedList<CaughtExceptionRef>();
+		diagnostics = new LinkedList<String>();
 
 		controlLocal = null;
 		constructorExpr = null;
@@ -294,6 +311,53 @@ public class DavaBody extends Body {
 	public IterableSet<String> getImportList(){
 		return importList;
 	}
+
+	/**
+	 * Starts the budget for the next stage of the decompilation of this
+	 * method. The budget is set with the db options method-timeout and
+	 * max-iterations.
+	 */
+	public void startBudget() {
+		Map<String, String> options = PhaseOptions.v().getPhaseOptions("db");
+		int timeout = PhaseOptions.getInt(options, "method-timeout");
+		deadline = timeout > 0 ? System.currentTimeMillis() + timeout * 1000L : 0;
+		maxIterations = PhaseOptions.getInt(options, "max-iterations");
+	}
+
+	public boolean budgetExceeded() {
+		return deadline != 0 && System.currentTimeMillis() > deadline;
+	}
+
+	/**
+	 * Returns true if the time is up or if a fixed point loop has done more
+	 * than the allowed number of iterations.
+	 */
+	public boolean budgetExceeded(int iterations) {
+		return budgetExceeded() || (maxIterations > 0 && iterations > maxIterations);
+	}
+
+	/**
+	 * Called from the long running finders.
+	 * 
+	 * @throws BudgetExceededException if the time is up
+	 */
+	public void checkBudget() {
+		if (budgetExceeded())
+			throw new BudgetExceededException("Time budget exceeded while decompiling " + getMethod());
+	}
+
+	/**
+	 * Records that a part of the decompilation was skipped or simplified.
+	 * The diagnostics are printed as comments above the method.
+	 */
+	public void addDiagnostic(String diagnostic) {
+		diagnostics.add(diagnostic);
+		G.v().out.println("Warning: " + getMethod() + ": " + diagnostic);
+	}
+
+	public List<String> getDiagnostics() {
+		return diagnostics;
+	}
 	
 	
 	/**
@@ -321,12 +385,26 @@ public class DavaBody extends Body {
 		ExceptionFinder.v().preprocess(this, asg);
 		SETNode SET = new SETTopNode(asg.get_ChainView());
 
+		/*
+		 * If the budget runs out, the structuring is restarted without
+		 * synchronized blocks: the monitor statements are then printed as
+		 * calls to DavaMonitor. This fallback gets a budget of its own. If it
+		 * runs out as well, the method is printed without its body, see
+		 * emitUndecompiledBody().
+		 */
+		startBudget();
+		boolean findSynchronizedBlocks = true;
+		boolean structured = true;
+		int rounds = 0;
 		while (true) {
 			try {
 				CycleFinder.v().find(this, asg, SET);
 				IfFinder.v().find(this, asg, SET);
 				SwitchFinder.v().find(this, asg, SET);
-				SynchronizedBlockFinder.v().find(this, asg, SET);
+				if (findSynchronizedBlocks)
+					SynchronizedBlockFinder.v().find(this, asg, SET);
+				else
+					findMonitorsOnly(asg);
 				ExceptionFinder.v().find(this, asg, SET);
 				SequenceFinder.v().find(this, asg, SET);
 				LabeledBlockFinder.v().find(this, asg, SET);
@@ -334,15 +412,42 @@ public class DavaBody extends Body {
 			} catch (RetriggerAnalysisException rae) {
 				SET = new SETTopNode(asg.get_ChainView());
 				consumedConditions = new HashSet<Object>();
+				if (budgetExceeded(++rounds)) {
+					if (!findSynchronizedBlocks) {
+						addDiagnostic("structuring did not converge without synchronized blocks either, "
+								+ "the body was not decompiled");
+						structured = false;
+						break;
+					}
+					findSynchronizedBlocks = false;
+					addDiagnostic("structuring did not converge after " + rounds
+							+ " rounds, synchronized blocks were not recovered");
+					startBudget();
+					rounds = 0;
+				}
+				continue;
+			} catch (BudgetExceededException bee) {
+				// only the SynchronizedBlockFinder checks the budget
+				SET = new SETTopNode(asg.get_ChainView());
+				consumedConditions = new HashSet<Object>();
+				findSynchronizedBlocks = false;
+				addDiagnostic("time budget exceeded while finding synchronized blocks, "
+						+ "synchronized blocks were not recovered");
+				startBudget();
+				rounds = 0;
 				continue;
 			}
 			break;
 		}
 
-		MonitorConverter.v().convert(this);
-		ThrowNullConverter.v().convert(this);
+		ASTNode AST;
+		if (structured) {
+			MonitorConverter.v().convert(this);
+			ThrowNullConverter.v().convert(this);
 
-		ASTNode AST = SET.emit_AST();
+			AST = SET.emit_AST();
+		} else
+			AST = emitUndecompiledBody();
 
 		// get rid of the grimp representation, put in the new AST
 		getTraps().clear();
@@ -353,7 +458,13 @@ public class DavaBody extends Body {
 		/*
 		 * Nomair This should be refactored to use the new AnalysisAdapter classes
 		 */
+		startBudget();
+		int iterations = 0;
 		do {
+			if (budgetExceeded(++iterations)) {
+				addDiagnostic("removal of useless try blocks stopped after " + (iterations - 1) + " iterations");
+				break;
+			}
 			G.v().ASTAnalysis_modified = false;
 
 			AST.perform_Analysis(UselessTryRemover.v());
@@ -378,7 +489,12 @@ public class DavaBody extends Body {
 	        boolean force = PhaseOptions.getBoolean(options, "enabled");
 	        //System.out.println("force is "+force);
 	        if(force){
-	        	AST.apply(new SuperFirstStmtHandler((ASTMethodNode) AST));
+	        	try {
+	        		AST.apply(new SuperFirstStmtHandler((ASTMethodNode) AST));
+	        	} catch (BudgetExceededException bee) {
+	        		// the handler checks the budget before it changes the AST
+	        		addDiagnostic("time budget exceeded, the call to super was not moved to the start of the constructor");
+	        	}
 	        }
 
 	        debug("DavaBody","PreInit booleans is" + G.v().SootMethodAddedByDava);
@@ -389,6 +505,38 @@ public class DavaBody extends Body {
 
 	
 	
+	/*
+	 * Used when the structuring did not converge: the body only throws an
+	 * Error, so that the rest of the class is still printed and compiles.
+	 */
+	private ASTMethodNode emitUndecompiledBody() {
+		SootClass error = Scene.v().getSootClass("java.lang.Error");
+		SootMethodRef init = Scene.v().makeConstructorRef(error,
+				Collections.<Type> singletonList(RefType.v("java.lang.String")));
+		Value message = StringConstant.v("Dava could not decompile " + getMethod().getSignature());
+		Stmt throwStmt = Grimp.v().newThrowStmt(
+				new DNewInvokeExpr(error.getType(), init, Collections.singletonList(message)));
+
+		List<AugmentedStmt> statements = new ArrayList<AugmentedStmt>();
+		statements.add(new AugmentedStmt(throwStmt));
+		List<Object> body = new ArrayList<Object>();
+		body.add(new ASTStatementSequenceNode(statements));
+		return new ASTMethodNode(body);
+	}
+
+	/*
+	 * Used instead of the SynchronizedBlockFinder once the budget has run
+	 * out: every monitor statement becomes a monitor fact.
+	 */
+	private void findMonitorsOnly(AugmentedStmtGraph asg) {
+		synchronizedBlockFacts.clear();
+		monitorFacts.clear();
+		for (AugmentedStmt as : asg) {
+			if (as.get_Stmt() instanceof MonitorStmt)
+				monitorFacts.add(as);
+		}
+	}
+
 	public void applyBugFixes(){
    		ASTNode AST = (ASTNode) this.getUnits().getFirst();
 		debug("applyBugFixes","Applying AST analyzes for method"+this.getMethod().toString());
@@ -420,6 +568,7 @@ public class DavaBody extends Body {
 		 * Any AST Transformations added should be added to the applyASTAnalyses method
 		 * unless we are want to delay the analysis till for example THE LAST THING DONE
 		 */
+		startBudget();
 		applyASTAnalyses(AST);
 
 		/*
@@ -428,7 +577,10 @@ public class DavaBody extends Body {
 		 *
 		 */
 		debug("analyzeAST","Applying structure analysis"+this.getMethod().toString());
-		applyStructuralAnalyses(AST);
+		if (budgetExceeded())
+			addDiagnostic("time budget exceeded, copy propagation and local variable cleaning were skipped");
+		else
+			applyStructuralAnalyses(AST);
 		debug("analyzeAST","Applying structure analysis DONE"+this.getMethod().toString());
 		/*
 		 * Renamer
@@ -476,10 +628,15 @@ public class DavaBody extends Body {
 		G.v().ASTIfElseFlipped = false;
 		
 		int countFlipping=0;
+		int iterations=0;
 		
 		if (flag) {
 			// perform transformations on the AST	
 			do {
+				if (budgetExceeded(++iterations)) {
+					addDiagnostic("AST transformations stopped after " + (iterations - 1) + " iterations");
+					break;
+				}
 				debug("applyASTAnalyses","ITERATION");
 				G.v().ASTTransformations_modified = false;
 				
@@ -477,6 +477,8 @@ public class DavaPrinter {
         String decl = b.getMethod().getDavaDeclaration();
 
         {
+            for (String diagnostic : ((DavaBody) b).getDiagnostics())
+                out.println("    // Dava: " + diagnostic);
             out.println("    " + decl);
             for( Iterator<Tag> tIt = b.getMethod().getTags().iterator(); tIt.hasNext(); ) {
                 final Tag t = tIt.next();
@@ -1084,6 +1084,8 @@ public class SuperFirstStmtHandler extends DepthFirstAdapter {
 
 		boolean done = false; // havent found the name
 		while (!done) {// as long as name not found
+			// the original AST is only changed once the names are found
+			originalDavaBody.checkBudget();
 			done = true; // assume name found
 			Iterator it = methodList.iterator();
 			while (it.hasNext()) {
@@ -1422,11 +1424,13 @@ public class SuperFirstStmtHandler extends DepthFirstAdapter {
 		// find all the uses of these definitions in the original method body
 		toRemoveDefs = new ArrayList<DefinitionStmt>();
 
+		originalDavaBody.checkBudget();
 		ASTUsesAndDefs uDdU = new ASTUsesAndDefs(originalASTMethod);
 		originalASTMethod.apply(uDdU);
 
 		it = uniqueLocalDefs.iterator();
 		while (it.hasNext()) {
+			originalDavaBody.checkBudget();
 			DefinitionStmt s = it.next();
 			Object temp = uDdU.getDUChain(s);
 
@@ -86,6 +86,7 @@ public class ExceptionFinder implements FactFinder {
 		{
 			for (ExceptionNode en : enlist) {
 				IterableSet<AugmentedStmt> try_body = en.get_TryBody();
+				List<AugmentedStmt> escaping = new ArrayList<AugmentedStmt>();
 
 				for (AugmentedStmt tras : try_body) {
 					for (AugmentedStmt pas : tras.cpreds) {
@@ -100,10 +101,13 @@ public class ExceptionFinder implements FactFinder {
 									break;
 
 							if (add_it)
-								en.add_TryStmt(pas);
+								escaping.add(pas);
 						}
 					}
 				}
+				// not added while iterating over the try body
+				for (AugmentedStmt pas : escaping)
+					en.add_TryStmt(pas);
 			}
 		}
 
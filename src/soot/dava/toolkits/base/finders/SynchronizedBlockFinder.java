@@ -80,6 +80,7 @@ public class SynchronizedBlockFinder implements FactFinder {
 		Iterator asgit = asg.iterator();
 		while (asgit.hasNext()) {
 			// going through all augmentedStmts
+			davaBody.checkBudget();
 
 			AugmentedStmt as = (AugmentedStmt) asgit.next();
 			if (as.get_Stmt() instanceof EnterMonitorStmt) {
@@ -248,6 +249,7 @@ public class SynchronizedBlockFinder implements FactFinder {
 
 		// Propegate the variable increasing property.
 		while (worklist.isEmpty() == false) {
+			davaBody.checkBudget();
 			AugmentedStmt as = (AugmentedStmt) worklist.getFirst();
 			worklist.removeFirst();
 			HashMap local2level = (HashMap) as2rml.get(as);
@@ -341,6 +343,7 @@ public class SynchronizedBlockFinder implements FactFinder {
 	private void DFS_Scc(AugmentedStmt as, IterableSet component,
 			HashMap as2rml, HashMap as2color, AugmentedStmt seedStmt,
 			IterableSet viSeeds) {
+		davaBody.checkBudget();
 		as2color.put(as, GRAY);
 
 		Stmt s = as.get_Stmt();
@@ -442,6 +445,7 @@ public class SynchronizedBlockFinder implements FactFinder {
 			worklist.add(headAs);
 
 			while (worklist.isEmpty() == false) {
+				davaBody.checkBudget();
 				AugmentedStmt as = (AugmentedStmt) worklist.getFirst();
 				worklist.removeFirst();
 
@@ -559,6 +563,7 @@ public class SynchronizedBlockFinder implements FactFinder {
 		// Flow monitor lock levels.
 		while (worklist.isEmpty() == false) {
 			// going through all monitor enter stmts
+			davaBody.checkBudget();
 			AugmentedStmt as = (AugmentedStmt) worklist.getFirst();
 			worklist.removeFirst();
 
@@ -43,7 +43,6 @@ import soot.jimple.validation.JimpleTrapValidator;
 import soot.jimple.validation.NewValidator;
 import soot.jimple.validation.ReturnStatementsValidator;
 import soot.jimple.validation.TypesValidator;
-import soot.options.Options;
 import soot.validation.BodyValidator;
 import soot.validation.ValidationException;
 
@@ -106,13 +105,7 @@ public class JimpleBody extends StmtBody {
 	 *            the list of validation errors
 	 */
 	public void validate(List<ValidationException> exceptionList) {
-		super.validate(exceptionList);
-		final boolean runAllValidators = Options.v().debug() || Options.v().validate();
-		for (BodyValidator validator : getValidators()) {
-			if (!validator.isBasicValidator() && !runAllValidators)
-				continue;
-			validator.validate(this, exceptionList);
-		}
+		runValidators(exceptionList, getValidators());
 	}
 
 	public void validateIdentityStatements() {
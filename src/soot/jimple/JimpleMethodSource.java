@@ -32,20 +32,28 @@ import soot.jimple.parser.*;
 public class JimpleMethodSource implements MethodSource
 {
     JimpleAST mJimpleAST;
+    JimpleReader mJimpleReader;
 
     public JimpleMethodSource(JimpleAST aJimpleAST)
     {
         mJimpleAST = aJimpleAST;
     }
 
+    public JimpleMethodSource(JimpleReader aJimpleReader)
+    {
+        mJimpleReader = aJimpleReader;
+    }
+
     public Body getBody(SootMethod m, String phaseName)
     {  
-        JimpleBody jb = (JimpleBody)mJimpleAST.getBody(m);
+        JimpleBody jb = mJimpleAST != null ? (JimpleBody)mJimpleAST.getBody(m)
+            : mJimpleReader.getBody(m);
         if (jb == null)
         	throw new RuntimeException("Could not load body for method " + m.getSignature());
 
         if(Options.v().verbose())
-            G.v().out.println("[" + m.getName() + "] Retrieving JimpleBody from AST...");
+            G.v().out.println("[" + m.getName() + "] Retrieving JimpleBody from "
+                + (mJimpleAST != null ? "AST..." : "jimple file..."));
     
 
         PackManager.v().getPack("jb").apply(jb);
@@ -0,0 +1,129 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.binary;
+
+/**
+ * Reads the encodings written by {@link BinaryOutput} from a byte array.
+ */
+final class BinaryInput
+{
+    private final byte[] buf;
+    private int pos;
+
+    BinaryInput(byte[] buf, int pos)
+    {
+        this.buf = buf;
+        this.pos = pos;
+    }
+
+    int position()
+    {
+        return pos;
+    }
+
+    void skip(int n)
+    {
+        if (n < 0 || pos + n > buf.length)
+            throw new RuntimeException("Truncated binary Jimple data");
+        pos += n;
+    }
+
+    boolean atEnd()
+    {
+        return pos == buf.length;
+    }
+
+    int readByte()
+    {
+        if (pos >= buf.length)
+            throw new RuntimeException("Truncated binary Jimple data");
+        return buf[pos++] & 0xFF;
+    }
+
+    byte[] readBytes()
+    {
+        int length = readVarint();
+        int start = pos;
+        skip(length);
+        byte[] b = new byte[length];
+        System.arraycopy(buf, start, b, 0, length);
+        return b;
+    }
+
+    boolean readBoolean()
+    {
+        return readByte() != 0;
+    }
+
+    int readVarint()
+    {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new RuntimeException("Malformed varint in binary Jimple data");
+    }
+
+    long readVarlong()
+    {
+        long v = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new RuntimeException("Malformed varint in binary Jimple data");
+    }
+
+    int readSignedVarint()
+    {
+        int v = readVarint();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    long readSignedVarlong()
+    {
+        long v = readVarlong();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    int readInt()
+    {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    long readLong()
+    {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    String readString()
+    {
+        int length = readVarint();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = (char) readVarint();
+        return new String(chars);
+    }
+}
@@ -0,0 +1,137 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.binary;
+
+/**
+ * Constants of the binary Jimple format.
+ *
+ * <p> A file holds a single class. It starts with {@link #MAGIC} and the
+ * format version, followed by the string, type, field reference and method
+ * reference pools and then the class itself: its header, its fields, and its
+ * methods. Every method is followed by the length of its body in bytes and
+ * the body, so that a reader can skip bodies until they are needed. All
+ * counts and pool indices are written as unsigned LEB128 varints, and signed
+ * integer constants as zigzag varints.
+ */
+final class BinaryJimpleFormat
+{
+    static final int MAGIC = 0x4A494D42; // "JIMB"
+    static final int VERSION = 1;
+
+    // type pool entries
+    static final int TYPE_VOID = 0;
+    static final int TYPE_BOOLEAN = 1;
+    static final int TYPE_BYTE = 2;
+    static final int TYPE_CHAR = 3;
+    static final int TYPE_SHORT = 4;
+    static final int TYPE_INT = 5;
+    static final int TYPE_LONG = 6;
+    static final int TYPE_FLOAT = 7;
+    static final int TYPE_DOUBLE = 8;
+    static final int TYPE_NULL = 9;
+    static final int TYPE_UNKNOWN = 10;
+    static final int TYPE_REF = 11;
+    static final int TYPE_ARRAY = 12;
+
+    // statements
+    static final int STMT_ASSIGN = 0;
+    static final int STMT_IDENTITY = 1;
+    static final int STMT_GOTO = 2;
+    static final int STMT_IF = 3;
+    static final int STMT_INVOKE = 4;
+    static final int STMT_RETURN = 5;
+    static final int STMT_RETURN_VOID = 6;
+    static final int STMT_THROW = 7;
+    static final int STMT_ENTER_MONITOR = 8;
+    static final int STMT_EXIT_MONITOR = 9;
+    static final int STMT_NOP = 10;
+    static final int STMT_BREAKPOINT = 11;
+    static final int STMT_TABLE_SWITCH = 12;
+    static final int STMT_LOOKUP_SWITCH = 13;
+    static final int STMT_RET = 14;
+
+    // values
+    static final int VALUE_LOCAL = 0;
+    static final int VALUE_INT = 1;
+    static final int VALUE_LONG = 2;
+    static final int VALUE_FLOAT = 3;
+    static final int VALUE_DOUBLE = 4;
+    static final int VALUE_STRING = 5;
+    static final int VALUE_CLASS = 6;
+    static final int VALUE_NULL = 7;
+    static final int VALUE_METHOD_HANDLE = 8;
+    static final int VALUE_ADD = 9;
+    static final int VALUE_AND = 10;
+    static final int VALUE_CMP = 11;
+    static final int VALUE_CMPG = 12;
+    static final int VALUE_CMPL = 13;
+    static final int VALUE_DIV = 14;
+    static final int VALUE_EQ = 15;
+    static final int VALUE_GE = 16;
+    static final int VALUE_GT = 17;
+    static final int VALUE_LE = 18;
+    static final int VALUE_LT = 19;
+    static final int VALUE_MUL = 20;
+    static final int VALUE_NE = 21;
+    static final int VALUE_OR = 22;
+    static final int VALUE_REM = 23;
+    static final int VALUE_SHL = 24;
+    static final int VALUE_SHR = 25;
+    static final int VALUE_SUB = 26;
+    static final int VALUE_USHR = 27;
+    static final int VALUE_XOR = 28;
+    static final int VALUE_NEG = 29;
+    static final int VALUE_LENGTH = 30;
+    static final int VALUE_CAST = 31;
+    static final int VALUE_INSTANCE_OF = 32;
+    static final int VALUE_NEW = 33;
+    static final int VALUE_NEW_ARRAY = 34;
+    static final int VALUE_NEW_MULTI_ARRAY = 35;
+    static final int VALUE_STATIC_INVOKE = 36;
+    static final int VALUE_VIRTUAL_INVOKE = 37;
+    static final int VALUE_SPECIAL_INVOKE = 38;
+    static final int VALUE_INTERFACE_INVOKE = 39;
+    static final int VALUE_DYNAMIC_INVOKE = 40;
+    static final int VALUE_ARRAY_REF = 41;
+    static final int VALUE_INSTANCE_FIELD_REF = 42;
+    static final int VALUE_STATIC_FIELD_REF = 43;
+    static final int VALUE_PARAMETER_REF = 44;
+    static final int VALUE_THIS_REF = 45;
+    static final int VALUE_CAUGHT_EXCEPTION_REF = 46;
+
+    // tags
+    static final int TAG_LINE_NUMBER = 0;
+    static final int TAG_SOURCE_FILE = 1;
+    static final int TAG_SIGNATURE = 2;
+    static final int TAG_DEPRECATED = 3;
+    static final int TAG_SYNTHETIC = 4;
+    static final int TAG_INTEGER_CONSTANT_VALUE = 5;
+    static final int TAG_LONG_CONSTANT_VALUE = 6;
+    static final int TAG_FLOAT_CONSTANT_VALUE = 7;
+    static final int TAG_DOUBLE_CONSTANT_VALUE = 8;
+    static final int TAG_STRING_CONSTANT_VALUE = 9;
+    static final int TAG_ENCLOSING_METHOD = 10;
+    static final int TAG_INNER_CLASSES = 11;
+    static final int TAG_GENERIC_ATTRIBUTE = 12;
+
+    private BinaryJimpleFormat()
+    {
+    }
+}
@@ -0,0 +1,54 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.binary;
+
+import soot.Body;
+import soot.G;
+import soot.MethodSource;
+import soot.PackManager;
+import soot.SootMethod;
+import soot.jimple.JimpleBody;
+import soot.options.Options;
+
+/**
+ * A method source that decodes bodies from a binary Jimple file.
+ */
+public class BinaryJimpleMethodSource implements MethodSource
+{
+    private final BinaryJimpleReader reader;
+
+    public BinaryJimpleMethodSource(BinaryJimpleReader reader)
+    {
+        this.reader = reader;
+    }
+
+    public Body getBody(SootMethod m, String phaseName)
+    {
+        JimpleBody jb = reader.getBody(m);
+        if (jb == null)
+            throw new RuntimeException("Could not load body for method " + m.getSignature());
+
+        if (Options.v().verbose())
+            G.v().out.println("[" + m.getName() + "] Retrieving JimpleBody from binary Jimple file...");
+
+        PackManager.v().getPack("jb").apply(jb);
+        return jb;
+    }
+}
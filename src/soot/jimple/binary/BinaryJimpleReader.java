@@ -0,0 +1,757 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.binary;
+
+import static soot.jimple.binary.BinaryJimpleFormat.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.ArrayType;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.NullType;
+import soot.RefType;
+import soot.Scene;
+import soot.ShortType;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootFieldRef;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.SootResolver;
+import soot.Type;
+import soot.Unit;
+import soot.UnknownType;
+import soot.Value;
+import soot.VoidType;
+import soot.jimple.ClassConstant;
+import soot.jimple.DoubleConstant;
+import soot.jimple.FloatConstant;
+import soot.jimple.GotoStmt;
+import soot.jimple.IfStmt;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.LongConstant;
+import soot.jimple.MethodHandle;
+import soot.jimple.NullConstant;
+import soot.jimple.StringConstant;
+import soot.jimple.SwitchStmt;
+import soot.tagkit.DeprecatedTag;
+import soot.tagkit.DoubleConstantValueTag;
+import soot.tagkit.EnclosingMethodTag;
+import soot.tagkit.FloatConstantValueTag;
+import soot.tagkit.GenericAttribute;
+import soot.tagkit.Host;
+import soot.tagkit.InnerClassAttribute;
+import soot.tagkit.InnerClassTag;
+import soot.tagkit.IntegerConstantValueTag;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.LongConstantValueTag;
+import soot.tagkit.SignatureTag;
+import soot.tagkit.SourceFileTag;
+import soot.tagkit.StringConstantValueTag;
+import soot.tagkit.SyntheticTag;
+
+/**
+ * Reads a class written by {@link BinaryJimpleWriter}. The pools and the
+ * class skeleton are decoded by {@link #getSkeleton(SootClass)}; a body is
+ * only decoded when it is asked for, and the field and method references are
+ * only created when a body uses them.
+ */
+public class BinaryJimpleReader
+{
+    private final byte[] data;
+
+    private String[] strings;
+    private Type[] types;
+    private int[][] fieldRefs;
+    private SootFieldRef[] fieldRefCache;
+    private int[][] methodRefs;
+    private SootMethodRef[] methodRefCache;
+    private int classStart;
+
+    private final Map<SootMethod, Integer> bodyStarts = new HashMap<SootMethod, Integer>();
+
+    /** Reads the whole stream and decodes the pools. */
+    public BinaryJimpleReader(InputStream in) throws IOException
+    {
+        byte[] buf = new byte[8192];
+        int len = 0, n;
+        while ((n = in.read(buf, len, buf.length - len)) != -1) {
+            len += n;
+            if (len == buf.length)
+                buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        this.data = Arrays.copyOf(buf, len);
+        readPools();
+    }
+
+    private void readPools()
+    {
+        BinaryInput in = new BinaryInput(data, 0);
+        if (data.length < 4 || in.readInt() != MAGIC)
+            throw new RuntimeException("Not a binary Jimple file");
+        int version = in.readVarint();
+        if (version < 1 || version > VERSION)
+            throw new RuntimeException("Unsupported binary Jimple version " + version
+                + ", the highest supported version is " + VERSION);
+
+        strings = new String[in.readVarint()];
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = in.readString();
+
+        types = new Type[in.readVarint()];
+        for (int i = 0; i < types.length; i++)
+            types[i] = readTypeEntry(in);
+
+        fieldRefs = new int[in.readVarint()][];
+        fieldRefCache = new SootFieldRef[fieldRefs.length];
+        for (int i = 0; i < fieldRefs.length; i++)
+            fieldRefs[i] = new int[] { in.readVarint(), in.readVarint(), in.readVarint(), in.readByte() };
+
+        methodRefs = new int[in.readVarint()][];
+        methodRefCache = new SootMethodRef[methodRefs.length];
+        for (int i = 0; i < methodRefs.length; i++) {
+            int declaringClass = in.readVarint();
+            int name = in.readVarint();
+            int parameterCount = in.readVarint();
+            // declaring class, name, return type, static, parameter types
+            int[] entry = new int[4 + parameterCount];
+            entry[0] = declaringClass;
+            entry[1] = name;
+            for (int p = 0; p < parameterCount; p++)
+                entry[4 + p] = in.readVarint();
+            entry[2] = in.readVarint();
+            entry[3] = in.readByte();
+            methodRefs[i] = entry;
+        }
+
+        classStart = in.position();
+    }
+
+    private Type readTypeEntry(BinaryInput in)
+    {
+        int kind = in.readByte();
+        switch (kind) {
+        case TYPE_REF:
+            return RefType.v(string(in.readVarint()));
+        case TYPE_ARRAY:
+            Type baseType = type(in.readVarint());
+            return ArrayType.v(baseType, in.readVarint());
+        case TYPE_INT:
+            return IntType.v();
+        case TYPE_BOOLEAN:
+            return BooleanType.v();
+        case TYPE_BYTE:
+            return ByteType.v();
+        case TYPE_CHAR:
+            return CharType.v();
+        case TYPE_SHORT:
+            return ShortType.v();
+        case TYPE_LONG:
+            return LongType.v();
+        case TYPE_FLOAT:
+            return FloatType.v();
+        case TYPE_DOUBLE:
+            return DoubleType.v();
+        case TYPE_VOID:
+            return VoidType.v();
+        case TYPE_NULL:
+            return NullType.v();
+        case TYPE_UNKNOWN:
+            return UnknownType.v();
+        default:
+            throw new RuntimeException("Unknown type kind " + kind + " in binary Jimple data");
+        }
+    }
+
+    /**
+     * Fills in the modifiers, super types, tags, fields and methods of the
+     * given class. No bodies are decoded.
+     */
+    public void getSkeleton(SootClass sc)
+    {
+        BinaryInput in = new BinaryInput(data, classStart);
+        SootResolver resolver = SootResolver.v();
+
+        int modifiers = in.readVarint();
+        String className = className(in.readVarint());
+        if (!className.equals(sc.getName()))
+            throw new RuntimeException("expected:  " + className + ", but got: " + sc.getName());
+        sc.setModifiers(modifiers);
+        int superClass = in.readVarint();
+        if (superClass != 0)
+            sc.setSuperclass(resolver.makeClassRef(className(superClass - 1)));
+        int interfaceCount = in.readVarint();
+        for (int i = 0; i < interfaceCount; i++)
+            sc.addInterface(resolver.makeClassRef(className(in.readVarint())));
+        int outerClass = in.readVarint();
+        if (outerClass != 0)
+            sc.setOuterClass(resolver.makeClassRef(className(outerClass - 1)));
+        readTags(in, sc);
+
+        int fieldCount = in.readVarint();
+        for (int i = 0; i < fieldCount; i++) {
+            int fieldModifiers = in.readVarint();
+            String name = string(in.readVarint());
+            Type type = type(in.readVarint());
+            SootField f = Scene.v().makeSootField(name, type, fieldModifiers);
+            sc.addField(f);
+            readTags(in, f);
+        }
+
+        int methodCount = in.readVarint();
+        for (int i = 0; i < methodCount; i++) {
+            int methodModifiers = in.readVarint();
+            String name = string(in.readVarint());
+            int parameterCount = in.readVarint();
+            List<Type> parameterTypes = new ArrayList<Type>(parameterCount);
+            for (int p = 0; p < parameterCount; p++)
+                parameterTypes.add(type(in.readVarint()));
+            Type returnType = type(in.readVarint());
+            int exceptionCount = in.readVarint();
+            List<SootClass> exceptions = new ArrayList<SootClass>(exceptionCount);
+            for (int e = 0; e < exceptionCount; e++)
+                exceptions.add(resolver.makeClassRef(className(in.readVarint())));
+            SootMethod m = Scene.v().makeSootMethod(name, parameterTypes, returnType, methodModifiers, exceptions);
+            sc.addMethod(m);
+            readTags(in, m);
+
+            int bodyLength = in.readVarint();
+            if (bodyLength != 0) {
+                bodyStarts.put(m, in.position());
+                in.skip(bodyLength);
+            }
+        }
+        if (!in.atEnd())
+            throw new RuntimeException("Trailing data after class " + className);
+    }
+
+    /**
+     * Decodes the body of the given method, which must have been read by
+     * {@link #getSkeleton(SootClass)}. Returns null if the method has no body.
+     */
+    public JimpleBody getBody(SootMethod m)
+    {
+        Integer start = bodyStarts.get(m);
+        if (start == null)
+            return null;
+
+        // Classes are only referred to through makeClassRef, so no phantom
+        // refs are needed and bodies of several methods can be decoded at
+        // the same time
+        JimpleBody jb = Jimple.v().newBody(m);
+        new BodyReader(new BinaryInput(data, start), jb).read();
+        return jb;
+    }
+
+    /**
+     * Returns the names of the classes the class refers to, bodies included.
+     */
+    public Set<String> getDependencies()
+    {
+        Set<String> deps = new HashSet<String>();
+        for (Type t : types) {
+            if (t instanceof RefType) {
+                String name = ((RefType) t).getClassName();
+                if (!name.equals(SootClass.INVOKEDYNAMIC_DUMMY_CLASS_NAME))
+                    deps.add(name);
+            }
+        }
+        return deps;
+    }
+
+    /* ----------------------------------------------------------- pools */
+
+    private String string(int i)
+    {
+        if (i >= strings.length)
+            throw new RuntimeException("String index " + i + " out of range in binary Jimple data");
+        return strings[i];
+    }
+
+    private String optionalString(int i)
+    {
+        return i == 0 ? null : string(i - 1);
+    }
+
+    private Type type(int i)
+    {
+        if (i >= types.length || types[i] == null)
+            throw new RuntimeException("Type index " + i + " out of range in binary Jimple data");
+        return types[i];
+    }
+
+    private String className(int i)
+    {
+        Type t = type(i);
+        if (!(t instanceof RefType))
+            throw new RuntimeException("Expected a class type in binary Jimple data, but got " + t);
+        return ((RefType) t).getClassName();
+    }
+
+    // Several bodies may be decoded at the same time; creating a reference
+    // twice is harmless.
+    private SootFieldRef fieldRef(int i)
+    {
+        SootFieldRef ref = fieldRefCache[i];
+        if (ref == null) {
+            int[] entry = fieldRefs[i];
+            SootClass declaringClass = SootResolver.v().makeClassRef(className(entry[0]));
+            ref = Scene.v().makeFieldRef(declaringClass, string(entry[1]), type(entry[2]), entry[3] != 0);
+            fieldRefCache[i] = ref;
+        }
+        return ref;
+    }
+
+    private SootMethodRef methodRef(int i)
+    {
+        SootMethodRef ref = methodRefCache[i];
+        if (ref == null) {
+            int[] entry = methodRefs[i];
+            SootClass declaringClass = SootResolver.v().makeClassRef(className(entry[0]));
+            List<Type> parameterTypes = new ArrayList<Type>(entry.length - 4);
+            for (int p = 4; p < entry.length; p++)
+                parameterTypes.add(type(entry[p]));
+            ref = Scene.v().makeMethodRef(declaringClass, string(entry[1]), parameterTypes,
+                type(entry[2]), entry[3] != 0);
+            methodRefCache[i] = ref;
+        }
+        return ref;
+    }
+
+    /* ------------------------------------------------------------ tags */
+
+    private void readTags(BinaryInput in, Host h)
+    {
+        int count = in.readVarint();
+        for (int i = 0; i < count; i++) {
+            int kind = in.readByte();
+            switch (kind) {
+            case TAG_LINE_NUMBER:
+                h.addTag(new LineNumberTag(in.readSignedVarint()));
+                break;
+            case TAG_SOURCE_FILE:
+                String sourceFile = optionalString(in.readVarint());
+                SourceFileTag sft = new SourceFileTag();
+                if (sourceFile != null)
+                    sft.setSourceFile(sourceFile);
+                sft.setAbsolutePath(optionalString(in.readVarint()));
+                h.addTag(sft);
+                break;
+            case TAG_SIGNATURE:
+                h.addTag(new SignatureTag(string(in.readVarint())));
+                break;
+            case TAG_DEPRECATED:
+                h.addTag(new DeprecatedTag());
+                break;
+            case TAG_SYNTHETIC:
+                h.addTag(new SyntheticTag());
+                break;
+            case TAG_INTEGER_CONSTANT_VALUE:
+                h.addTag(new IntegerConstantValueTag(in.readSignedVarint()));
+                break;
+            case TAG_LONG_CONSTANT_VALUE:
+                h.addTag(new LongConstantValueTag(in.readSignedVarlong()));
+                break;
+            case TAG_FLOAT_CONSTANT_VALUE:
+                h.addTag(new FloatConstantValueTag(Float.intBitsToFloat(in.readInt())));
+                break;
+            case TAG_DOUBLE_CONSTANT_VALUE:
+                h.addTag(new DoubleConstantValueTag(Double.longBitsToDouble(in.readLong())));
+                break;
+            case TAG_STRING_CONSTANT_VALUE:
+                h.addTag(new StringConstantValueTag(string(in.readVarint())));
+                break;
+            case TAG_ENCLOSING_METHOD:
+                String enclosingClass = optionalString(in.readVarint());
+                String enclosingMethod = optionalString(in.readVarint());
+                String enclosingMethodSig = optionalString(in.readVarint());
+                h.addTag(new EnclosingMethodTag(enclosingClass, enclosingMethod, enclosingMethodSig));
+                break;
+            case TAG_INNER_CLASSES:
+                int specCount = in.readVarint();
+                ArrayList<InnerClassTag> specs = new ArrayList<InnerClassTag>(specCount);
+                for (int s = 0; s < specCount; s++) {
+                    String innerClass = optionalString(in.readVarint());
+                    String outerClass = optionalString(in.readVarint());
+                    String shortName = optionalString(in.readVarint());
+                    specs.add(new InnerClassTag(innerClass, outerClass, shortName, in.readVarint()));
+                }
+                h.addTag(new InnerClassAttribute(specs));
+                break;
+            case TAG_GENERIC_ATTRIBUTE:
+                String name = string(in.readVarint());
+                h.addTag(new GenericAttribute(name, in.readBytes()));
+                break;
+            default:
+                throw new RuntimeException("Unknown tag kind " + kind + " in binary Jimple data");
+            }
+        }
+    }
+
+    /* ----------------------------------------------------------- bodies */
+
+    private class BodyReader
+    {
+        private final BinaryInput in;
+        private final JimpleBody jb;
+        private final Jimple jimple = Jimple.v();
+        private Local[] locals;
+        private Unit[] units;
+        // The branch targets of each unit; the default target of a switch comes first
+        private int[][] targets;
+
+        BodyReader(BinaryInput in, JimpleBody jb)
+        {
+            this.in = in;
+            this.jb = jb;
+        }
+
+        void read()
+        {
+            locals = new Local[in.readVarint()];
+            for (int i = 0; i < locals.length; i++) {
+                String name = string(in.readVarint());
+                locals[i] = jimple.newLocal(name, type(in.readVarint()));
+                jb.getLocals().add(locals[i]);
+            }
+
+            units = new Unit[in.readVarint()];
+            targets = new int[units.length][];
+            for (int i = 0; i < units.length; i++) {
+                units[i] = readStmt(i);
+                readTags(in, units[i]);
+                jb.getUnits().add(units[i]);
+            }
+
+            // Branches may go forward, so their targets are set once all
+            // units exist
+            for (int i = 0; i < units.length; i++) {
+                int[] t = targets[i];
+                if (t == null)
+                    continue;
+                Unit u = units[i];
+                if (u instanceof SwitchStmt) {
+                    SwitchStmt s = (SwitchStmt) u;
+                    s.setDefaultTarget(unit(t[0]));
+                    for (int j = 1; j < t.length; j++)
+                        s.setTarget(j - 1, unit(t[j]));
+                } else if (u instanceof GotoStmt)
+                    ((GotoStmt) u).setTarget(unit(t[0]));
+                else
+                    ((IfStmt) u).setTarget(unit(t[0]));
+            }
+
+            int trapCount = in.readVarint();
+            for (int i = 0; i < trapCount; i++) {
+                SootClass exception = SootResolver.v().makeClassRef(className(in.readVarint()));
+                Unit begin = unit(in.readVarint());
+                Unit end = unit(in.readVarint());
+                Unit handler = unit(in.readVarint());
+                jb.getTraps().add(jimple.newTrap(exception, begin, end, handler));
+            }
+        }
+
+        private Unit unit(int i)
+        {
+            if (i >= units.length)
+                throw new RuntimeException("Unit index " + i + " out of range in binary Jimple data");
+            return units[i];
+        }
+
+        private Unit readStmt(int index)
+        {
+            int op = in.readByte();
+            switch (op) {
+            case STMT_ASSIGN: {
+                Value lhs = readValue();
+                return jimple.newAssignStmt(lhs, readValue());
+            }
+            case STMT_IDENTITY: {
+                Value lhs = readValue();
+                return jimple.newIdentityStmt(lhs, readValue());
+            }
+            case STMT_GOTO:
+                targets[index] = new int[] { in.readVarint() };
+                return jimple.newGotoStmt((Unit) null);
+            case STMT_IF: {
+                Value condition = readValue();
+                targets[index] = new int[] { in.readVarint() };
+                return jimple.newIfStmt(condition, (Unit) null);
+            }
+            case STMT_INVOKE:
+                return jimple.newInvokeStmt(readValue());
+            case STMT_RETURN:
+                return jimple.newReturnStmt(readValue());
+            case STMT_RETURN_VOID:
+                return jimple.newReturnVoidStmt();
+            case STMT_THROW:
+                return jimple.newThrowStmt(readValue());
+            case STMT_ENTER_MONITOR:
+                return jimple.newEnterMonitorStmt(readValue());
+            case STMT_EXIT_MONITOR:
+                return jimple.newExitMonitorStmt(readValue());
+            case STMT_NOP:
+                return jimple.newNopStmt();
+            case STMT_BREAKPOINT:
+                return jimple.newBreakpointStmt();
+            case STMT_RET:
+                return jimple.newRetStmt(readValue());
+            case STMT_TABLE_SWITCH: {
+                Value key = readValue();
+                int low = in.readSignedVarint();
+                int high = in.readSignedVarint();
+                int defaultTarget = in.readVarint();
+                int[] t = new int[1 + in.readVarint()];
+                t[0] = defaultTarget;
+                for (int i = 1; i < t.length; i++)
+                    t[i] = in.readVarint();
+                targets[index] = t;
+                return jimple.newTableSwitchStmt(key, low, high,
+                    Collections.<Unit>nCopies(t.length - 1, null), (Unit) null);
+            }
+            case STMT_LOOKUP_SWITCH: {
+                Value key = readValue();
+                int defaultTarget = in.readVarint();
+                int count = in.readVarint();
+                int[] t = new int[1 + count];
+                t[0] = defaultTarget;
+                List<IntConstant> lookupValues = new ArrayList<IntConstant>(count);
+                for (int i = 1; i <= count; i++) {
+                    lookupValues.add(IntConstant.v(in.readSignedVarint()));
+                    t[i] = in.readVarint();
+                }
+                targets[index] = t;
+                return jimple.newLookupSwitchStmt(key, lookupValues,
+                    Collections.<Unit>nCopies(count, null), (Unit) null);
+            }
+            default:
+                throw new RuntimeException("Unknown statement kind " + op + " in binary Jimple data");
+            }
+        }
+
+        private List<Value> readValues()
+        {
+            int count = in.readVarint();
+            if (count == 0)
+                return Collections.emptyList();
+            List<Value> values = new ArrayList<Value>(count);
+            for (int i = 0; i < count; i++)
+                values.add(readValue());
+            return values;
+        }
+
+        private Value readValue()
+        {
+            int kind = in.readByte();
+            switch (kind) {
+            case VALUE_LOCAL: {
+                int i = in.readVarint();
+                if (i >= locals.length)
+                    throw new RuntimeException("Local index " + i + " out of range in binary Jimple data");
+                return locals[i];
+            }
+            case VALUE_INT:
+                return IntConstant.v(in.readSignedVarint());
+            case VALUE_LONG:
+                return LongConstant.v(in.readSignedVarlong());
+            case VALUE_FLOAT:
+                return FloatConstant.v(Float.intBitsToFloat(in.readInt()));
+            case VALUE_DOUBLE:
+                return DoubleConstant.v(Double.longBitsToDouble(in.readLong()));
+            case VALUE_STRING:
+                return StringConstant.v(string(in.readVarint()));
+            case VALUE_CLASS:
+                return ClassConstant.v(string(in.readVarint()));
+            case VALUE_NULL:
+                return NullConstant.v();
+            case VALUE_METHOD_HANDLE: {
+                SootMethodRef ref = methodRef(in.readVarint());
+                return MethodHandle.v(ref, in.readVarint());
+            }
+            case VALUE_ADD: {
+                Value op1 = readValue();
+                return jimple.newAddExpr(op1, readValue());
+            }
+            case VALUE_AND: {
+                Value op1 = readValue();
+                return jimple.newAndExpr(op1, readValue());
+            }
+            case VALUE_CMP: {
+                Value op1 = readValue();
+                return jimple.newCmpExpr(op1, readValue());
+            }
+            case VALUE_CMPG: {
+                Value op1 = readValue();
+                return jimple.newCmpgExpr(op1, readValue());
+            }
+            case VALUE_CMPL: {
+                Value op1 = readValue();
+                return jimple.newCmplExpr(op1, readValue());
+            }
+            case VALUE_DIV: {
+                Value op1 = readValue();
+                return jimple.newDivExpr(op1, readValue());
+            }
+            case VALUE_EQ: {
+                Value op1 = readValue();
+                return jimple.newEqExpr(op1, readValue());
+            }
+            case VALUE_GE: {
+                Value op1 = readValue();
+                return jimple.newGeExpr(op1, readValue());
+            }
+            case VALUE_GT: {
+                Value op1 = readValue();
+                return jimple.newGtExpr(op1, readValue());
+            }
+            case VALUE_LE: {
+                Value op1 = readValue();
+                return jimple.newLeExpr(op1, readValue());
+            }
+            case VALUE_LT: {
+                Value op1 = readValue();
+                return jimple.newLtExpr(op1, readValue());
+            }
+            case VALUE_MUL: {
+                Value op1 = readValue();
+                return jimple.newMulExpr(op1, readValue());
+            }
+            case VALUE_NE: {
+                Value op1 = readValue();
+                return jimple.newNeExpr(op1, readValue());
+            }
+            case VALUE_OR: {
+                Value op1 = readValue();
+                return jimple.newOrExpr(op1, readValue());
+            }
+            case VALUE_REM: {
+                Value op1 = readValue();
+                return jimple.newRemExpr(op1, readValue());
+            }
+            case VALUE_SHL: {
+                Value op1 = readValue();
+                return jimple.newShlExpr(op1, readValue());
+            }
+            case VALUE_SHR: {
+                Value op1 = readValue();
+                return jimple.newShrExpr(op1, readValue());
+            }
+            case VALUE_SUB: {
+                Value op1 = readValue();
+                return jimple.newSubExpr(op1, readValue());
+            }
+            case VALUE_USHR: {
+                Value op1 = readValue();
+                return jimple.newUshrExpr(op1, readValue());
+            }
+            case VALUE_XOR: {
+                Value op1 = readValue();
+                return jimple.newXorExpr(op1, readValue());
+            }
+            case VALUE_NEG:
+                return jimple.newNegExpr(readValue());
+            case VALUE_LENGTH:
+                return jimple.newLengthExpr(readValue());
+            case VALUE_CAST: {
+                Type t = type(in.readVarint());
+                return jimple.newCastExpr(readValue(), t);
+            }
+            case VALUE_INSTANCE_OF: {
+                Type t = type(in.readVarint());
+                return jimple.newInstanceOfExpr(readValue(), t);
+            }
+            case VALUE_NEW:
+                return jimple.newNewExpr((RefType) type(in.readVarint()));
+            case VALUE_NEW_ARRAY: {
+                Type t = type(in.readVarint());
+                return jimple.newNewArrayExpr(t, readValue());
+            }
+            case VALUE_NEW_MULTI_ARRAY: {
+                ArrayType t = (ArrayType) type(in.readVarint());
+                return jimple.newNewMultiArrayExpr(t, readValues());
+            }
+            case VALUE_STATIC_INVOKE: {
+                SootMethodRef ref = methodRef(in.readVarint());
+                return jimple.newStaticInvokeExpr(ref, readValues());
+            }
+            case VALUE_VIRTUAL_INVOKE: {
+                Local base = (Local) readValue();
+                SootMethodRef ref = methodRef(in.readVarint());
+                return jimple.newVirtualInvokeExpr(base, ref, readValues());
+            }
+            case VALUE_SPECIAL_INVOKE: {
+                Local base = (Local) readValue();
+                SootMethodRef ref = methodRef(in.readVarint());
+                return jimple.newSpecialInvokeExpr(base, ref, readValues());
+            }
+            case VALUE_INTERFACE_INVOKE: {
+                Local base = (Local) readValue();
+                SootMethodRef ref = methodRef(in.readVarint());
+                return jimple.newInterfaceInvokeExpr(base, ref, readValues());
+            }
+            case VALUE_DYNAMIC_INVOKE: {
+                SootMethodRef bootstrapRef = methodRef(in.readVarint());
+                List<Value> bootstrapArgs = readValues();
+                SootMethodRef ref = methodRef(in.readVarint());
+                int tag = in.readVarint();
+                return jimple.newDynamicInvokeExpr(bootstrapRef, bootstrapArgs, ref, tag, readValues());
+            }
+            case VALUE_ARRAY_REF: {
+                Value base = readValue();
+                return jimple.newArrayRef(base, readValue());
+            }
+            case VALUE_INSTANCE_FIELD_REF: {
+                Value base = readValue();
+                return jimple.newInstanceFieldRef(base, fieldRef(in.readVarint()));
+            }
+            case VALUE_STATIC_FIELD_REF:
+                return jimple.newStaticFieldRef(fieldRef(in.readVarint()));
+            case VALUE_PARAMETER_REF: {
+                Type t = type(in.readVarint());
+                return jimple.newParameterRef(t, in.readVarint());
+            }
+            case VALUE_THIS_REF:
+                return jimple.newThisRef((RefType) type(in.readVarint()));
+            case VALUE_CAUGHT_EXCEPTION_REF:
+                return jimple.newCaughtExceptionRef();
+            default:
+                throw new RuntimeException("Unknown value kind " + kind + " in binary Jimple data");
+            }
+        }
+    }
+}
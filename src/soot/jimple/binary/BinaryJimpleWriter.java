@@ -0,0 +1,926 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.binary;
+
+import static soot.jimple.binary.BinaryJimpleFormat.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.ArrayType;
+import soot.Body;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.Modifier;
+import soot.NullType;
+import soot.RefType;
+import soot.ShortType;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootFieldRef;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.Trap;
+import soot.Type;
+import soot.Unit;
+import soot.UnknownType;
+import soot.Value;
+import soot.VoidType;
+import soot.jimple.AbstractJimpleValueSwitch;
+import soot.jimple.AbstractStmtSwitch;
+import soot.jimple.AddExpr;
+import soot.jimple.AndExpr;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.BinopExpr;
+import soot.jimple.BreakpointStmt;
+import soot.jimple.CastExpr;
+import soot.jimple.CaughtExceptionRef;
+import soot.jimple.ClassConstant;
+import soot.jimple.CmpExpr;
+import soot.jimple.CmpgExpr;
+import soot.jimple.CmplExpr;
+import soot.jimple.DivExpr;
+import soot.jimple.DoubleConstant;
+import soot.jimple.DynamicInvokeExpr;
+import soot.jimple.EnterMonitorStmt;
+import soot.jimple.EqExpr;
+import soot.jimple.ExitMonitorStmt;
+import soot.jimple.FloatConstant;
+import soot.jimple.GeExpr;
+import soot.jimple.GotoStmt;
+import soot.jimple.GtExpr;
+import soot.jimple.IdentityStmt;
+import soot.jimple.IfStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.InstanceOfExpr;
+import soot.jimple.IntConstant;
+import soot.jimple.InterfaceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.InvokeStmt;
+import soot.jimple.JimpleBody;
+import soot.jimple.LeExpr;
+import soot.jimple.LengthExpr;
+import soot.jimple.LongConstant;
+import soot.jimple.LookupSwitchStmt;
+import soot.jimple.LtExpr;
+import soot.jimple.MethodHandle;
+import soot.jimple.MulExpr;
+import soot.jimple.NeExpr;
+import soot.jimple.NegExpr;
+import soot.jimple.NewArrayExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.NewMultiArrayExpr;
+import soot.jimple.NopStmt;
+import soot.jimple.NullConstant;
+import soot.jimple.OrExpr;
+import soot.jimple.ParameterRef;
+import soot.jimple.RemExpr;
+import soot.jimple.RetStmt;
+import soot.jimple.ReturnStmt;
+import soot.jimple.ReturnVoidStmt;
+import soot.jimple.ShlExpr;
+import soot.jimple.ShrExpr;
+import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.StaticInvokeExpr;
+import soot.jimple.StringConstant;
+import soot.jimple.SubExpr;
+import soot.jimple.TableSwitchStmt;
+import soot.jimple.ThisRef;
+import soot.jimple.ThrowStmt;
+import soot.jimple.UshrExpr;
+import soot.jimple.VirtualInvokeExpr;
+import soot.jimple.XorExpr;
+import soot.tagkit.DeprecatedTag;
+import soot.tagkit.DoubleConstantValueTag;
+import soot.tagkit.EnclosingMethodTag;
+import soot.tagkit.FloatConstantValueTag;
+import soot.tagkit.GenericAttribute;
+import soot.tagkit.Host;
+import soot.tagkit.InnerClassAttribute;
+import soot.tagkit.InnerClassTag;
+import soot.tagkit.IntegerConstantValueTag;
+import soot.tagkit.LineNumberTag;
+import soot.tagkit.LongConstantValueTag;
+import soot.tagkit.SignatureTag;
+import soot.tagkit.SourceFileTag;
+import soot.tagkit.StringConstantValueTag;
+import soot.tagkit.SyntheticTag;
+import soot.tagkit.Tag;
+
+/**
+ * Writes a class with Jimple bodies in the binary Jimple format, which can be
+ * read back with {@link BinaryJimpleReader}.
+ *
+ * <p> Strings, types, field references and method references are written
+ * once to pools at the start of the file and referred to by index. Since the
+ * pools are only complete once the whole class has been encoded, the class is
+ * encoded into memory first and then written out behind the pools.
+ *
+ * <p> Tags without a binary encoding, e.g. annotations, are not written.
+ */
+public class BinaryJimpleWriter
+{
+    private final SootClass sc;
+
+    private final Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+    private final BinaryOutput stringPool = new BinaryOutput(4096);
+    private final Map<Type, Integer> typeIndex = new HashMap<Type, Integer>();
+    private final BinaryOutput typePool = new BinaryOutput(512);
+    private final Map<String, Integer> fieldRefIndex = new HashMap<String, Integer>();
+    private final BinaryOutput fieldRefPool = new BinaryOutput(512);
+    private final Map<String, Integer> methodRefIndex = new HashMap<String, Integer>();
+    private final BinaryOutput methodRefPool = new BinaryOutput(1024);
+
+    public BinaryJimpleWriter(SootClass sc)
+    {
+        this.sc = sc;
+    }
+
+    /**
+     * Writes the class to the given stream. Methods that are concrete but
+     * have no active body get their body retrieved, as in the
+     * {@link soot.Printer}.
+     */
+    public void writeTo(OutputStream out) throws IOException
+    {
+        BinaryOutput classData = new BinaryOutput(8192);
+        writeClass(classData);
+
+        BinaryOutput header = new BinaryOutput(32);
+        header.writeInt(MAGIC);
+        header.writeVarint(VERSION);
+        header.writeVarint(stringIndex.size());
+        header.writeTo(out);
+        stringPool.writeTo(out);
+
+        BinaryOutput count = new BinaryOutput(8);
+        count.writeVarint(typeIndex.size());
+        count.writeTo(out);
+        typePool.writeTo(out);
+
+        count = new BinaryOutput(8);
+        count.writeVarint(fieldRefIndex.size());
+        count.writeTo(out);
+        fieldRefPool.writeTo(out);
+
+        count = new BinaryOutput(8);
+        count.writeVarint(methodRefIndex.size());
+        count.writeTo(out);
+        methodRefPool.writeTo(out);
+
+        classData.writeTo(out);
+        out.flush();
+    }
+
+    private void writeClass(BinaryOutput out)
+    {
+        out.writeVarint(sc.getModifiers());
+        out.writeVarint(type(sc.getType()));
+        out.writeVarint(sc.hasSuperclass() ? type(sc.getSuperclass().getType()) + 1 : 0);
+        out.writeVarint(sc.getInterfaceCount());
+        for (SootClass i : sc.getInterfaces())
+            out.writeVarint(type(i.getType()));
+        out.writeVarint(sc.hasOuterClass() ? type(sc.getOuterClass().getType()) + 1 : 0);
+        writeTags(sc, out);
+
+        out.writeVarint(sc.getFieldCount());
+        for (SootField f : sc.getFields()) {
+            out.writeVarint(f.getModifiers());
+            out.writeVarint(string(f.getName()));
+            out.writeVarint(type(f.getType()));
+            writeTags(f, out);
+        }
+
+        List<SootMethod> methods = new ArrayList<SootMethod>(sc.getMethodCount());
+        for (SootMethod m : sc.getMethods()) {
+            if (!m.isPhantom())
+                methods.add(m);
+        }
+        out.writeVarint(methods.size());
+        for (SootMethod m : methods) {
+            out.writeVarint(m.getModifiers());
+            out.writeVarint(string(m.getName()));
+            out.writeVarint(m.getParameterCount());
+            for (Type t : m.getParameterTypes())
+                out.writeVarint(type(t));
+            out.writeVarint(type(m.getReturnType()));
+            out.writeVarint(m.getExceptions().size());
+            for (SootClass e : m.getExceptions())
+                out.writeVarint(type(e.getType()));
+            writeTags(m, out);
+
+            if (Modifier.isAbstract(m.getModifiers()) || Modifier.isNative(m.getModifiers())) {
+                out.writeVarint(0);
+                continue;
+            }
+            Body b = m.retrieveActiveBody();
+            if (!(b instanceof JimpleBody))
+                throw new RuntimeException("Binary Jimple can only hold Jimple bodies, but "
+                    + m.getSignature() + " has a " + b.getClass().getName());
+            BinaryOutput body = new BinaryOutput(1024);
+            new BodyWriter((JimpleBody) b, body).write();
+            out.writeVarint(body.size());
+            out.write(body);
+        }
+    }
+
+    /* ----------------------------------------------------------- pools */
+
+    private int string(String s)
+    {
+        Integer i = stringIndex.get(s);
+        if (i == null) {
+            i = stringIndex.size();
+            stringIndex.put(s, i);
+            stringPool.writeString(s);
+        }
+        return i;
+    }
+
+    private int optionalString(String s)
+    {
+        return s == null ? 0 : string(s) + 1;
+    }
+
+    private int type(Type t)
+    {
+        Integer i = typeIndex.get(t);
+        if (i != null)
+            return i;
+
+        // The entries a type refers to come before it in the pool
+        int kind;
+        int operand = -1;
+        int dimensions = 0;
+        if (t instanceof RefType) {
+            kind = TYPE_REF;
+            operand = string(((RefType) t).getClassName());
+        } else if (t instanceof ArrayType) {
+            ArrayType at = (ArrayType) t;
+            kind = TYPE_ARRAY;
+            operand = type(at.baseType);
+            dimensions = at.numDimensions;
+        } else if (t instanceof IntType)
+            kind = TYPE_INT;
+        else if (t instanceof BooleanType)
+            kind = TYPE_BOOLEAN;
+        else if (t instanceof ByteType)
+            kind = TYPE_BYTE;
+        else if (t instanceof CharType)
+            kind = TYPE_CHAR;
+        else if (t instanceof ShortType)
+            kind = TYPE_SHORT;
+        else if (t instanceof LongType)
+            kind = TYPE_LONG;
+        else if (t instanceof FloatType)
+            kind = TYPE_FLOAT;
+        else if (t instanceof DoubleType)
+            kind = TYPE_DOUBLE;
+        else if (t instanceof VoidType)
+            kind = TYPE_VOID;
+        else if (t instanceof NullType)
+            kind = TYPE_NULL;
+        else if (t instanceof UnknownType)
+            kind = TYPE_UNKNOWN;
+        else
+            throw new RuntimeException("Type cannot be written as binary Jimple: " + t);
+
+        i = typeIndex.size();
+        typeIndex.put(t, i);
+        typePool.writeByte(kind);
+        if (operand != -1)
+            typePool.writeVarint(operand);
+        if (kind == TYPE_ARRAY)
+            typePool.writeVarint(dimensions);
+        return i;
+    }
+
+    private int fieldRef(SootFieldRef ref)
+    {
+        String key = (ref.isStatic() ? "S" : "I") + ref.getSignature();
+        Integer i = fieldRefIndex.get(key);
+        if (i == null) {
+            int declaringClass = type(ref.declaringClass().getType());
+            int name = string(ref.name());
+            int type = type(ref.type());
+            i = fieldRefIndex.size();
+            fieldRefIndex.put(key, i);
+            fieldRefPool.writeVarint(declaringClass);
+            fieldRefPool.writeVarint(name);
+            fieldRefPool.writeVarint(type);
+            fieldRefPool.writeBoolean(ref.isStatic());
+        }
+        return i;
+    }
+
+    private int methodRef(SootMethodRef ref)
+    {
+        String key = (ref.isStatic() ? "S" : "I") + ref.getSignature();
+        Integer i = methodRefIndex.get(key);
+        if (i == null) {
+            List<Type> parameterTypes = ref.parameterTypes();
+            int declaringClass = type(ref.declaringClass().getType());
+            int name = string(ref.name());
+            int[] parameters = new int[parameterTypes.size()];
+            for (int p = 0; p < parameters.length; p++)
+                parameters[p] = type(parameterTypes.get(p));
+            int returnType = type(ref.returnType());
+            i = methodRefIndex.size();
+            methodRefIndex.put(key, i);
+            methodRefPool.writeVarint(declaringClass);
+            methodRefPool.writeVarint(name);
+            methodRefPool.writeVarint(parameters.length);
+            for (int p : parameters)
+                methodRefPool.writeVarint(p);
+            methodRefPool.writeVarint(returnType);
+            methodRefPool.writeBoolean(ref.isStatic());
+        }
+        return i;
+    }
+
+    /* ------------------------------------------------------------ tags */
+
+    private void writeTags(Host h, BinaryOutput out)
+    {
+        List<Tag> tags = h.getTags();
+        int count = 0;
+        for (Tag t : tags) {
+            if (isWritable(t))
+                count++;
+        }
+        out.writeVarint(count);
+        if (count == 0)
+            return;
+
+        for (Tag t : tags) {
+            Class<?> c = t.getClass();
+            if (c == LineNumberTag.class) {
+                out.writeByte(TAG_LINE_NUMBER);
+                out.writeSignedVarint(((LineNumberTag) t).getLineNumber());
+            } else if (c == SourceFileTag.class) {
+                SourceFileTag sft = (SourceFileTag) t;
+                out.writeByte(TAG_SOURCE_FILE);
+                out.writeVarint(optionalString(sft.getSourceFile()));
+                out.writeVarint(optionalString(sft.getAbsolutePath()));
+            } else if (c == SignatureTag.class) {
+                out.writeByte(TAG_SIGNATURE);
+                out.writeVarint(string(((SignatureTag) t).getSignature()));
+            } else if (c == DeprecatedTag.class)
+                out.writeByte(TAG_DEPRECATED);
+            else if (c == SyntheticTag.class)
+                out.writeByte(TAG_SYNTHETIC);
+            else if (c == IntegerConstantValueTag.class) {
+                out.writeByte(TAG_INTEGER_CONSTANT_VALUE);
+                out.writeSignedVarint(((IntegerConstantValueTag) t).getIntValue());
+            } else if (c == LongConstantValueTag.class) {
+                out.writeByte(TAG_LONG_CONSTANT_VALUE);
+                out.writeSignedVarlong(((LongConstantValueTag) t).getLongValue());
+            } else if (c == FloatConstantValueTag.class) {
+                out.writeByte(TAG_FLOAT_CONSTANT_VALUE);
+                out.writeInt(Float.floatToRawIntBits(((FloatConstantValueTag) t).getFloatValue()));
+            } else if (c == DoubleConstantValueTag.class) {
+                out.writeByte(TAG_DOUBLE_CONSTANT_VALUE);
+                out.writeLong(Double.doubleToRawLongBits(((DoubleConstantValueTag) t).getDoubleValue()));
+            } else if (c == StringConstantValueTag.class) {
+                out.writeByte(TAG_STRING_CONSTANT_VALUE);
+                out.writeVarint(string(((StringConstantValueTag) t).getStringValue()));
+            } else if (c == EnclosingMethodTag.class) {
+                EnclosingMethodTag emt = (EnclosingMethodTag) t;
+                out.writeByte(TAG_ENCLOSING_METHOD);
+                out.writeVarint(optionalString(emt.getEnclosingClass()));
+                out.writeVarint(optionalString(emt.getEnclosingMethod()));
+                out.writeVarint(optionalString(emt.getEnclosingMethodSig()));
+            } else if (c == InnerClassAttribute.class) {
+                List<InnerClassTag> specs = ((InnerClassAttribute) t).getSpecs();
+                out.writeByte(TAG_INNER_CLASSES);
+                out.writeVarint(specs.size());
+                for (InnerClassTag ict : specs) {
+                    out.writeVarint(optionalString(ict.getInnerClass()));
+                    out.writeVarint(optionalString(ict.getOuterClass()));
+                    out.writeVarint(optionalString(ict.getShortName()));
+                    out.writeVarint(ict.getAccessFlags());
+                }
+            } else if (c == GenericAttribute.class) {
+                GenericAttribute ga = (GenericAttribute) t;
+                out.writeByte(TAG_GENERIC_ATTRIBUTE);
+                out.writeVarint(string(ga.getName()));
+                out.writeBytes(ga.getValue());
+            }
+        }
+    }
+
+    private static boolean isWritable(Tag t)
+    {
+        Class<?> c = t.getClass();
+        return c == LineNumberTag.class || c == SourceFileTag.class || c == SignatureTag.class
+            || c == DeprecatedTag.class || c == SyntheticTag.class
+            || c == IntegerConstantValueTag.class || c == LongConstantValueTag.class
+            || c == FloatConstantValueTag.class || c == DoubleConstantValueTag.class
+            || c == StringConstantValueTag.class || c == EnclosingMethodTag.class
+            || c == InnerClassAttribute.class || c == GenericAttribute.class;
+    }
+
+    /* ----------------------------------------------------------- bodies */
+
+    private class BodyWriter extends AbstractStmtSwitch
+    {
+        private final JimpleBody body;
+        private final BinaryOutput out;
+        private final Map<Local, Integer> localIndex = new HashMap<Local, Integer>();
+        private final Map<Unit, Integer> unitIndex = new HashMap<Unit, Integer>();
+        private final ValueWriter valueWriter = new ValueWriter();
+
+        BodyWriter(JimpleBody body, BinaryOutput out)
+        {
+            this.body = body;
+            this.out = out;
+        }
+
+        void write()
+        {
+            out.writeVarint(body.getLocalCount());
+            for (Local l : body.getLocals()) {
+                localIndex.put(l, localIndex.size());
+                out.writeVarint(string(l.getName()));
+                out.writeVarint(type(l.getType()));
+            }
+
+            for (Unit u : body.getUnits())
+                unitIndex.put(u, unitIndex.size());
+            out.writeVarint(unitIndex.size());
+            for (Unit u : body.getUnits()) {
+                u.apply(this);
+                writeTags(u, out);
+            }
+
+            out.writeVarint(body.getTraps().size());
+            for (Trap t : body.getTraps()) {
+                out.writeVarint(type(t.getException().getType()));
+                out.writeVarint(unit(t.getBeginUnit()));
+                out.writeVarint(unit(t.getEndUnit()));
+                out.writeVarint(unit(t.getHandlerUnit()));
+            }
+        }
+
+        private int unit(Unit u)
+        {
+            Integer i = unitIndex.get(u);
+            if (i == null)
+                throw new RuntimeException("Unit is not in the body of "
+                    + body.getMethod().getSignature() + ": " + u);
+            return i;
+        }
+
+        private void value(Value v)
+        {
+            v.apply(valueWriter);
+        }
+
+        public void caseAssignStmt(AssignStmt stmt)
+        {
+            out.writeByte(STMT_ASSIGN);
+            value(stmt.getLeftOp());
+            value(stmt.getRightOp());
+        }
+
+        public void caseIdentityStmt(IdentityStmt stmt)
+        {
+            out.writeByte(STMT_IDENTITY);
+            value(stmt.getLeftOp());
+            value(stmt.getRightOp());
+        }
+
+        public void caseGotoStmt(GotoStmt stmt)
+        {
+            out.writeByte(STMT_GOTO);
+            out.writeVarint(unit(stmt.getTarget()));
+        }
+
+        public void caseIfStmt(IfStmt stmt)
+        {
+            out.writeByte(STMT_IF);
+            value(stmt.getCondition());
+            out.writeVarint(unit(stmt.getTarget()));
+        }
+
+        public void caseInvokeStmt(InvokeStmt stmt)
+        {
+            out.writeByte(STMT_INVOKE);
+            value(stmt.getInvokeExpr());
+        }
+
+        public void caseReturnStmt(ReturnStmt stmt)
+        {
+            out.writeByte(STMT_RETURN);
+            value(stmt.getOp());
+        }
+
+        public void caseReturnVoidStmt(ReturnVoidStmt stmt)
+        {
+            out.writeByte(STMT_RETURN_VOID);
+        }
+
+        public void caseThrowStmt(ThrowStmt stmt)
+        {
+            out.writeByte(STMT_THROW);
+            value(stmt.getOp());
+        }
+
+        public void caseEnterMonitorStmt(EnterMonitorStmt stmt)
+        {
+            out.writeByte(STMT_ENTER_MONITOR);
+            value(stmt.getOp());
+        }
+
+        public void caseExitMonitorStmt(ExitMonitorStmt stmt)
+        {
+            out.writeByte(STMT_EXIT_MONITOR);
+            value(stmt.getOp());
+        }
+
+        public void caseNopStmt(NopStmt stmt)
+        {
+            out.writeByte(STMT_NOP);
+        }
+
+        public void caseBreakpointStmt(BreakpointStmt stmt)
+        {
+            out.writeByte(STMT_BREAKPOINT);
+        }
+
+        public void caseTableSwitchStmt(TableSwitchStmt stmt)
+        {
+            out.writeByte(STMT_TABLE_SWITCH);
+            value(stmt.getKey());
+            out.writeSignedVarint(stmt.getLowIndex());
+            out.writeSignedVarint(stmt.getHighIndex());
+            out.writeVarint(unit(stmt.getDefaultTarget()));
+            List<Unit> targets = stmt.getTargets();
+            out.writeVarint(targets.size());
+            for (Unit target : targets)
+                out.writeVarint(unit(target));
+        }
+
+        public void caseLookupSwitchStmt(LookupSwitchStmt stmt)
+        {
+            out.writeByte(STMT_LOOKUP_SWITCH);
+            value(stmt.getKey());
+            out.writeVarint(unit(stmt.getDefaultTarget()));
+            int count = stmt.getTargetCount();
+            out.writeVarint(count);
+            for (int i = 0; i < count; i++) {
+                out.writeSignedVarint(stmt.getLookupValue(i));
+                out.writeVarint(unit(stmt.getTarget(i)));
+            }
+        }
+
+        public void caseRetStmt(RetStmt stmt)
+        {
+            out.writeByte(STMT_RET);
+            value(stmt.getStmtAddress());
+        }
+
+        public void defaultCase(Object obj)
+        {
+            throw new RuntimeException("Statement cannot be written as binary Jimple: " + obj);
+        }
+
+        private class ValueWriter extends AbstractJimpleValueSwitch
+        {
+            private void binop(int code, BinopExpr v)
+            {
+                out.writeByte(code);
+                value(v.getOp1());
+                value(v.getOp2());
+            }
+
+            private void args(InvokeExpr v)
+            {
+                out.writeVarint(v.getArgCount());
+                for (Value arg : v.getArgs())
+                    value(arg);
+            }
+
+            public void caseLocal(Local v)
+            {
+                Integer i = localIndex.get(v);
+                if (i == null)
+                    throw new RuntimeException("Local is not in the body of "
+                        + body.getMethod().getSignature() + ": " + v);
+                out.writeByte(VALUE_LOCAL);
+                out.writeVarint(i);
+            }
+
+            public void caseIntConstant(IntConstant v)
+            {
+                out.writeByte(VALUE_INT);
+                out.writeSignedVarint(v.value);
+            }
+
+            public void caseLongConstant(LongConstant v)
+            {
+                out.writeByte(VALUE_LONG);
+                out.writeSignedVarlong(v.value);
+            }
+
+            public void caseFloatConstant(FloatConstant v)
+            {
+                out.writeByte(VALUE_FLOAT);
+                out.writeInt(Float.floatToRawIntBits(v.value));
+            }
+
+            public void caseDoubleConstant(DoubleConstant v)
+            {
+                out.writeByte(VALUE_DOUBLE);
+                out.writeLong(Double.doubleToRawLongBits(v.value));
+            }
+
+            public void caseStringConstant(StringConstant v)
+            {
+                out.writeByte(VALUE_STRING);
+                out.writeVarint(string(v.value));
+            }
+
+            public void caseClassConstant(ClassConstant v)
+            {
+                out.writeByte(VALUE_CLASS);
+                out.writeVarint(string(v.getValue()));
+            }
+
+            public void caseNullConstant(NullConstant v)
+            {
+                out.writeByte(VALUE_NULL);
+            }
+
+            public void caseMethodHandle(MethodHandle v)
+            {
+                out.writeByte(VALUE_METHOD_HANDLE);
+                out.writeVarint(methodRef(v.getMethodRef()));
+                out.writeVarint(v.tag);
+            }
+
+            public void caseAddExpr(AddExpr v)
+            {
+                binop(VALUE_ADD, v);
+            }
+
+            public void caseAndExpr(AndExpr v)
+            {
+                binop(VALUE_AND, v);
+            }
+
+            public void caseCmpExpr(CmpExpr v)
+            {
+                binop(VALUE_CMP, v);
+            }
+
+            public void caseCmpgExpr(CmpgExpr v)
+            {
+                binop(VALUE_CMPG, v);
+            }
+
+            public void caseCmplExpr(CmplExpr v)
+            {
+                binop(VALUE_CMPL, v);
+            }
+
+            public void caseDivExpr(DivExpr v)
+            {
+                binop(VALUE_DIV, v);
+            }
+
+            public void caseEqExpr(EqExpr v)
+            {
+                binop(VALUE_EQ, v);
+            }
+
+            public void caseGeExpr(GeExpr v)
+            {
+                binop(VALUE_GE, v);
+            }
+
+            public void caseGtExpr(GtExpr v)
+            {
+                binop(VALUE_GT, v);
+            }
+
+            public void caseLeExpr(LeExpr v)
+            {
+                binop(VALUE_LE, v);
+            }
+
+            public void caseLtExpr(LtExpr v)
+            {
+                binop(VALUE_LT, v);
+            }
+
+            public void caseMulExpr(MulExpr v)
+            {
+                binop(VALUE_MUL, v);
+            }
+
+            public void caseNeExpr(NeExpr v)
+            {
+                binop(VALUE_NE, v);
+            }
+
+            public void caseOrExpr(OrExpr v)
+            {
+                binop(VALUE_OR, v);
+            }
+
+            public void caseRemExpr(RemExpr v)
+            {
+                binop(VALUE_REM, v);
+            }
+
+            public void caseShlExpr(ShlExpr v)
+            {
+                binop(VALUE_SHL, v);
+            }
+
+            public void caseShrExpr(ShrExpr v)
+            {
+                binop(VALUE_SHR, v);
+            }
+
+            public void caseSubExpr(SubExpr v)
+            {
+                binop(VALUE_SUB, v);
+            }
+
+            public void caseUshrExpr(UshrExpr v)
+            {
+                binop(VALUE_USHR, v);
+            }
+
+            public void caseXorExpr(XorExpr v)
+            {
+                binop(VALUE_XOR, v);
+            }
+
+            public void caseNegExpr(NegExpr v)
+            {
+                out.writeByte(VALUE_NEG);
+                value(v.getOp());
+            }
+
+            public void caseLengthExpr(LengthExpr v)
+            {
+                out.writeByte(VALUE_LENGTH);
+                value(v.getOp());
+            }
+
+            public void caseCastExpr(CastExpr v)
+            {
+                out.writeByte(VALUE_CAST);
+                out.writeVarint(type(v.getCastType()));
+                value(v.getOp());
+            }
+
+            public void caseInstanceOfExpr(InstanceOfExpr v)
+            {
+                out.writeByte(VALUE_INSTANCE_OF);
+                out.writeVarint(type(v.getCheckType()));
+                value(v.getOp());
+            }
+
+            public void caseNewExpr(NewExpr v)
+            {
+                out.writeByte(VALUE_NEW);
+                out.writeVarint(type(v.getBaseType()));
+            }
+
+            public void caseNewArrayExpr(NewArrayExpr v)
+            {
+                out.writeByte(VALUE_NEW_ARRAY);
+                out.writeVarint(type(v.getBaseType()));
+                value(v.getSize());
+            }
+
+            public void caseNewMultiArrayExpr(NewMultiArrayExpr v)
+            {
+                out.writeByte(VALUE_NEW_MULTI_ARRAY);
+                out.writeVarint(type(v.getBaseType()));
+                out.writeVarint(v.getSizeCount());
+                for (Value size : v.getSizes())
+                    value(size);
+            }
+
+            public void caseStaticInvokeExpr(StaticInvokeExpr v)
+            {
+                out.writeByte(VALUE_STATIC_INVOKE);
+                out.writeVarint(methodRef(v.getMethodRef()));
+                args(v);
+            }
+
+            public void caseVirtualInvokeExpr(VirtualInvokeExpr v)
+            {
+                out.writeByte(VALUE_VIRTUAL_INVOKE);
+                value(v.getBase());
+                out.writeVarint(methodRef(v.getMethodRef()));
+                args(v);
+            }
+
+            public void caseSpecialInvokeExpr(SpecialInvokeExpr v)
+            {
+                out.writeByte(VALUE_SPECIAL_INVOKE);
+                value(v.getBase());
+                out.writeVarint(methodRef(v.getMethodRef()));
+                args(v);
+            }
+
+            public void caseInterfaceInvokeExpr(InterfaceInvokeExpr v)
+            {
+                out.writeByte(VALUE_INTERFACE_INVOKE);
+                value(v.getBase());
+                out.writeVarint(methodRef(v.getMethodRef()));
+                args(v);
+            }
+
+            public void caseDynamicInvokeExpr(DynamicInvokeExpr v)
+            {
+                out.writeByte(VALUE_DYNAMIC_INVOKE);
+                out.writeVarint(methodRef(v.getBootstrapMethodRef()));
+                out.writeVarint(v.getBootstrapArgCount());
+                for (Value arg : v.getBootstrapArgs())
+                    value(arg);
+                out.writeVarint(methodRef(v.getMethodRef()));
+                out.writeVarint(v.getHandleTag());
+                args(v);
+            }
+
+            public void caseArrayRef(ArrayRef v)
+            {
+                out.writeByte(VALUE_ARRAY_REF);
+                value(v.getBase());
+                value(v.getIndex());
+            }
+
+            public void caseInstanceFieldRef(InstanceFieldRef v)
+            {
+                out.writeByte(VALUE_INSTANCE_FIELD_REF);
+                value(v.getBase());
+                out.writeVarint(fieldRef(v.getFieldRef()));
+            }
+
+            public void caseStaticFieldRef(StaticFieldRef v)
+            {
+                out.writeByte(VALUE_STATIC_FIELD_REF);
+                out.writeVarint(fieldRef(v.getFieldRef()));
+            }
+
+            public void caseParameterRef(ParameterRef v)
+            {
+                out.writeByte(VALUE_PARAMETER_REF);
+                out.writeVarint(type(v.getType()));
+                out.writeVarint(v.getIndex());
+            }
+
+            public void caseThisRef(ThisRef v)
+            {
+                out.writeByte(VALUE_THIS_REF);
+                out.writeVarint(type(v.getType()));
+            }
+
+            public void caseCaughtExceptionRef(CaughtExceptionRef v)
+            {
+                out.writeByte(VALUE_CAUGHT_EXCEPTION_REF);
+            }
+
+            public void defaultCase(Object v)
+            {
+                throw new RuntimeException("Value cannot be written as binary Jimple: " + v);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer with the encodings of the binary Jimple format.
+ */
+final class BinaryOutput
+{
+    private byte[] buf;
+    private int count;
+
+    BinaryOutput(int capacity)
+    {
+        buf = new byte[capacity];
+    }
+
+    int size()
+    {
+        return count;
+    }
+
+    void writeByte(int b)
+    {
+        if (count == buf.length)
+            buf = Arrays.copyOf(buf, buf.length * 2 + 16);
+        buf[count++] = (byte) b;
+    }
+
+    void writeBytes(byte[] b)
+    {
+        writeVarint(b.length);
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, buf, count, b.length);
+        count += b.length;
+    }
+
+    void writeBoolean(boolean b)
+    {
+        writeByte(b ? 1 : 0);
+    }
+
+    /** Writes v as an unsigned LEB128 varint. */
+    void writeVarint(int v)
+    {
+        while ((v & ~0x7F) != 0) {
+            writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+
+    void writeVarlong(long v)
+    {
+        while ((v & ~0x7FL) != 0) {
+            writeByte((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte((int) v);
+    }
+
+    /** Writes v zigzag encoded, so that small negative numbers stay short. */
+    void writeSignedVarint(int v)
+    {
+        writeVarint((v << 1) ^ (v >> 31));
+    }
+
+    void writeSignedVarlong(long v)
+    {
+        writeVarlong((v << 1) ^ (v >> 63));
+    }
+
+    void writeInt(int v)
+    {
+        ensureCapacity(4);
+        buf[count++] = (byte) (v >>> 24);
+        buf[count++] = (byte) (v >>> 16);
+        buf[count++] = (byte) (v >>> 8);
+        buf[count++] = (byte) v;
+    }
+
+    void writeLong(long v)
+    {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+    /**
+     * Writes the chars of s as varints. Unlike modified UTF-8 this has no
+     * length limit, and unpaired surrogates survive.
+     */
+    void writeString(String s)
+    {
+        int length = s.length();
+        writeVarint(length);
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++)
+            writeVarint(s.charAt(i));
+    }
+
+    void write(BinaryOutput other)
+    {
+        ensureCapacity(other.count);
+        System.arraycopy(other.buf, 0, buf, count, other.count);
+        count += other.count;
+    }
+
+    void writeTo(OutputStream out) throws IOException
+    {
+        out.write(buf, 0, count);
+    }
+
+    private void ensureCapacity(int more)
+    {
+        if (count + more > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + more));
+    }
+}
@@ -0,0 +1,1500 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.ArrayType;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.Modifier;
+import soot.NullType;
+import soot.RefType;
+import soot.Scene;
+import soot.ShortType;
+import soot.SootClass;
+import soot.SootFieldRef;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.SootResolver;
+import soot.Trap;
+import soot.Type;
+import soot.Unit;
+import soot.UnitBox;
+import soot.UnknownType;
+import soot.Value;
+import soot.VoidType;
+import soot.jimple.ClassConstant;
+import soot.jimple.DoubleConstant;
+import soot.jimple.FloatConstant;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.LongConstant;
+import soot.jimple.NullConstant;
+import soot.jimple.StringConstant;
+import soot.util.StringTools;
+
+/**
+ * Reads a class from Jimple text without building a parse tree. It accepts
+ * the language of the SableCC grammar in <tt>jimple.scc</tt> and creates the
+ * same Soot objects as the {@link Walker}, directly while reading.
+ *
+ * <p> {@link #getSkeleton(SootClass)} reads the class, its fields and the
+ * signatures of its methods. The method bodies are only scanned at that
+ * point, to collect the names of the classes they refer to and to remember
+ * where they start. A body is read again and built when it is asked for with
+ * {@link #getBody(SootMethod)}, which can happen concurrently for different
+ * methods.
+ */
+public class JimpleReader
+{
+    private static final int EOF = 0, IDENT = 1, FULL_IDENT = 2, QUOTED = 3,
+        STRING = 4, INT = 5, FLOAT = 6, AT = 7, KEYWORD = 8, PUNCT = 9;
+
+    /* Keywords map to themselves so that keyword and punctuation tokens can
+    be compared by identity. */
+    private static final Map<String, String> keywords = new HashMap<String, String>();
+    private static final Map<String, Integer> modifiers = new HashMap<String, Integer>();
+    private static final Set<String> binops = new HashSet<String>();
+
+    static {
+        for (String k : new String[] { "abstract", "final", "native", "public", "protected", "private",
+                "static", "synchronized", "transient", "volatile", "strictfp", "enum", "annotation", "class",
+                "interface", "void", "boolean", "byte", "short", "char", "int", "long", "float", "double",
+                "null_type", "unknown", "extends", "implements", "breakpoint", "case", "catch", "cmp", "cmpg",
+                "cmpl", "default", "entermonitor", "exitmonitor", "goto", "if", "instanceof", "interfaceinvoke",
+                "lengthof", "lookupswitch", "neg", "new", "newarray", "newmultiarray", "nop", "ret", "return",
+                "specialinvoke", "staticinvoke", "dynamicinvoke", "tableswitch", "throw", "throws",
+                "virtualinvoke", "null", "from", "to", "with", "cls" })
+            keywords.put(k, k.intern());
+
+        modifiers.put("abstract", Modifier.ABSTRACT);
+        modifiers.put("final", Modifier.FINAL);
+        modifiers.put("native", Modifier.NATIVE);
+        modifiers.put("public", Modifier.PUBLIC);
+        modifiers.put("protected", Modifier.PROTECTED);
+        modifiers.put("private", Modifier.PRIVATE);
+        modifiers.put("static", Modifier.STATIC);
+        modifiers.put("synchronized", Modifier.SYNCHRONIZED);
+        modifiers.put("transient", Modifier.TRANSIENT);
+        modifiers.put("volatile", Modifier.VOLATILE);
+        modifiers.put("strictfp", Modifier.STRICTFP);
+        modifiers.put("enum", Modifier.ENUM);
+        modifiers.put("annotation", Modifier.ANNOTATION);
+
+        for (String b : new String[] { "&", "|", "^", "%", "cmp", "cmpg", "cmpl", "==", "!=", ">", ">=", "<",
+                "<=", "<<", ">>", ">>>", "+", "-", "*", "/" })
+            binops.add(b);
+    }
+
+    private static Type baseType(String keyword)
+    {
+        if (keyword == "boolean") return BooleanType.v();
+        if (keyword == "byte") return ByteType.v();
+        if (keyword == "char") return CharType.v();
+        if (keyword == "short") return ShortType.v();
+        if (keyword == "int") return IntType.v();
+        if (keyword == "long") return LongType.v();
+        if (keyword == "float") return FloatType.v();
+        if (keyword == "double") return DoubleType.v();
+        if (keyword == "null_type") return NullType.v();
+        return null;
+    }
+
+    private final char[] text;
+    private final int textLength;
+
+    private final Map<SootMethod, Integer> bodyStarts = new HashMap<SootMethod, Integer>();
+    private final Set<String> cstPool = new HashSet<String>();
+
+    /** Reads the whole stream, which is parsed by {@link #getSkeleton(SootClass)}. */
+    public JimpleReader(InputStream in) throws IOException
+    {
+        Reader r = new InputStreamReader(in);
+        char[] buf = new char[8192];
+        int len = 0, n;
+        while ((n = r.read(buf, len, buf.length - len)) != -1) {
+            len += n;
+            if (len == buf.length)
+                buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        this.text = buf;
+        this.textLength = len;
+    }
+
+    /**
+     * Fills in the modifiers, super types, fields and methods of the given
+     * class. No bodies are created.
+     */
+    public void getSkeleton(SootClass sc)
+    {
+        new Cursor(0, false).readFile(sc);
+    }
+
+    /**
+     * Builds a new body for the given method, which must have been read by
+     * {@link #getSkeleton(SootClass)}. Returns null if the method has no body.
+     */
+    public JimpleBody getBody(SootMethod m)
+    {
+        Integer start = bodyStarts.get(m);
+        if (start == null)
+            return null;
+
+        // Classes are only referred to through makeClassRef, so unlike the
+        // SableCC walker this needs no phantom refs, and bodies of several
+        // methods can be read at the same time
+        JimpleBody jb = Jimple.v().newBody(m);
+        new Cursor(start, true).readBody(jb);
+        return jb;
+    }
+
+    /** Returns the names of the classes the class refers to, bodies included. */
+    public Set<String> getCstPool()
+    {
+        return cstPool;
+    }
+
+    private static String unescape(String s)
+    {
+        return s.indexOf('\\') < 0 ? s : StringTools.getUnEscapedStringOf(s);
+    }
+
+    /* Reads tokens from a position of the text. When build is false, the
+    statements are only checked and no Soot objects are created for them. */
+    private class Cursor
+    {
+        private static final int LOOKAHEAD = 4;
+
+        private final boolean build;
+        private int pos;
+
+        private final int[] kinds = new int[LOOKAHEAD];
+        private final String[] texts = new String[LOOKAHEAD];
+        private final int[] starts = new int[LOOKAHEAD];
+        private int head = 0, count = 0;
+
+        private Map<String, Local> locals;
+        private Map<String, Unit> labelTargets;
+        private Map<String, List<UnitBox>> labelRefs;
+
+        Cursor(int pos, boolean build)
+        {
+            this.pos = pos;
+            this.build = build;
+        }
+
+        /* ---------------------------------------------------------- tokens */
+
+        private void fill(int k)
+        {
+            while (count <= k) {
+                lex((head + count) % LOOKAHEAD);
+                count++;
+            }
+        }
+
+        private int kind(int k)
+        {
+            fill(k);
+            return kinds[(head + k) % LOOKAHEAD];
+        }
+
+        private String text(int k)
+        {
+            fill(k);
+            return texts[(head + k) % LOOKAHEAD];
+        }
+
+        private void next()
+        {
+            fill(0);
+            head = (head + 1) % LOOKAHEAD;
+            count--;
+        }
+
+        private boolean at(int k, String s)
+        {
+            int kd = kind(k);
+            return (kd == KEYWORD || kd == PUNCT) && text(k) == s;
+        }
+
+        private boolean at(String s)
+        {
+            return at(0, s);
+        }
+
+        private void expect(String s)
+        {
+            if (!at(s))
+                throw error("expected '" + s + "'");
+            next();
+        }
+
+        private boolean isName(int k)
+        {
+            int kd = kind(k);
+            return kd == IDENT || kd == QUOTED;
+        }
+
+        private RuntimeException error(String message)
+        {
+            fill(0);
+            int start = starts[head];
+            int line = 1;
+            for (int i = 0; i < start; i++)
+                if (text[i] == '\n')
+                    line++;
+            String found = kinds[head] == EOF ? "end of file" : "'" + texts[head] + "'";
+            return new RuntimeException("Jimple syntax error at line " + line + ": " + message + ", found " + found);
+        }
+
+        private void lex(int slot)
+        {
+            final char[] t = text;
+            final int end = textLength;
+            int p = pos;
+
+            // Blanks and comments
+            while (p < end) {
+                char c = t[p];
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r')
+                    p++;
+                else if (c == '/' && p + 1 < end && t[p + 1] == '/') {
+                    p += 2;
+                    while (p < end && t[p] != '\n' && t[p] != '\r')
+                        p++;
+                } else if (c == '/' && p + 1 < end && t[p + 1] == '*') {
+                    p += 2;
+                    while (p + 1 < end && !(t[p] == '*' && t[p + 1] == '/'))
+                        p++;
+                    if (p + 1 >= end) {
+                        pos = end;
+                        throw new RuntimeException("Jimple syntax error: unterminated comment");
+                    }
+                    p += 2;
+                } else
+                    break;
+            }
+
+            starts[slot] = p;
+            if (p >= end) {
+                kinds[slot] = EOF;
+                texts[slot] = null;
+                pos = p;
+                return;
+            }
+
+            char c = t[p];
+            int e;
+            if (c == '"') {
+                e = endOfString(p);
+                kinds[slot] = STRING;
+                texts[slot] = new String(t, p + 1, e - p - 2);
+            } else if (c == '@') {
+                e = endOfAtIdentifier(p);
+                kinds[slot] = AT;
+                texts[slot] = new String(t, p, e - p);
+            } else if (c == '#') {
+                e = endOfSpecialFloat(p);
+                kinds[slot] = FLOAT;
+                texts[slot] = new String(t, p, e - p);
+            } else if (c >= '0' && c <= '9') {
+                e = lexNumber(slot, p);
+            } else if (c == '<' && (e = endOfInitName(p)) > 0) {
+                kinds[slot] = IDENT;
+                texts[slot] = new String(t, p, e - p);
+            } else if (isIdStart(c) || c == '\\' || c == '\'') {
+                e = lexName(slot, p);
+            } else {
+                e = lexPunct(slot, p);
+            }
+            pos = e;
+        }
+
+        /* Picks the longest of quoted_name, full_identifier and identifier,
+        in that order of preference, like the SableCC lexer. */
+        private int lexName(int slot, int p)
+        {
+            int q = text[p] == '\'' ? endOfQuoted(p) : -1;
+            int f = endOfFullIdentifier(p);
+            int i = text[p] == '\'' ? -1 : endOfIdentifier(p);
+
+            int e;
+            if (q >= f && q >= i && q > 0) {
+                kinds[slot] = QUOTED;
+                e = q;
+            } else if (f >= i && f > 0) {
+                kinds[slot] = FULL_IDENT;
+                e = f;
+            } else if (i > 0) {
+                kinds[slot] = IDENT;
+                e = i;
+            } else {
+                starts[slot] = p;
+                throw new RuntimeException("Jimple syntax error: invalid name at offset " + p);
+            }
+
+            String s = new String(text, p, e - p);
+            if (kinds[slot] == IDENT) {
+                String k = keywords.get(s);
+                if (k != null) {
+                    kinds[slot] = KEYWORD;
+                    s = k;
+                }
+            }
+            texts[slot] = s;
+            return e;
+        }
+
+        private int lexNumber(int slot, int p)
+        {
+            final char[] t = text;
+            final int end = textLength;
+            int q = p;
+            if (t[q] == '0' && q + 2 < end && (t[q + 1] == 'x' || t[q + 1] == 'X') && isHexDigit(t[q + 2])) {
+                q += 2;
+                while (q < end && isHexDigit(t[q]))
+                    q++;
+                if (q < end && t[q] == 'L')
+                    q++;
+                kinds[slot] = INT;
+            } else {
+                while (q < end && isDigit(t[q]))
+                    q++;
+                if (q + 1 < end && t[q] == '.' && isDigit(t[q + 1])) {
+                    q++;
+                    while (q < end && isDigit(t[q]))
+                        q++;
+                    if (q < end && (t[q] == 'e' || t[q] == 'E')) {
+                        int r = q + 1;
+                        if (r < end && (t[r] == '+' || t[r] == '-'))
+                            r++;
+                        if (r < end && isDigit(t[r])) {
+                            while (r < end && isDigit(t[r]))
+                                r++;
+                            q = r;
+                        }
+                    }
+                    if (q < end && (t[q] == 'f' || t[q] == 'F'))
+                        q++;
+                    kinds[slot] = FLOAT;
+                } else {
+                    if (q < end && t[q] == 'L')
+                        q++;
+                    kinds[slot] = INT;
+                }
+            }
+            texts[slot] = new String(t, p, q - p);
+            return q;
+        }
+
+        private int lexPunct(int slot, int p)
+        {
+            final char[] t = text;
+            final int end = textLength;
+            char c = t[p];
+            char c1 = p + 1 < end ? t[p + 1] : 0;
+            char c2 = p + 2 < end ? t[p + 2] : 0;
+            String s;
+            switch (c) {
+            case ',': s = ","; break;
+            case '{': s = "{"; break;
+            case '}': s = "}"; break;
+            case ';': s = ";"; break;
+            case '[': s = "["; break;
+            case ']': s = "]"; break;
+            case '(': s = "("; break;
+            case ')': s = ")"; break;
+            case '.': s = "."; break;
+            case '&': s = "&"; break;
+            case '|': s = "|"; break;
+            case '^': s = "^"; break;
+            case '%': s = "%"; break;
+            case '+': s = "+"; break;
+            case '-': s = "-"; break;
+            case '*': s = "*"; break;
+            case '/': s = "/"; break;
+            case ':': s = c1 == '=' ? ":=" : ":"; break;
+            case '=': s = c1 == '=' ? "==" : "="; break;
+            case '!':
+                if (c1 != '=')
+                    throw new RuntimeException("Jimple syntax error: unexpected '!' at offset " + p);
+                s = "!=";
+                break;
+            case '>':
+                s = c1 == '>' ? (c2 == '>' ? ">>>" : ">>") : c1 == '=' ? ">=" : ">";
+                break;
+            case '<':
+                s = c1 == '<' ? "<<" : c1 == '=' ? "<=" : "<";
+                break;
+            default:
+                throw new RuntimeException("Jimple syntax error: unexpected character '" + c + "' at offset " + p);
+            }
+            kinds[slot] = PUNCT;
+            texts[slot] = s;
+            return p + s.length();
+        }
+
+        private boolean isDigit(char c)
+        {
+            return c >= '0' && c <= '9';
+        }
+
+        private boolean isHexDigit(char c)
+        {
+            return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+        }
+
+        private boolean isIdStart(char c)
+        {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+        }
+
+        private boolean isIdPart(char c)
+        {
+            return isIdStart(c) || isDigit(c) || c == '-';
+        }
+
+        /* Returns the end of the escape sequence at p, or -1. */
+        private int endOfEscape(int p)
+        {
+            final char[] t = text;
+            if (p + 1 >= textLength)
+                return -1;
+            switch (t[p + 1]) {
+            case '\\': case ' ': case '\'': case '.': case '#': case '"':
+            case 'n': case 't': case 'r': case 'b': case 'f':
+                return p + 2;
+            case 'u':
+                if (p + 5 < textLength && isHexDigit(t[p + 2]) && isHexDigit(t[p + 3])
+                        && isHexDigit(t[p + 4]) && isHexDigit(t[p + 5]))
+                    return p + 6;
+                return -1;
+            default:
+                return -1;
+            }
+        }
+
+        private int endOfIdentifier(int p)
+        {
+            final char[] t = text;
+            int q = p;
+            if (isIdStart(t[q]))
+                q++;
+            else if ((q = endOfEscape(p)) < 0)
+                return -1;
+            while (q < textLength) {
+                if (isIdPart(t[q]))
+                    q++;
+                else if (t[q] == '\\') {
+                    int e = endOfEscape(q);
+                    if (e < 0)
+                        break;
+                    q = e;
+                } else
+                    break;
+            }
+            return q;
+        }
+
+        /* One part of a full_identifier, which may be quoted. */
+        private int endOfSegment(int p)
+        {
+            final char[] t = text;
+            int q;
+            if (t[p] == '\'') {
+                q = p + 1;
+                while (q < textLength) {
+                    if (isIdPart(t[q]))
+                        q++;
+                    else if (t[q] == '\\') {
+                        int e = endOfEscape(q);
+                        if (e < 0)
+                            break;
+                        q = e;
+                    } else
+                        break;
+                }
+            } else if ((q = endOfIdentifier(p)) < 0)
+                return -1;
+            if (q < textLength && t[q] == '\'')
+                q++;
+            return q;
+        }
+
+        private int endOfFullIdentifier(int p)
+        {
+            int e = endOfSegment(p);
+            if (e < 0)
+                return -1;
+            int segments = 1;
+            while (e + 1 < textLength && text[e] == '.') {
+                int e2 = endOfSegment(e + 1);
+                if (e2 < 0)
+                    break;
+                e = e2;
+                segments++;
+            }
+            return segments > 1 ? e : -1;
+        }
+
+        private int endOfQuoted(int p)
+        {
+            final char[] t = text;
+            int q = p + 1;
+            while (q < textLength && t[q] != '\'' && t[q] != '\n' && t[q] != '\r')
+                q++;
+            if (q < textLength && t[q] == '\'' && q > p + 1)
+                return q + 1;
+            return -1;
+        }
+
+        private int endOfInitName(int p)
+        {
+            if (startsWith(p, "<init>"))
+                return p + 6;
+            if (startsWith(p, "<clinit>"))
+                return p + 8;
+            return -1;
+        }
+
+        private boolean startsWith(int p, String s)
+        {
+            if (p + s.length() > textLength)
+                return false;
+            for (int i = 0; i < s.length(); i++)
+                if (text[p + i] != s.charAt(i))
+                    return false;
+            return true;
+        }
+
+        private int endOfString(int p)
+        {
+            final char[] t = text;
+            int q = p + 1;
+            while (q < textLength) {
+                char c = t[q];
+                if (c == '"')
+                    return q + 1;
+                if (c == '\\') {
+                    int e = endOfEscape(q);
+                    if (e < 0)
+                        throw new RuntimeException("Jimple syntax error: invalid escape in string at offset " + q);
+                    q = e;
+                } else
+                    q++;
+            }
+            throw new RuntimeException("Jimple syntax error: unterminated string at offset " + p);
+        }
+
+        private int endOfAtIdentifier(int p)
+        {
+            if (startsWith(p, "@this:"))
+                return p + 6;
+            if (startsWith(p, "@caughtexception"))
+                return p + 16;
+            if (startsWith(p, "@parameter")) {
+                int q = p + 10;
+                while (q < textLength && isDigit(text[q]))
+                    q++;
+                if (q > p + 10 && q < textLength && text[q] == ':')
+                    return q + 1;
+            }
+            throw new RuntimeException("Jimple syntax error: invalid @-identifier at offset " + p);
+        }
+
+        private int endOfSpecialFloat(int p)
+        {
+            int q;
+            if (startsWith(p, "#Infinity"))
+                q = p + 9;
+            else if (startsWith(p, "#-Infinity"))
+                q = p + 10;
+            else if (startsWith(p, "#NaN"))
+                q = p + 4;
+            else
+                throw new RuntimeException("Jimple syntax error: invalid constant at offset " + p);
+            if (q < textLength && (text[q] == 'f' || text[q] == 'F'))
+                q++;
+            return q;
+        }
+
+        /* ----------------------------------------------------------- names */
+
+        /* Class names are also collected for the dependencies while the
+        skeleton is read. */
+        private String readClassName()
+        {
+            String name;
+            switch (kind(0)) {
+            case IDENT:
+                name = unescape(text(0));
+                break;
+            case QUOTED:
+                name = unescape(text(0).substring(1, text(0).length() - 1));
+                break;
+            case FULL_IDENT:
+                name = Scene.v().unescapeName(unescape(text(0)));
+                break;
+            default:
+                throw error("expected a class name");
+            }
+            next();
+            if (!build)
+                cstPool.add(name);
+            return name;
+        }
+
+        private String readName()
+        {
+            String name;
+            if (kind(0) == IDENT)
+                name = unescape(text(0));
+            else if (kind(0) == QUOTED)
+                name = unescape(text(0).substring(1, text(0).length() - 1));
+            else
+                throw error("expected a name");
+            next();
+            return name;
+        }
+
+        private List<String> readClassNameList()
+        {
+            List<String> names = new ArrayList<String>();
+            names.add(readClassName());
+            while (at(",")) {
+                next();
+                names.add(readClassName());
+            }
+            return names;
+        }
+
+        private int readModifiers()
+        {
+            int flags = 0;
+            while (kind(0) == KEYWORD) {
+                Integer m = modifiers.get(text(0));
+                if (m == null)
+                    break;
+                flags |= m;
+                next();
+            }
+            return flags;
+        }
+
+        /* ----------------------------------------------------------- types */
+
+        private Type readType()
+        {
+            if (at("void")) {
+                next();
+                return VoidType.v();
+            }
+            return readNonvoidType();
+        }
+
+        private Type readNonvoidType()
+        {
+            Type t = null;
+            if (kind(0) == KEYWORD) {
+                t = baseType(text(0));
+                if (t == null)
+                    throw error("expected a type");
+                next();
+            } else
+                t = RefType.v(readClassName());
+
+            int dims = 0;
+            while (at("[")) {
+                next();
+                expect("]");
+                dims++;
+            }
+            return dims > 0 ? ArrayType.v(t, dims) : t;
+        }
+
+        /* A type without brackets, as used by new and newmultiarray. */
+        private Type readBaseType()
+        {
+            if (kind(0) == KEYWORD) {
+                Type t = baseType(text(0));
+                if (t == null)
+                    throw error("expected a type");
+                next();
+                return t;
+            }
+            return RefType.v(readClassName());
+        }
+
+        private List<Type> readParameterTypes()
+        {
+            expect("(");
+            List<Type> types = new ArrayList<Type>();
+            if (!at(")")) {
+                types.add(readNonvoidType());
+                while (at(",")) {
+                    next();
+                    types.add(readNonvoidType());
+                }
+            }
+            expect(")");
+            return types;
+        }
+
+        /* ----------------------------------------------------------- class */
+
+        void readFile(SootClass sc)
+        {
+            int flags = readModifiers();
+            if (at("interface"))
+                flags |= Modifier.INTERFACE;
+            else if (!at("class"))
+                throw error("expected 'class' or 'interface'");
+            next();
+
+            String className = readClassName();
+            if (!className.equals(sc.getName()))
+                throw new RuntimeException("expected:  " + className + ", but got: " + sc.getName());
+
+            String superClass = null;
+            if (at("extends")) {
+                next();
+                superClass = readClassName();
+            }
+            List<String> interfaces = Collections.emptyList();
+            if (at("implements")) {
+                next();
+                interfaces = readClassNameList();
+            }
+
+            sc.setModifiers(flags);
+            SootResolver resolver = SootResolver.v();
+            if (superClass != null)
+                sc.setSuperclass(resolver.makeClassRef(superClass));
+            for (String i : interfaces)
+                sc.addInterface(resolver.makeClassRef(i));
+
+            expect("{");
+            while (!at("}"))
+                readMember(sc);
+            next();
+            if (kind(0) != EOF)
+                throw error("expected end of file");
+        }
+
+        private void readMember(SootClass sc)
+        {
+            int flags = readModifiers();
+            Type type = readType();
+            String name = readName();
+
+            if (at(";")) {
+                next();
+                sc.addField(Scene.v().makeSootField(name, type, flags));
+                return;
+            }
+
+            List<Type> parameterTypes = readParameterTypes();
+            SootMethod m;
+            if (at("throws")) {
+                next();
+                List<SootClass> exceptions = new ArrayList<SootClass>();
+                for (String e : readClassNameList())
+                    exceptions.add(SootResolver.v().makeClassRef(e));
+                m = Scene.v().makeSootMethod(name, parameterTypes, type, flags, exceptions);
+            } else
+                m = Scene.v().makeSootMethod(name, parameterTypes, type, flags);
+            sc.addMethod(m);
+
+            if (at(";")) {
+                next();
+                return;
+            }
+            if (!m.isConcrete())
+                throw error("a method that is not concrete cannot have a body");
+            fill(0);
+            bodyStarts.put(m, starts[head]);
+            readBody(null);
+        }
+
+        /* ------------------------------------------------------------ body */
+
+        void readBody(JimpleBody jb)
+        {
+            if (build) {
+                locals = new HashMap<String, Local>();
+                labelTargets = new HashMap<String, Unit>();
+                labelRefs = new HashMap<String, List<UnitBox>>();
+            }
+
+            expect("{");
+            while (isDeclarationStart()) {
+                Type t;
+                if (at("unknown")) {
+                    next();
+                    t = UnknownType.v();
+                } else
+                    t = readNonvoidType();
+                for (;;) {
+                    String name = readName();
+                    if (build) {
+                        Local l = Jimple.v().newLocal(name, t);
+                        locals.put(name, l);
+                        jb.getLocals().add(l);
+                    }
+                    if (!at(","))
+                        break;
+                    next();
+                }
+                expect(";");
+            }
+
+            List<String> labels = new ArrayList<String>();
+            while (!at("catch") && !at("}")) {
+                if (isName(0) && at(1, ":")) {
+                    labels.add(readName());
+                    next();
+                    continue;
+                }
+                Unit u = readStatement();
+                if (build) {
+                    jb.getUnits().add(u);
+                    for (String label : labels)
+                        labelTargets.put(label, u);
+                }
+                labels.clear();
+            }
+            if (!labels.isEmpty())
+                throw error("label " + labels.get(0) + " is not followed by a statement");
+
+            while (at("catch")) {
+                Trap trap = readTrap();
+                if (build)
+                    jb.getTraps().add(trap);
+            }
+            expect("}");
+
+            if (build) {
+                for (Map.Entry<String, List<UnitBox>> e : labelRefs.entrySet()) {
+                    Unit target = labelTargets.get(e.getKey());
+                    if (target == null)
+                        throw new RuntimeException("Jimple syntax error: unknown label " + e.getKey() + " in "
+                                + jb.getMethod().getSignature());
+                    for (UnitBox box : e.getValue())
+                        box.setUnit(target);
+                }
+            }
+        }
+
+        /* A declaration starts with a type followed by a name, a statement
+        never does. */
+        private boolean isDeclarationStart()
+        {
+            switch (kind(0)) {
+            case KEYWORD:
+                return at("unknown") || baseType(text(0)) != null;
+            case FULL_IDENT:
+                return true;
+            case IDENT:
+            case QUOTED:
+                return isName(1) || (at(1, "[") && at(2, "]"));
+            default:
+                return false;
+            }
+        }
+
+        private Unit readStatement()
+        {
+            Jimple j = Jimple.v();
+            if (kind(0) == KEYWORD) {
+                String k = text(0);
+                if (k == "breakpoint") {
+                    next();
+                    expect(";");
+                    return build ? j.newBreakpointStmt() : null;
+                }
+                if (k == "entermonitor" || k == "exitmonitor") {
+                    next();
+                    Value op = readImmediate();
+                    expect(";");
+                    if (!build)
+                        return null;
+                    return k == "entermonitor" ? j.newEnterMonitorStmt(op) : j.newExitMonitorStmt(op);
+                }
+                if (k == "tableswitch" || k == "lookupswitch")
+                    return readSwitch();
+                if (k == "if") {
+                    next();
+                    Value condition = readBoolExpr();
+                    UnitBox box = readGoto();
+                    return build ? j.newIfStmt(condition, box) : null;
+                }
+                if (k == "goto") {
+                    UnitBox box = readGoto();
+                    return build ? j.newGotoStmt(box) : null;
+                }
+                if (k == "nop") {
+                    next();
+                    expect(";");
+                    return build ? j.newNopStmt() : null;
+                }
+                if (k == "ret") {
+                    next();
+                    if (!at(";"))
+                        readImmediate();
+                    expect(";");
+                    if (build)
+                        throw new RuntimeException("ret not yet implemented.");
+                    return null;
+                }
+                if (k == "return") {
+                    next();
+                    if (at(";")) {
+                        next();
+                        return build ? j.newReturnVoidStmt() : null;
+                    }
+                    Value op = readImmediate();
+                    expect(";");
+                    return build ? j.newReturnStmt(op) : null;
+                }
+                if (k == "throw") {
+                    next();
+                    Value op = readImmediate();
+                    expect(";");
+                    return build ? j.newThrowStmt(op) : null;
+                }
+                if (isInvoke(k)) {
+                    Value e = readInvokeExpr();
+                    expect(";");
+                    return build ? j.newInvokeStmt(e) : null;
+                }
+                throw error("expected a statement");
+            }
+
+            if (at("<")) {
+                Value ref = readFieldSignature(true);
+                expect("=");
+                Value rvalue = readExpression();
+                expect(";");
+                return build ? j.newAssignStmt(ref, rvalue) : null;
+            }
+
+            if (isName(0) && at(1, ":="))
+                return readIdentity();
+
+            if (isName(0)) {
+                Value variable = readVariable();
+                expect("=");
+                Value rvalue = readExpression();
+                expect(";");
+                return build ? j.newAssignStmt(variable, rvalue) : null;
+            }
+
+            throw error("expected a statement");
+        }
+
+        private Unit readIdentity()
+        {
+            Local l = readLocal();
+            next(); // :=
+            if (kind(0) != AT)
+                throw error("expected an @-identifier");
+            String atIdentifier = text(0);
+            next();
+
+            if (at(";")) {
+                next();
+                return build ? Jimple.v().newIdentityStmt(l, Jimple.v().newCaughtExceptionRef()) : null;
+            }
+            Type t = readType();
+            expect(";");
+            if (!build)
+                return null;
+
+            Value ref;
+            if (atIdentifier.startsWith("@this")) {
+                if (!(t instanceof RefType))
+                    throw new RuntimeException("Jimple syntax error: @this must have a class type, found " + t);
+                ref = Jimple.v().newThisRef((RefType) t);
+            } else if (atIdentifier.startsWith("@parameter"))
+                ref = Jimple.v().newParameterRef(t,
+                        Integer.parseInt(atIdentifier.substring(10, atIdentifier.length() - 1)));
+            else
+                throw new RuntimeException("Jimple syntax error: @caughtexception cannot have a type");
+            return Jimple.v().newIdentityStmt(l, ref);
+        }
+
+        private Unit readSwitch()
+        {
+            boolean table = at("tableswitch");
+            next();
+            expect("(");
+            Value key = readImmediate();
+            expect(")");
+            expect("{");
+
+            List<IntConstant> values = new ArrayList<IntConstant>();
+            List<UnitBox> targets = new ArrayList<UnitBox>();
+            UnitBox defaultTarget = null;
+            boolean hasDefault = false;
+            while (!at("}")) {
+                IntConstant value = null;
+                boolean isDefault = false;
+                if (at("case")) {
+                    next();
+                    boolean negative = false;
+                    if (at("-")) {
+                        next();
+                        negative = true;
+                    }
+                    if (kind(0) != INT)
+                        throw error("expected an integer constant");
+                    String s = text(0);
+                    next();
+                    if (build) {
+                        Value v = intConstant(s, negative);
+                        if (!(v instanceof IntConstant))
+                            throw new RuntimeException("Jimple syntax error: switch case " + v + " is not an int");
+                        value = (IntConstant) v;
+                    }
+                } else if (at("default")) {
+                    next();
+                    if (hasDefault)
+                        throw error("a switch can have only one default case");
+                    hasDefault = isDefault = true;
+                } else
+                    throw error("expected 'case' or 'default'");
+                expect(":");
+                UnitBox box = readGoto();
+                if (isDefault)
+                    defaultTarget = box;
+                else if (build) {
+                    values.add(value);
+                    targets.add(box);
+                }
+            }
+            next();
+            expect(";");
+            if (!build)
+                return null;
+
+            if (table) {
+                int low = values.isEmpty() ? 0 : values.get(0).value;
+                int high = values.isEmpty() ? 0 : values.get(values.size() - 1).value;
+                return Jimple.v().newTableSwitchStmt(key, low, high, targets, defaultTarget);
+            }
+            return Jimple.v().newLookupSwitchStmt(key, values, targets, defaultTarget);
+        }
+
+        /* goto_stmt = goto label_name semicolon */
+        private UnitBox readGoto()
+        {
+            expect("goto");
+            String label = readName();
+            expect(";");
+            return labelBox(label);
+        }
+
+        private UnitBox labelBox(String label)
+        {
+            if (!build)
+                return null;
+            UnitBox box = Jimple.v().newStmtBox(null);
+            List<UnitBox> refs = labelRefs.get(label);
+            if (refs == null) {
+                refs = new ArrayList<UnitBox>();
+                labelRefs.put(label, refs);
+            }
+            refs.add(box);
+            return box;
+        }
+
+        private Trap readTrap()
+        {
+            expect("catch");
+            String exception = readClassName();
+            expect("from");
+            UnitBox from = labelBox(readName());
+            expect("to");
+            UnitBox to = labelBox(readName());
+            expect("with");
+            UnitBox with = labelBox(readName());
+            expect(";");
+            if (!build)
+                return null;
+            return Jimple.v().newTrap(SootResolver.v().makeClassRef(exception), from, to, with);
+        }
+
+        /* ----------------------------------------------------- expressions */
+
+        private boolean isInvoke(String k)
+        {
+            return k == "specialinvoke" || k == "virtualinvoke" || k == "interfaceinvoke"
+                || k == "staticinvoke" || k == "dynamicinvoke";
+        }
+
+        private boolean atBinop()
+        {
+            int kd = kind(0);
+            return (kd == PUNCT || kd == KEYWORD) && binops.contains(text(0));
+        }
+
+        private Local readLocal()
+        {
+            String name = readName();
+            if (!build)
+                return null;
+            Local l = locals.get(name);
+            if (l == null)
+                throw new RuntimeException("did not find local: " + name);
+            return l;
+        }
+
+        /* variable = reference | local_name */
+        private Value readVariable()
+        {
+            Local l = readLocal();
+            if (at(".")) {
+                next();
+                SootFieldRef f = readFieldRef(false);
+                return build ? Jimple.v().newInstanceFieldRef(l, f) : null;
+            }
+            if (at("[")) {
+                next();
+                Value index = readImmediate();
+                expect("]");
+                return build ? Jimple.v().newArrayRef(l, index) : null;
+            }
+            return l;
+        }
+
+        private Value readExpression()
+        {
+            Jimple j = Jimple.v();
+            if (kind(0) == KEYWORD) {
+                String k = text(0);
+                if (k == "new") {
+                    next();
+                    Type t = readBaseType();
+                    if (!build)
+                        return null;
+                    if (!(t instanceof RefType))
+                        throw new RuntimeException("Jimple syntax error: cannot create an object of type " + t);
+                    return j.newNewExpr((RefType) t);
+                }
+                if (k == "newarray") {
+                    next();
+                    expect("(");
+                    Type t = readNonvoidType();
+                    expect(")");
+                    expect("[");
+                    Value size = readImmediate();
+                    expect("]");
+                    return build ? j.newNewArrayExpr(t, size) : null;
+                }
+                if (k == "newmultiarray") {
+                    next();
+                    expect("(");
+                    Type t = readBaseType();
+                    expect(")");
+                    List<Value> sizes = new ArrayList<Value>();
+                    int dims = 0;
+                    boolean sized = true;
+                    do {
+                        expect("[");
+                        dims++;
+                        if (!at("]")) {
+                            Value size = readImmediate();
+                            if (sized)
+                                sizes.add(size);
+                        } else
+                            sized = false;
+                        expect("]");
+                    } while (at("["));
+                    return build ? j.newNewMultiArrayExpr(ArrayType.v(t, dims), sizes) : null;
+                }
+                if (k == "lengthof" || k == "neg")
+                    return readUnopExpr();
+                if (isInvoke(k))
+                    return readInvokeExpr();
+            }
+
+            if (at("(")) {
+                next();
+                Type t = readNonvoidType();
+                expect(")");
+                Value op = readImmediate();
+                return build ? j.newCastExpr(op, t) : null;
+            }
+            if (at("<"))
+                return readFieldSignature(true);
+            if (isName(0) && (at(1, ".") || at(1, "[")))
+                return readVariable();
+
+            Value op = readImmediate();
+            if (at("instanceof")) {
+                next();
+                Type t = readNonvoidType();
+                return build ? j.newInstanceOfExpr(op, t) : null;
+            }
+            if (atBinop())
+                return readBinopRest(op);
+            return op;
+        }
+
+        private Value readBoolExpr()
+        {
+            if (at("lengthof") || at("neg"))
+                return readUnopExpr();
+            Value left = readImmediate();
+            if (!atBinop())
+                throw error("expected a binary operator");
+            return readBinopRest(left);
+        }
+
+        private Value readUnopExpr()
+        {
+            boolean length = at("lengthof");
+            next();
+            Value op = readImmediate();
+            if (!build)
+                return null;
+            return length ? Jimple.v().newLengthExpr(op) : Jimple.v().newNegExpr(op);
+        }
+
+        private Value readBinopRest(Value left)
+        {
+            String op = text(0);
+            next();
+            Value right = readImmediate();
+            if (!build)
+                return null;
+
+            Jimple j = Jimple.v();
+            if (op == "&") return j.newAndExpr(left, right);
+            if (op == "|") return j.newOrExpr(left, right);
+            if (op == "^") return j.newXorExpr(left, right);
+            if (op == "%") return j.newRemExpr(left, right);
+            if (op == "cmp") return j.newCmpExpr(left, right);
+            if (op == "cmpg") return j.newCmpgExpr(left, right);
+            if (op == "cmpl") return j.newCmplExpr(left, right);
+            if (op == "==") return j.newEqExpr(left, right);
+            if (op == "!=") return j.newNeExpr(left, right);
+            if (op == ">") return j.newGtExpr(left, right);
+            if (op == ">=") return j.newGeExpr(left, right);
+            if (op == "<") return j.newLtExpr(left, right);
+            if (op == "<=") return j.newLeExpr(left, right);
+            if (op == "<<") return j.newShlExpr(left, right);
+            if (op == ">>") return j.newShrExpr(left, right);
+            if (op == ">>>") return j.newUshrExpr(left, right);
+            if (op == "+") return j.newAddExpr(left, right);
+            if (op == "-") return j.newSubExpr(left, right);
+            if (op == "*") return j.newMulExpr(left, right);
+            return j.newDivExpr(left, right);
+        }
+
+        private Value readInvokeExpr()
+        {
+            Jimple j = Jimple.v();
+            String k = text(0);
+            next();
+
+            if (k == "dynamicinvoke") {
+                if (kind(0) != STRING)
+                    throw error("expected the name of the called method");
+                String name = unescape(text(0));
+                next();
+                expect("<");
+                Type returnType = readType();
+                List<Type> parameterTypes = readParameterTypes();
+                expect(">");
+                List<Value> args = readArgs();
+                SootMethodRef bootstrap = readMethodRef(false);
+                List<Value> bootstrapArgs = readArgs();
+                if (!build)
+                    return null;
+                SootClass dummy = SootResolver.v().makeClassRef(SootClass.INVOKEDYNAMIC_DUMMY_CLASS_NAME);
+                SootMethodRef method = Scene.v().makeMethodRef(dummy, name, parameterTypes, returnType, false);
+                return j.newDynamicInvokeExpr(bootstrap, bootstrapArgs, method, args);
+            }
+
+            if (k == "staticinvoke") {
+                SootMethodRef method = readMethodRef(true);
+                List<Value> args = readArgs();
+                return build ? j.newStaticInvokeExpr(method, args) : null;
+            }
+
+            Local base = readLocal();
+            expect(".");
+            SootMethodRef method = readMethodRef(false);
+            List<Value> args = readArgs();
+            if (!build)
+                return null;
+            if (k == "specialinvoke")
+                return j.newSpecialInvokeExpr(base, method, args);
+            if (k == "virtualinvoke")
+                return j.newVirtualInvokeExpr(base, method, args);
+            return j.newInterfaceInvokeExpr(base, method, args);
+        }
+
+        private List<Value> readArgs()
+        {
+            expect("(");
+            List<Value> args = new ArrayList<Value>();
+            if (!at(")")) {
+                args.add(readImmediate());
+                while (at(",")) {
+                    next();
+                    args.add(readImmediate());
+                }
+            }
+            expect(")");
+            return args;
+        }
+
+        /* method_signature = < class_name : type name ( parameter_list? ) > */
+        private SootMethodRef readMethodRef(boolean isStatic)
+        {
+            expect("<");
+            String className = readClassName();
+            expect(":");
+            Type returnType = readType();
+            String name = readName();
+            List<Type> parameterTypes = readParameterTypes();
+            expect(">");
+            if (!build)
+                return null;
+            SootClass cl = SootResolver.v().makeClassRef(className);
+            return Scene.v().makeMethodRef(cl, name, parameterTypes, returnType, isStatic);
+        }
+
+        /* field_signature = < class_name : type name > */
+        private SootFieldRef readFieldRef(boolean isStatic)
+        {
+            expect("<");
+            String className = readClassName();
+            expect(":");
+            Type type = readType();
+            String name = readName();
+            expect(">");
+            if (!build)
+                return null;
+            SootClass cl = SootResolver.v().makeClassRef(className);
+            return Scene.v().makeFieldRef(cl, name, type, isStatic);
+        }
+
+        private Value readFieldSignature(boolean isStatic)
+        {
+            SootFieldRef f = readFieldRef(isStatic);
+            return build ? Jimple.v().newStaticFieldRef(f) : null;
+        }
+
+        private Value readImmediate()
+        {
+            if (isName(0))
+                return readLocal();
+
+            boolean negative = false;
+            if (at("-")) {
+                next();
+                negative = true;
+                if (kind(0) != INT && kind(0) != FLOAT)
+                    throw error("expected a number");
+            }
+
+            String s = text(0);
+            switch (kind(0)) {
+            case INT:
+                next();
+                return build ? intConstant(s, negative) : null;
+            case FLOAT:
+                next();
+                return build ? floatConstant(s, negative) : null;
+            case STRING:
+                next();
+                return build ? StringConstant.v(unescape(s)) : null;
+            case KEYWORD:
+                if (s == "null") {
+                    next();
+                    return build ? NullConstant.v() : null;
+                }
+                if (s == "class") {
+                    next();
+                    if (kind(0) != STRING)
+                        throw error("expected a class constant");
+                    String c = text(0);
+                    next();
+                    return build ? ClassConstant.v(unescape(c)) : null;
+                }
+                break;
+            default:
+                break;
+            }
+            throw error("expected a local or a constant");
+        }
+
+        private Value intConstant(String s, boolean negative)
+        {
+            if (negative)
+                s = "-" + s;
+            if (s.endsWith("L"))
+                return LongConstant.v(Long.parseLong(s.substring(0, s.length() - 1)));
+            if (s.equals("2147483648"))
+                return IntConstant.v(Integer.MIN_VALUE);
+            return IntConstant.v(Integer.parseInt(s));
+        }
+
+        private Value floatConstant(String s, boolean negative)
+        {
+            boolean isDouble = !(s.endsWith("f") || s.endsWith("F"));
+            if (s.charAt(0) == '#') {
+                if (s.charAt(1) == '-')
+                    return isDouble ? DoubleConstant.v(Double.NEGATIVE_INFINITY)
+                        : FloatConstant.v(Float.NEGATIVE_INFINITY);
+                if (s.charAt(1) == 'I')
+                    return isDouble ? DoubleConstant.v(Double.POSITIVE_INFINITY)
+                        : FloatConstant.v(Float.POSITIVE_INFINITY);
+                return isDouble ? DoubleConstant.v(Double.NaN) : FloatConstant.v(Float.NaN);
+            }
+            if (negative)
+                s = "-" + s;
+            return isDouble ? DoubleConstant.v(Double.parseDouble(s)) : FloatConstant.v(Float.parseFloat(s));
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 
 package soot.jimple.spark;
+import java.io.File;
 import java.util.Date;
 import java.util.Map;
 
@@ -39,6 +40,8 @@ import soot.jimple.Stmt;
 import soot.jimple.spark.builder.ContextInsensitiveBuilder;
 import soot.jimple.spark.geom.geomPA.GeomPointsTo;
 import soot.jimple.spark.ondemand.DemandCSPointsTo;
+import soot.jimple.spark.ondemand.DemandQueryCache;
+import soot.jimple.spark.ondemand.pautil.ContextSensitiveInfo;
 import soot.jimple.spark.pag.AllocDotField;
 import soot.jimple.spark.pag.AllocNode;
 import soot.jimple.spark.pag.Node;
@@ -48,7 +51,11 @@ import soot.jimple.spark.pag.PAGDumper;
 import soot.jimple.spark.pag.VarNode;
 import soot.jimple.spark.sets.P2SetVisitor;
 import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.spark.snapshot.PointsToSnapshotWriter;
+import soot.jimple.spark.snapshot.SnapshotPointsToAnalysis;
 import soot.jimple.spark.solver.EBBCollapser;
+import soot.jimple.spark.solver.IncrementalUpdater;
+import soot.jimple.spark.solver.OnFlyCallGraph;
 import soot.jimple.spark.solver.PropAlias;
 import soot.jimple.spark.solver.PropCycle;
 import soot.jimple.spark.solver.PropIter;
@@ -70,11 +77,24 @@ public class SparkTransformer extends SceneTransformer
     public SparkTransformer( Singletons.Global g ) {}
     public static SparkTransformer v() { return G.v().soot_jimple_spark_SparkTransformer(); }
 
+    /** Keeps the solved PAG of the last run when the incremental option is set. */
+    private IncrementalUpdater updater;
+
     protected void internalTransform( String phaseName, Map<String, String> options )
     {
         SparkOptions opts = new SparkOptions( options );
         final String output_dir = SourceLocator.v().getOutputDir();
 
+        if( opts.load_snapshot() != null && opts.load_snapshot().length() > 0 ) {
+            loadSnapshot( opts );
+            return;
+        }
+        if( opts.incremental() && updater != null ) {
+            updateIncrementally( opts );
+            return;
+        }
+        updater = null;
+
         // Build pointer assignment graph
         ContextInsensitiveBuilder b = new ContextInsensitiveBuilder();
         if( opts.pre_jimplify() ) b.preJimplify();
@@ -172,7 +192,9 @@ public class SparkTransformer extends SceneTransformer
         if( opts.dump_answer() ) new ReachingTypeDumper( pag, output_dir ).dump();
         if( opts.dump_solution() ) dumper.dumpPointsToSets();
         if( opts.dump_html() ) new PAG2HTML( pag, output_dir ).dump();
+        if( opts.dump_snapshot() ) new PointsToSnapshotWriter( pag, output_dir ).dump();
         Scene.v().setPointsToAnalysis( pag );
+        if( opts.incremental() ) keepForUpdates( pag, opts );
         if( opts.add_tags() ) {
             addTags( pag );
         }
@@ -193,13 +215,61 @@ public class SparkTransformer extends SceneTransformer
         if(opts.cs_demand()) {
         		//replace by demand-driven refinement-based context-sensitive analysis
         		Date startOnDemand = new Date();
-        		PointsToAnalysis onDemandAnalysis = DemandCSPointsTo.makeWithBudget(opts.traversal(), opts.passes(), opts.lazy_pts());
+        		DemandQueryCache queryCache = new DemandQueryCache(pag, opts.cs_demand_cache_size());
+        		if( opts.cs_demand_journal().length() > 0 ) queryCache.useJournal( new File( opts.cs_demand_journal() ) );
+        		PointsToAnalysis onDemandAnalysis = new DemandCSPointsTo(new ContextSensitiveInfo(pag), pag, opts.traversal(), opts.passes(), opts.lazy_pts(), queryCache);
         		Date endOndemand = new Date();
         		reportTime( "Initialized on-demand refinement-based context-sensitive analysis", startOnDemand, endOndemand );
         		Scene.v().setPointsToAnalysis(onDemandAnalysis);
         }
     }
     
+    /** Replaces the Spark run by the results saved in a snapshot. */
+    protected void loadSnapshot( SparkOptions opts ) {
+        Date start = new Date();
+        SnapshotPointsToAnalysis snapshot = new SnapshotPointsToAnalysis( new File( opts.load_snapshot() ) );
+        Scene.v().setCallGraph( snapshot.loadCallGraph() );
+        Scene.v().setPointsToAnalysis( snapshot );
+        Date end = new Date();
+        reportTime( "Snapshot loaded", start, end );
+        if( opts.verbose() ) {
+            G.v().out.println( "[Spark] Number of reachable methods: "
+                    +Scene.v().getReachableMethods().size() );
+        }
+    }
+
+    /** Keeps the solved PAG, so that the next run only has to process the changes. */
+    protected void keepForUpdates( PAG pag, SparkOptions opts ) {
+        if( !opts.on_fly_cg() || opts.vta() || opts.rta() || opts.types_for_sites()
+                || opts.simplify_offline() || opts.simplify_sccs() || opts.geom_pta() || opts.cs_demand()
+                || ( opts.propagator() != SparkOptions.propagator_worklist
+                        && opts.propagator() != SparkOptions.propagator_iter ) ) {
+            G.v().out.println( "[Spark] Incremental updates are not supported with these options; the next run starts from scratch." );
+            return;
+        }
+        updater = new IncrementalUpdater( pag );
+        updater.recordProgram();
+    }
+
+    /** Brings the PAG of the last run up to date with the changed program. */
+    protected void updateIncrementally( SparkOptions opts ) {
+        Date start = new Date();
+        updater.findChanges();
+        updater.update();
+        updater.recordProgram();
+        PAG pag = updater.getPAG();
+        OnFlyCallGraph ofcg = pag.getOnFlyCallGraph();
+        Scene.v().setCallGraph( ofcg.callGraph() );
+        Scene.v().setReachableMethods( ofcg.reachableMethods() );
+        Scene.v().setPointsToAnalysis( pag );
+        Date end = new Date();
+        reportTime( "Incremental update", start, end );
+        if( opts.verbose() ) {
+            G.v().out.println( "[Spark] Number of reachable methods: "
+                    +Scene.v().getReachableMethods().size() );
+        }
+    }
+
     protected void addTags( PAG pag ) {
         final Tag unknown = new StringTag( "Untagged Spark node" );
         final Map<Node, Tag> nodeToTag = pag.getNodeTags();
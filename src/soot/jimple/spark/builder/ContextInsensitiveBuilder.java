@@ -91,8 +91,13 @@ public class ContextInsensitiveBuilder {
 			cgb.build();
 			reachables = cgb.reachables();
 		}
+		List<MethodPAG> mpags = new ArrayList<MethodPAG>();
 		for (final SootClass c : Scene.v().getClasses()) {
-			handleClass(c);
+			handleClass(c, mpags);
+		}
+		new ParallelMethodPAGBuilder(pag, pag.getOpts().build_threads()).build(mpags);
+		for (MethodPAG mpag : mpags) {
+			mpag.addToPAG(null);
 		}
 		while (callEdges.hasNext()) {
 			Edge e = callEdges.next();
@@ -114,7 +119,7 @@ public class ContextInsensitiveBuilder {
 
 	/* End of public methods. */
 	/* End of package methods. */
-	protected void handleClass(SootClass c) {
+	protected void handleClass(SootClass c, List<MethodPAG> mpags) {
 		boolean incedClasses = false;
 		if (c.isConcrete())
 			for (SootMethod m : c.getMethods()) {
@@ -122,9 +127,7 @@ public class ContextInsensitiveBuilder {
 					continue;
 				totalMethods++;
 				if (reachables.contains(m)) {
-					MethodPAG mpag = MethodPAG.v(pag, m);
-					mpag.build();
-					mpag.addToPAG(null);
+					mpags.add(MethodPAG.v(pag, m));
 					analyzedMethods++;
 					if (!incedClasses) {
 						incedClasses = true;
@@ -0,0 +1,103 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import soot.SootMethod;
+import soot.jimple.spark.pag.MethodPAG;
+import soot.jimple.spark.pag.PAG;
+
+/**
+ * Builds the method-local parts of the pointer assignment graph for several
+ * methods concurrently.
+ *
+ * The bodies are retrieved sequentially first, since the front-ends may
+ * resolve classes and create types in the Scene while doing so. Walking their
+ * statements is then done in parallel. Only during that phase, the nodes are
+ * interned in the PAG under its lock, so each node is created exactly once;
+ * the nodes are numbered in the order in which the threads create them. Native
+ * methods are built sequentially, since the native method simulation is not
+ * thread-safe. The caller adds the built methods to the PAG, in a
+ * deterministic order.
+ */
+public class ParallelMethodPAGBuilder {
+	/** Smaller batches are not worth starting threads for. */
+	private static final int MIN_PARALLEL_BATCH = 16;
+
+	private final PAG pag;
+	private final int numThreads;
+
+	public ParallelMethodPAGBuilder(PAG pag, int numThreads) {
+		this.pag = pag;
+		this.numThreads = numThreads;
+	}
+
+	/** Builds all the given method PAGs. */
+	public void build(List<MethodPAG> mpags) {
+		List<MethodPAG> parallel = new ArrayList<MethodPAG>();
+		for (MethodPAG mpag : mpags) {
+			if (numThreads <= 1 || mpag.getMethod().isNative())
+				mpag.build();
+			else
+				parallel.add(mpag);
+		}
+		if (parallel.size() < MIN_PARALLEL_BATCH) {
+			for (MethodPAG mpag : parallel)
+				mpag.build();
+			return;
+		}
+
+		for (MethodPAG mpag : parallel) {
+			SootMethod m = mpag.getMethod();
+			if (m.isConcrete() && !m.isPhantom())
+				m.retrieveActiveBody();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, parallel.size()));
+		pag.setConcurrentBuild(true);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final MethodPAG mpag : parallel) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						mpag.build();
+					}
+				}));
+			}
+			for (Future<?> f : futures)
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while building the pointer assignment graph", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Building the pointer assignment graph failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+			pag.setConcurrentBuild(false);
+		}
+	}
+}
@@ -72,8 +72,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	
 	static {
 		stubManager = new GeometricManager();
-		pres = new RectangleNode(1, 1, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS);
-		stubManager.addNewFigure(GeometricManager.MANY_TO_MANY, pres);
+		stubManager.addNewFigure(GeometricManager.MANY_TO_MANY, new RectangleNode(1, 1, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS));
 		deadManager = new GeometricManager();
 	}
 	
@@ -201,6 +200,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	public boolean add_points_to_3(AllocNode obj, long I1, long I2,
 			long L) 
 	{			
+		RectangleNode pres = candidateFigure.get();
 		pres.I1 = I1;
 		pres.I2 = I2;
 		pres.L = L;
@@ -212,6 +212,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	public boolean add_points_to_4(AllocNode obj, long I1, long I2,
 			long L1, long L2) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		pres.I1 = I1;
 		pres.I2 = I2;
 		pres.L = L1;
@@ -224,6 +225,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	public boolean add_simple_constraint_3(IVarAbstraction qv, long I1,
 			long I2, long L) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		pres.I1 = I1;
 		pres.I2 = I2;
 		pres.L = L;
@@ -235,6 +237,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	public boolean add_simple_constraint_4(IVarAbstraction qv, long I1,
 			long I2, long L1, long L2) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		pres.I1 = I1;
 		pres.I2 = I2;
 		pres.L = L1;
@@ -687,6 +690,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	 */
 	private boolean addPointsTo(int code, AllocNode obj) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		GeometricManager gm = pt_objs.get(obj);
 		
 		if ( gm == null ) {
@@ -713,6 +717,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	 */
 	private boolean addFlowsTo(int code, IVarAbstraction qv) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		GeometricManager gm = flowto.get(qv);
 		
 		if ( gm == null ) {
@@ -756,6 +761,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	 */
 	private static int infer_pts_is_one_to_one( SegmentNode pts, SegmentNode pe, int code )
 	{
+		RectangleNode pres = candidateFigure.get();
 		long interI, interJ;
 		
 		// The left-end is the larger one
@@ -790,6 +796,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	 */
 	private static int infer_pts_is_many_to_many( RectangleNode pts, SegmentNode pe, int code )
 	{
+		RectangleNode pres = candidateFigure.get();
 		long interI, interJ;
 		
 		// The left-end is the larger one
@@ -859,6 +866,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	private static boolean instantiateLoadConstraint(FullSensitiveNode objn,
 			FullSensitiveNode qn, SegmentNode pts, int code ) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		int ret_type = GeometricManager.Undefined_Mapping;
 		
 		if ( (code>>8) == GeometricManager.ONE_TO_ONE ) {
@@ -910,6 +918,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	private static boolean instantiateStoreConstraint(FullSensitiveNode qn,
 			FullSensitiveNode objn, SegmentNode pts, int code) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		int ret_type = GeometricManager.Undefined_Mapping;
 		
 		if ( (code>>8) == GeometricManager.ONE_TO_ONE ) {
@@ -0,0 +1,281 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+package soot.jimple.spark.geom.geomPA;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import soot.jimple.spark.geom.dataRep.PlainConstraint;
+import soot.jimple.spark.pag.AllocDotField;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.SparkField;
+
+/**
+ * A worklist that keeps one worklist per independent component of the
+ * constraint graph, so that the components can be solved concurrently.
+ *
+ * Two pointers are in the same component if they are connected by an
+ * assignment, or if they appear in load/store constraints on the same field.
+ * All instance field nodes of a field belong to the component of that field.
+ * The flow edges created on the fly while solving therefore never leave a
+ * component, and a component evolves in exactly the same way whether it is
+ * solved alone or interleaved with the others.
+ *
+ * The worklists of all components are created up front, so pushing a pointer
+ * never changes the structure of this worklist.
+ */
+class ComponentWorklist implements IWorklist
+{
+	private final GeomPointsTo geomPTA;
+	// Component of every pointer, indexed by pointer id
+	private final int[] component;
+	private final Map<SparkField, Integer> fieldComponent = new HashMap<SparkField, Integer>();
+	// Number of pointers in every component
+	private final int[] sizes;
+	// Component of the pointers created later that no constraint refers to
+	private final int isolated;
+	private final IWorklist[] lists;
+
+	public ComponentWorklist( GeomPointsTo pta )
+	{
+		geomPTA = pta;
+
+		int n = 0;
+		for ( IVarAbstraction pn : pta.pointers ) {
+			if ( pn.id >= n ) n = pn.id + 1;
+		}
+
+		// Give every field involved in a complex constraint a slot after the pointers
+		Map<SparkField, Integer> fieldSlot = new HashMap<SparkField, Integer>();
+		for ( PlainConstraint cons : pta.constraints ) {
+			if ( cons.type == Constants.LOAD_CONS || cons.type == Constants.STORE_CONS ) {
+				if ( !fieldSlot.containsKey(cons.f) )
+					fieldSlot.put(cons.f, n + fieldSlot.size());
+			}
+		}
+
+		int[] parent = new int[ n + fieldSlot.size() ];
+		for ( int i = 0; i < parent.length; ++i ) parent[i] = i;
+
+		for ( PlainConstraint cons : pta.constraints ) {
+			if ( cons.type == Constants.NEW_CONS ) {
+				// The objects are never modified by the propagation
+				continue;
+			}
+
+			int lhs = getId(cons.getLHS(), n);
+			int rhs = getId(cons.getRHS(), n);
+			if ( lhs == -1 || rhs == -1 ) continue;
+			union(parent, lhs, rhs);
+			if ( cons.type != Constants.ASSIGN_CONS )
+				union(parent, lhs, fieldSlot.get(cons.f));
+		}
+
+		for ( IVarAbstraction pn : pta.pointers ) {
+			int rep = getId(pn, n);
+			if ( rep != -1 ) union(parent, pn.id, rep);
+
+			Node v = pn.getWrappedNode();
+			if ( v instanceof AllocDotField ) {
+				Integer slot = fieldSlot.get( ((AllocDotField)v).getField() );
+				if ( slot != null ) union(parent, pn.id, slot);
+			}
+		}
+
+		// Number the components densely
+		Map<Integer, Integer> rootToComponent = new HashMap<Integer, Integer>();
+		List<Integer> counts = new ArrayList<Integer>();
+		component = new int[n];
+		for ( int i = 0; i < parent.length; ++i ) {
+			int root = find(parent, i);
+			Integer c = rootToComponent.get(root);
+			if ( c == null ) {
+				c = counts.size();
+				rootToComponent.put(root, c);
+				counts.add(0);
+			}
+			if ( i < n ) {
+				component[i] = c;
+				counts.set(c, counts.get(c) + 1);
+			}
+		}
+
+		for ( Map.Entry<SparkField, Integer> e : fieldSlot.entrySet() ) {
+			fieldComponent.put(e.getKey(), rootToComponent.get(find(parent, e.getValue())));
+		}
+
+		isolated = counts.size();
+		sizes = new int[ isolated + 1 ];
+		for ( int c = 0; c < isolated; ++c ) sizes[c] = counts.get(c);
+		lists = new IWorklist[ sizes.length ];
+		initialize( 0 );
+	}
+
+	private static int getId( IVarAbstraction pn, int n )
+	{
+		pn = pn.getRepresentative();
+		if ( !pn.reachable() || pn.id >= n ) return -1;
+		return pn.id;
+	}
+
+	private static int find( int[] parent, int x )
+	{
+		while ( parent[x] != x ) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+
+	private static void union( int[] parent, int x, int y )
+	{
+		x = find(parent, x);
+		y = find(parent, y);
+		if ( x != y ) parent[y] = x;
+	}
+
+	/**
+	 * Find the component of a pointer, which may have been created after this worklist.
+	 */
+	private int getComponent( IVarAbstraction pn )
+	{
+		if ( pn.id >= 0 && pn.id < component.length )
+			return component[pn.id];
+
+		Node v = pn.getWrappedNode();
+		if ( v instanceof AllocDotField ) {
+			Integer c = fieldComponent.get( ((AllocDotField)v).getField() );
+			if ( c != null ) return c;
+		}
+
+		// Nothing can flow into or out of this pointer, so it may share a
+		// component with the other pointers of this kind
+		return isolated;
+	}
+
+	/**
+	 * Solve all the components using the given number of threads.
+	 */
+	public void solve( int numThreads )
+	{
+		List<Integer> pending = new ArrayList<Integer>();
+		for ( int c = 0; c < lists.length; ++c ) {
+			if ( lists[c].has_job() )
+				pending.add(c);
+		}
+
+		// Start with the largest components for a better load balance
+		Collections.sort(pending, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer c1, Integer c2) {
+				return sizes[c2] - sizes[c1];
+			}
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for ( Integer c : pending ) {
+				final IWorklist list = lists[c];
+				futures.add( executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						while (list.has_job()) {
+							IVarAbstraction pn = list.next();
+							pn.do_before_propagation();
+							pn.propagate(geomPTA, list);
+							pn.do_after_propagation();
+						}
+					}
+				}) );
+			}
+			for ( Future<?> f : futures ) f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while solving the geometric constraints", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Solving the geometric constraints failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public int getNumberOfComponents()
+	{
+		return isolated;
+	}
+
+	@Override
+	public void initialize( int size )
+	{
+		for ( int c = 0; c < lists.length; ++c ) {
+			// Components must not depend on the order in which their pointers are pushed
+			lists[c] = geomPTA.makeWorklist(true);
+			lists[c].initialize( sizes[c] + 1 );
+		}
+	}
+
+	@Override
+	public boolean has_job()
+	{
+		for ( IWorklist list : lists ) {
+			if ( list.has_job() )
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public IVarAbstraction next()
+	{
+		for ( IWorklist list : lists ) {
+			if ( list.has_job() )
+				return list.next();
+		}
+		return null;
+	}
+
+	@Override
+	public void push( IVarAbstraction pn )
+	{
+		lists[ getComponent(pn) ].push(pn);
+	}
+
+	@Override
+	public int size()
+	{
+		int ret = 0;
+		for ( IWorklist list : lists ) ret += list.size();
+		return ret;
+	}
+
+	@Override
+	public void clear()
+	{
+		for ( IWorklist list : lists ) list.clear();
+	}
+}
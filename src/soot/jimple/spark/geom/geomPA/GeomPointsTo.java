@@ -94,6 +94,12 @@ public class GeomPointsTo extends PAG
 	// Other choice, FIFO_Worklist
 	protected IWorklist worklist = null;
 	
+	// Routes the pointers to the worklists of the independent components when solving in parallel
+	protected ComponentWorklist componentWorklist = null;
+	
+	// The number of threads used to solve the constraints
+	protected int numThreads = 1;
+	
 	// The generator that is used to generate the internal representations for the pointers and objects
 	protected IEncodingBroker nodeGenerator = null;
 	
@@ -249,15 +255,8 @@ public class GeomPointsTo extends PAG
     		                                        + " is unavailable for geometric points-to analysis." );
     	
     	// Then, we set the worklist
-    	switch ( opts.geom_worklist() ) {
-    	case SparkOptions.geom_worklist_FIFO:
-    		worklist = new FIFO_Worklist();
-    		break;
-    		
-    	case SparkOptions.geom_worklist_PQ:
-    		worklist = new PQ_Worklist();
-    		break;
-    	}
+    	worklist = makeWorklist();
+    	numThreads = opts.geom_threads();
     	
     	// We dump the processing statistics to an external file if needed by the user
     	dump_dir = opts.geom_dump_verbose();
@@ -863,6 +862,12 @@ public class GeomPointsTo extends PAG
 	 */
 	private void solveConstraints() 
 	{
+		if ( componentWorklist != null ) {
+			componentWorklist.solve(numThreads);
+			componentWorklist = null;
+			return;
+		}
+		
 		IWorklist ptaList = worklist;
 		
 		while (ptaList.has_job()) {
@@ -873,6 +878,22 @@ public class GeomPointsTo extends PAG
 		}
 	}
 	
+	/**
+	 * When solving in parallel, we split the constraint graph into independent components
+	 * before the flow graph is built, so that every pointer enters the worklist of its component.
+	 */
+	private void prepareComponents()
+	{
+		if ( numThreads <= 1 )
+			return;
+		
+		// Make sure the shared hierarchy exists before the solver threads query it
+		Scene.v().getActiveHierarchy();
+		componentWorklist = new ComponentWorklist(this);
+		ps.println("[Geom] Solving " + componentWorklist.getNumberOfComponents() 
+				+ " independent components with " + numThreads + " threads.");
+	}
+	
 	/**
 	 * Obtain the set of possible call targets at given @param callsite.
 	 */
@@ -1321,6 +1342,7 @@ public class GeomPointsTo extends PAG
 			prepareNextRun();
 			
 			// We construct the initial flow graph
+			prepareComponents();
 			nodeGenerator.initFlowGraph(this);
 
 			// Solve the constraints
@@ -1409,6 +1431,7 @@ public class GeomPointsTo extends PAG
 		Date begin = new Date();
 
 		prepareNextRun();
+		prepareComponents();
 		nodeGenerator.initFlowGraph(this);
 		solveConstraints();
 
@@ -1657,7 +1680,31 @@ public class GeomPointsTo extends PAG
 	
 	public IWorklist getWorklist()
 	{
-		return worklist;
+		return componentWorklist != null ? componentWorklist : worklist;
+	}
+	
+	/**
+	 * Create an empty worklist of the type selected by the user.
+	 */
+	public IWorklist makeWorklist()
+	{
+		return makeWorklist(false);
+	}
+	
+	/**
+	 * Create an empty worklist of the type selected by the user.
+	 * @param breakTiesById if the pointers of equal priority should be ordered by their ids
+	 */
+	public IWorklist makeWorklist( boolean breakTiesById )
+	{
+		switch ( opts.geom_worklist() ) {
+		case SparkOptions.geom_worklist_FIFO:
+			return new FIFO_Worklist();
+			
+		case SparkOptions.geom_worklist_PQ:
+		default:
+			return new PQ_Worklist(breakTiesById);
+		}
 	}
 	
 	/**
@@ -1671,8 +1718,11 @@ public class GeomPointsTo extends PAG
 	
 	/**
 	 * Obtain or create an internal representation of an object field.
+	 * The ptins and heapins encodings call this while propagating, so with several
+	 * solver threads it is synchronized: creating a field node adds it to the PAG
+	 * and to the pointer list, which are shared by all components.
 	 */
-	public IVarAbstraction findAndInsertInstanceField(AllocNode obj, SparkField field) 
+	public synchronized IVarAbstraction findAndInsertInstanceField(AllocNode obj, SparkField field) 
 	{
 		AllocDotField af = findAllocDotField(obj, field);
 		IVarAbstraction pn = null;
@@ -29,9 +29,20 @@ import soot.jimple.spark.geom.dataRep.SegmentNode;
  */
 public abstract class IFigureManager 
 {
-	// We implement an internal memory manager here
-	private static SegmentNode segHeader = null;
-	private static SegmentNode rectHeader = null;
+	// We implement an internal memory manager here.
+	// Every solver thread recycles the figures in its own pool.
+	private static final class FigurePool
+	{
+		SegmentNode segHeader = null;
+		SegmentNode rectHeader = null;
+	}
+	
+	private static final ThreadLocal<FigurePool> pool = new ThreadLocal<FigurePool>() {
+		@Override
+		protected FigurePool initialValue() {
+			return new FigurePool();
+		}
+	};
 	
 	/**
 	 * Generate a segment node from our own cache.
@@ -40,10 +51,11 @@ public abstract class IFigureManager
 	protected static SegmentNode getSegmentNode()
 	{
 		SegmentNode ret = null;
+		FigurePool fp = pool.get();
 		
-		if ( segHeader != null ) {
-			ret = segHeader;
-			segHeader = ret.next;
+		if ( fp.segHeader != null ) {
+			ret = fp.segHeader;
+			fp.segHeader = ret.next;
 			ret.next = null;
 			ret.is_new = true;
 		}
@@ -61,10 +73,11 @@ public abstract class IFigureManager
 	protected static RectangleNode getRectangleNode()
 	{
 		RectangleNode ret = null;
+		FigurePool fp = pool.get();
 		
-		if ( rectHeader != null ) {
-			ret = (RectangleNode)rectHeader;
-			rectHeader = ret.next;
+		if ( fp.rectHeader != null ) {
+			ret = (RectangleNode)fp.rectHeader;
+			fp.rectHeader = ret.next;
 			ret.next = null;
 			ret.is_new = true;
 		}
@@ -81,9 +94,10 @@ public abstract class IFigureManager
 	 */
 	protected static SegmentNode reclaimSegmentNode( SegmentNode p )
 	{
+		FigurePool fp = pool.get();
 		SegmentNode q = p.next;
-		p.next = segHeader;
-		segHeader = p;
+		p.next = fp.segHeader;
+		fp.segHeader = p;
 		return q;
 	}
 	
@@ -94,19 +108,20 @@ public abstract class IFigureManager
 	 */
 	protected static SegmentNode reclaimRectangleNode( SegmentNode p )
 	{
+		FigurePool fp = pool.get();
 		SegmentNode q = p.next;
-		p.next = rectHeader;
-		rectHeader = p;
+		p.next = fp.rectHeader;
+		fp.rectHeader = p;
 		return q;
 	}
 	
 	/**
-	 * We return the cached memory to garbage collector.
+	 * We return the cached memory of the calling thread to garbage collector.
+	 * The pools of the solver threads are released when the threads end.
 	 */
 	public static void cleanCache()
 	{
-		segHeader = null;
-		rectHeader = null;
+		pool.remove();
 	}
 	
 	
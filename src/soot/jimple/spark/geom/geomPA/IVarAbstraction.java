@@ -44,8 +44,13 @@ public abstract class IVarAbstraction implements Numberable
 	protected static IFigureManager stubManager = null;
 	// This is used to indicate the corresponding object should be removed
 	protected static IFigureManager deadManager = null;
-	// A temporary rectangle holds the candidate figure 
-	protected static RectangleNode pres = null;
+	// A temporary rectangle holds the candidate figure, one per solver thread
+	protected static final ThreadLocal<RectangleNode> candidateFigure = new ThreadLocal<RectangleNode>() {
+		@Override
+		protected RectangleNode initialValue() {
+			return new RectangleNode();
+		}
+	};
 	
 	// Corresponding SPARK node
 	public Node me;
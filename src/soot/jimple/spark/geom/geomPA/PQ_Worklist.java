@@ -18,6 +18,8 @@
  */
 package soot.jimple.spark.geom.geomPA;
 
+import java.util.Arrays;
+
 /**
  * The implementation of prioritized worklist.
  * The priority is computed by two parameters: the Topsort order and the least recent fired (LRF) timestamp.
@@ -26,6 +28,9 @@ package soot.jimple.spark.geom.geomPA;
  * 1. topsort_order(p) < topsort_order(q)
  * 2. topsort_order(p) == topsort_order(q) && LRF(p) < LRF(q)
  * 
+ * The parallel solver additionally breaks the remaining ties by the pointer ids,
+ * so that each component evolves the same way however the components are interleaved.
+ * 
  * @author xiao
  *
  */
@@ -33,6 +38,17 @@ public class PQ_Worklist implements IWorklist {
 
 	private IVarAbstraction[] heap = null;
 	int cur_tail = 0;
+	private final boolean breakTiesById;
+	
+	public PQ_Worklist()
+	{
+		this(false);
+	}
+	
+	public PQ_Worklist( boolean breakTiesById )
+	{
+		this.breakTiesById = breakTiesById;
+	}
 	
 	@Override
 	public void initialize( int size )
@@ -57,9 +73,9 @@ public class PQ_Worklist implements IWorklist {
 			
 			while ( (k*2) < cur_tail ) {
 				int kk = k * 2;
-				if ( (kk+1) < cur_tail && heap[kk+1].lessThan(heap[kk]) )
+				if ( (kk+1) < cur_tail && lessThan(heap[kk+1], heap[kk]) )
 					kk++;
-				if ( e.lessThan(heap[kk]) )
+				if ( lessThan(e, heap[kk]) )
 					break;
 				heap[k] = heap[kk];
 				heap[k].Qpos = k;
@@ -80,11 +96,15 @@ public class PQ_Worklist implements IWorklist {
 		
 		if ( e.Qpos == 0 ) {
 			// This element has not been inserted
+			if ( cur_tail == heap.length ) {
+				// Pointers created during the solving may not fit
+				heap = Arrays.copyOf( heap, heap.length * 2 + 2 );
+			}
 			int k = cur_tail;
 			
 			while ( k > 1 ) {
 				int kk = k / 2;
-				if ( heap[kk].lessThan(e) )
+				if ( lessThan(heap[kk], e) )
 					break;
 				heap[k] = heap[kk];
 				heap[k].Qpos = k;
@@ -100,9 +120,9 @@ public class PQ_Worklist implements IWorklist {
 			int k = e.Qpos;
 			while ( (k*2) < cur_tail ) {
 				int kk = k * 2;
-				if ( (kk+1) < cur_tail && heap[kk+1].lessThan(heap[kk]) )
+				if ( (kk+1) < cur_tail && lessThan(heap[kk+1], heap[kk]) )
 					kk++;
-				if ( e.lessThan(heap[kk]) )
+				if ( lessThan(e, heap[kk]) )
 					break;
 				heap[k] = heap[kk];
 				heap[kk].Qpos = k;
@@ -113,6 +133,14 @@ public class PQ_Worklist implements IWorklist {
 		}
 	}
 
+	private boolean lessThan( IVarAbstraction p, IVarAbstraction q )
+	{
+		if ( p.lessThan(q) )
+			return true;
+		
+		return breakTiesById && !q.lessThan(p) && p.id < q.id;
+	}
+
 	@Override
 	public int size() {
 		return cur_tail - 1;
@@ -59,8 +59,7 @@ public class HeapInsNode extends IVarAbstraction
 	
 	static {
 		stubManager = new HeapInsIntervalManager();
-		pres = new RectangleNode(0, 0, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS);
-		stubManager.addNewFigure(HeapInsIntervalManager.ALL_TO_ALL, pres);
+		stubManager.addNewFigure(HeapInsIntervalManager.ALL_TO_ALL, new RectangleNode(0, 0, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS));
 		deadManager = new HeapInsIntervalManager();
 	}
 	
@@ -175,6 +174,7 @@ public class HeapInsNode extends IVarAbstraction
 	@Override
 	public boolean add_points_to_3(AllocNode obj, long I1, long I2, long L) 
 	{	
+		RectangleNode pres = candidateFigure.get();
 		int code = 0;
 		
 		pres.I1 = I1;
@@ -199,6 +199,7 @@ public class HeapInsNode extends IVarAbstraction
 	@Override
 	public boolean add_simple_constraint_3(IVarAbstraction qv, long I1, long I2, long L) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		int code = 0;
 		
 		pres.I1 = I1;
@@ -656,6 +657,7 @@ public class HeapInsNode extends IVarAbstraction
 	
 	private boolean addPointsTo( int code, AllocNode obj )
 	{
+		RectangleNode pres = candidateFigure.get();
 		HeapInsIntervalManager im = pt_objs.get(obj);
 		
 		if ( im == null ) {
@@ -678,6 +680,7 @@ public class HeapInsNode extends IVarAbstraction
 	
 	private boolean addFlowsTo( int code, HeapInsNode qv )
 	{
+		RectangleNode pres = candidateFigure.get();
 		HeapInsIntervalManager im = flowto.get(qv);
 		
 		if ( im == null ) {
@@ -693,6 +696,7 @@ public class HeapInsNode extends IVarAbstraction
 	private static boolean add_new_points_to_tuple( SegmentNode pts, SegmentNode pe, 
 			AllocNode obj, HeapInsNode qn )
 	{
+		RectangleNode pres = candidateFigure.get();
 		long interI, interJ;
 		int code = 0;
 		
@@ -70,8 +70,7 @@ public class PtInsNode extends IVarAbstraction
 
 	static {
 		stubManager = new PtInsIntervalManager();
-		pres = new RectangleNode(0, 0, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS);
-		stubManager.addNewFigure(PtInsIntervalManager.ALL_TO_ALL, pres);
+		stubManager.addNewFigure(PtInsIntervalManager.ALL_TO_ALL, new RectangleNode(0, 0, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS));
 		deadManager = new PtInsIntervalManager();
 	}
 	
@@ -187,6 +186,7 @@ public class PtInsNode extends IVarAbstraction
 	@Override
 	public boolean add_points_to_3(AllocNode obj, long I1, long I2, long L) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		int code = 0;
 		
 		pres.I1 = I1;
@@ -211,6 +211,7 @@ public class PtInsNode extends IVarAbstraction
 	@Override
 	public boolean add_simple_constraint_3(IVarAbstraction qv, long I1, long I2, long L) 
 	{
+		RectangleNode pres = candidateFigure.get();
 		int code = 0;
 		
 		pres.I1 = I1;
@@ -668,6 +669,7 @@ public class PtInsNode extends IVarAbstraction
 	
 	private boolean addPointsTo( int code, AllocNode obj )
 	{
+		RectangleNode pres = candidateFigure.get();
 		PtInsIntervalManager im = pt_objs.get(obj);
 		
 		if ( im == null ) {
@@ -690,6 +692,7 @@ public class PtInsNode extends IVarAbstraction
 	
 	private boolean addFlowsTo( int code, PtInsNode qv )
 	{
+		RectangleNode pres = candidateFigure.get();
 		PtInsIntervalManager im = flowto.get(qv);
 		
 		if ( im == null ) {
@@ -705,6 +708,7 @@ public class PtInsNode extends IVarAbstraction
 	private static boolean add_new_points_to_tuple( SegmentNode pts, SegmentNode pe, 
 			AllocNode obj, PtInsNode qn )
 	{
+		RectangleNode pres = candidateFigure.get();
 		long interI, interJ;
 		int code = 0;
 
@@ -0,0 +1,113 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.internal;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import soot.Body;
+import soot.Local;
+import soot.SootFieldRef;
+import soot.SootMethodRef;
+import soot.Type;
+import soot.Unit;
+import soot.UnitBox;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AnyNewExpr;
+import soot.jimple.CastExpr;
+import soot.jimple.Constant;
+import soot.jimple.FieldRef;
+import soot.jimple.InstanceOfExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.MethodHandle;
+import soot.jimple.ParameterRef;
+import soot.jimple.ThisRef;
+
+/**
+ * Hashes the structure of a body: the kind of every statement, the values it
+ * uses and defines, and the positions of its branch targets. Only names,
+ * types, constants and class names enter the hash, so the same body has the
+ * same fingerprint in every session. No strings are built.
+ */
+public final class BodyFingerprint {
+	private BodyFingerprint() {
+	}
+
+	public static int of(Body b) {
+		Map<Unit, Integer> indices = new IdentityHashMap<Unit, Integer>();
+		for (Unit u : b.getUnits())
+			indices.put(u, indices.size());
+		int h = 1;
+		for (Unit u : b.getUnits()) {
+			h = 31 * h + u.getClass().getName().hashCode();
+			for (ValueBox vb : u.getUseAndDefBoxes())
+				h = 31 * h + of(vb.getValue());
+			for (UnitBox ub : u.getUnitBoxes()) {
+				Integer target = indices.get(ub.getUnit());
+				h = 31 * h + (target == null ? -1 : target);
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Hashes a value without the values it contains, which have boxes of
+	 * their own.
+	 */
+	private static int of(Value v) {
+		int h = v.getClass().getName().hashCode();
+		if (v instanceof Local) {
+			Local l = (Local) v;
+			h = 31 * h + l.getName().hashCode();
+			h = 31 * h + l.getType().hashCode();
+		} else if (v instanceof MethodHandle) {
+			h = 31 * h + of(((MethodHandle) v).getMethodRef());
+		} else if (v instanceof Constant) {
+			h = 31 * h + v.hashCode();
+		} else if (v instanceof InvokeExpr) {
+			h = 31 * h + of(((InvokeExpr) v).getMethodRef());
+		} else if (v instanceof FieldRef) {
+			SootFieldRef f = ((FieldRef) v).getFieldRef();
+			h = 31 * h + f.declaringClass().getName().hashCode();
+			h = 31 * h + f.name().hashCode();
+			h = 31 * h + f.type().hashCode();
+		} else if (v instanceof AnyNewExpr || v instanceof ThisRef) {
+			h = 31 * h + v.getType().hashCode();
+		} else if (v instanceof CastExpr) {
+			h = 31 * h + ((CastExpr) v).getCastType().hashCode();
+		} else if (v instanceof InstanceOfExpr) {
+			h = 31 * h + ((InstanceOfExpr) v).getCheckType().hashCode();
+		} else if (v instanceof ParameterRef) {
+			h = 31 * h + ((ParameterRef) v).getIndex();
+			h = 31 * h + v.getType().hashCode();
+		}
+		return h;
+	}
+
+	private static int of(SootMethodRef m) {
+		int h = m.declaringClass().getName().hashCode();
+		h = 31 * h + m.name().hashCode();
+		for (Type t : m.parameterTypes())
+			h = 31 * h + t.hashCode();
+		h = 31 * h + m.returnType().hashCode();
+		return m.isStatic() ? h + 1 : h;
+	}
+}
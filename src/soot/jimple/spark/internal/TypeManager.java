@@ -226,7 +226,7 @@ public final class TypeManager {
 	    	}
     	}
     	
-        int nBits = pag.getAllocNodeNumberer().size();
+        int nBits = pag.getAllocNodeNumberer().getLastNumber();
         final BitVector mask = new BitVector(nBits);
         
         List<AllocNode> allocs = null;
@@ -259,7 +259,7 @@ public final class TypeManager {
     final private BitVector makeMaskOfInterface(SootClass interf) {
         if (!(interf.isInterface())) throw new RuntimeException();
         
-        BitVector ret = new BitVector(pag.getAllocNodeNumberer().size());
+        BitVector ret = new BitVector(pag.getAllocNodeNumberer().getLastNumber());
         typeMask.put(interf.getType(), ret);
         Collection<SootClass> implementers = fh.getAllImplementersOfInterface(interf);
             
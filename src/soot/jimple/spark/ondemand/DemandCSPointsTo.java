@@ -24,9 +24,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import soot.AnySubType;
 import soot.ArrayType;
@@ -274,29 +280,61 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 
 	protected ValidMatches vMatches;
 	
-	protected Map<Local,PointsToSet> reachingObjectsCache, reachingObjectsCacheNoCGRefinement;
+	protected DemandQueryCache queryCache;
 
     protected boolean useCache;
 
 	private final boolean lazy;
 
+	/**
+	 * per-thread copies of this analysis answering the queries once
+	 * {@link #enableConcurrentQueries()} was called
+	 */
+	private ThreadLocal<DemandCSPointsTo> workers;
+
 	public DemandCSPointsTo(ContextSensitiveInfo csInfo, PAG pag) {
 		this(csInfo, pag, DEFAULT_MAX_TRAVERSAL, DEFAULT_MAX_PASSES, DEFAULT_LAZY);
 	}
 
 	public DemandCSPointsTo(ContextSensitiveInfo csInfo, PAG pag,
 			int maxTraversal, int maxPasses, boolean lazy) {
+		this(csInfo, pag, maxTraversal, maxPasses, lazy, new DemandQueryCache(pag));
+	}
+
+	/**
+	 * Creates an analysis that stores its results in the given cache, which
+	 * may be shared with other instances working on the same PAG.
+	 */
+	public DemandCSPointsTo(ContextSensitiveInfo csInfo, PAG pag,
+			int maxTraversal, int maxPasses, boolean lazy, DemandQueryCache queryCache) {
 		this.csInfo = csInfo;
 		this.pag = pag;
 		this.maxPasses = maxPasses;
 		this.lazy = lazy;
 		this.maxNodesPerPass = maxTraversal / maxPasses;
 		this.heuristicType = HeuristicType.INCR;
-		this.reachingObjectsCache = new HashMap<Local, PointsToSet>();
-		this.reachingObjectsCacheNoCGRefinement = new HashMap<Local, PointsToSet>();
+		this.queryCache = queryCache;
         this.useCache = true;
 	}
 
+	/**
+	 * Creates a worker for the given analysis that shares its read-only
+	 * field maps and its query cache.
+	 */
+	private DemandCSPointsTo(DemandCSPointsTo parent) {
+		this.csInfo = parent.csInfo;
+		this.pag = parent.pag;
+		this.maxPasses = parent.maxPasses;
+		this.lazy = parent.lazy;
+		this.maxNodesPerPass = parent.maxNodesPerPass;
+		this.heuristicType = parent.heuristicType;
+		this.queryCache = parent.queryCache;
+		this.useCache = parent.useCache;
+		this.fieldToStores = parent.fieldToStores;
+		this.fieldToLoads = parent.fieldToLoads;
+		this.vMatches = parent.vMatches;
+	}
+
 	private void init() {
 		this.fieldToStores = SootUtil.storesOnField(pag);
         this.fieldToLoads = SootUtil.loadsOnField(pag);
@@ -316,28 +354,94 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 	}
 
 	public PointsToSet doReachingObjects(Local l) {
+		if(workers!=null) {
+			DemandCSPointsTo worker = workers.get();
+			worker.refineCallGraph = refineCallGraph;
+			worker.heuristicType = heuristicType;
+			worker.useCache = useCache;
+			return worker.doReachingObjects(l);
+		}
 		//lazy initialization
 		if(fieldToStores==null) {
 	        init();
 		}
-		PointsToSet result;
-        Map<Local, PointsToSet> cache;
-	    if(refineCallGraph) {  //we use different caches for different settings  
-            cache = reachingObjectsCache;
-	    } else {
-            cache = reachingObjectsCacheNoCGRefinement;
-	    }
-        result = cache.get(l);           
+		PointsToSet result = null;
+		if(useCache) {
+			//results with and without call graph refinement are kept apart
+			result = queryCache.get(l, refineCallGraph, heuristicType);
+		}
 	    if(result==null) {
     		result = computeReachingObjects(l);
     		if(useCache) {
-	            cache.put(l, result);
+	            queryCache.put(l, refineCallGraph, heuristicType, result);
     		}
 	    } 	    
 	    assert consistentResult(l,result);
 	    return result;
 	}
 
+	/**
+	 * Allows {@link #reachingObjects(Local)} and
+	 * {@link #doReachingObjects(Local)} to be called from several threads at
+	 * once. Each thread then answers its queries with its own copy of the
+	 * per-query state; all threads share the query cache.
+	 */
+	public synchronized void enableConcurrentQueries() {
+		if(workers!=null) {
+			return;
+		}
+		if(fieldToStores==null) {
+	        init();
+		}
+		workers = new ThreadLocal<DemandCSPointsTo>() {
+			@Override
+			protected DemandCSPointsTo initialValue() {
+				return new DemandCSPointsTo(DemandCSPointsTo.this);
+			}
+		};
+	}
+
+	/**
+	 * Computes the refined points-to sets of the given locals, using up to
+	 * <code>numThreads</code> threads. The queries are independent of each
+	 * other and share the query cache.
+	 * 
+	 * @return the points-to set of each local, in the order of
+	 *         <code>locals</code>
+	 */
+	public Map<Local, PointsToSet> reachingObjects(Collection<Local> locals, int numThreads) {
+		Map<Local, PointsToSet> ret = new LinkedHashMap<Local, PointsToSet>();
+		if(numThreads <= 1) {
+			for (Local l : locals) {
+				ret.put(l, doReachingObjects(l));
+			}
+			return ret;
+		}
+		enableConcurrentQueries();
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			Map<Local, Future<PointsToSet>> futures = new LinkedHashMap<Local, Future<PointsToSet>>();
+			for (final Local l : locals) {
+				futures.put(l, executor.submit(new Callable<PointsToSet>() {
+					public PointsToSet call() {
+						return doReachingObjects(l);
+					}
+				}));
+			}
+			for (Map.Entry<Local, Future<PointsToSet>> e : futures.entrySet()) {
+				ret.put(e.getKey(), e.getValue().get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while computing points-to sets", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Points-to query failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return ret;
+	}
+
     /**
      * Returns <code>false</code> if an inconsistent computation occurred, i.e. if result
      * differs from the result computed by {@link #computeReachingObjects(Local)} on l.
@@ -2177,8 +2281,14 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 	 * clears the cache
 	 */
 	public void clearCache() {
-	    reachingObjectsCache.clear();
-        reachingObjectsCacheNoCGRefinement.clear();
+	    queryCache.clear();
+	}
+
+	/**
+	 * @return the cache holding the results of previous queries
+	 */
+	public DemandQueryCache getQueryCache() {
+	    return queryCache;
 	}
 
     public boolean isRefineCallGraph() {
@@ -0,0 +1,531 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.ondemand;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import soot.Body;
+import soot.G;
+import soot.Local;
+import soot.PointsToSet;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AnyNewExpr;
+import soot.jimple.spark.internal.BodyFingerprint;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.LocalVarNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.sets.EmptyPointsToSet;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * Bounded, thread-safe cache of the results of
+ * {@link DemandCSPointsTo#doReachingObjects(Local)}. A single cache can be
+ * shared by several analysis instances and threads working on the same PAG.
+ *
+ * The cache can optionally be backed by a journal file. Every result that is
+ * computed is appended to the journal, and the results in an existing journal
+ * are used to answer queries of a later session on the same program. Results
+ * read back from a journal are context-insensitive projections of the original
+ * results: they contain the same allocation sites, but no calling contexts.
+ * Allocation sites are named by their method and position, not by their
+ * number, so a journal stays usable when other parts of the program change.
+ * The journal records a fingerprint of the body of every method a result
+ * refers to; a result is only reused if none of these bodies has changed.
+ */
+public class DemandQueryCache {
+	public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private static final int MAGIC = 0x44514a4c;
+	private static final int VERSION = 3;
+	private static final byte DESCRIPTOR_RECORD = 0;
+	private static final byte RESULT_RECORD = 1;
+	private static final byte METHOD_RECORD = 2;
+
+	private final PAG pag;
+	private final Cache<Key, PointsToSet> cache;
+	private final AtomicLong journalHits = new AtomicLong();
+
+	/** Results read from the journal, by {@link #persistentKey}. */
+	private final Map<String, String[]> persisted = new ConcurrentHashMap<String, String[]>();
+	private DataOutputStream journal;
+	/** Allocation site descriptors in the journal, by their number. */
+	private final List<String> journalDescriptors = new ArrayList<String>();
+	private final Map<String, Integer> journalIds = new HashMap<String, Integer>();
+	/** Fingerprints of the method bodies in the journal, by signature. */
+	private final Map<String, Integer> journalFingerprints = new ConcurrentHashMap<String, Integer>();
+	/** The fingerprint of the body each method had when it was computed. */
+	private final Map<SootMethod, Pair<Body, Integer>> fingerprints = new ConcurrentHashMap<SootMethod, Pair<Body, Integer>>();
+
+	private Map<AllocNode, String> allocToDescriptor;
+	private Map<String, AllocNode> descriptorToAlloc;
+	/** The allocation sites the descriptors were computed for: the last number and the count. */
+	private int describedLastAlloc;
+	private int describedAllocs;
+
+	public DemandQueryCache(PAG pag) {
+		this(pag, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * @param maximumSize
+	 *            the number of results kept in memory; the least recently used
+	 *            results are evicted first
+	 */
+	public DemandQueryCache(PAG pag, long maximumSize) {
+		this.pag = pag;
+		this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+	}
+
+	public PointsToSet get(Local l, boolean refineCallGraph, HeuristicType heuristic) {
+		Key key = new Key(l, refineCallGraph, heuristic);
+		PointsToSet ret = cache.getIfPresent(key);
+		if (ret == null && !persisted.isEmpty()) {
+			LocalVarNode v = pag.findLocalVarNode(l);
+			String pk = persistentKey(v, l, refineCallGraph, heuristic);
+			if (pk != null) {
+				String[] descriptors = persisted.get(pk);
+				if (descriptors != null) {
+					ret = isUnchanged(v.getMethod()) ? decode(descriptors) : null;
+					if (ret == null) {
+						// the program has changed, do not try again
+						persisted.remove(pk);
+					} else {
+						journalHits.incrementAndGet();
+						cache.put(key, ret);
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	public void put(Local l, boolean refineCallGraph, HeuristicType heuristic, PointsToSet result) {
+		cache.put(new Key(l, refineCallGraph, heuristic), result);
+		if (journal != null) {
+			LocalVarNode v = pag.findLocalVarNode(l);
+			String pk = persistentKey(v, l, refineCallGraph, heuristic);
+			List<AllocNode> allocs = allocs(result);
+			if (pk == null || allocs == null)
+				return;
+			String[] descriptors = encode(allocs);
+			if (descriptors == null)
+				return;
+			Set<SootMethod> methods = new HashSet<SootMethod>();
+			methods.add(v.getMethod());
+			for (AllocNode an : allocs)
+				if (an.getMethod() != null)
+					methods.add(an.getMethod());
+			append(pk, descriptors, methods);
+		}
+	}
+
+	/**
+	 * Discards the results held in memory. Results in the journal are kept.
+	 */
+	public void clear() {
+		cache.invalidateAll();
+		fingerprints.clear();
+		synchronized (this) {
+			allocToDescriptor = null;
+			descriptorToAlloc = null;
+		}
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return hit, miss and eviction counts of the in-memory cache
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	/**
+	 * @return the number of queries that were answered from the journal
+	 */
+	public long getJournalHitCount() {
+		return journalHits.get();
+	}
+
+	public void printStats() {
+		CacheStats stats = cache.stats();
+		long fromJournal = journalHits.get();
+		G.v().out.println("[Spark] Demand query cache: " + cache.size() + " entries, " + stats.hitCount() + " hits, "
+				+ fromJournal + " read from journal, " + (stats.missCount() - fromJournal) + " misses, "
+				+ stats.evictionCount() + " evictions");
+	}
+
+	/**
+	 * Reads the results stored in the given journal and appends all results
+	 * computed from now on to it. Results referring to methods whose bodies
+	 * have changed, or to allocation sites that no longer exist, are ignored.
+	 */
+	public synchronized void useJournal(File file) {
+		if (journal != null)
+			throw new RuntimeException("Demand query cache already uses a journal");
+		boolean append = file.exists() && readJournal(file);
+		try {
+			journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append)));
+			if (!append) {
+				journal.writeInt(MAGIC);
+				journal.writeInt(VERSION);
+				journal.flush();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Could not open demand query journal " + file, e);
+		}
+	}
+
+	/** Flushes and closes the journal, if any. */
+	public synchronized void close() {
+		if (journal == null)
+			return;
+		try {
+			journal.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not close demand query journal", e);
+		}
+		journal = null;
+	}
+
+	private boolean readJournal(File file) {
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(file.toPath());
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read demand query journal " + file, e);
+		}
+		ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+		DataInputStream in = new DataInputStream(buffer);
+		long valid = 0;
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				G.v().out.println("[Spark] Discarding demand query journal of another version " + file);
+				return false;
+			}
+			valid = bytes.length - buffer.available();
+			while (buffer.available() > 0) {
+				byte kind = in.readByte();
+				if (kind == DESCRIPTOR_RECORD) {
+					String d = in.readUTF();
+					journalIds.put(d, journalDescriptors.size());
+					journalDescriptors.add(d);
+				} else if (kind == METHOD_RECORD) {
+					String signature = in.readUTF();
+					journalFingerprints.put(signature, in.readInt());
+				} else {
+					String key = in.readUTF();
+					String[] descriptors = new String[in.readInt()];
+					for (int i = 0; i < descriptors.length; i++)
+						descriptors[i] = journalDescriptors.get(in.readInt());
+					persisted.put(key, descriptors);
+				}
+				valid = bytes.length - buffer.available();
+			}
+		} catch (IOException e) {
+			// the last record was only partially written
+		} catch (IndexOutOfBoundsException e) {
+			throw new RuntimeException("Corrupt demand query journal " + file, e);
+		}
+		if (valid == 0)
+			return false;
+		if (valid < bytes.length) {
+			// drop the partial record so that new records can be appended
+			try {
+				RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try {
+					raf.setLength(valid);
+				} finally {
+					raf.close();
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Could not repair demand query journal " + file, e);
+			}
+		}
+		return true;
+	}
+
+	private synchronized void append(String key, String[] descriptors, Set<SootMethod> methods) {
+		if (journal == null)
+			return;
+		// serialize the complete record first so that an over-long string
+		// constant does not leave a partial record behind
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream record = new DataOutputStream(bytes);
+		List<String> newDescriptors = new ArrayList<String>();
+		Map<String, Integer> newFingerprints = new HashMap<String, Integer>();
+		int[] ids = new int[descriptors.length];
+		try {
+			for (SootMethod m : methods) {
+				String signature = m.getSignature();
+				if (!journalFingerprints.containsKey(signature)) {
+					int fingerprint = fingerprint(m);
+					newFingerprints.put(signature, fingerprint);
+					record.writeByte(METHOD_RECORD);
+					record.writeUTF(signature);
+					record.writeInt(fingerprint);
+				}
+			}
+			for (int i = 0; i < descriptors.length; i++) {
+				Integer id = journalIds.get(descriptors[i]);
+				if (id == null) {
+					id = journalDescriptors.size() + newDescriptors.size();
+					newDescriptors.add(descriptors[i]);
+					record.writeByte(DESCRIPTOR_RECORD);
+					record.writeUTF(descriptors[i]);
+				}
+				ids[i] = id;
+			}
+			record.writeByte(RESULT_RECORD);
+			record.writeUTF(key);
+			record.writeInt(ids.length);
+			for (int id : ids)
+				record.writeInt(id);
+		} catch (UTFDataFormatException e) {
+			return;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		try {
+			bytes.writeTo(journal);
+			journal.flush();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write demand query journal", e);
+		}
+		for (String d : newDescriptors) {
+			journalIds.put(d, journalDescriptors.size());
+			journalDescriptors.add(d);
+		}
+		journalFingerprints.putAll(newFingerprints);
+	}
+
+	/**
+	 * Names a query independently of the objects of the current session, or
+	 * returns <code>null</code> if the local is not in the PAG.
+	 */
+	private static String persistentKey(LocalVarNode v, Local l, boolean refineCallGraph, HeuristicType heuristic) {
+		if (v == null || v.getMethod() == null)
+			return null;
+		return v.getMethod().getSignature() + "\t" + l.getName() + "\t" + refineCallGraph + "\t" + heuristic;
+	}
+
+	/**
+	 * Returns the allocation sites in the given set, or <code>null</code> if
+	 * the set is of an unknown kind.
+	 */
+	private static List<AllocNode> allocs(PointsToSet set) {
+		final List<AllocNode> allocs = new ArrayList<AllocNode>();
+		if (set instanceof AllocAndContextSet) {
+			for (AllocAndContext ac : (AllocAndContextSet) set)
+				allocs.add(ac.alloc);
+		} else if (set instanceof WrappedPointsToSet) {
+			((WrappedPointsToSet) set).getWrapped().forall(new P2SetVisitor() {
+				public void visit(Node n) {
+					allocs.add((AllocNode) n);
+				}
+			});
+		} else if (!(set instanceof EmptyPointsToSet)) {
+			return null;
+		}
+		return allocs;
+	}
+
+	/**
+	 * Returns the descriptors of the given allocation sites, or
+	 * <code>null</code> if one of them has no unique descriptor.
+	 */
+	private String[] encode(List<AllocNode> allocs) {
+		Map<AllocNode, String> descriptors = allocDescriptors();
+		String[] ret = new String[allocs.size()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = descriptors.get(allocs.get(i));
+			if (ret[i] == null)
+				return null;
+		}
+		return ret;
+	}
+
+	/**
+	 * Rebuilds a points-to set from allocation site descriptors, or returns
+	 * <code>null</code> if one of the allocation sites no longer exists or its
+	 * method has changed.
+	 */
+	private PointsToSet decode(String[] descriptors) {
+		Map<String, AllocNode> allocs;
+		synchronized (this) {
+			allocDescriptors();
+			allocs = descriptorToAlloc;
+		}
+		PointsToSetInternal ret = pag.getSetFactory().newSet(null, pag);
+		for (String d : descriptors) {
+			AllocNode an = allocs.get(d);
+			if (an == null || (an.getMethod() != null && !isUnchanged(an.getMethod())))
+				return null;
+			ret.add(an);
+		}
+		return new WrappedPointsToSet(ret);
+	}
+
+	/**
+	 * Returns whether the body of m has the fingerprint recorded in the
+	 * journal.
+	 */
+	private boolean isUnchanged(SootMethod m) {
+		Integer recorded = journalFingerprints.get(m.getSignature());
+		return recorded != null && recorded == fingerprint(m);
+	}
+
+	/**
+	 * Returns the fingerprint of the body of m. It is computed again when the
+	 * method gets another body; {@link #clear()} discards the fingerprints of
+	 * bodies that were changed in place.
+	 */
+	private int fingerprint(SootMethod m) {
+		Body b = m.hasActiveBody() ? m.getActiveBody() : null;
+		Pair<Body, Integer> known = fingerprints.get(m);
+		if (known != null && known.getO1() == b)
+			return known.getO2();
+		int ret = b == null ? 1 : BodyFingerprint.of(b);
+		fingerprints.put(m, new Pair<Body, Integer>(b, ret));
+		return ret;
+	}
+
+	/**
+	 * Names every allocation site by its method, the index of the unit holding
+	 * its expression and its type, which do not depend on the order in which
+	 * the PAG was built. Allocation sites outside methods, such as string
+	 * constants, are named by their expression. Sites without a unique name
+	 * are left out. The names are computed again when allocation sites have
+	 * been added to or removed from the PAG.
+	 */
+	private synchronized Map<AllocNode, String> allocDescriptors() {
+		int lastAlloc = pag.getAllocNodeNumberer().getLastNumber();
+		int allocCount = pag.getAllocNodeNumberer().size();
+		if (allocToDescriptor == null || describedLastAlloc != lastAlloc || describedAllocs != allocCount) {
+			Map<AllocNode, String> toDescriptor = new IdentityHashMap<AllocNode, String>();
+			Map<String, AllocNode> fromDescriptor = new HashMap<String, AllocNode>();
+			Set<String> ambiguous = new HashSet<String>();
+			Map<SootMethod, Map<Value, Integer>> unitIndices = new HashMap<SootMethod, Map<Value, Integer>>();
+			for (AllocNode an : pag.getAllocNodeNumberer()) {
+				String d = descriptor(an, unitIndices);
+				if (d == null)
+					continue;
+				if (fromDescriptor.put(d, an) != null)
+					ambiguous.add(d);
+				toDescriptor.put(an, d);
+			}
+			fromDescriptor.keySet().removeAll(ambiguous);
+			toDescriptor.values().removeAll(ambiguous);
+			descriptorToAlloc = fromDescriptor;
+			allocToDescriptor = toDescriptor;
+			describedLastAlloc = lastAlloc;
+			describedAllocs = allocCount;
+		}
+		return allocToDescriptor;
+	}
+
+	private static String descriptor(AllocNode an, Map<SootMethod, Map<Value, Integer>> unitIndices) {
+		SootMethod m = an.getMethod();
+		if (m == null)
+			return "G" + an.getNewExpr() + "#" + an.getType();
+		Object expr = an.getNewExpr();
+		String dimension = "";
+		if (expr instanceof Pair) {
+			// one site per dimension of a multi-dimensional array
+			dimension = "/" + ((Pair<?, ?>) expr).getO2();
+			expr = ((Pair<?, ?>) expr).getO1();
+		}
+		if (!(expr instanceof Value))
+			return "N" + m.getSignature() + "#" + expr + "#" + an.getType();
+		Map<Value, Integer> indices = unitIndices.get(m);
+		if (indices == null) {
+			indices = new IdentityHashMap<Value, Integer>();
+			if (m.hasActiveBody()) {
+				int i = 0;
+				for (Unit u : m.getActiveBody().getUnits()) {
+					for (ValueBox vb : u.getUseBoxes()) {
+						if (vb.getValue() instanceof AnyNewExpr)
+							indices.put(vb.getValue(), i);
+					}
+					i++;
+				}
+			}
+			unitIndices.put(m, indices);
+		}
+		Integer unit = indices.get(expr);
+		if (unit == null)
+			return null;
+		return "N" + m.getSignature() + "#" + unit + dimension + "#" + an.getType();
+	}
+
+	private static final class Key {
+		final Local local;
+		final boolean refineCallGraph;
+		final HeuristicType heuristic;
+
+		Key(Local local, boolean refineCallGraph, HeuristicType heuristic) {
+			this.local = local;
+			this.refineCallGraph = refineCallGraph;
+			this.heuristic = heuristic;
+		}
+
+		public int hashCode() {
+			return (System.identityHashCode(local) * 31 + (refineCallGraph ? 1 : 0)) * 31 + heuristic.hashCode();
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return local == k.local && refineCallGraph == k.refineCallGraph && heuristic == k.heuristic;
+		}
+	}
+}
@@ -93,6 +93,28 @@ public final class MethodPAG {
             pag.addEdge( src, dst );
         }
     }
+    /** Removes the edges of this method from the main PAG, and forgets this
+     * MethodPAG, so that the method is built again the next time it is
+     * needed. Only methods added without a context can be removed. */
+    public void removeFromPAG() {
+        if( addedContexts != null ) throw new RuntimeException( "Method "+method+" was added with a context" );
+        if( hasBeenAdded ) {
+            removeEdges( internalReader.clone() );
+            removeEdges( inReader.clone() );
+            removeEdges( outReader.clone() );
+            hasBeenAdded = false;
+        }
+        if( G.v().MethodPAG_methodToPag.get( method ) == this ) {
+            G.v().MethodPAG_methodToPag.remove( method );
+        }
+    }
+    private void removeEdges( QueueReader<Node> reader ) {
+        while(reader.hasNext()) {
+            Node src = (Node) reader.next();
+            Node dst = (Node) reader.next();
+            pag.removeEdge( src, dst );
+        }
+    }
     public void addInternalEdge( Node src, Node dst ) {
         if( src == null ) return;
         internalEdges.add( src );
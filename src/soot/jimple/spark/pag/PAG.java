@@ -87,6 +87,13 @@ import soot.util.queue.QueueReader;
 /**
  * Pointer assignment graph.
  * 
+ * While {@link #setConcurrentBuild(boolean)} is on, the methods that create
+ * variable, allocation and field reference nodes and the methods that add
+ * edges lock the graph, so that the parts of the graph that belong to
+ * different methods can be built concurrently. Nodes are numbered in the order
+ * in which they are created, so the numbering of a concurrently built graph
+ * differs from run to run; the points-to sets do not.
+ * 
  * @author Ondrej Lhotak
  */
 public class PAG implements PointsToAnalysis {
@@ -304,6 +311,75 @@ public class PAG implements PointsToAnalysis {
 		return addToMap(assignInstance, from, to) | addToMap(assignInstanceInv, to, from);
 	}
 
+	/**
+	 * Removes an edge from the graph, returning false if it was not there.
+	 * The points-to sets that were computed along the edge are not changed.
+	 */
+	public final boolean removeEdge(Node from, Node to) {
+		from = from.getReplacement();
+		to = to.getReplacement();
+		if (from instanceof VarNode) {
+			if (to instanceof VarNode) {
+				boolean ret = removeFromMap(simple, (VarNode) from, to) | removeFromMap(simpleInv, (VarNode) to, from);
+				if (opts.simple_edges_bidirectional()) {
+					ret = removeFromMap(simple, (VarNode) to, from) | removeFromMap(simpleInv, (VarNode) from, to)
+							| ret;
+				}
+				return ret;
+			} else if (to instanceof FieldRefNode) {
+				return removeFromMap(store, (VarNode) from, to) | removeFromMap(storeInv, (FieldRefNode) to, from);
+			} else if (to instanceof NewInstanceNode) {
+				return removeFromMap(newInstance, (VarNode) from, to)
+						| removeFromMap(newInstanceInv, (NewInstanceNode) to, from);
+			} else
+				throw new RuntimeException("Invalid node type");
+		} else if (from instanceof FieldRefNode) {
+			return removeFromMap(load, (FieldRefNode) from, to) | removeFromMap(loadInv, (VarNode) to, from);
+		} else if (from instanceof NewInstanceNode) {
+			return removeFromMap(assignInstance, (NewInstanceNode) from, to)
+					| removeFromMap(assignInstanceInv, (VarNode) to, from);
+		} else {
+			return removeFromMap(alloc, (AllocNode) from, to) | removeFromMap(allocInv, (VarNode) to, from);
+		}
+	}
+
+	/**
+	 * Unregisters a local variable or allocation node whose edges have all
+	 * been removed, together with the field reference nodes based on it. The
+	 * node is no longer found by its variable or allocation site, and no longer
+	 * iterated by the numberers; its number is not reused.
+	 */
+	public void removeNode(Node n) {
+		if (n instanceof LocalVarNode) {
+			LocalVarNode vn = (LocalVarNode) n;
+			Object value = vn.getVariable();
+			if (value instanceof Local) {
+				if (localToNodeMap.get((Local) value) == vn)
+					localToNodeMap.put((Local) value, null);
+			} else if (valToLocalVarNode.get(value) == vn) {
+				valToLocalVarNode.remove(value);
+			}
+			for (FieldRefNode fr : vn.getAllFieldRefs())
+				fieldRefNodeNumberer.remove(fr);
+			dereferences.remove(vn);
+			varNodeNumberer.remove(vn);
+		} else if (n instanceof AllocNode) {
+			AllocNode an = (AllocNode) n;
+			Object newExpr = an.getNewExpr();
+			if (valToAllocNode.get(newExpr) == an)
+				valToAllocNode.remove(newExpr);
+			else if (valToReflAllocNode.get(newExpr, an.getType()) == an)
+				valToReflAllocNode.remove(newExpr, an.getType());
+			for (AllocDotField df : an.getAllFieldRefs())
+				allocDotFieldNodeNumberer.remove(df);
+			allocNodeNumberer.remove(an);
+		} else {
+			throw new RuntimeException("Cannot remove " + n);
+		}
+		if (nodeToTag != null)
+			nodeToTag.remove(n);
+	}
+
 	/** Node uses this to notify PAG that n2 has been merged into n1. */
 	void mergedWith(Node n1, Node n2) {
 		if (n1.equals(n2))
@@ -474,6 +550,14 @@ public class PAG implements PointsToAnalysis {
 		return lookup(allocInv, key);
 	}
 
+	public Node[] newInstanceInvLookup(NewInstanceNode key) {
+		return lookup(newInstanceInv, key);
+	}
+
+	public Node[] assignInstanceInvLookup(VarNode key) {
+		return lookup(assignInstanceInv, key);
+	}
+
 	public Set<VarNode> simpleSources() {
 		return simple.keySet();
 	}
@@ -587,6 +671,15 @@ public class PAG implements PointsToAnalysis {
 	}
 
 	public AllocNode makeAllocNode(Object newExpr, Type type, SootMethod m) {
+		if (concurrentBuild) {
+			synchronized (this) {
+				return doMakeAllocNode(newExpr, type, m);
+			}
+		}
+		return doMakeAllocNode(newExpr, type, m);
+	}
+
+	private AllocNode doMakeAllocNode(Object newExpr, Type type, SootMethod m) {
 		if (opts.types_for_sites() || opts.vta())
 			newExpr = type;
 		
@@ -616,6 +709,15 @@ public class PAG implements PointsToAnalysis {
 	}
 
 	public AllocNode makeStringConstantNode(String s) {
+		if (concurrentBuild) {
+			synchronized (this) {
+				return doMakeStringConstantNode(s);
+			}
+		}
+		return doMakeStringConstantNode(s);
+	}
+
+	private AllocNode doMakeStringConstantNode(String s) {
 		if (opts.types_for_sites() || opts.vta())
 			return makeAllocNode(RefType.v("java.lang.String"), RefType.v("java.lang.String"), null);
 		StringConstantNode ret = (StringConstantNode) valToAllocNode.get(s);
@@ -628,6 +730,15 @@ public class PAG implements PointsToAnalysis {
 	}
 
 	public AllocNode makeClassConstantNode(ClassConstant cc) {
+		if (concurrentBuild) {
+			synchronized (this) {
+				return doMakeClassConstantNode(cc);
+			}
+		}
+		return doMakeClassConstantNode(cc);
+	}
+
+	private AllocNode doMakeClassConstantNode(ClassConstant cc) {
 		if (opts.types_for_sites() || opts.vta())
 			return makeAllocNode(RefType.v("java.lang.Class"), RefType.v("java.lang.Class"), null);
 		ClassConstantNode ret = (ClassConstantNode) valToAllocNode.get(cc);
@@ -667,6 +778,15 @@ public class PAG implements PointsToAnalysis {
 	 * Finds or creates the GlobalVarNode for the variable value, of type type.
 	 */
 	public GlobalVarNode makeGlobalVarNode(Object value, Type type) {
+		if (concurrentBuild) {
+			synchronized (this) {
+				return doMakeGlobalVarNode(value, type);
+			}
+		}
+		return doMakeGlobalVarNode(value, type);
+	}
+
+	private GlobalVarNode doMakeGlobalVarNode(Object value, Type type) {
 		if (opts.rta()) {
 			value = null;
 			type = RefType.v("java.lang.Object");
@@ -697,6 +817,15 @@ public class PAG implements PointsToAnalysis {
 	 * Finds or creates the LocalVarNode for the variable value, of type type.
 	 */
 	public LocalVarNode makeLocalVarNode(Object value, Type type, SootMethod method) {
+		if (concurrentBuild) {
+			synchronized (this) {
+				return doMakeLocalVarNode(value, type, method);
+			}
+		}
+		return doMakeLocalVarNode(value, type, method);
+	}
+
+	private LocalVarNode doMakeLocalVarNode(Object value, Type type, SootMethod method) {
 		if (opts.rta()) {
 			value = null;
 			type = RefType.v("java.lang.Object");
@@ -726,6 +855,15 @@ public class PAG implements PointsToAnalysis {
 	}
 
 	public NewInstanceNode makeNewInstanceNode(Value value, Type type, SootMethod method) {
+		if (concurrentBuild) {
+			synchronized (this) {
+				return doMakeNewInstanceNode(value, type, method);
+			}
+		}
+		return doMakeNewInstanceNode(value, type, method);
+	}
+
+	private NewInstanceNode doMakeNewInstanceNode(Value value, Type type, SootMethod method) {
 		NewInstanceNode node = newInstToNodeMap.get(value);
 		if (node == null) {
 			node = new NewInstanceNode(this, value, type);
@@ -827,6 +965,15 @@ public class PAG implements PointsToAnalysis {
 	 * of type type.
 	 */
 	public FieldRefNode makeFieldRefNode(VarNode base, SparkField field) {
+		if (concurrentBuild) {
+			synchronized (this) {
+				return doMakeFieldRefNode(base, field);
+			}
+		}
+		return doMakeFieldRefNode(base, field);
+	}
+
+	private FieldRefNode doMakeFieldRefNode(VarNode base, SparkField field) {
 		FieldRefNode ret = base.dot(field);
 		if (ret == null) {
 			ret = new FieldRefNode(this, base, field);
@@ -935,6 +1082,15 @@ public class PAG implements PointsToAnalysis {
 
 	/** Adds an edge to the graph, returning false if it was already there. */
 	public final boolean addEdge(Node from, Node to) {
+		if (concurrentBuild) {
+			synchronized (this) {
+				return doAddEdge(from, to);
+			}
+		}
+		return doAddEdge(from, to);
+	}
+
+	private boolean doAddEdge(Node from, Node to) {
 		from = from.getReplacement();
 		to = to.getReplacement();
 		if (from instanceof VarNode) {
@@ -987,7 +1143,21 @@ public class PAG implements PointsToAnalysis {
 	 * Adds the base of a dereference to the list of dereferenced variables.
 	 */
 	public void addDereference(VarNode base) {
-		dereferences.add(base);
+		if (concurrentBuild) {
+			synchronized (this) {
+				dereferences.add(base);
+			}
+		} else {
+			dereferences.add(base);
+		}
+	}
+
+	/**
+	 * Makes node creation and edge insertion lock the graph, while method PAGs
+	 * are built by several threads.
+	 */
+	public void setConcurrentBuild(boolean concurrentBuild) {
+		this.concurrentBuild = concurrentBuild;
 	}
 
 	/** Returns list of dereferences variables. */
@@ -1425,6 +1595,28 @@ public class PAG implements PointsToAnalysis {
 		return ((Set<Node>) valueList).add(value);
 	}
 
+	protected <K extends Node> boolean removeFromMap(Map<K, Object> m, K key, Node value) {
+		Object valueList = m.get(key);
+
+		if (valueList == null) {
+			return false;
+		} else if (!(valueList instanceof Set)) {
+			Node[] ar = (Node[]) valueList;
+			HashSet<Node> vl = new HashSet<Node>(ar.length);
+			for (Node element : ar)
+				vl.add(element);
+			valueList = vl;
+		}
+		Set<Node> vl = (Set<Node>) valueList;
+		boolean ret = vl.remove(value);
+		if (vl.isEmpty()) {
+			m.remove(key);
+		} else if (ret) {
+			m.put(key, vl);
+		}
+		return ret;
+	}
+
 	private boolean runGeomPTA = false;
 	protected Map<Pair<Node, Node>, Set<Edge>> assign2edges = new HashMap<Pair<Node, Node>, Set<Edge>>();
 	private final Map<Object, LocalVarNode> valToLocalVarNode = new HashMap<Object, LocalVarNode>(1000);
@@ -1439,6 +1631,7 @@ public class PAG implements PointsToAnalysis {
 	private final Map<Value, NewInstanceNode> newInstToNodeMap = new HashMap<Value, NewInstanceNode>();
 	public int maxFinishNumber = 0;
 	private Map<Node, Tag> nodeToTag;
+	private boolean concurrentBuild = false;
 	private final GlobalNodeFactory nodeFactory = new GlobalNodeFactory(this);
 
 	public GlobalNodeFactory nodeFactory() {
@@ -31,7 +31,7 @@ public final class BitPointsToSet extends PointsToSetInternal {
     public BitPointsToSet( Type type, PAG pag ) {
         super( type );
         this.pag = pag;
-        bits = new BitVector( pag.getAllocNodeNumberer().size() );
+        bits = new BitVector( pag.getAllocNodeNumberer().getLastNumber() );
     }
     /** Returns true if this set contains no run-time objects. */
     public final boolean isEmpty() {
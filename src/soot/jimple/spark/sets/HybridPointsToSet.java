@@ -153,7 +153,7 @@ public final class HybridPointsToSet extends PointsToSetInternal {
     protected final void convertToBits() {
         if( bits != null ) return;
 //		++numBitVectors;
-        bits = new BitVector( pag.getAllocNodeNumberer().size() );
+        bits = new BitVector( pag.getAllocNodeNumberer().getLastNumber() );
         for (Node node : nodes) {
             if (node != null) {
                 fastAdd(node);
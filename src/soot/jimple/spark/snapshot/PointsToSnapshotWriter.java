@@ -0,0 +1,391 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.AnySubType;
+import soot.Body;
+import soot.Local;
+import soot.Scene;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.spark.pag.AllocDotField;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.ClassConstantNode;
+import soot.jimple.spark.pag.GlobalVarNode;
+import soot.jimple.spark.pag.LocalVarNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.SparkField;
+import soot.jimple.spark.pag.StringConstantNode;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+
+/**
+ * Writes the solved points-to relation of a {@link PAG}, the metadata of its
+ * allocation sites and the call graph to a compact binary snapshot that can be
+ * queried later through {@link SnapshotPointsToAnalysis} without re-running
+ * Spark.
+ *
+ * <p>
+ * The file consists of a header, a number of sections of big-endian 32-bit
+ * integers and a fixed-size trailer holding the offset and record count of
+ * every section, so that the reader can map the file and address all records
+ * directly. Identical points-to sets are stored only once. Methods are
+ * referenced by the name of their class and their subsignature, since
+ * signatures may contain quoted names that Scene cannot look up.
+ * </p>
+ */
+public class PointsToSnapshotWriter {
+	static final int MAGIC = 0x53505453; // "SPTS"
+	static final int VERSION = 1;
+
+	static final int FLAG_FIELD_BASED = 1;
+
+	static final int ALLOC_NEW = 0;
+	static final int ALLOC_STRING_CONSTANT = 1;
+	static final int ALLOC_CLASS_CONSTANT = 2;
+	static final int ALLOC_KIND_MASK = 0xff;
+	/** Set on sites whose type is an {@link AnySubType} of the stored type. */
+	static final int ALLOC_ANY_SUBTYPE = 0x100;
+
+	/** Key used for the array element pseudo-field. */
+	static final String ARRAY_ELEMENT_KEY = "[]";
+
+	/** Number of int-sized entries in the trailer, including the magic. */
+	static final int TRAILER_INTS = 16;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final PAG pag;
+	private final File file;
+
+	private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+	private final Map<SetKey, Integer> sets = new HashMap<SetKey, Integer>();
+	private int[] allocIndex;
+
+	private DataOutputStream out;
+
+	public PointsToSnapshotWriter(PAG pag, String output_dir) {
+		this(pag, new File(output_dir, "spark.snapshot"));
+	}
+
+	public PointsToSnapshotWriter(PAG pag, File file) {
+		this.pag = pag;
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/** Writes the snapshot. */
+	public void dump() {
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+			try {
+				write();
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't write points-to snapshot " + file, e);
+		}
+	}
+
+	private void write() throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(pag.getOpts().field_based() || pag.getOpts().vta() ? FLAG_FIELD_BASED : 0);
+
+		// Allocation sites get dense indices in numbering order
+		List<AllocNode> allocs = new ArrayList<AllocNode>();
+		allocIndex = new int[pag.getAllocNodeNumberer().getLastNumber() + 1];
+		for (AllocNode an : pag.getAllocNodeNumberer()) {
+			ensureAllocIndexCapacity(an.getNumber());
+			allocIndex[an.getNumber()] = allocs.size();
+			allocs.add(an);
+		}
+
+		// Section 1: shared points-to sets. They are streamed out first so that
+		// all later records can refer to them by offset.
+		final int setsOffset = out.size();
+
+		Map<SootMethod, List<LocalVarNode>> methodToLocals = new LinkedHashMap<SootMethod, List<LocalVarNode>>();
+		List<int[]> globals = new ArrayList<int[]>();
+		for (VarNode vn : pag.getVarNodeNumberer()) {
+			if (vn instanceof LocalVarNode) {
+				LocalVarNode lvn = (LocalVarNode) vn;
+				if (!(lvn.getVariable() instanceof Local) || lvn.getMethod() == null)
+					continue;
+				List<LocalVarNode> l = methodToLocals.get(lvn.getMethod());
+				if (l == null) {
+					l = new ArrayList<LocalVarNode>();
+					methodToLocals.put(lvn.getMethod(), l);
+				}
+				l.add(lvn);
+			} else if (vn instanceof GlobalVarNode) {
+				Object var = vn.getVariable();
+				if (!(var instanceof SparkField))
+					continue;
+				int set = writeSet(vn.getP2Set());
+				if (set >= 0)
+					globals.add(new int[] { string(fieldKey((SparkField) var)), set });
+			}
+		}
+
+		List<int[]> methods = new ArrayList<int[]>();
+		List<int[]> locals = new ArrayList<int[]>();
+		for (Map.Entry<SootMethod, List<LocalVarNode>> e : methodToLocals.entrySet()) {
+			int first = locals.size();
+			for (LocalVarNode lvn : e.getValue()) {
+				int set = writeSet(lvn.getP2Set());
+				if (set >= 0)
+					locals.add(new int[] { string(((Local) lvn.getVariable()).getName()), set });
+			}
+			if (locals.size() > first) {
+				SootMethod m = e.getKey();
+				methods.add(new int[] { string(m.getDeclaringClass().getName()), string(m.getSubSignature()), first,
+						locals.size() - first });
+			}
+		}
+
+		List<int[]> fields = new ArrayList<int[]>();
+		for (AllocDotField adf : pag.getAllocDotFieldNodeNumberer()) {
+			int set = writeSet(adf.getP2Set());
+			if (set >= 0)
+				fields.add(new int[] { allocIndex[adf.getBase().getNumber()], string(fieldKey(adf.getField())), set });
+		}
+		// The reader binary-searches field records by base allocation site
+		Collections.sort(fields, new Comparator<int[]>() {
+			public int compare(int[] o1, int[] o2) {
+				if (o1[0] != o2[0])
+					return o1[0] < o2[0] ? -1 : 1;
+				return o1[1] < o2[1] ? -1 : (o1[1] == o2[1] ? 0 : 1);
+			}
+		});
+
+		// Section 2: allocation sites
+		final int allocsOffset = out.size();
+		for (AllocNode an : allocs) {
+			int kind;
+			String desc;
+			if (an instanceof StringConstantNode) {
+				kind = ALLOC_STRING_CONSTANT;
+				desc = ((StringConstantNode) an).getString();
+			} else if (an instanceof ClassConstantNode) {
+				kind = ALLOC_CLASS_CONSTANT;
+				desc = ((ClassConstantNode) an).getClassConstant().getValue();
+			} else {
+				kind = ALLOC_NEW;
+				desc = String.valueOf(an.getNewExpr());
+			}
+			Type type = an.getType();
+			if (type instanceof AnySubType) {
+				kind |= ALLOC_ANY_SUBTYPE;
+				type = ((AnySubType) type).getBase();
+			}
+			out.writeInt(kind);
+			out.writeInt(type == null ? -1 : string(type.toString()));
+			out.writeInt(an.getMethod() == null ? -1 : string(an.getMethod().getSignature()));
+			out.writeInt(string(desc));
+		}
+
+		final int methodsOffset = writeRecords(methods);
+		final int localsOffset = writeRecords(locals);
+		final int globalsOffset = writeRecords(globals);
+		final int fieldsOffset = writeRecords(fields);
+
+		// Section: call graph edges, identifying call sites by their position
+		// in the body of the caller
+		List<int[]> edges = new ArrayList<int[]>();
+		if (Scene.v().hasCallGraph()) {
+			CallGraph cg = Scene.v().getCallGraph();
+			Map<SootMethod, Map<Unit, Integer>> unitIndices = new HashMap<SootMethod, Map<Unit, Integer>>();
+			for (Edge e : cg) {
+				if (e.src() == null || e.tgt() == null)
+					continue;
+				int unit = -1;
+				if (e.srcUnit() != null) {
+					Integer i = unitIndices(unitIndices, e.src()).get(e.srcUnit());
+					if (i == null)
+						continue;
+					unit = i;
+				}
+				edges.add(new int[] { string(e.src().getDeclaringClass().getName()), string(e.src().getSubSignature()),
+						unit, string(e.tgt().getDeclaringClass().getName()), string(e.tgt().getSubSignature()),
+						string(e.kind().name()) });
+			}
+		}
+		final int edgesOffset = writeRecords(edges);
+
+		// Section: string pool followed by its offset table
+		int[] stringOffsets = new int[strings.size()];
+		int i = 0;
+		for (String s : strings.keySet()) {
+			stringOffsets[i++] = out.size();
+			byte[] bytes = s.getBytes(UTF8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		final int stringIndexOffset = out.size();
+		for (int off : stringOffsets)
+			out.writeInt(off);
+
+		checkSize();
+
+		// Trailer
+		out.writeInt(setsOffset);
+		out.writeInt(allocsOffset);
+		out.writeInt(allocs.size());
+		out.writeInt(methodsOffset);
+		out.writeInt(methods.size());
+		out.writeInt(localsOffset);
+		out.writeInt(locals.size());
+		out.writeInt(globalsOffset);
+		out.writeInt(globals.size());
+		out.writeInt(fieldsOffset);
+		out.writeInt(fields.size());
+		out.writeInt(edgesOffset);
+		out.writeInt(edges.size());
+		out.writeInt(stringIndexOffset);
+		out.writeInt(strings.size());
+		out.writeInt(MAGIC);
+	}
+
+	private void ensureAllocIndexCapacity(int number) {
+		if (number >= allocIndex.length)
+			allocIndex = Arrays.copyOf(allocIndex, Math.max(number + 1, allocIndex.length * 2));
+	}
+
+	private Map<Unit, Integer> unitIndices(Map<SootMethod, Map<Unit, Integer>> cache, SootMethod m) {
+		Map<Unit, Integer> ret = cache.get(m);
+		if (ret == null) {
+			ret = new IdentityHashMap<Unit, Integer>();
+			if (m.hasActiveBody()) {
+				Body b = m.getActiveBody();
+				int i = 0;
+				for (Unit u : b.getUnits())
+					ret.put(u, i++);
+			}
+			cache.put(m, ret);
+		}
+		return ret;
+	}
+
+	private int writeRecords(List<int[]> records) throws IOException {
+		int offset = out.size();
+		for (int[] r : records)
+			for (int v : r)
+				out.writeInt(v);
+		return offset;
+	}
+
+	/**
+	 * Writes the given points-to set unless an identical one has already been
+	 * written, and returns its offset, or -1 if the set is empty.
+	 */
+	private int writeSet(PointsToSetInternal p2set) throws IOException {
+		if (p2set == null || p2set.isEmpty())
+			return -1;
+		final BitSet bits = new BitSet();
+		p2set.forall(new P2SetVisitor() {
+			public final void visit(Node n) {
+				bits.set(allocIndex[n.getNumber()]);
+			}
+		});
+		int[] elems = new int[bits.cardinality()];
+		int j = 0;
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+			elems[j++] = i;
+		SetKey key = new SetKey(elems);
+		Integer offset = sets.get(key);
+		if (offset == null) {
+			checkSize();
+			offset = out.size();
+			out.writeInt(elems.length);
+			for (int e : elems)
+				out.writeInt(e);
+			sets.put(key, offset);
+		}
+		return offset;
+	}
+
+	private void checkSize() {
+		// DataOutputStream.size() saturates at Integer.MAX_VALUE
+		if (out.size() == Integer.MAX_VALUE)
+			throw new RuntimeException("Points-to snapshot exceeds 2GB; cannot be mapped");
+	}
+
+	private int string(String s) {
+		Integer ret = strings.get(s);
+		if (ret == null) {
+			ret = strings.size();
+			strings.put(s, ret);
+		}
+		return ret;
+	}
+
+	static String fieldKey(SparkField f) {
+		if (f instanceof SootField)
+			return ((SootField) f).getSignature();
+		return ARRAY_ELEMENT_KEY;
+	}
+
+	/** Content-based key used to share identical points-to sets. */
+	private static class SetKey {
+		private final int[] elems;
+		private final int hash;
+
+		SetKey(int[] elems) {
+			this.elems = elems;
+			this.hash = Arrays.hashCode(elems);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof SetKey && Arrays.equals(elems, ((SetKey) o).elems);
+		}
+	}
+}
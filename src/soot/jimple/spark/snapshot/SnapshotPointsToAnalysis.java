@@ -0,0 +1,491 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import soot.AnySubType;
+import soot.Body;
+import soot.Context;
+import soot.G;
+import soot.Kind;
+import soot.Local;
+import soot.PointsToAnalysis;
+import soot.PointsToSet;
+import soot.RefType;
+import soot.Scene;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.spark.sets.EmptyPointsToSet;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+
+/**
+ * A {@link PointsToAnalysis} answering queries from a snapshot written by
+ * {@link PointsToSnapshotWriter}. The snapshot is memory-mapped; records are
+ * decoded only when a query touches them.
+ *
+ * <p>
+ * Since locals of the current run are different objects than the ones Spark
+ * saw, locals are matched by the signature of their method and their name.
+ * A method is bound lazily, once its active body exists.
+ * </p>
+ *
+ * <p>
+ * Queries may be issued from several threads.
+ * </p>
+ */
+public class SnapshotPointsToAnalysis implements PointsToAnalysis {
+	/** The edge kinds a snapshot may contain, found by their names. */
+	private static final Kind[] KINDS = { Kind.STATIC, Kind.VIRTUAL, Kind.INTERFACE, Kind.SPECIAL, Kind.CLINIT,
+			Kind.THREAD, Kind.EXECUTOR, Kind.ASYNCTASK, Kind.FINALIZE, Kind.INVOKE_FINALIZE, Kind.PRIVILEGED,
+			Kind.NEWINSTANCE, Kind.REFL_INVOKE, Kind.REFL_CONSTR_NEWINSTANCE, Kind.REFL_CLASS_NEWINSTANCE };
+
+	private final ByteBuffer buf;
+
+	private final boolean fieldBased;
+	private final int allocsOffset, allocCount;
+	private final int methodsOffset, methodCount;
+	private final int localsOffset, localCount;
+	private final int globalsOffset, globalCount;
+	private final int fieldsOffset, fieldCount;
+	private final int edgesOffset, edgeCount;
+	private final int stringIndexOffset, stringCount;
+
+	private final AtomicReferenceArray<String> stringCache;
+	private final AtomicReferenceArray<Type> typeCache;
+
+	/*
+	 * Binding state, guarded by this.
+	 */
+	/** Local to offset of its points-to set, or -1 if it has none. */
+	private final Map<Local, Integer> localToSet = new IdentityHashMap<Local, Integer>();
+	/**
+	 * Indices of the methods in the snapshot whose bodies were not bound yet,
+	 * by the names of their locals.
+	 */
+	private Map<String, List<Integer>> unboundByLocal;
+	private final BitSet boundMethods = new BitSet();
+
+	private volatile Map<String, Integer> globalToSet;
+	private volatile Map<String, Integer> fieldKeys;
+
+	public SnapshotPointsToAnalysis(File file) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				if (channel.size() > Integer.MAX_VALUE)
+					throw new RuntimeException("Points-to snapshot " + file + " is too large");
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				this.buf = mapped;
+			} finally {
+				// the mapping stays valid after the channel is closed
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't read points-to snapshot " + file, e);
+		}
+
+		if (buf.capacity() < 12 + PointsToSnapshotWriter.TRAILER_INTS * 4 || buf.getInt(0) != PointsToSnapshotWriter.MAGIC
+				|| buf.getInt(buf.capacity() - 4) != PointsToSnapshotWriter.MAGIC)
+			throw new RuntimeException(file + " is not a points-to snapshot");
+		if (buf.getInt(4) != PointsToSnapshotWriter.VERSION)
+			throw new RuntimeException("Unsupported points-to snapshot version " + buf.getInt(4));
+		fieldBased = (buf.getInt(8) & PointsToSnapshotWriter.FLAG_FIELD_BASED) != 0;
+
+		int t = buf.capacity() - PointsToSnapshotWriter.TRAILER_INTS * 4;
+		// the first trailer entry is the offset of the set pool, which is only
+		// addressed through the offsets stored in the other records
+		allocsOffset = buf.getInt(t += 4);
+		allocCount = buf.getInt(t += 4);
+		methodsOffset = buf.getInt(t += 4);
+		methodCount = buf.getInt(t += 4);
+		localsOffset = buf.getInt(t += 4);
+		localCount = buf.getInt(t += 4);
+		globalsOffset = buf.getInt(t += 4);
+		globalCount = buf.getInt(t += 4);
+		fieldsOffset = buf.getInt(t += 4);
+		fieldCount = buf.getInt(t += 4);
+		edgesOffset = buf.getInt(t += 4);
+		edgeCount = buf.getInt(t += 4);
+		stringIndexOffset = buf.getInt(t += 4);
+		stringCount = buf.getInt(t += 4);
+
+		stringCache = new AtomicReferenceArray<String>(stringCount);
+		typeCache = new AtomicReferenceArray<Type>(allocCount);
+	}
+
+	/* Queries */
+
+	/** Returns the set of objects pointed to by variable l. */
+	public PointsToSet reachingObjects(Local l) {
+		return makeSet(findLocal(l));
+	}
+
+	/**
+	 * Returns the set of objects pointed to by variable l. The snapshot is
+	 * context-insensitive, so the context is ignored.
+	 */
+	public PointsToSet reachingObjects(Context c, Local l) {
+		return reachingObjects(l);
+	}
+
+	/** Returns the set of objects pointed to by static field f. */
+	public PointsToSet reachingObjects(SootField f) {
+		if (!f.isStatic())
+			throw new RuntimeException("The parameter f must be a *static* field.");
+		return makeSet(findGlobal(f.getSignature()));
+	}
+
+	/**
+	 * Returns the set of objects pointed to by instance field f of the objects
+	 * in the PointsToSet s.
+	 */
+	public PointsToSet reachingObjects(PointsToSet s, SootField f) {
+		if (f.isStatic())
+			throw new RuntimeException("The parameter f must be an *instance* field.");
+		return reachingObjectsInternal(s, f.getSignature());
+	}
+
+	public PointsToSet reachingObjects(Local l, SootField f) {
+		return reachingObjects(reachingObjects(l), f);
+	}
+
+	public PointsToSet reachingObjects(Context c, Local l, SootField f) {
+		return reachingObjects(l, f);
+	}
+
+	/**
+	 * Returns the set of objects pointed to by elements of the arrays in the
+	 * PointsToSet s.
+	 */
+	public PointsToSet reachingObjectsOfArrayElement(PointsToSet s) {
+		return reachingObjectsInternal(s, PointsToSnapshotWriter.ARRAY_ELEMENT_KEY);
+	}
+
+	private PointsToSet reachingObjectsInternal(PointsToSet s, String fieldKey) {
+		if (fieldBased)
+			return makeSet(findGlobal(fieldKey));
+		if (!(s instanceof SnapshotPointsToSet))
+			return EmptyPointsToSet.v();
+		Integer field = fieldKeys().get(fieldKey);
+		if (field == null)
+			return EmptyPointsToSet.v();
+		int[] bases = ((SnapshotPointsToSet) s).getElements();
+		int[] ret = new int[0];
+		for (int base : bases) {
+			int set = findField(base, field);
+			if (set >= 0)
+				ret = SnapshotPointsToSet.union(ret, readSet(set));
+		}
+		return ret.length == 0 ? EmptyPointsToSet.v() : new SnapshotPointsToSet(this, ret);
+	}
+
+	/**
+	 * Rebuilds the call graph stored in the snapshot. Call sites are resolved
+	 * against the active bodies of the callers, which are created if necessary.
+	 * Edges whose methods cannot be found in the current scene are dropped.
+	 */
+	public CallGraph loadCallGraph() {
+		Map<String, Kind> kinds = new HashMap<String, Kind>();
+		for (Kind k : KINDS)
+			kinds.put(k.name(), k);
+		Map<Long, SootMethod> methods = new HashMap<Long, SootMethod>();
+		Map<SootMethod, Unit[]> units = new HashMap<SootMethod, Unit[]>();
+
+		CallGraph cg = new CallGraph();
+		int dropped = 0;
+		for (int i = 0; i < edgeCount; i++) {
+			int r = edgesOffset + i * 24;
+			SootMethod src = resolveMethod(methods, buf.getInt(r), buf.getInt(r + 4));
+			SootMethod tgt = resolveMethod(methods, buf.getInt(r + 12), buf.getInt(r + 16));
+			Kind kind = kinds.get(string(buf.getInt(r + 20)));
+			if (src == null || tgt == null || kind == null) {
+				dropped++;
+				continue;
+			}
+			int unitIndex = buf.getInt(r + 8);
+			Unit u = null;
+			if (unitIndex >= 0) {
+				Unit[] us = units.get(src);
+				if (us == null) {
+					us = src.isConcrete() ? src.retrieveActiveBody().getUnits().toArray(new Unit[0]) : new Unit[0];
+					units.put(src, us);
+				}
+				if (unitIndex >= us.length || !(us[unitIndex] instanceof Stmt)) {
+					dropped++;
+					continue;
+				}
+				u = us[unitIndex];
+			}
+			cg.addEdge(new Edge(src, u, tgt, kind));
+		}
+		if (dropped > 0)
+			G.v().out.println("[Spark] Dropped " + dropped + " call graph edges not matching the current scene");
+		return cg;
+	}
+
+	private SootMethod resolveMethod(Map<Long, SootMethod> cache, int cls, int subSig) {
+		Long key = ((long) cls << 32) | subSig;
+		SootMethod m = cache.get(key);
+		if (m == null && !cache.containsKey(key)) {
+			m = resolveMethod(cls, subSig);
+			cache.put(key, m);
+		}
+		return m;
+	}
+
+	private SootMethod resolveMethod(int cls, int subSig) {
+		String className = string(cls);
+		if (!Scene.v().containsClass(className))
+			return null;
+		return Scene.v().getSootClass(className).getMethodUnsafe(string(subSig));
+	}
+
+	/* Allocation site metadata */
+
+	/** Returns the number of allocation sites in the snapshot. */
+	public int getAllocSiteCount() {
+		return allocCount;
+	}
+
+	/**
+	 * Returns the type of allocation site i, or null if the type is not known
+	 * in the current scene.
+	 */
+	public Type getAllocType(int i) {
+		Type t = typeCache.get(i);
+		if (t == null) {
+			int r = allocsOffset + i * 16;
+			int name = buf.getInt(r + 4);
+			if (name < 0)
+				return null;
+			try {
+				t = Scene.v().getType(string(name));
+			} catch (RuntimeException e) {
+				return null;
+			}
+			if ((buf.getInt(r) & PointsToSnapshotWriter.ALLOC_ANY_SUBTYPE) != 0)
+				t = AnySubType.v((RefType) t);
+			typeCache.set(i, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Returns the signature of the method containing allocation site i, or
+	 * null for sites not belonging to a method.
+	 */
+	public String getAllocMethod(int i) {
+		int m = buf.getInt(allocsOffset + i * 16 + 8);
+		return m < 0 ? null : string(m);
+	}
+
+	/**
+	 * Returns a description of allocation site i: the new expression, or the
+	 * value of a string or class constant.
+	 */
+	public String getAllocDescription(int i) {
+		return string(buf.getInt(allocsOffset + i * 16 + 12));
+	}
+
+	boolean isStringConstant(int i) {
+		return (buf.getInt(allocsOffset + i * 16)
+				& PointsToSnapshotWriter.ALLOC_KIND_MASK) == PointsToSnapshotWriter.ALLOC_STRING_CONSTANT;
+	}
+
+	boolean isClassConstant(int i) {
+		return (buf.getInt(allocsOffset + i * 16)
+				& PointsToSnapshotWriter.ALLOC_KIND_MASK) == PointsToSnapshotWriter.ALLOC_CLASS_CONSTANT;
+	}
+
+	/* Decoding */
+
+	private PointsToSet makeSet(int offset) {
+		if (offset < 0)
+			return EmptyPointsToSet.v();
+		return new SnapshotPointsToSet(this, readSet(offset));
+	}
+
+	private int[] readSet(int offset) {
+		int len = buf.getInt(offset);
+		int[] ret = new int[len];
+		for (int i = 0; i < len; i++)
+			ret[i] = buf.getInt(offset + 4 + 4 * i);
+		return ret;
+	}
+
+	private String string(int i) {
+		String s = stringCache.get(i);
+		if (s == null) {
+			int off = buf.getInt(stringIndexOffset + 4 * i);
+			byte[] bytes = new byte[buf.getInt(off)];
+			ByteBuffer dup = buf.duplicate();
+			dup.position(off + 4);
+			dup.get(bytes);
+			s = new String(bytes, PointsToSnapshotWriter.UTF8);
+			stringCache.set(i, s);
+		}
+		return s;
+	}
+
+	private synchronized int findLocal(Local l) {
+		Integer ret = localToSet.get(l);
+		if (ret == null) {
+			bindMethods(l.getName());
+			ret = localToSet.get(l);
+			if (ret == null) {
+				ret = -1;
+				localToSet.put(l, ret);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Matches the locals of all methods that have a local of the given name
+	 * and whose bodies became available.
+	 */
+	private void bindMethods(String localName) {
+		if (unboundByLocal == null) {
+			unboundByLocal = new HashMap<String, List<Integer>>();
+			for (int m = 0; m < methodCount; m++) {
+				int r = methodsOffset + m * 16;
+				int first = buf.getInt(r + 8);
+				int count = buf.getInt(r + 12);
+				for (int i = first; i < first + count; i++) {
+					String name = string(buf.getInt(localsOffset + i * 8));
+					List<Integer> methods = unboundByLocal.get(name);
+					if (methods == null)
+						unboundByLocal.put(name, methods = new ArrayList<Integer>(1));
+					methods.add(m);
+				}
+			}
+		}
+		List<Integer> methods = unboundByLocal.get(localName);
+		if (methods == null)
+			return;
+		for (Iterator<Integer> it = methods.iterator(); it.hasNext();) {
+			int m = it.next();
+			if (boundMethods.get(m)) {
+				it.remove();
+				continue;
+			}
+			int r = methodsOffset + m * 16;
+			SootMethod sm = resolveMethod(buf.getInt(r), buf.getInt(r + 4));
+			if (sm == null) {
+				boundMethods.set(m);
+				it.remove();
+			} else if (sm.hasActiveBody()) {
+				bindMethod(r, sm.getActiveBody());
+				boundMethods.set(m);
+				it.remove();
+			}
+		}
+		if (methods.isEmpty())
+			unboundByLocal.remove(localName);
+	}
+
+	private void bindMethod(int r, Body b) {
+		Map<String, Local> byName = new HashMap<String, Local>();
+		for (Local l : b.getLocals())
+			byName.put(l.getName(), l);
+		int first = buf.getInt(r + 8);
+		int count = buf.getInt(r + 12);
+		for (int i = first; i < first + count; i++) {
+			int lr = localsOffset + i * 8;
+			Local l = byName.get(string(buf.getInt(lr)));
+			if (l != null)
+				localToSet.put(l, buf.getInt(lr + 4));
+		}
+	}
+
+	private int findGlobal(String key) {
+		Map<String, Integer> globals = globalToSet;
+		if (globals == null) {
+			synchronized (this) {
+				globals = globalToSet;
+				if (globals == null) {
+					globals = new HashMap<String, Integer>(globalCount * 2);
+					for (int i = 0; i < globalCount; i++) {
+						int r = globalsOffset + i * 8;
+						globals.put(string(buf.getInt(r)), buf.getInt(r + 4));
+					}
+					globalToSet = globals;
+				}
+			}
+		}
+		Integer ret = globals.get(key);
+		return ret == null ? -1 : ret;
+	}
+
+	private Map<String, Integer> fieldKeys() {
+		Map<String, Integer> keys = fieldKeys;
+		if (keys == null) {
+			synchronized (this) {
+				keys = fieldKeys;
+				if (keys == null) {
+					keys = new HashMap<String, Integer>();
+					for (int i = 0; i < fieldCount; i++) {
+						int id = buf.getInt(fieldsOffset + i * 12 + 4);
+						keys.put(string(id), id);
+					}
+					fieldKeys = keys;
+				}
+			}
+		}
+		return keys;
+	}
+
+	/** Binary search for the record of field field on allocation site base. */
+	private int findField(int base, int field) {
+		int lo = 0, hi = fieldCount - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int r = fieldsOffset + mid * 12;
+			int b = buf.getInt(r);
+			int f = buf.getInt(r + 4);
+			if (b < base || (b == base && f < field))
+				lo = mid + 1;
+			else if (b > base || f > field)
+				hi = mid - 1;
+			else
+				return buf.getInt(r + 8);
+		}
+		return -1;
+	}
+}
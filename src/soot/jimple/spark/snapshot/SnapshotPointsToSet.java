@@ -0,0 +1,146 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.snapshot;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import soot.PointsToSet;
+import soot.Type;
+import soot.jimple.ClassConstant;
+import soot.jimple.spark.sets.EqualsSupportingPointsToSet;
+
+/**
+ * Points-to set read from a snapshot, represented as the sorted array of the
+ * indices of its allocation sites.
+ */
+public class SnapshotPointsToSet implements EqualsSupportingPointsToSet {
+	private final SnapshotPointsToAnalysis snapshot;
+	private final int[] elems;
+
+	SnapshotPointsToSet(SnapshotPointsToAnalysis snapshot, int[] elems) {
+		this.snapshot = snapshot;
+		this.elems = elems;
+	}
+
+	/**
+	 * Returns the sorted indices of the allocation sites in this set. See
+	 * {@link SnapshotPointsToAnalysis#getAllocType(int)} and friends for their
+	 * metadata.
+	 */
+	public int[] getElements() {
+		return elems;
+	}
+
+	public boolean isEmpty() {
+		return elems.length == 0;
+	}
+
+	public boolean hasNonEmptyIntersection(PointsToSet other) {
+		if (other.isEmpty() || isEmpty())
+			return false;
+		if (!(other instanceof SnapshotPointsToSet) || ((SnapshotPointsToSet) other).snapshot != snapshot) {
+			// Sets of different analyses cannot be compared, be conservative
+			return true;
+		}
+		int[] o = ((SnapshotPointsToSet) other).elems;
+		int i = 0, j = 0;
+		while (i < elems.length && j < o.length) {
+			if (elems[i] == o[j])
+				return true;
+			if (elems[i] < o[j])
+				i++;
+			else
+				j++;
+		}
+		return false;
+	}
+
+	public Set<Type> possibleTypes() {
+		Set<Type> ret = new HashSet<Type>();
+		for (int e : elems) {
+			Type t = snapshot.getAllocType(e);
+			if (t != null)
+				ret.add(t);
+		}
+		return ret;
+	}
+
+	public Set<String> possibleStringConstants() {
+		Set<String> ret = new HashSet<String>();
+		for (int e : elems) {
+			if (!snapshot.isStringConstant(e))
+				return null;
+			ret.add(snapshot.getAllocDescription(e));
+		}
+		return ret;
+	}
+
+	public Set<ClassConstant> possibleClassConstants() {
+		Set<ClassConstant> ret = new HashSet<ClassConstant>();
+		for (int e : elems) {
+			if (!snapshot.isClassConstant(e))
+				return null;
+			ret.add(ClassConstant.v(snapshot.getAllocDescription(e)));
+		}
+		return ret;
+	}
+
+	public int pointsToSetHashCode() {
+		return Arrays.hashCode(elems);
+	}
+
+	public boolean pointsToSetEquals(Object other) {
+		if (this == other)
+			return true;
+		if (!(other instanceof SnapshotPointsToSet))
+			return false;
+		return Arrays.equals(elems, ((SnapshotPointsToSet) other).elems);
+	}
+
+	public String toString() {
+		return Arrays.toString(elems);
+	}
+
+	/** Merges two sorted arrays of allocation site indices. */
+	static int[] union(int[] a, int[] b) {
+		if (a.length == 0)
+			return b;
+		if (b.length == 0)
+			return a;
+		int[] ret = new int[a.length + b.length];
+		int i = 0, j = 0, k = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] == b[j]) {
+				ret[k++] = a[i++];
+				j++;
+			} else if (a[i] < b[j])
+				ret[k++] = a[i++];
+			else
+				ret[k++] = b[j++];
+		}
+		while (i < a.length)
+			ret[k++] = a[i++];
+		while (j < b.length)
+			ret[k++] = b[j++];
+		return k == ret.length ? ret : Arrays.copyOf(ret, k);
+	}
+}
@@ -0,0 +1,659 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import soot.Body;
+import soot.FastHierarchy;
+import soot.G;
+import soot.MethodOrMethodContext;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.jimple.spark.internal.BodyFingerprint;
+import soot.jimple.spark.internal.TypeManager;
+import soot.jimple.spark.pag.AllocDotField;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.ClassConstantNode;
+import soot.jimple.spark.pag.FieldRefNode;
+import soot.jimple.spark.pag.LocalVarNode;
+import soot.jimple.spark.pag.MethodPAG;
+import soot.jimple.spark.pag.NewInstanceNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.Parm;
+import soot.jimple.spark.pag.SparkField;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.toolkits.scalar.Pair;
+import soot.util.queue.QueueReader;
+
+/**
+ * Updates the points-to sets of an already solved PAG after methods have been
+ * added, changed or removed, without propagating the whole graph again.
+ *
+ * The edges of changed and removed methods are taken out of the PAG first.
+ * Every node whose points-to set may have depended on them is cleared and
+ * re-derived from its remaining predecessors. The new edges are then added and
+ * the points-to sets are propagated from the affected nodes only.
+ *
+ * Call edges and reachable methods are never retracted, so after a deletion
+ * the result is sound but may be less precise than a run from scratch. Only
+ * the context-insensitive PAG built with the on-the-fly call graph and without
+ * merging nodes can be updated.
+ *
+ * Changes can either be reported one by one, or found by comparing the
+ * program with the one seen by {@link #recordProgram()}; Spark does the
+ * latter when its incremental option is set.
+ */
+public class IncrementalUpdater {
+	private final PAG pag;
+	private final OnFlyCallGraph ofcg;
+
+	private final Set<SootMethod> entryPoints = new LinkedHashSet<SootMethod>();
+	private final Set<SootMethod> changedMethods = new LinkedHashSet<SootMethod>();
+	private final Set<SootMethod> removedMethods = new LinkedHashSet<SootMethod>();
+	private boolean hierarchyChanged = false;
+
+	private final Map<SparkField, Set<FieldRefNode>> loadsByField = new HashMap<SparkField, Set<FieldRefNode>>();
+	private final Map<SparkField, Set<FieldRefNode>> storesByField = new HashMap<SparkField, Set<FieldRefNode>>();
+	private final Set<VarNode> varNodeWorkList = new TreeSet<VarNode>();
+	private final Set<AllocDotField> fieldWorkList = new LinkedHashSet<AllocDotField>();
+	private QueueReader<Node> addedEdges;
+
+	// The body of every recorded method, and its fingerprint
+	private final Map<SootMethod, Pair<Body, Integer>> fingerprints = new HashMap<SootMethod, Pair<Body, Integer>>();
+	// The fingerprints computed by findChanges, for the next recordProgram
+	private Map<SootMethod, Pair<Body, Integer>> checked = new HashMap<SootMethod, Pair<Body, Integer>>();
+	// The direct supertypes of every recorded class
+	private Map<SootClass, Set<SootClass>> hierarchy = new HashMap<SootClass, Set<SootClass>>();
+
+	public IncrementalUpdater(PAG pag) {
+		this.pag = pag;
+		this.ofcg = pag.getOnFlyCallGraph();
+		if (ofcg == null) {
+			throw new RuntimeException("Incremental updates need the on-the-fly call graph");
+		}
+		if (pag.getOpts().simplify_offline() || pag.getOpts().simplify_sccs()) {
+			throw new RuntimeException("Incremental updates cannot be used with merged nodes");
+		}
+		if (pag.getOpts().vta() || pag.getOpts().rta() || pag.getOpts().types_for_sites()) {
+			throw new RuntimeException("Incremental updates need one node per variable and allocation site");
+		}
+	}
+
+	public PAG getPAG() {
+		return pag;
+	}
+
+	/** Makes m reachable, as an additional entry point. */
+	public void addEntryPoint(SootMethod m) {
+		entryPoints.add(m);
+	}
+
+	/** Tells the updater that the active body of m has been replaced. */
+	public void methodChanged(SootMethod m) {
+		changedMethods.add(m);
+	}
+
+	/** Tells the updater that m has been removed from the program. */
+	public void methodRemoved(SootMethod m) {
+		changedMethods.remove(m);
+		removedMethods.add(m);
+	}
+
+	/** Tells the updater that classes have been added to the Scene. */
+	public void classAdded(SootClass c) {
+		hierarchyChanged = true;
+	}
+
+	/**
+	 * Remembers the bodies of the reachable methods and the class hierarchy,
+	 * for {@link #findChanges()}. The fingerprints computed by the last
+	 * {@link #findChanges()} are reused for the bodies it has seen.
+	 */
+	public void recordProgram() {
+		Map<SootMethod, Pair<Body, Integer>> known = checked;
+		checked = new HashMap<SootMethod, Pair<Body, Integer>>();
+		fingerprints.clear();
+		for (Iterator<MethodOrMethodContext> it = ofcg.reachableMethods().listener(); it.hasNext();) {
+			SootMethod m = it.next().method();
+			if (!m.isDeclared() || !m.getDeclaringClass().isInScene())
+				continue;
+			Body b = m.hasActiveBody() ? m.getActiveBody() : null;
+			Pair<Body, Integer> p = known.get(m);
+			if (p == null || p.getO1() != b)
+				p = new Pair<Body, Integer>(b, fingerprint(b));
+			fingerprints.put(m, p);
+		}
+		hierarchy = hierarchy();
+	}
+
+	/**
+	 * Reports the differences between the program and the one seen by the last
+	 * {@link #recordProgram()}: methods whose body has changed or that are no
+	 * longer in the Scene, added classes, and entry points that are not
+	 * reachable yet.
+	 */
+	public void findChanges() {
+		checked.clear();
+		for (Map.Entry<SootMethod, Pair<Body, Integer>> e : fingerprints.entrySet()) {
+			SootMethod m = e.getKey();
+			if (!m.isDeclared() || !m.getDeclaringClass().isInScene()) {
+				methodRemoved(m);
+				continue;
+			}
+			Body b = m.hasActiveBody() ? m.getActiveBody() : null;
+			int fingerprint = fingerprint(b);
+			checked.put(m, new Pair<Body, Integer>(b, fingerprint));
+			if (b != e.getValue().getO1() || fingerprint != e.getValue().getO2())
+				methodChanged(m);
+		}
+		if (!hierarchyChanged && !hierarchy().equals(hierarchy))
+			hierarchyChanged = true;
+		for (SootMethod m : Scene.v().getEntryPoints()) {
+			if (!ofcg.reachableMethods().contains(m))
+				addEntryPoint(m);
+		}
+	}
+
+	/** Applies all the changes reported since the last update. */
+	public void update() {
+		boolean verbose = pag.getOpts().verbose();
+		if (hierarchyChanged) {
+			refreshHierarchy();
+		}
+		addedEdges = pag.edgeReader();
+		buildFieldIndex();
+
+		// Take the old edges out, and clear everything that may depend on them
+		Set<Node> affected = retract();
+		for (Node n : affected) {
+			n.discardP2Set();
+		}
+		if (verbose) {
+			G.v().out.println("[Spark] Re-deriving " + affected.size() + " nodes");
+		}
+
+		// Build the new and changed methods
+		CallGraph cg = ofcg.callGraph();
+		for (SootMethod m : changedMethods) {
+			if (!ofcg.reachableMethods().contains(m))
+				continue;
+			MethodPAG mpag = MethodPAG.v(pag, m);
+			mpag.build();
+			mpag.addToPAG(null);
+			ofcg.ofcgb().reprocessMethod(m);
+		}
+		for (SootMethod m : entryPoints) {
+			ofcg.reachableMethods().addEntryPoint(m);
+		}
+		ofcg.build();
+
+		for (Node n : affected) {
+			rederive(n);
+		}
+		handleAddedEdges();
+		solve();
+
+		if (verbose) {
+			G.v().out.println("[Spark] Incremental update done, call graph has " + cg.size() + " edges");
+		}
+		entryPoints.clear();
+		changedMethods.clear();
+		removedMethods.clear();
+		loadsByField.clear();
+		storesByField.clear();
+		addedEdges = null;
+	}
+
+	/* End of public methods. */
+
+	private static int fingerprint(Body b) {
+		return b == null ? 1 : BodyFingerprint.of(b);
+	}
+
+	/** Returns the direct superclass and interfaces of every class in the Scene. */
+	private static Map<SootClass, Set<SootClass>> hierarchy() {
+		Map<SootClass, Set<SootClass>> ret = new HashMap<SootClass, Set<SootClass>>();
+		for (SootClass c : Scene.v().getClasses()) {
+			Set<SootClass> supertypes = new HashSet<SootClass>(c.getInterfaces());
+			if (c.hasSuperclass())
+				supertypes.add(c.getSuperclass());
+			ret.put(c, supertypes);
+		}
+		return ret;
+	}
+
+	private void refreshHierarchy() {
+		Scene.v().releaseActiveHierarchy();
+		Scene.v().releaseFastHierarchy();
+		FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+		TypeManager tm = pag.getTypeManager();
+		if (tm.getFastHierarchy() != null) {
+			tm.setFastHierarchy(fh);
+			tm.clearTypeMask();
+			tm.makeTypeMask();
+		}
+		ofcg.ofcgb().hierarchyChanged();
+		hierarchyChanged = false;
+	}
+
+	private void buildFieldIndex() {
+		for (FieldRefNode fr : pag.loadSources()) {
+			index(loadsByField, fr);
+		}
+		for (VarNode src : pag.storeSources()) {
+			for (Node fr : pag.storeLookup(src)) {
+				index(storesByField, (FieldRefNode) fr);
+			}
+		}
+	}
+
+	private static void index(Map<SparkField, Set<FieldRefNode>> byField, FieldRefNode fr) {
+		Set<FieldRefNode> s = byField.get(fr.getField());
+		if (s == null) {
+			byField.put(fr.getField(), s = new HashSet<FieldRefNode>());
+		}
+		s.add(fr);
+	}
+
+	/**
+	 * Removes the edges of the changed and removed methods, and returns the
+	 * nodes whose points-to sets may have been derived through them.
+	 */
+	private Set<Node> retract() {
+		Set<SootMethod> methods = new HashSet<SootMethod>(changedMethods);
+		methods.addAll(removedMethods);
+		if (methods.isEmpty()) {
+			return new HashSet<Node>();
+		}
+
+		CallGraph cg = ofcg.callGraph();
+		List<MethodPAG> mpags = new ArrayList<MethodPAG>();
+		for (SootMethod m : methods) {
+			List<Edge> edges = new ArrayList<Edge>();
+			for (Iterator<Edge> it = cg.edgesOutOf(m); it.hasNext();) {
+				edges.add(it.next());
+			}
+			if (removedMethods.contains(m)) {
+				for (Iterator<Edge> it = cg.edgesInto(m); it.hasNext();) {
+					edges.add(it.next());
+				}
+			}
+			for (Edge e : edges) {
+				cg.removeEdge(e);
+			}
+			ofcg.ofcgb().forgetMethod(m);
+			MethodPAG mpag = G.v().MethodPAG_methodToPag.get(m);
+			if (mpag != null) {
+				mpags.add(mpag);
+			}
+		}
+
+		// The nodes of the old method bodies
+		Set<Node> nodes = new HashSet<Node>();
+		for (VarNode vn : pag.getVarNodeNumberer()) {
+			if (!(vn instanceof LocalVarNode))
+				continue;
+			SootMethod m = ((LocalVarNode) vn).getMethod();
+			if (m == null || !methods.contains(m))
+				continue;
+			// The parameters of a changed method keep the edges from its callers
+			if (vn.getVariable() instanceof Parm && !removedMethods.contains(m))
+				continue;
+			nodes.add(vn);
+		}
+		for (AllocNode an : pag.getAllocNodeNumberer()) {
+			if (an.getMethod() != null && methods.contains(an.getMethod()))
+				nodes.add(an);
+		}
+
+		List<Node> removed = new ArrayList<Node>();
+		for (Node n : nodes) {
+			if (n instanceof AllocNode) {
+				for (Node tgt : pag.allocLookup((AllocNode) n))
+					addEdge(removed, n, tgt);
+				continue;
+			}
+			VarNode vn = (VarNode) n;
+			for (Node tgt : pag.simpleLookup(vn))
+				addEdge(removed, vn, tgt);
+			for (Node tgt : pag.storeLookup(vn))
+				addEdge(removed, vn, tgt);
+			for (Node tgt : pag.newInstanceLookup(vn))
+				addEdge(removed, vn, tgt);
+			for (Node src : pag.simpleInvLookup(vn))
+				addEdge(removed, src, vn);
+			for (Node src : pag.loadInvLookup(vn))
+				addEdge(removed, src, vn);
+			for (Node src : pag.allocInvLookup(vn))
+				addEdge(removed, src, vn);
+			for (Node src : pag.assignInstanceInvLookup(vn))
+				addEdge(removed, src, vn);
+			for (FieldRefNode fr : vn.getAllFieldRefs()) {
+				for (Node tgt : pag.loadLookup(fr))
+					addEdge(removed, fr, tgt);
+				for (Node src : pag.storeInvLookup(fr))
+					addEdge(removed, src, fr);
+			}
+		}
+
+		// Only now, so that the targets of their edges have been collected above.
+		// The edges into the kept parameters are added again by the rebuild.
+		for (MethodPAG mpag : mpags) {
+			mpag.removeFromPAG();
+		}
+
+		// Find everything downstream of the removed edges, while the points-to
+		// sets still tell which abstract objects a field access may touch
+		Set<Node> affected = new HashSet<Node>();
+		List<Node> queue = new ArrayList<Node>();
+		for (Node n : nodes) {
+			if (!(n instanceof AllocNode))
+				markAffected(n, affected, queue);
+		}
+		for (int i = 0; i < removed.size(); i += 2) {
+			Node src = removed.get(i);
+			Node tgt = removed.get(i + 1);
+			pag.removeEdge(src, tgt);
+			if (tgt instanceof FieldRefNode) {
+				markFieldsAffected((FieldRefNode) tgt, ((FieldRefNode) tgt).getBase().getP2Set(), affected, queue);
+			} else {
+				markAffected(tgt, affected, queue);
+			}
+		}
+		while (!queue.isEmpty()) {
+			Node n = queue.remove(queue.size() - 1);
+			if (n instanceof VarNode) {
+				final VarNode vn = (VarNode) n;
+				for (Node tgt : pag.simpleLookup(vn))
+					markAffected(tgt, affected, queue);
+				for (Node tgt : pag.storeLookup(vn)) {
+					FieldRefNode fr = (FieldRefNode) tgt;
+					markFieldsAffected(fr, fr.getBase().getP2Set(), affected, queue);
+				}
+				for (Node tgt : pag.newInstanceLookup(vn))
+					markAffected(tgt, affected, queue);
+				for (FieldRefNode fr : vn.getAllFieldRefs()) {
+					for (Node tgt : pag.loadLookup(fr))
+						markAffected(tgt, affected, queue);
+					if (pag.storeInvLookup(fr).length > 0)
+						markFieldsAffected(fr, vn.getP2Set(), affected, queue);
+				}
+			} else if (n instanceof AllocDotField) {
+				AllocDotField df = (AllocDotField) n;
+				Set<FieldRefNode> loads = loadsByField.get(df.getField());
+				if (loads == null)
+					continue;
+				for (FieldRefNode fr : loads) {
+					if (!fr.getBase().getP2Set().contains(df.getBase()))
+						continue;
+					for (Node tgt : pag.loadLookup(fr))
+						markAffected(tgt, affected, queue);
+				}
+			} else if (n instanceof NewInstanceNode) {
+				for (Node tgt : pag.assignInstanceLookup((NewInstanceNode) n))
+					markAffected(tgt, affected, queue);
+			}
+		}
+
+		// The old nodes are replaced by the ones of the new bodies
+		for (Node n : nodes) {
+			affected.remove(n);
+			if (n instanceof AllocNode)
+				affected.removeAll(((AllocNode) n).getAllFieldRefs());
+			pag.removeNode(n);
+		}
+		return affected;
+	}
+
+	private static void addEdge(List<Node> edges, Node src, Node tgt) {
+		edges.add(src);
+		edges.add(tgt);
+	}
+
+	private static void markAffected(Node n, Set<Node> affected, List<Node> queue) {
+		if (affected.add(n))
+			queue.add(n);
+	}
+
+	private static void markFieldsAffected(FieldRefNode fr, PointsToSetInternal bases, final Set<Node> affected,
+			final List<Node> queue) {
+		final SparkField f = fr.getField();
+		bases.forall(new P2SetVisitor() {
+			public final void visit(Node n) {
+				AllocDotField df = ((AllocNode) n).dot(f);
+				if (df != null)
+					markAffected(df, affected, queue);
+			}
+		});
+	}
+
+	/**
+	 * Recomputes the points-to set of an affected node from its predecessors.
+	 */
+	private void rederive(Node n) {
+		if (n instanceof VarNode) {
+			VarNode vn = (VarNode) n;
+			for (Node src : pag.allocInvLookup(vn))
+				vn.makeP2Set().add(src);
+			for (Node src : pag.simpleInvLookup(vn))
+				vn.makeP2Set().addAll(src.getP2Set(), null);
+			for (Node src : pag.loadInvLookup(vn)) {
+				final FieldRefNode fr = (FieldRefNode) src;
+				final PointsToSetInternal p2set = vn.makeP2Set();
+				fr.getBase().getP2Set().forall(new P2SetVisitor() {
+					public final void visit(Node o) {
+						AllocDotField df = ((AllocNode) o).dot(fr.getField());
+						if (df != null)
+							p2set.addAll(df.getP2Set(), null);
+					}
+				});
+			}
+			for (Node src : pag.assignInstanceInvLookup(vn))
+				assignInstance((NewInstanceNode) src, vn);
+			if (!vn.getP2Set().isEmpty())
+				varNodeWorkList.add(vn);
+		} else if (n instanceof AllocDotField) {
+			AllocDotField df = (AllocDotField) n;
+			Set<FieldRefNode> stores = storesByField.get(df.getField());
+			if (stores != null) {
+				for (FieldRefNode fr : stores) {
+					if (!fr.getBase().getP2Set().contains(df.getBase()))
+						continue;
+					for (Node src : pag.storeInvLookup(fr))
+						df.makeP2Set().addAll(src.getP2Set(), null);
+				}
+			}
+			if (!df.getP2Set().isEmpty())
+				fieldWorkList.add(df);
+		} else if (n instanceof NewInstanceNode) {
+			NewInstanceNode nin = (NewInstanceNode) n;
+			for (Node src : pag.newInstanceInvLookup(nin))
+				nin.makeP2Set().addAll(src.getP2Set(), null);
+			for (Node tgt : pag.assignInstanceLookup(nin))
+				assignInstance(nin, (VarNode) tgt);
+		}
+	}
+
+	/** Propagates along the edges that have been added to the PAG. */
+	private void handleAddedEdges() {
+		while (addedEdges.hasNext()) {
+			Node src = addedEdges.next();
+			Node tgt = addedEdges.next();
+			if (src instanceof AllocNode) {
+				if (tgt.makeP2Set().add(src))
+					varNodeWorkList.add((VarNode) tgt);
+			} else if (src instanceof FieldRefNode) {
+				FieldRefNode fr = (FieldRefNode) src;
+				index(loadsByField, fr);
+				propagateLoad(fr, fr.getBase().getP2Set(), (VarNode) tgt);
+			} else if (src instanceof NewInstanceNode) {
+				assignInstance((NewInstanceNode) src, (VarNode) tgt);
+			} else if (tgt instanceof FieldRefNode) {
+				FieldRefNode fr = (FieldRefNode) tgt;
+				index(storesByField, fr);
+				propagateStore((VarNode) src, fr, fr.getBase().getP2Set());
+			} else if (tgt instanceof NewInstanceNode) {
+				NewInstanceNode nin = (NewInstanceNode) tgt;
+				if (nin.makeP2Set().addAll(src.getP2Set(), null)) {
+					for (Node element : pag.assignInstanceLookup(nin))
+						assignInstance(nin, (VarNode) element);
+				}
+			} else {
+				if (tgt.makeP2Set().addAll(src.getP2Set(), null))
+					varNodeWorkList.add((VarNode) tgt);
+			}
+		}
+	}
+
+	private void solve() {
+		while (!varNodeWorkList.isEmpty() || !fieldWorkList.isEmpty()) {
+			while (!varNodeWorkList.isEmpty()) {
+				VarNode src = varNodeWorkList.iterator().next();
+				varNodeWorkList.remove(src);
+				handleVarNode(src);
+			}
+			while (!fieldWorkList.isEmpty()) {
+				AllocDotField src = fieldWorkList.iterator().next();
+				fieldWorkList.remove(src);
+				handleAllocDotField(src);
+			}
+		}
+	}
+
+	/**
+	 * Propagates the whole points-to set of src to its successors. Only the
+	 * new part is reported to the call graph builder.
+	 */
+	private void handleVarNode(VarNode src) {
+		final PointsToSetInternal p2set = src.getP2Set();
+		if (p2set.isEmpty())
+			return;
+
+		if (!p2set.getNewSet().isEmpty()) {
+			ofcg.updatedNode(src);
+			ofcg.build();
+			handleAddedEdges();
+		}
+
+		for (Node element : pag.simpleLookup(src)) {
+			if (element.makeP2Set().addAll(p2set, null))
+				varNodeWorkList.add((VarNode) element);
+		}
+		for (Node element : pag.storeLookup(src)) {
+			FieldRefNode fr = (FieldRefNode) element;
+			propagateStore(src, fr, fr.getBase().getP2Set());
+		}
+		for (FieldRefNode fr : src.getAllFieldRefs()) {
+			for (Node element : pag.storeInvLookup(fr))
+				propagateStore((VarNode) element, fr, p2set);
+			for (Node element : pag.loadLookup(fr))
+				propagateLoad(fr, p2set, (VarNode) element);
+		}
+		for (Node element : pag.newInstanceLookup(src)) {
+			NewInstanceNode nin = (NewInstanceNode) element;
+			if (nin.makeP2Set().addAll(p2set, null)) {
+				for (Node tgt : pag.assignInstanceLookup(nin))
+					assignInstance(nin, (VarNode) tgt);
+			}
+		}
+		// If src has grown meanwhile, the call graph builder still has to see it
+		if (!varNodeWorkList.contains(src))
+			p2set.flushNew();
+	}
+
+	private void handleAllocDotField(AllocDotField src) {
+		PointsToSetInternal p2set = src.getP2Set();
+		ofcg.updatedFieldRef(src, p2set);
+		Set<FieldRefNode> loads = loadsByField.get(src.getField());
+		if (loads != null) {
+			for (FieldRefNode fr : loads) {
+				if (!fr.getBase().getP2Set().contains(src.getBase()))
+					continue;
+				for (Node element : pag.loadLookup(fr)) {
+					if (element.makeP2Set().addAll(p2set, null))
+						varNodeWorkList.add((VarNode) element);
+				}
+			}
+		}
+		p2set.flushNew();
+	}
+
+	/** Propagates the store src -> fr for the given bases of fr. */
+	private void propagateStore(final VarNode src, FieldRefNode fr, PointsToSetInternal bases) {
+		final SparkField f = fr.getField();
+		bases.forall(new P2SetVisitor() {
+			public final void visit(Node n) {
+				AllocDotField df = pag.makeAllocDotField((AllocNode) n, f);
+				if (df.makeP2Set().addAll(src.getP2Set(), null))
+					fieldWorkList.add(df);
+			}
+		});
+	}
+
+	/** Propagates the load fr -> tgt for the given bases of fr. */
+	private void propagateLoad(FieldRefNode fr, PointsToSetInternal bases, final VarNode tgt) {
+		final SparkField f = fr.getField();
+		bases.forall(new P2SetVisitor() {
+			public final void visit(Node n) {
+				AllocDotField df = pag.makeAllocDotField((AllocNode) n, f);
+				if (tgt.makeP2Set().addAll(df.getP2Set(), null))
+					varNodeWorkList.add(tgt);
+			}
+		});
+	}
+
+	/** Handles the edge src -> tgt the same way {@link PropWorklist} does. */
+	private void assignInstance(final NewInstanceNode src, final VarNode tgt) {
+		src.getP2Set().forall(new P2SetVisitor() {
+			public void visit(Node n) {
+				if (n instanceof ClassConstantNode) {
+					ClassConstantNode ccn = (ClassConstantNode) n;
+					Type ccnType = ccn.getClassConstant().toSootType();
+
+					SootClass targetClass = ((RefType) ccnType).getSootClass();
+					if (targetClass.resolvingLevel() == SootClass.DANGLING)
+						Scene.v().forceResolve(targetClass.getName(), SootClass.SIGNATURES);
+
+					tgt.makeP2Set().add(pag.makeAllocNode(src.getValue(), ccnType, ccn.getMethod()));
+					varNodeWorkList.add(tgt);
+				}
+			}
+		});
+		if (tgt.makeP2Set().add(src))
+			varNodeWorkList.add(tgt);
+	}
+}
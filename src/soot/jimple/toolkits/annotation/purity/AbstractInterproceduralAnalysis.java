@@ -27,6 +27,7 @@
 
 package soot.jimple.toolkits.annotation.purity;
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 import soot.*;
 import soot.util.dot.*;
@@ -49,6 +50,14 @@ import soot.toolkits.graph.*;
  * dependencies to resolve unknown summaries. It iterates over recursively 
  * dependant methods.
  *
+ * The call-graph is condensed into strongly connected components. Each
+ * component is analysed once all the components it calls are done.
+ * Only the methods of recursive components are iterated until fixpoint;
+ * any other method is analysed exactly once. The components are analysed
+ * one after the other, unless the subclass declares itself thread-safe
+ * in the constructor: then independent components are analysed
+ * concurrently on a fork/join pool.
+ *
  * Generally, the intra-procedural works by maintaining an abstract
  * value that represent the effect of the method from its entry point
  * and up to the current point. At the entry point, this value is empty.
@@ -71,10 +80,12 @@ public abstract class AbstractInterproceduralAnalysis {
     public static final boolean doCheck = false;
 
     protected CallGraph     cg;        		// analysed call-graph
-    protected DirectedGraph dg;        		// filtered trimed call-graph
-    protected Map data;                		// SootMethod -> summary
-    protected Map<Object,Integer> order;    // SootMethod -> topo order
-    protected Map unanalysed;          		// SootMethod -> summary
+    protected DirectedGraph<SootMethod> dg;	// filtered trimed call-graph
+    protected Map<SootMethod,Object> data;	// SootMethod -> summary
+    protected Map<SootMethod,Integer> order;	// SootMethod -> topo order
+    protected Map<SootMethod,Object> unanalysed;	// SootMethod -> summary
+    private CallGraphComponents<SootMethod> components; // strongly connected components of dg
+    private final boolean threadSafe;	// analyse components concurrently
 
 
     /** Initial summary value for analysed funtions. */
@@ -84,8 +95,10 @@ public abstract class AbstractInterproceduralAnalysis {
      * Whenever the analyse requires the summary of a method you filtered-out,
      * this function is called instead of analyseMethod.
      *
-     * <p> Note: This function is called at most once per filtered-out 
-     * method. It is the equivalent of entryInitialFlow!
+     * <p> Note: The result is cached, so that this function is called
+     * once per filtered-out method, or a few times if several threads ask
+     * for the same method at once. A null result is not cached. It is the
+     * equivalent of entryInitialFlow!
      * 
      */
     protected abstract Object summaryOfUnanalysedMethod(SootMethod method);
@@ -153,21 +166,25 @@ public abstract class AbstractInterproceduralAnalysis {
 			       Object dst)
     {
 	Object accum = newInitialSummary();
-	Iterator it = cg.edgesOutOf(callStmt);
+	Iterator<Edge> it = cg.edgesOutOf(callStmt);
 	copy(accum, dst);
 	while (it.hasNext()) {
-	    Edge edge = (Edge)it.next();
+	    Edge edge = it.next();
 	    SootMethod m = edge.tgt();
-	    Object elem;
-	    if (data.containsKey(m)) {
-		// analysed method
-		elem = data.get(m);
-	    }
-	    else {
+	    Object elem = data.get(m);
+	    if (elem == null) {
 		// unanalysed method
-		if (!unanalysed.containsKey(m)) 
-		    unanalysed.put(m, summaryOfUnanalysedMethod(m));
 		elem = unanalysed.get(m);
+		if (elem == null) {
+		    elem = summaryOfUnanalysedMethod(m);
+		    if (!(unanalysed instanceof ConcurrentMap))
+			unanalysed.put(m, elem);
+		    else if (elem != null) {
+			// a concurrent map cannot hold a null summary
+			Object cached = ((ConcurrentMap<SootMethod,Object>)unanalysed).putIfAbsent(m, elem);
+			if (cached != null) elem = cached;
+		    }
+		}
 	    }
 	    applySummary(src, callStmt, elem, accum);
 	    merge(dst, accum, dst);
@@ -178,26 +195,49 @@ public abstract class AbstractInterproceduralAnalysis {
     /**
      * The constructor performs some preprocessing, but you have to call
      * doAnalysis to preform the real stuff.
+     * The methods are analysed one at a time.
      */
     public AbstractInterproceduralAnalysis(CallGraph        cg,
 					   SootMethodFilter filter,
-					   Iterator         heads,
+					   Iterator<?>      heads,
 					   boolean          verbose)
+    {
+	this(cg, filter, heads, verbose, false);
+    }
+
+    /**
+     * The constructor performs some preprocessing, but you have to call
+     * doAnalysis to preform the real stuff.
+     *
+     * @param threadSafe true if analyseMethod, summaryOfUnanalysedMethod
+     * and the other abstract methods may be called for different methods
+     * at the same time
+     */
+    public AbstractInterproceduralAnalysis(CallGraph        cg,
+					   SootMethodFilter filter,
+					   Iterator<?>      heads,
+					   boolean          verbose,
+					   boolean          threadSafe)
     {
 	this.cg         = cg;
 	this.dg         = new DirectedCallGraph(cg, filter, heads, verbose);
-	this.data       = new HashMap();
-	this.unanalysed = new HashMap();
+	this.threadSafe = threadSafe;
+	if (threadSafe) {
+	    this.data       = new ConcurrentHashMap<SootMethod,Object>();
+	    this.unanalysed = new ConcurrentHashMap<SootMethod,Object>();
+	} else {
+	    this.data       = new HashMap<SootMethod,Object>();
+	    this.unanalysed = new HashMap<SootMethod,Object>();
+	}
 
-	// construct reverse pseudo topological order on filtered methods
-	this.order = new HashMap();
-	Orderer o = new PseudoTopologicalOrderer();
-	Iterator it = (o.newList(dg,true)).iterator();
+	// construct reverse topological order on filtered methods,
+	// callees first
+	this.components = new CallGraphComponents<SootMethod>(dg);
+	this.order = new HashMap<SootMethod,Integer>();
 	int i = 0;
-	while (it.hasNext()) {
-	    this.order.put(it.next(), new Integer(i));
-	    i++;
-	}
+	for (CallGraphComponents.Component<SootMethod> c : components.getComponents())
+	    for (SootMethod m : c.getMethods())
+		this.order.put(m, new Integer(i++));
     }
 
     /**
@@ -220,10 +260,9 @@ public abstract class AbstractInterproceduralAnalysis {
 	int id = 0;
 	Map<SootMethod, Integer> idmap = new HashMap<SootMethod, Integer>();
 
-	// draw sub-graph cluster
-	Iterator it = dg.iterator();
-	while (it.hasNext()) {
-	    SootMethod       m = (SootMethod)it.next();
+	// draw sub-graph cluster, numbered in the order of the call-graph,
+	// which is the same in every run
+	for (SootMethod m : dg) {
 	    DotGraph       sub = dot.createSubGraph("cluster"+id);
 	    DotGraphNode label = sub.drawNode("head"+id);
 	    idmap.put(m, new Integer(id));
@@ -237,12 +276,8 @@ public abstract class AbstractInterproceduralAnalysis {
 	}
 
 	// connect edges
-	it = dg.iterator();
-	while (it.hasNext()) {
-	    SootMethod   m = (SootMethod)it.next();
-	    Iterator   itt = dg.getSuccsOf(m).iterator();
-	    while (itt.hasNext()) {
-		SootMethod mm = (SootMethod)itt.next();
+	for (SootMethod m : dg) {
+	    for (SootMethod mm : dg.getSuccsOf(m)) {
 		DotGraphEdge edge = dot.drawEdge("head"+idmap.get(m),
 						 "head"+idmap.get(mm));
 		edge.setAttribute("ltail","cluster"+idmap.get(m));
@@ -269,9 +304,7 @@ public abstract class AbstractInterproceduralAnalysis {
      */
     public void drawAsManyDot(String prefix, boolean drawUnanalysed)
     {
-	Iterator it = data.keySet().iterator();
-	while (it.hasNext()) {
-	    SootMethod m = (SootMethod)it.next();
+	for (SootMethod m : data.keySet()) {
 	    DotGraph dot = new DotGraph(m.toString());
 	    dot.setGraphLabel(m.toString());
 	    fillDotGraph("X", data.get(m), dot);
@@ -281,9 +314,7 @@ public abstract class AbstractInterproceduralAnalysis {
 	}
 	
 	if (drawUnanalysed) {
-	    it = unanalysed.keySet().iterator();
-	    while (it.hasNext()) {
-		SootMethod m = (SootMethod)it.next();
+	    for (SootMethod m : unanalysed.keySet()) {
 		DotGraph dot = new DotGraph(m.toString());
 		dot.setGraphLabel(m.toString()+" (unanalysed)");
 		fillDotGraph("X", unanalysed.get(m), dot);
@@ -309,7 +340,7 @@ public abstract class AbstractInterproceduralAnalysis {
      * Get an iterator over the list of SootMethod with an associated summary.
      * (Does not contain filtered-out or native methods.)
      */
-    public Iterator getAnalysedMethods()
+    public Iterator<SootMethod> getAnalysedMethods()
     { return data.keySet().iterator(); }
 
     /**
@@ -319,54 +350,28 @@ public abstract class AbstractInterproceduralAnalysis {
      * just after super(cg).
      * Then , you will be able to call drawAsDot, for instance.
      */
-    protected void doAnalysis(boolean verbose)
+    protected void doAnalysis(final boolean verbose)
     {
-	// queue class
-	class IntComparator implements Comparator {
-	    public int compare(Object o1, Object o2) 
-	    {
-		Integer v1 = order.get(o1);
-		Integer v2 = order.get(o2);
-		return v1.intValue()-v2.intValue();
-	    }
-	};
-	SortedSet queue = new TreeSet(new IntComparator());
-	
 	// init
-	Iterator it = order.keySet().iterator();
-	while (it.hasNext()) {
-	    Object o = it.next();
-	    data.put(o, newInitialSummary());
-	    queue.add(o);
-	}
-
-	Map<SootMethod,Integer> nb = new HashMap<SootMethod,Integer>(); // only for debug pretty-printing
-
-	// fixpoint iterations
-	while (!queue.isEmpty()) {
-	    SootMethod m = (SootMethod)queue.first();
-	    queue.remove(m);
-	    Object newSummary = newInitialSummary();
-	    Object oldSummary = data.get(m);
-
-	    if (nb.containsKey(m)) nb.put(m,new Integer(nb.get(m).intValue()+1));
-	    else nb.put(m,new Integer(1));
-	    if (verbose)
-		G.v().out.println(" |- processing "+m.toString()+" ("+nb.get(m)+"-st time)");
-
-	    analyseMethod(m,newSummary);
-	    if (!oldSummary.equals(newSummary)) {
-		// summary for m changed!
-		data.put(m,newSummary);
-		queue.addAll(dg.getPredsOf(m));
-	    }
-	}
+	for (SootMethod m : order.keySet())
+	    data.put(m, newInitialSummary());
+
+	if (verbose)
+	    G.v().out.println("[AM] "+components.getComponents().size()+" strongly connected components");
+
+	// bottom-up: a component is analysed once all its callees are done
+	if (threadSafe)
+	    components.visitBottomUp(new CallGraphComponents.Visitor<SootMethod>() {
+		    public void visit(CallGraphComponents.Component<SootMethod> c)
+		    { analyseComponent(c, verbose); }
+		}, Runtime.getRuntime().availableProcessors());
+	else
+	    for (CallGraphComponents.Component<SootMethod> c : components.getComponents())
+		analyseComponent(c, verbose);
 
 	// fixpoint verification
 	if (doCheck) {
-	    it = order.keySet().iterator();
-	    while (it.hasNext()) {
-		SootMethod m = (SootMethod)it.next();
+	    for (SootMethod m : order.keySet()) {
 		Object newSummary = newInitialSummary();
 		Object oldSummary = data.get(m);
 		analyseMethod(m,newSummary);
@@ -386,5 +391,50 @@ public abstract class AbstractInterproceduralAnalysis {
 	}
 
     }
+
+    /**
+     * Computes the summaries of one strongly connected component. All the
+     * components it calls must be done. A non-recursive method is analysed
+     * once; the methods of a recursive component are iterated until none of
+     * their summaries changes.
+     */
+    private void analyseComponent(CallGraphComponents.Component<SootMethod> c,
+				  boolean verbose)
+    {
+	if (!c.isRecursive()) {
+	    SootMethod m = c.getMethods().get(0);
+	    if (verbose)
+		G.v().out.println(" |- processing "+m.toString());
+	    Object summary = newInitialSummary();
+	    analyseMethod(m,summary);
+	    data.put(m,summary);
+	    return;
+	}
+
+	// fixpoint iterations within the component
+	Map<SootMethod,Integer> nb = new HashMap<SootMethod,Integer>(); // only for debug pretty-printing
+	Deque<SootMethod> queue = new ArrayDeque<SootMethod>(c.getMethods());
+	Set<SootMethod> queued = new HashSet<SootMethod>(c.getMethods());
+	while (!queue.isEmpty()) {
+	    SootMethod m = queue.poll();
+	    queued.remove(m);
+	    Object newSummary = newInitialSummary();
+	    Object oldSummary = data.get(m);
+
+	    if (nb.containsKey(m)) nb.put(m,new Integer(nb.get(m).intValue()+1));
+	    else nb.put(m,new Integer(1));
+	    if (verbose)
+		G.v().out.println(" |- processing "+m.toString()+" ("+nb.get(m)+"-st time)");
+
+	    analyseMethod(m,newSummary);
+	    if (!oldSummary.equals(newSummary)) {
+		// summary for m changed!
+		data.put(m,newSummary);
+		for (SootMethod pred : dg.getPredsOf(m)) {
+		    if (c.contains(pred) && queued.add(pred)) queue.add(pred);
+		}
+	    }
+	}
+    }
 }
 
@@ -28,7 +28,6 @@
 package soot.jimple.toolkits.annotation.purity;
 import java.util.*;
 import soot.*;
-import soot.util.*;
 import soot.jimple.toolkits.callgraph.*;
 import soot.toolkits.graph.*;
 
@@ -42,14 +41,17 @@ import soot.toolkits.graph.*;
  *
  * Methods filtered-out by the SootMethodFilter will not appear in the
  * DirectedGraph!
+ *
+ * The methods and their successors are kept in the order in which they
+ * are reached, so that the graph is the same in every run.
  */
-public class DirectedCallGraph implements DirectedGraph {
+public class DirectedCallGraph implements DirectedGraph<SootMethod> {
 
-    protected Set  nodes;
-    protected Map<Object,List>  succ;
-    protected Map<Object,List>  pred;
-    protected List heads;
-    protected List tails;
+    protected Set<SootMethod>  nodes;
+    protected Map<SootMethod,List<SootMethod>>  succ;
+    protected Map<SootMethod,List<SootMethod>>  pred;
+    protected List<SootMethod> heads;
+    protected List<SootMethod> tails;
     protected int  size;
 
     /**
@@ -65,35 +67,33 @@ public class DirectedCallGraph implements DirectedGraph {
      */
     public DirectedCallGraph(CallGraph        cg,
 			     SootMethodFilter filter,
-			     Iterator         heads,
+			     Iterator<?>      heads,
 			     boolean          verbose)
     {
 	// filter heads by filter
-	List filteredHeads = new LinkedList();
+	List<SootMethod> filteredHeads = new LinkedList<SootMethod>();
 	while (heads.hasNext()) {
 	    SootMethod m = (SootMethod) heads.next();
 	    if (m.isConcrete() && filter.want(m)) filteredHeads.add(m);
 	}
 
-	this.nodes = new HashSet(filteredHeads);
+	this.nodes = new LinkedHashSet<SootMethod>(filteredHeads);
 	
-	MultiMap s = new HashMultiMap();
-	MultiMap p = new HashMultiMap();
+	Map<SootMethod,Set<SootMethod>> s = new HashMap<SootMethod,Set<SootMethod>>();
+	Map<SootMethod,Set<SootMethod>> p = new HashMap<SootMethod,Set<SootMethod>>();
 
 	// simple breadth-first visit
-	Set remain = new HashSet(filteredHeads);
+	Set<SootMethod> remain = new LinkedHashSet<SootMethod>(filteredHeads);
 	int nb = 0;
 	if (verbose) G.v().out.println("[AM] dumping method dependencies");
 	while (!remain.isEmpty()) {
-	    Set newRemain = new HashSet();
-	    Iterator it = remain.iterator();
-	    while (it.hasNext()) {
-		SootMethod m = (SootMethod)it.next();
-		Iterator itt = cg.edgesOutOf(m);
+	    Set<SootMethod> newRemain = new LinkedHashSet<SootMethod>();
+	    for (SootMethod m : remain) {
+		Iterator<Edge> itt = cg.edgesOutOf(m);
 		if (verbose) 
 		    G.v().out.println(" |- "+m.toString()+" calls");
 		while (itt.hasNext())  {
-		    Edge edge = (Edge)itt.next();
+		    Edge edge = itt.next();
 		    SootMethod mm = edge.tgt();
 		    boolean keep = mm.isConcrete() && filter.want(mm);
 		    if (verbose)
@@ -101,8 +101,8 @@ public class DirectedCallGraph implements DirectedGraph {
 					  (keep?"":" (filtered out)"));
 		    if (keep) {
 			if (this.nodes.add(mm)) newRemain.add(mm);
-			s.put(m,mm);
-			p.put(mm,m);
+			add(s,m,mm);
+			add(p,mm,m);
 		    }
 		}
 		nb++;
@@ -111,18 +111,16 @@ public class DirectedCallGraph implements DirectedGraph {
 	}
 	G.v().out.println("[AM] number of methods to be analysed: "+nb);
 
-	// MultiMap -> Map of List
-	this.succ   = new HashMap();
-	this.pred   = new HashMap();
-	this.tails  = new LinkedList();
-	this.heads  = new LinkedList();
-	Iterator it = this.nodes.iterator();
-	while (it.hasNext()) {
-	    Object x = it.next();
-	    Set ss   = s.get(x);
-	    Set pp   = p.get(x);
-	    this.succ.put(x, new LinkedList(ss));
-	    this.pred.put(x, new LinkedList(pp));
+	// Map of Set -> Map of List
+	this.succ   = new HashMap<SootMethod,List<SootMethod>>();
+	this.pred   = new HashMap<SootMethod,List<SootMethod>>();
+	this.tails  = new LinkedList<SootMethod>();
+	this.heads  = new LinkedList<SootMethod>();
+	for (SootMethod x : this.nodes) {
+	    List<SootMethod> ss = list(s.get(x));
+	    List<SootMethod> pp = list(p.get(x));
+	    this.succ.put(x, ss);
+	    this.pred.put(x, pp);
 	    if (ss.isEmpty()) this.tails.add(x);
 	    if (pp.isEmpty()) this.heads.add(x);
 	}
@@ -130,20 +128,34 @@ public class DirectedCallGraph implements DirectedGraph {
 	this.size  = this.nodes.size();
     }
 
+    private static void add(Map<SootMethod,Set<SootMethod>> map,
+			    SootMethod from, SootMethod to)
+    {
+	Set<SootMethod> set = map.get(from);
+	if (set == null) map.put(from, set = new LinkedHashSet<SootMethod>());
+	set.add(to);
+    }
+
+    private static List<SootMethod> list(Set<SootMethod> set)
+    {
+	if (set == null) return new LinkedList<SootMethod>();
+	return new LinkedList<SootMethod>(set);
+    }
+
     /** You get a List of SootMethod. */
-    public List getHeads() { return heads; }
+    public List<SootMethod> getHeads() { return heads; }
 
     /** You get a List of SootMethod. */
-    public List getTails() { return tails; }
+    public List<SootMethod> getTails() { return tails; }
 
     /** You get an Iterator on SootMethod. */
-    public Iterator iterator() { return nodes.iterator(); }
+    public Iterator<SootMethod> iterator() { return nodes.iterator(); }
 
     public int size() { return size; }
     
     /** You get a List of SootMethod. */
-    public List getSuccsOf(Object s) { return succ.get(s); }
+    public List<SootMethod> getSuccsOf(SootMethod s) { return succ.get(s); }
 
     /** You get a List of SootMethod. */
-    public List getPredsOf(Object s) { return pred.get(s); }
+    public List<SootMethod> getPredsOf(SootMethod s) { return pred.get(s); }
 }
@@ -41,6 +41,7 @@ public class PurityEdge
     private String     field; 
     private PurityNode source, target;
     private boolean    inside;
+    private int        hash;
 
     PurityEdge(PurityNode source, String field, PurityNode target, boolean inside)
     {
@@ -48,6 +49,7 @@ public class PurityEdge
 	this.field  = field;
 	this.target = target;
 	this.inside = inside;
+	this.hash   = field.hashCode()+target.hashCode()+source.hashCode()+(inside?69:0);
     }
 
     public String     getField()  { return field; }
@@ -56,13 +58,14 @@ public class PurityEdge
     public boolean    isInside()  { return inside; }
 
     public int hashCode() 
-    { return field.hashCode()+target.hashCode()+source.hashCode()+(inside?69:0); }
+    { return hash; }
 
     public boolean equals(Object o)
     {
+	if (o == this) return true;
 	if (!(o instanceof PurityEdge)) return false;
 	PurityEdge e = (PurityEdge)o;
-	return source.equals(e.source) && field.equals(e.field) 
+	return hash == e.hash && source.equals(e.source) && field.equals(e.field) 
 	    && target.equals(e.target) && inside==e.inside;
     }
 
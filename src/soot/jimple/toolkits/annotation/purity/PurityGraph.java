@@ -27,6 +27,9 @@
 
 package soot.jimple.toolkits.annotation.purity;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import soot.*;
 import soot.util.*;
 import soot.util.dot.*;
@@ -36,6 +39,14 @@ import soot.jimple.*;
  * Purity graphs are mutable structures that are updated in-place.
  * You can safely hash graphs. Equality comparison means isomorphism
  * (equal nodes, equal edges).
+ *
+ * Copying a graph is cheap: the copy shares the nine component sets and
+ * maps with the original, and a component is only duplicated when one of
+ * the graphs first writes to it. Most statements only touch the locals,
+ * so consecutive flow values share the rest of their structure. The hash
+ * code is cached, and shared components are not compared element by
+ * element. A finished graph, such as a method summary, may be copied by
+ * several threads at once.
  */
 
 /**
@@ -87,15 +98,37 @@ public class PurityGraph
 {
     public static final boolean doCheck = false;
 
-    protected Set      nodes;      // all nodes
-    protected Set      paramNodes; // only parameter & this nodes
-    protected MultiMap edges;      // source node -> edges
-    protected MultiMap locals;     // local -> nodes
-    protected Set      ret;        // return -> nodes
-    protected Set      globEscape; // nodes escaping globally
-    protected MultiMap backEdges;  // target node -> edges
-    protected MultiMap backLocals; // target node -> local node sources
-    protected MultiMap mutated;    // node -> field such that (node,field) is mutated
+    protected Set<PurityNode>                nodes;      // all nodes
+    protected Set<PurityNode>                paramNodes; // only parameter & this nodes
+    protected MultiMap<PurityNode,PurityEdge> edges;      // source node -> edges
+    protected MultiMap<Local,PurityNode>      locals;     // local -> nodes
+    protected Set<PurityNode>                ret;        // return -> nodes
+    protected Set<PurityNode>                globEscape; // nodes escaping globally
+    protected MultiMap<PurityNode,PurityEdge> backEdges;  // target node -> edges
+    protected MultiMap<PurityNode,Local>      backLocals; // target node -> local node sources
+    protected MultiMap<PurityNode,String>     mutated;    // node -> field such that (node,field) is mutated
+
+    // components, as bits of owned
+    private static final int NODES       = 1;
+    private static final int PARAM_NODES = 2;
+    private static final int EDGES       = 4;
+    private static final int LOCALS      = 8;
+    private static final int RET         = 16;
+    private static final int GLOB_ESCAPE = 32;
+    private static final int BACK_EDGES  = 64;
+    private static final int BACK_LOCALS = 128;
+    private static final int MUTATED     = 256;
+    private static final int ALL         = 511;
+
+    private volatile int owned; // components not shared with another graph
+    private int hash;  // cached hash code, 0 if unknown
+
+    /**
+     * Other threads clear bits of owned when they copy a finished graph,
+     * such as a method summary, so it is only updated atomically.
+     */
+    private static final AtomicIntegerFieldUpdater<PurityGraph> OWNED =
+	AtomicIntegerFieldUpdater.newUpdater(PurityGraph.class, "owned");
 
     /**
      * Initially empty graph.
@@ -103,80 +136,151 @@ public class PurityGraph
     PurityGraph()
     {
 	// nodes & paramNodes are added lazily
-	nodes      = new HashSet();
-	paramNodes = new HashSet();
-	edges      = new HashMultiMap();
-	locals     = new HashMultiMap();
-	ret        = new HashSet();
-	globEscape = new HashSet();
-	backEdges  = new HashMultiMap();
-	backLocals = new HashMultiMap();
-	mutated    = new HashMultiMap();
+	nodes      = new HashSet<PurityNode>();
+	paramNodes = new HashSet<PurityNode>();
+	edges      = new HashMultiMap<PurityNode,PurityEdge>();
+	locals     = new HashMultiMap<Local,PurityNode>();
+	ret        = new HashSet<PurityNode>();
+	globEscape = new HashSet<PurityNode>();
+	backEdges  = new HashMultiMap<PurityNode,PurityEdge>();
+	backLocals = new HashMultiMap<PurityNode,Local>();
+	mutated    = new HashMultiMap<PurityNode,String>();
+	owned      = ALL;
 	if (doCheck) sanityCheck();
     }
 
     /**
-     * Copy constructor.
+     * Copy constructor. The copy shares all components with x until
+     * either graph is modified.
      */
     PurityGraph(PurityGraph x)
     {
-	nodes      = new HashSet(x.nodes);
-	paramNodes = new HashSet(x.paramNodes);
-	edges      = new HashMultiMap(x.edges);
-	locals     = new HashMultiMap(x.locals);
-	ret        = new HashSet(x.ret);
-	globEscape = new HashSet(x.globEscape);
-	backEdges  = new HashMultiMap(x.backEdges);
-	backLocals = new HashMultiMap(x.backLocals);
-	mutated    = new HashMultiMap(x.mutated);
+	nodes      = x.nodes;
+	paramNodes = x.paramNodes;
+	edges      = x.edges;
+	locals     = x.locals;
+	ret        = x.ret;
+	globEscape = x.globEscape;
+	backEdges  = x.backEdges;
+	backLocals = x.backLocals;
+	mutated    = x.mutated;
+	hash       = x.hash;
+	owned      = 0;
+	x.disown(ALL);
 	if (doCheck) sanityCheck();
     }
 
+    // accessors for writing a component, duplicating it first if shared
+
+    private boolean own(int component)
+    {
+	hash = 0;
+	if ((owned & component) != 0) return false;
+	claim(component);
+	return true;
+    }
+
+    /** Marks the given components, freshly allocated, as not shared. */
+    private void claim(int components)
+    {
+	int o;
+	do o = owned;
+	while (!OWNED.compareAndSet(this, o, o | components));
+    }
+
+    private void share(int component, PurityGraph arg)
+    {
+	hash = 0;
+	disown(component);
+	arg.disown(component);
+    }
+
+    /** Marks the given components as shared with another graph. */
+    private void disown(int components)
+    {
+	int o;
+	do o = owned;
+	while ((o & components) != 0
+	       && !OWNED.compareAndSet(this, o, o & ~components));
+    }
+
+    protected final Set<PurityNode> ownNodes()
+    { if (own(NODES)) nodes = new HashSet<PurityNode>(nodes); return nodes; }
+
+    protected final Set<PurityNode> ownParamNodes()
+    { if (own(PARAM_NODES)) paramNodes = new HashSet<PurityNode>(paramNodes); return paramNodes; }
+
+    protected final MultiMap<PurityNode,PurityEdge> ownEdges()
+    { if (own(EDGES)) edges = new HashMultiMap<PurityNode,PurityEdge>(edges); return edges; }
+
+    protected final MultiMap<Local,PurityNode> ownLocals()
+    { if (own(LOCALS)) locals = new HashMultiMap<Local,PurityNode>(locals); return locals; }
+
+    protected final Set<PurityNode> ownRet()
+    { if (own(RET)) ret = new HashSet<PurityNode>(ret); return ret; }
+
+    protected final Set<PurityNode> ownGlobEscape()
+    { if (own(GLOB_ESCAPE)) globEscape = new HashSet<PurityNode>(globEscape); return globEscape; }
+
+    protected final MultiMap<PurityNode,PurityEdge> ownBackEdges()
+    { if (own(BACK_EDGES)) backEdges = new HashMultiMap<PurityNode,PurityEdge>(backEdges); return backEdges; }
+
+    protected final MultiMap<PurityNode,Local> ownBackLocals()
+    { if (own(BACK_LOCALS)) backLocals = new HashMultiMap<PurityNode,Local>(backLocals); return backLocals; }
+
+    protected final MultiMap<PurityNode,String> ownMutated()
+    { if (own(MUTATED)) mutated = new HashMultiMap<PurityNode,String>(mutated); return mutated; }
+
     public int hashCode() 
     { 
-	return nodes.hashCode()
-	    //+  paramNodes.hashCode()  // redundant info
-	    +  edges.hashCode()
-	    +  locals.hashCode()
-	    +  ret.hashCode()
-	    +  globEscape.hashCode()
-	    //+  backEdges.hashCode()   // redundant info
-	    //+  backLocals.hashCode()  // redundant info
-	    + mutated.hashCode()
-	    ;
+	if (hash == 0)
+	    hash = nodes.hashCode()
+		//+  paramNodes.hashCode()  // redundant info
+		+  edges.hashCode()
+		+  locals.hashCode()
+		+  ret.hashCode()
+		+  globEscape.hashCode()
+		//+  backEdges.hashCode()   // redundant info
+		//+  backLocals.hashCode()  // redundant info
+		+ mutated.hashCode()
+		;
+	return hash;
     }
 
     public boolean equals(Object o)
     {
+	if (o == this) return true;
 	if (!(o instanceof PurityGraph)) return false;
 	PurityGraph g = (PurityGraph)o;
-	return nodes.equals(g.nodes)
+	if (hashCode() != g.hashCode()) return false;
+	return (nodes == g.nodes || nodes.equals(g.nodes))
 	    //&& paramNodes.equals(g.paramNodes)  // redundant info
-	    && edges.equals(g.edges)
-	    && locals.equals(g.locals) 
-	    && ret.equals(g.ret)
-	    && globEscape.equals(g.globEscape)
+	    && (edges == g.edges || edges.equals(g.edges))
+	    && (locals == g.locals || locals.equals(g.locals))
+	    && (ret == g.ret || ret.equals(g.ret))
+	    && (globEscape == g.globEscape || globEscape.equals(g.globEscape))
 	    //&& backEdges.equals(g.backEdges)    // redundant info
 	    //&& backLocals.equals(g.backLocals)  // redundant info
-	    && mutated.equals(g.mutated)
+	    && (mutated == g.mutated || mutated.equals(g.mutated))
 	    ;
     }
 
     /** 
      * Caching: this semm to actually improve both speed and memory 
      * consumption!
+     * The caches are shared by all threads of the interprocedural analysis.
      */
-    private static final Map<PurityNode, PurityNode> nodeCache =  new HashMap<PurityNode, PurityNode>();
-    private static final Map<PurityEdge, PurityEdge> edgeCache =  new HashMap<PurityEdge, PurityEdge>();
+    private static final ConcurrentMap<PurityNode, PurityNode> nodeCache =  new ConcurrentHashMap<PurityNode, PurityNode>();
+    private static final ConcurrentMap<PurityEdge, PurityEdge> edgeCache =  new ConcurrentHashMap<PurityEdge, PurityEdge>();
     private static PurityNode cacheNode(PurityNode p)
     {
-	if (!nodeCache.containsKey(p)) nodeCache.put(p,p);
-	return nodeCache.get(p);
+	PurityNode cached = nodeCache.putIfAbsent(p,p);
+	return cached == null ? p : cached;
     }
     private static PurityEdge cacheEdge(PurityEdge e)
     {
-	if (!edgeCache.containsKey(e)) edgeCache.put(e,e);
-	return edgeCache.get(e);
+	PurityEdge cached = edgeCache.putIfAbsent(e,e);
+	return cached == null ? e : cached;
     }
 
     /**
@@ -196,7 +300,7 @@ public class PurityGraph
 	g.nodes.add(glob);
 
 	// parameters & this escape globally
-	Iterator it = m.getParameterTypes().iterator();
+	Iterator<Type> it = m.getParameterTypes().iterator();
 	int i = 0;
 	while (it.hasNext()) {
 	    if (it.next() instanceof RefLikeType) {
@@ -240,18 +344,29 @@ public class PurityGraph
     /**
      * Replace the current graph with its union with arg.
      * arg is not modified.
+     * Components shared with arg are left alone, and empty components
+     * are replaced by the ones of arg.
      */
     void union(PurityGraph arg)
     {
-	nodes.addAll(arg.nodes);
-	paramNodes.addAll(arg.paramNodes);
-	edges.putAll(arg.edges);
-	locals.putAll(arg.locals);
-	ret.addAll(arg.ret);
-	globEscape.addAll(arg.globEscape);
-	backEdges.putAll(arg.backEdges);
-	backLocals.putAll(arg.backLocals);
-	mutated.putAll(arg.mutated);
+	if (nodes.isEmpty()) { nodes = arg.nodes; share(NODES, arg); }
+	else if (nodes != arg.nodes) ownNodes().addAll(arg.nodes);
+	if (paramNodes.isEmpty()) { paramNodes = arg.paramNodes; share(PARAM_NODES, arg); }
+	else if (paramNodes != arg.paramNodes) ownParamNodes().addAll(arg.paramNodes);
+	if (edges.isEmpty()) { edges = arg.edges; share(EDGES, arg); }
+	else if (edges != arg.edges) ownEdges().putAll(arg.edges);
+	if (locals.isEmpty()) { locals = arg.locals; share(LOCALS, arg); }
+	else if (locals != arg.locals) ownLocals().putAll(arg.locals);
+	if (ret.isEmpty()) { ret = arg.ret; share(RET, arg); }
+	else if (ret != arg.ret) ownRet().addAll(arg.ret);
+	if (globEscape.isEmpty()) { globEscape = arg.globEscape; share(GLOB_ESCAPE, arg); }
+	else if (globEscape != arg.globEscape) ownGlobEscape().addAll(arg.globEscape);
+	if (backEdges.isEmpty()) { backEdges = arg.backEdges; share(BACK_EDGES, arg); }
+	else if (backEdges != arg.backEdges) ownBackEdges().putAll(arg.backEdges);
+	if (backLocals.isEmpty()) { backLocals = arg.backLocals; share(BACK_LOCALS, arg); }
+	else if (backLocals != arg.backLocals) ownBackLocals().putAll(arg.backLocals);
+	if (mutated.isEmpty()) { mutated = arg.mutated; share(MUTATED, arg); }
+	else if (mutated != arg.mutated) ownMutated().putAll(arg.mutated);
 	if (doCheck) sanityCheck();
     }
 
@@ -262,12 +377,12 @@ public class PurityGraph
     protected void sanityCheck()
     {
 	boolean err = false;
-	Iterator it = edges.keySet().iterator();
+	Iterator<PurityNode> it = edges.keySet().iterator();
 	while (it.hasNext()) {
-	    PurityNode src = (PurityNode)it.next();
-	    Iterator itt = edges.get(src).iterator();
+	    PurityNode src = it.next();
+	    Iterator<PurityEdge> itt = edges.get(src).iterator();
 	    while (itt.hasNext()) {
-		PurityEdge e = (PurityEdge)itt.next();
+		PurityEdge e = itt.next();
 		if (!src.equals(e.getSource()))
 		    {G.v().out.println("invalid edge source "+e+", should be "+src);err=true;}
 		if (!nodes.contains(e.getSource()))
@@ -282,10 +397,10 @@ public class PurityGraph
 	}
 	it = backEdges.keySet().iterator();
 	while (it.hasNext()) {
-	    PurityNode dst = (PurityNode)it.next();
-	    Iterator itt = backEdges.get(dst).iterator();
+	    PurityNode dst = it.next();
+	    Iterator<PurityEdge> itt = backEdges.get(dst).iterator();
 	    while (itt.hasNext()) {
-		PurityEdge e = (PurityEdge)itt.next();
+		PurityEdge e = itt.next();
 		if (!dst.equals(e.getTarget()))
 		    {G.v().out.println("invalid backEdge dest "+e+", should be "+dst);err=true;}
 		if (!edges.get(e.getSource()).contains(e))
@@ -312,12 +427,12 @@ public class PurityGraph
 	    if (!nodes.contains(n))
 		{G.v().out.println("globEscape not in nodes "+n);err=true;}
 	}
-	it = locals.keySet().iterator();
-	while (it.hasNext()) {
-	    Local l = (Local)it.next();
-	    Iterator itt = locals.get(l).iterator();
+	Iterator<Local> itl = locals.keySet().iterator();
+	while (itl.hasNext()) {
+	    Local l = itl.next();
+	    Iterator<PurityNode> itt = locals.get(l).iterator();
 	    while (itt.hasNext()) {
-		PurityNode n = (PurityNode)itt.next();
+		PurityNode n = itt.next();
 		if (!nodes.contains(n))
 		    {G.v().out.println("target of local node in nodes "+l+" / "+n);err=true;}
 		if (!backLocals.get(n).contains(l))
@@ -326,10 +441,10 @@ public class PurityGraph
 	}
 	it = backLocals.keySet().iterator();
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode)it.next();
-	    Iterator itt = backLocals.get(n).iterator();
+	    PurityNode n = it.next();
+	    Iterator<Local> itt = backLocals.get(n).iterator();
 	    while (itt.hasNext()) {
-		Local l = (Local)itt.next();
+		Local l = itt.next();
 		if (!nodes.contains(n))
 		    {G.v().out.println("backLocal node not in in nodes "+l+" / "+n);err=true;}
 		if (!locals.get(l).contains(n))
@@ -361,12 +476,12 @@ public class PurityGraph
     // ESCAPE INFORMATION //
     ////////////////////////
 
-    protected void internalPassEdges(Set toColor, Set<PurityNode> dest, 
+    protected void internalPassEdges(Set<PurityEdge> toColor, Set<PurityNode> dest, 
 				     boolean consider_inside)
     {
-	Iterator it = toColor.iterator();
+	Iterator<PurityEdge> it = toColor.iterator();
 	while (it.hasNext()) {
-	    PurityEdge edge = (PurityEdge) it.next();
+	    PurityEdge edge = it.next();
 	    if (consider_inside || !edge.isInside()) {
 		PurityNode node = edge.getTarget();
 		if (!dest.contains(node)) {
@@ -386,12 +501,12 @@ public class PurityGraph
 	}	
     }
 
-    protected void internalPassNodes(Set toColor, Set<PurityNode> dest, 
+    protected void internalPassNodes(Set<PurityNode> toColor, Set<PurityNode> dest, 
 				     boolean consider_inside)
     {
-	Iterator it = toColor.iterator();
+	Iterator<PurityNode> it = toColor.iterator();
 	while (it.hasNext()) 
-	    internalPassNode((PurityNode)it.next(),
+	    internalPassNode(it.next(),
 			     dest, consider_inside);
     }
 
@@ -480,9 +595,9 @@ public class PurityGraph
 	internalPassNodes(paramNodes,S2,true);
 	it = S2.iterator();
 	while (it.hasNext()) {
-	    Iterator itt = edges.get(it.next()).iterator();
+	    Iterator<PurityEdge> itt = edges.get(it.next()).iterator();
 	    while (itt.hasNext()) {
-		PurityEdge e = (PurityEdge)itt.next();
+		PurityEdge e = itt.next();
 		if (e.isInside() && S1.contains(e.getTarget()))
 		    return PARAM_RO;
 	    }
@@ -519,123 +634,123 @@ public class PurityGraph
     // utility functions to update local / backLocals constitently
     protected final boolean localsRemove(Local local)
     {
-	Iterator it = locals.get(local).iterator();
+	Iterator<PurityNode> it = locals.get(local).iterator();
 	while (it.hasNext()) {
-	    Object node = it.next();
-	    backLocals.remove(node,local);
+	    PurityNode node = it.next();
+	    ownBackLocals().remove(node,local);
 	}
-	return locals.remove(local);
+	return ownLocals().remove(local);
     }
 
     protected final boolean localsPut(Local local, PurityNode node)
     {
-	backLocals.put(node,local);
-	return locals.put(local,node);
+	ownBackLocals().put(node,local);
+	return ownLocals().put(local,node);
     }
 
-    protected final boolean localsPutAll(Local local, Set nodes)
+    protected final boolean localsPutAll(Local local, Set<PurityNode> nodes)
     {
-	Iterator it = nodes.iterator();
+	Iterator<PurityNode> it = nodes.iterator();
 	while (it.hasNext()) {
-	    Object node = it.next();
-	    backLocals.put(node,local);
+	    PurityNode node = it.next();
+	    ownBackLocals().put(node,local);
 	}
-	return locals.putAll(local,nodes);
+	return ownLocals().putAll(local,nodes);
     }
 
     /** Utility function to remove a node & all adjacent edges */
     protected final void removeNode(PurityNode n)
     {
-	Iterator it = edges.get(n).iterator();
+	Iterator<PurityEdge> it = edges.get(n).iterator();
 	while (it.hasNext()) {
-	    PurityEdge e = (PurityEdge)it.next();
-	    backEdges.remove(e.getTarget(),e);
+	    PurityEdge e = it.next();
+	    ownBackEdges().remove(e.getTarget(),e);
 	}
 	it = backEdges.get(n).iterator();
 	while (it.hasNext()) {
-	    PurityEdge e = (PurityEdge)it.next();
-	    edges.remove(e.getSource(),e);
+	    PurityEdge e = it.next();
+	    ownEdges().remove(e.getSource(),e);
 	}
-	it = backLocals.get(n).iterator();
-	while (it.hasNext()) {
-	    Local l = (Local)it.next();
-	    locals.remove(l,n);
+	Iterator<Local> itl = backLocals.get(n).iterator();
+	while (itl.hasNext()) {
+	    Local l = itl.next();
+	    ownLocals().remove(l,n);
 	}
-	ret.remove(n);
-	edges.remove(n);
-	backEdges.remove(n);
-	backLocals.remove(n);
-	nodes.remove(n);
-	paramNodes.remove(n);
-	globEscape.remove(n);
-	mutated.remove(n);
+	ownRet().remove(n);
+	ownEdges().remove(n);
+	ownBackEdges().remove(n);
+	ownBackLocals().remove(n);
+	ownNodes().remove(n);
+	ownParamNodes().remove(n);
+	ownGlobEscape().remove(n);
+	ownMutated().remove(n);
     }
 
 
     /** Utility function to merge node src into dst; src is removed */
     protected final void mergeNodes(PurityNode src, PurityNode dst)
     {
-	Iterator it = (new LinkedList(edges.get(src))).iterator();
+	Iterator<PurityEdge> it = (new LinkedList<PurityEdge>(edges.get(src))).iterator();
 	while (it.hasNext()) {
-	    PurityEdge e = (PurityEdge)it.next();
+	    PurityEdge e = it.next();
 	    PurityNode n = e.getTarget();
 	    if (n.equals(src)) n = dst;	    
 	    PurityEdge ee = 
 		cacheEdge(new PurityEdge(dst, e.getField(), n, e.isInside()));
-	    edges.remove(src, e);
-	    edges.put(dst, ee);
-	    backEdges.remove(n, e);
-	    backEdges.put(n, ee);
+	    ownEdges().remove(src, e);
+	    ownEdges().put(dst, ee);
+	    ownBackEdges().remove(n, e);
+	    ownBackEdges().put(n, ee);
 	}
-	it = (new LinkedList(backEdges.get(src))).iterator();
+	it = (new LinkedList<PurityEdge>(backEdges.get(src))).iterator();
 	while (it.hasNext()) {
-	    PurityEdge e = (PurityEdge)it.next();
+	    PurityEdge e = it.next();
 	    PurityNode n = e.getSource();
 	    if (n.equals(src)) n = dst;
 	    PurityEdge ee = 
 		cacheEdge(new PurityEdge(n, e.getField(), dst, e.isInside()));
-	    edges.remove(n, e);
-	    edges.put(n, ee);
-	    backEdges.remove(src, e);
-	    backEdges.put(dst, ee);
+	    ownEdges().remove(n, e);
+	    ownEdges().put(n, ee);
+	    ownBackEdges().remove(src, e);
+	    ownBackEdges().put(dst, ee);
 	}
-	it = (new LinkedList(backLocals.get(src))).iterator();
-	while (it.hasNext()) {
-	    Local l = (Local)it.next();
-	    locals.remove(l, src);
-	    backLocals.remove(src, l);
-	    locals.put(l,dst);
-	    backLocals.put(dst, l);
+	Iterator<Local> itl = (new LinkedList<Local>(backLocals.get(src))).iterator();
+	while (itl.hasNext()) {
+	    Local l = itl.next();
+	    ownLocals().remove(l, src);
+	    ownBackLocals().remove(src, l);
+	    ownLocals().put(l,dst);
+	    ownBackLocals().put(dst, l);
 	}
 	{
-	    Set m = mutated.get(src);
-	    mutated.remove(src);
-	    mutated.putAll(dst,m);
+	    Set<String> m = mutated.get(src);
+	    ownMutated().remove(src);
+	    ownMutated().putAll(dst,m);
 	}
 	if (ret.contains(src)) {
-	    ret.remove(src);
-	    ret.add(dst);
+	    ownRet().remove(src);
+	    ownRet().add(dst);
 	}
 	if (globEscape.contains(src)) {
-	    globEscape.remove(src);
-	    globEscape.add(dst);
+	    ownGlobEscape().remove(src);
+	    ownGlobEscape().add(dst);
 	}
-	nodes.remove(src);
-	nodes.add(dst);
-	paramNodes.remove(src);
-	if (dst.isParam()) paramNodes.add(dst);
+	ownNodes().remove(src);
+	ownNodes().add(dst);
+	ownParamNodes().remove(src);
+	if (dst.isParam()) ownParamNodes().add(dst);
     }
 
     /** Experimental simplification: merge redundant load nodes. */
     void simplifyLoad()
     {
-	Iterator it = (new LinkedList(nodes)).iterator();
+	Iterator<PurityNode> it = (new LinkedList<PurityNode>(nodes)).iterator();
 	while (it.hasNext()) {
-	    PurityNode p = (PurityNode)it.next();
+	    PurityNode p = it.next();
 	    Map<String, PurityNode> fmap = new HashMap<String, PurityNode>();
-	    Iterator itt = (new LinkedList(edges.get(p))).iterator();
+	    Iterator<PurityEdge> itt = (new LinkedList<PurityEdge>(edges.get(p))).iterator();
 	    while (itt.hasNext()) {
-		PurityEdge e   = (PurityEdge)itt.next();
+		PurityEdge e   = itt.next();
 		PurityNode tgt = e.getTarget();
 		if (!e.isInside() && !tgt.equals(p)) {
 		    String f = e.getField();
@@ -657,14 +772,14 @@ public class PurityGraph
 	internalPassNodes(ret,r,true);
 	internalPassNodes(globEscape,r,true);
 	internalPassNode(PurityGlobalNode.node,r,true);
-	Iterator it = nodes.iterator();
+	Iterator<PurityNode> it = nodes.iterator();
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode) it.next();
+	    PurityNode n = it.next();
 	    if (n.isLoad()) internalPassNode(n,r,true);
 	} 
-	it = (new LinkedList(nodes)).iterator();
+	it = (new LinkedList<PurityNode>(nodes)).iterator();
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode) it.next();
+	    PurityNode n = it.next();
 	    if (n.isInside() && !r.contains(n)) removeNode(n);
 	}
 	if (doCheck) sanityCheck();
@@ -680,8 +795,10 @@ public class PurityGraph
      */
     void removeLocals()
     {
-	locals = new HashMultiMap();
-	backLocals = new HashMultiMap();
+	locals = new HashMultiMap<Local,PurityNode>();
+	backLocals = new HashMultiMap<PurityNode,Local>();
+	claim(LOCALS | BACK_LOCALS);
+	hash = 0;
     }
 
     /** Copy assignment left = right. */
@@ -691,8 +808,8 @@ public class PurityGraph
 	PurityNode node = cacheNode(new PurityParamNode(right));
 	localsRemove(left);
 	localsPut(left,node);
-	nodes.add(node);
-	paramNodes.add(node);
+	ownNodes().add(node);
+	ownParamNodes().add(node);
 	if (doCheck) sanityCheck();
     }
 
@@ -703,8 +820,8 @@ public class PurityGraph
 	PurityNode node = PurityThisNode.node;
 	localsRemove(left);
 	localsPut(left,node);
-	nodes.add(node);
-	paramNodes.add(node);
+	ownNodes().add(node);
+	ownParamNodes().add(node);
 	if (doCheck) sanityCheck();
     }
 
@@ -721,8 +838,8 @@ public class PurityGraph
     void returnLocal(Local right)
     {
 	// strong update on ret
-	ret.clear();
-	ret.addAll(locals.get(right));
+	ownRet().clear();
+	ownRet().addAll(locals.get(right));
 	if (doCheck) sanityCheck();
     }
 
@@ -736,13 +853,13 @@ public class PurityGraph
 
 	// strong update on local
 	localsRemove(left);
-	Iterator itRight = locals.get(right).iterator();
+	Iterator<PurityNode> itRight = locals.get(right).iterator();
 	while (itRight.hasNext()) {
-	    PurityNode nodeRight = (PurityNode) itRight.next();
+	    PurityNode nodeRight = itRight.next();
 
-	    Iterator itEdges = edges.get(nodeRight).iterator();
+	    Iterator<PurityEdge> itEdges = edges.get(nodeRight).iterator();
 	    while (itEdges.hasNext()) {
-		PurityEdge edge = (PurityEdge) itEdges.next();
+		PurityEdge edge = itEdges.next();
 		if (edge.isInside() && edge.getField().equals(field))
 		    localsPut(left, edge.getTarget());
 	    }
@@ -755,15 +872,15 @@ public class PurityGraph
 	    
 	    // we add a label load node & outside edges
 	    PurityNode loadNode = cacheNode(new PurityStmtNode(stmt,false));
-	    nodes.add(loadNode);
+	    ownNodes().add(loadNode);
 	    
 	    Iterator<PurityNode> itEsc = esc.iterator();
 	    while (itEsc.hasNext()) {
 		PurityNode node = itEsc.next();
 		PurityEdge edge = 
 		    cacheEdge(new PurityEdge(node, field, loadNode, false));
-		if (edges.put(node, edge))
-		    backEdges.put(loadNode, edge);
+		if (ownEdges().put(node, edge))
+		    ownBackEdges().put(loadNode, edge);
 	    }
 	    localsPut(left, loadNode);
 	}
@@ -776,19 +893,19 @@ public class PurityGraph
     void assignLocalToField(Local right, Local left, String field)
     {
 	// weak update on inside edges
-	Iterator itLeft = locals.get(left).iterator();
+	Iterator<PurityNode> itLeft = locals.get(left).iterator();
 	while (itLeft.hasNext()) {
-	    PurityNode nodeLeft = (PurityNode) itLeft.next();
-	    Iterator itRight = locals.get(right).iterator();
+	    PurityNode nodeLeft = itLeft.next();
+	    Iterator<PurityNode> itRight = locals.get(right).iterator();
 	    while (itRight.hasNext()) {
-		PurityNode nodeRight = (PurityNode) itRight.next();
+		PurityNode nodeRight = itRight.next();
 		PurityEdge edge = 
 		    cacheEdge(new PurityEdge(nodeLeft, field, nodeRight, true));
-		if (edges.put(nodeLeft, edge))
-		    backEdges.put(nodeRight, edge);
+		if (ownEdges().put(nodeLeft, edge))
+		    ownBackEdges().put(nodeRight, edge);
 	    }
 	    if (!nodeLeft.isInside())
-		mutated.put(nodeLeft, field);
+		ownMutated().put(nodeLeft, field);
 	}
 	if (doCheck) sanityCheck();
     }
@@ -801,7 +918,7 @@ public class PurityGraph
 	PurityNode node = cacheNode(new PurityStmtNode(stmt,true));
 	localsRemove(left);
 	localsPut(left, node);
-	nodes.add(node);
+	ownNodes().add(node);
 	if (doCheck) sanityCheck();
     }
 
@@ -809,7 +926,7 @@ public class PurityGraph
     void localEscapes(Local l)
     {
 	// nodes escape globally
-	globEscape.addAll(locals.get(l));
+	ownGlobEscape().addAll(locals.get(l));
 	if (doCheck) sanityCheck();
     }
 
@@ -820,7 +937,7 @@ public class PurityGraph
 	PurityNode node = PurityGlobalNode.node;
 	localsRemove(l);
 	localsPut(l, node);
-	nodes.add(node);
+	ownNodes().add(node);
 	if (doCheck) sanityCheck();
     }
 
@@ -831,8 +948,8 @@ public class PurityGraph
     {
 	PurityNode node = PurityGlobalNode.node;
 	localEscapes(right);
-	mutated.put(node, field);
-	nodes.add(node);
+	ownMutated().put(node, field);
+	ownNodes().add(node);
 	if (doCheck) sanityCheck();	
     }
 
@@ -841,11 +958,11 @@ public class PurityGraph
      */
     void mutateField(Local left, String field)
     {
-	Iterator it = locals.get(left).iterator();
+	Iterator<PurityNode> it = locals.get(left).iterator();
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode)it.next();
+	    PurityNode n = it.next();
 	    if (!n.isInside())
-		mutated.put(n, field);
+		ownMutated().put(n, field);
 	}
 	if (doCheck) sanityCheck();
     }
@@ -856,8 +973,8 @@ public class PurityGraph
     void mutateStaticField(String field)
     {
 	PurityNode node = PurityGlobalNode.node;
-	mutated.put(node, field);
-	nodes.add(node);
+	ownMutated().put(node, field);
+	ownNodes().add(node);
 	if (doCheck) sanityCheck();
     }
 
@@ -869,20 +986,20 @@ public class PurityGraph
      * @param right can be null (static call)
      * @param args is a list of Value
      */
-    void methodCall(PurityGraph g, Local right, List args, Local left)
+    void methodCall(PurityGraph g, Local right, List<Value> args, Local left)
     {
-	MultiMap mu = new HashMultiMap();
+	MultiMap<PurityNode,PurityNode> mu = new HashMultiMap<PurityNode,PurityNode>();
 
 	// compute mapping relation g -> this
 	/////////////////////////////////////
 
-	Iterator it = args.iterator(); // (1) rule
+	Iterator<Value> ita = args.iterator(); // (1) rule
 	int nb = 0;
-	while (it.hasNext()) {
-	    Value arg = (Value)it.next();
+	while (ita.hasNext()) {
+	    Value arg = ita.next();
 	    if (arg instanceof Local && 
 		((Local)arg).getType() instanceof RefLikeType) {
-		mu.putAll(cacheNode(new PurityParamNode(nb)),locals.get(arg));
+		mu.putAll(cacheNode(new PurityParamNode(nb)),locals.get((Local)arg));
 	    }
 	    nb++;
 	}
@@ -896,19 +1013,19 @@ public class PurityGraph
 	    hasChanged = false;
 
 	    // (2)
-	    it = (new LinkedList(mu.keySet())).iterator();
+	    Iterator<PurityNode> it = (new LinkedList<PurityNode>(mu.keySet())).iterator();
 	    while (it.hasNext()) {
-		PurityNode n1 = (PurityNode)it.next();
-		Iterator it3 = (new LinkedList(mu.get(n1))).iterator();
+		PurityNode n1 = it.next();
+		Iterator<PurityNode> it3 = (new LinkedList<PurityNode>(mu.get(n1))).iterator();
 		while (it3.hasNext()) {
-		    PurityNode n3 = (PurityNode)it3.next();
-		    Iterator it12 = g.edges.get(n1).iterator();
+		    PurityNode n3 = it3.next();
+		    Iterator<PurityEdge> it12 = g.edges.get(n1).iterator();
 		    while (it12.hasNext()) {
-			PurityEdge e12 = (PurityEdge)it12.next();
+			PurityEdge e12 = it12.next();
 			if (!e12.isInside()) {
-			    Iterator it34 = edges.get(n3).iterator();
+			    Iterator<PurityEdge> it34 = edges.get(n3).iterator();
 			    while (it34.hasNext()) {
-				PurityEdge e34 = (PurityEdge)it34.next();
+				PurityEdge e34 = it34.next();
 				if (e34.isInside() &&
 				    e12.getField().equals(e34.getField()))
 				    if (mu.put(e12.getTarget(),e34.getTarget()))
@@ -922,30 +1039,30 @@ public class PurityGraph
 	    // (3)
 	    it = g.edges.keySet().iterator();
 	    while (it.hasNext()) {
-		PurityNode n1 = (PurityNode)it.next();
-		Iterator it3 = g.edges.keySet().iterator();
+		PurityNode n1 = it.next();
+		Iterator<PurityNode> it3 = g.edges.keySet().iterator();
 		while (it3.hasNext()) {
-		    PurityNode n3 = (PurityNode)it3.next();
+		    PurityNode n3 = it3.next();
 
 		    // ((mu(n1) U {n1}) inter (mu(n3) U {n3})) not empty
-		    Set mu1 = new HashSet(mu.get(n1));
-		    Set mu3 = new HashSet(mu.get(n3));
+		    Set<PurityNode> mu1 = new HashSet<PurityNode>(mu.get(n1));
+		    Set<PurityNode> mu3 = new HashSet<PurityNode>(mu.get(n3));
 		    boolean cond = n1.equals(n3) || 
 			mu1.contains(n3) || mu3.contains(n1);
-		    Iterator itt = mu1.iterator();
+		    Iterator<PurityNode> itt = mu1.iterator();
 		    while (!cond && itt.hasNext()) {
 			cond = cond || mu3.contains(itt.next());
 		    }
 		    
 		    // add (mu(n4) U ({n4} inter PNodes)) to mu(n2)
 		    if (cond && (!n1.equals(n3) || n1.isLoad())) {
-			Iterator it12 = g.edges.get(n1).iterator();
+			Iterator<PurityEdge> it12 = g.edges.get(n1).iterator();
 			while (it12.hasNext()) {
-			    PurityEdge e12 = (PurityEdge)it12.next();
+			    PurityEdge e12 = it12.next();
 			    if (!e12.isInside()) {
-				Iterator it34 = g.edges.get(n3).iterator();
+				Iterator<PurityEdge> it34 = g.edges.get(n3).iterator();
 				while (it34.hasNext()) {
-				    PurityEdge e34 = (PurityEdge)it34.next();
+				    PurityEdge e34 = it34.next();
 				    if (e34.isInside()) {
 					if (e12.getField().equals(e34.getField())) {
 					    PurityNode n2 = e12.getTarget();
@@ -969,12 +1086,12 @@ public class PurityGraph
 	}
 	
 	// extend mu into mu'
-	it = g.nodes.iterator();
+	Iterator<PurityNode> it = g.nodes.iterator();
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode)it.next();
+	    PurityNode n = it.next();
 	    if (!n.isParam()) { 
 		mu.put(n,n);
-		nodes.add(n);
+		ownNodes().add(n);
 	    }
 	}
 
@@ -985,31 +1102,31 @@ public class PurityGraph
 	// project edges
 	it = g.edges.keySet().iterator();
 	while (it.hasNext()) {
-	    PurityNode n1 = (PurityNode)it.next();
-	    Iterator it12 = g.edges.get(n1).iterator();
+	    PurityNode n1 = it.next();
+	    Iterator<PurityEdge> it12 = g.edges.get(n1).iterator();
 	    while (it12.hasNext()) {
-		PurityEdge e12 = (PurityEdge)it12.next();
+		PurityEdge e12 = it12.next();
 		String     f   = e12.getField();
 		PurityNode n2  = e12.getTarget();
-		Iterator  itm1 = mu.get(n1).iterator();
+		Iterator<PurityNode> itm1 = mu.get(n1).iterator();
 		while (itm1.hasNext()) {
-		    PurityNode mu1 = (PurityNode)itm1.next();
+		    PurityNode mu1 = itm1.next();
 
 		    if (e12.isInside()) {
-			Iterator itm2 = mu.get(n2).iterator();
+			Iterator<PurityNode> itm2 = mu.get(n2).iterator();
 			while (itm2.hasNext()) {
-			    PurityNode mu2  = (PurityNode)itm2.next();
+			    PurityNode mu2  = itm2.next();
 			    PurityEdge edge = 
 				cacheEdge(new PurityEdge(mu1,f,mu2,true));
-			    edges.put(mu1,edge);
-			    backEdges.put(mu2,edge);
+			    ownEdges().put(mu1,edge);
+			    ownBackEdges().put(mu2,edge);
 			}
 		    }
 		    else {
 			PurityEdge edge = 
 			    cacheEdge(new PurityEdge(mu1,f,n2,false));
-			edges.put(mu1,edge);
-			backEdges.put(n2,edge);
+			ownEdges().put(mu1,edge);
+			ownBackEdges().put(n2,edge);
 		    }
 		}
 	    }
@@ -1027,7 +1144,7 @@ public class PurityGraph
 	// global escape
 	it = g.globEscape.iterator();
 	while (it.hasNext())
-	    globEscape.addAll(mu.get(it.next()));
+	    ownGlobEscape().addAll(mu.get(it.next()));
 
 	if (doCheck) sanityCheck();
 
@@ -1036,21 +1153,21 @@ public class PurityGraph
 	/////////////////	
 		
 	Set<PurityNode> escaping = getEscaping();
-	it = (new LinkedList(nodes)).iterator();
+	it = (new LinkedList<PurityNode>(nodes)).iterator();
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode)it.next();
+	    PurityNode n = it.next();
 	    if (!escaping.contains(n)) 
 		if (n.isLoad()) 
 		    // remove captured load nodes
 		    removeNode(n);
 		else {
 		    // ... and outside edges from captured nodes
-		    Iterator itt = (new LinkedList(edges.get(n))).iterator();
+		    Iterator<PurityEdge> itt = (new LinkedList<PurityEdge>(edges.get(n))).iterator();
 		    while (itt.hasNext()) {
-			PurityEdge e = (PurityEdge)itt.next();
+			PurityEdge e = itt.next();
 			if (!e.isInside()) {
-			    edges.remove(n,e);
-			    backEdges.remove(e.getTarget(),e);
+			    ownEdges().remove(n,e);
+			    ownBackEdges().remove(e.getTarget(),e);
 			}
 		    }
 		}  
@@ -1061,15 +1178,15 @@ public class PurityGraph
 
 	it = g.mutated.keySet().iterator();
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode)it.next();
-	    Iterator itt = mu.get(n).iterator();
+	    PurityNode n = it.next();
+	    Iterator<PurityNode> itt = mu.get(n).iterator();
 	    while (itt.hasNext()) {
-		PurityNode nn = (PurityNode)itt.next();
+		PurityNode nn = itt.next();
 		if (nodes.contains(nn) && !nn.isInside()) {
-		    Iterator ittt = g.mutated.get(n).iterator();
+		    Iterator<String> ittt = g.mutated.get(n).iterator();
 		    while (ittt.hasNext()) {
-			String f = (String)ittt.next();
-			mutated.put(nn,f);
+			String f = ittt.next();
+			ownMutated().put(nn,f);
 		    }
 		}
 	    }
@@ -1104,9 +1221,9 @@ public class PurityGraph
 	int id = 0;
 
 	// add nodes 
-	Iterator it = nodes.iterator();
+	Iterator<PurityNode> it = nodes.iterator();
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode) it.next();
+	    PurityNode n = it.next();
 	    String label = "N"+prefix+"_"+id;
 	    DotGraphNode node = out.drawNode(label);
 	    node.setLabel(n.toString());
@@ -1122,10 +1239,10 @@ public class PurityGraph
 	// add edges
 	it = edges.keySet().iterator();
 	while (it.hasNext()) {
-	    PurityNode src = (PurityNode) it.next();
-	    Iterator itt = edges.get(src).iterator();
+	    PurityNode src = it.next();
+	    Iterator<PurityEdge> itt = edges.get(src).iterator();
 	    while (itt.hasNext()) {
-		PurityEdge e = (PurityEdge) itt.next();
+		PurityEdge e = itt.next();
 		DotGraphEdge edge = 
 		    out.drawEdge(nodeId.get(e.getSource()),
 				 nodeId.get(e.getTarget()));
@@ -1139,17 +1256,17 @@ public class PurityGraph
 	}
 
 	// add locals
-	it = locals.keySet().iterator();
-	while (it.hasNext()) {
-	    Local local = (Local) it.next();
+	Iterator<Local> itl = locals.keySet().iterator();
+	while (itl.hasNext()) {
+	    Local local = itl.next();
 	    if (!locals.get(local).isEmpty()) {
 		String label = "L"+prefix+"_"+id;
 		DotGraphNode node = out.drawNode(label);
 		node.setLabel(local.toString());
 		node.setShape("plaintext");	    
-		Iterator itt = locals.get(local).iterator();
+		Iterator<PurityNode> itt = locals.get(local).iterator();
 		while (itt.hasNext()) {
-		    PurityNode dst = (PurityNode) itt.next();
+		    PurityNode dst = itt.next();
 		    out.drawEdge(label,nodeId.get(dst));
 		}
 		id++;
@@ -1161,9 +1278,9 @@ public class PurityGraph
 	    DotGraphNode node = out.drawNode("ret_"+prefix);
 	    node.setLabel("ret");
 	    node.setShape("plaintext");	    
-	    Iterator itt = ret.iterator();
+	    Iterator<PurityNode> itt = ret.iterator();
 	    while (itt.hasNext()) {
-		PurityNode dst = (PurityNode) itt.next();
+		PurityNode dst = itt.next();
 		out.drawEdge("ret_"+prefix,nodeId.get(dst));
 	    }	    
 	}
@@ -1171,10 +1288,10 @@ public class PurityGraph
 	// add mutated
 	it = mutated.keySet().iterator();
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode)it.next();
-	    Iterator itt = mutated.get(n).iterator();
+	    PurityNode n = it.next();
+	    Iterator<String> itt = mutated.get(n).iterator();
 	    while (itt.hasNext()) {
-		String f = (String)itt.next();
+		String f = itt.next();
 		String label = "M"+prefix+"_"+id;
 		DotGraphNode node = out.drawNode(label);
 		node.setLabel("");
@@ -1188,19 +1305,19 @@ public class PurityGraph
 
     /** Debugging... */
 
-    static private void dumpSet(String name, Set s) {
+    static private void dumpSet(String name, Set<?> s) {
 	G.v().out.println(name);
-	Iterator it = s.iterator();
+	Iterator<?> it = s.iterator();
 	while (it.hasNext()) G.v().out.println("  "+it.next().toString());
     }
 
-    static private void dumpMultiMap(String name, MultiMap s) {
+    static private <K,V> void dumpMultiMap(String name, MultiMap<K,V> s) {
 	G.v().out.println(name);
-	Iterator it = s.keySet().iterator();
+	Iterator<K> it = s.keySet().iterator();
 	while (it.hasNext()) {
-	    Object o = it.next();
+	    K o = it.next();
 	    G.v().out.println("  "+o.toString());
-	    Iterator itt = s.get(o).iterator();
+	    Iterator<V> itt = s.get(o).iterator();
 	    while (itt.hasNext()) 
 		G.v().out.println("    "+itt.next().toString());
 	}
@@ -1241,11 +1358,11 @@ public class PurityGraph
 
     void updateStat()
     {
-	Iterator it = nodes.iterator();
+	Iterator<PurityNode> it = nodes.iterator();
 	int insideNodes = 0;
 	int loadNodes = 0;
 	while (it.hasNext()) {
-	    PurityNode n = (PurityNode)it.next();
+	    PurityNode n = it.next();
 	    if (n.isInside()) insideNodes++;
 	    else if (n.isLoad()) loadNodes++;
 	}
@@ -1253,9 +1370,9 @@ public class PurityGraph
 	int outsideEdges = 0;
 	it = edges.keySet().iterator();
 	while (it.hasNext()) {
-	    Iterator itt = edges.get(it.next()).iterator();
+	    Iterator<PurityEdge> itt = edges.get(it.next()).iterator();
 	    while (itt.hasNext()) {
-		PurityEdge e = (PurityEdge)itt.next();
+		PurityEdge e = itt.next();
 		if (e.isInside()) insideEdges++;
 		else outsideEdges++;
 	    }
@@ -229,7 +229,7 @@ public class PurityInterproceduralAnalysis
 				  Iterator<SootMethod>         heads,
 				  PurityOptions    opts)
     {
-	super(cg,new Filter(),heads, opts.dump_cg());
+	super(cg,new Filter(),heads, opts.dump_cg(), true);
 	
 	if (opts.dump_cg()) {
 	    G.v().out.println("[AM] Dumping empty .dot call-graph");
@@ -412,7 +412,7 @@ public class PurityInterproceduralAnalysis
 	Local obj = null;
 	if (!(e instanceof StaticInvokeExpr)) 
 	    obj = (Local)((InstanceInvokeExpr)e).getBase();
-	List args = e.getArgs();
+	List<Value> args = e.getArgs();
 	
 	// call methoCall on the PurityGraph
 	PurityGraphBox s = (PurityGraphBox)src;
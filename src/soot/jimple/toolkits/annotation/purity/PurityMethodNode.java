@@ -46,12 +46,14 @@ public class PurityMethodNode implements PurityNode
     PurityMethodNode(SootMethod id)
     { 
 	this.id = id;
-	if (!nMap.containsKey(id)) { nMap.put(id,new Integer(n)); n++; }
+	synchronized (nMap) {
+	    if (!nMap.containsKey(id)) { nMap.put(id,new Integer(n)); n++; }
+	}
     }
 
     public String toString() 
     { 
-	return "M_"+nMap.get(id);
+	synchronized (nMap) { return "M_"+nMap.get(id); }
 	//return ""+id;
     }
 
@@ -0,0 +1,195 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.toolkits.callgraph;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import soot.toolkits.graph.*;
+
+/** Condenses a graph of methods, such as a filtered call graph, into its
+ * strongly connected components, and schedules bottom-up computations
+ * over them.
+ *
+ * The components are listed bottom-up: every component comes after all
+ * components it calls. A summary-based analysis can therefore compute the
+ * components in this order, and components whose callees are all done can
+ * be computed concurrently with {@link #visitBottomUp(Visitor, int)}.
+ *
+ * Uses an iterative version of Tarjan's algorithm, started from every
+ * node, so that cycles without a head are found as well.
+ *
+ * @param <N> the nodes of the graph, usually SootMethods
+ */
+public class CallGraphComponents<N>
+{
+    /** A strongly connected component. */
+    public static class Component<N> {
+        final List<N> methods = new ArrayList<N>();
+        final List<Component<N>> callers = new ArrayList<Component<N>>();
+        final List<Component<N>> callees = new ArrayList<Component<N>>();
+        boolean recursive;
+
+        /** The methods of this component, in depth-first order. */
+        public List<N> getMethods() { return methods; }
+        /** The components calling this one, without duplicates. */
+        public List<Component<N>> getCallers() { return callers; }
+        /** The components this one calls, without duplicates. */
+        public List<Component<N>> getCallees() { return callees; }
+        /** True if the methods of this component call each other or themselves. */
+        public boolean isRecursive() { return recursive; }
+        public boolean contains( Object m ) {
+            return methods.size() == 1 ? methods.get( 0 ) == m : methods.contains( m );
+        }
+    }
+
+    /** A computation on one component, called once all its callees are done. */
+    public interface Visitor<N> {
+        public void visit( Component<N> c );
+    }
+
+    private final List<Component<N>> components = new ArrayList<Component<N>>();
+    private final Map<N, Component<N>> componentOf = new HashMap<N, Component<N>>();
+
+    /** @param dg a graph of methods; an edge goes from caller to callee */
+    public CallGraphComponents( DirectedGraph<N> dg ) {
+        Map<N, Integer> index = new HashMap<N, Integer>();
+        Map<N, Integer> lowlink = new HashMap<N, Integer>();
+        Set<N> onStack = new HashSet<N>();
+        Deque<N> stack = new ArrayDeque<N>();
+        Deque<N> visit = new ArrayDeque<N>();
+        Deque<Iterator<N>> succs = new ArrayDeque<Iterator<N>>();
+
+        for( N root : dg ) {
+            if( index.containsKey( root ) ) continue;
+            push( root, dg, index, lowlink, onStack, stack, visit, succs );
+            while( !visit.isEmpty() ) {
+                N v = visit.peek();
+                Iterator<N> it = succs.peek();
+                if( it.hasNext() ) {
+                    N w = it.next();
+                    if( !index.containsKey( w ) )
+                        push( w, dg, index, lowlink, onStack, stack, visit, succs );
+                    else if( onStack.contains( w ) )
+                        lowlink.put( v, Math.min( lowlink.get( v ), index.get( w ) ) );
+                    continue;
+                }
+                visit.pop();
+                succs.pop();
+                if( !visit.isEmpty() ) {
+                    N parent = visit.peek();
+                    lowlink.put( parent, Math.min( lowlink.get( parent ), lowlink.get( v ) ) );
+                }
+                if( lowlink.get( v ).intValue() == index.get( v ).intValue() ) {
+                    Component<N> c = new Component<N>();
+                    N w;
+                    do {
+                        w = stack.pop();
+                        onStack.remove( w );
+                        c.methods.add( w );
+                        componentOf.put( w, c );
+                    } while( w != v );
+                    Collections.reverse( c.methods );
+                    components.add( c );
+                }
+            }
+        }
+
+        // edges between components
+        for( Component<N> c : components ) {
+            Set<Component<N>> callees = new HashSet<Component<N>>();
+            for( N m : c.methods ) {
+                for( N succ : dg.getSuccsOf( m ) ) {
+                    Component<N> callee = componentOf.get( succ );
+                    if( callee == c ) c.recursive = true;
+                    else if( callees.add( callee ) ) {
+                        c.callees.add( callee );
+                        callee.callers.add( c );
+                    }
+                }
+            }
+        }
+    }
+
+    private static <N> void push( N v, DirectedGraph<N> dg,
+            Map<N, Integer> index, Map<N, Integer> lowlink,
+            Set<N> onStack, Deque<N> stack,
+            Deque<N> visit, Deque<Iterator<N>> succs ) {
+        int i = index.size();
+        index.put( v, i );
+        lowlink.put( v, i );
+        stack.push( v );
+        onStack.add( v );
+        visit.push( v );
+        succs.push( dg.getSuccsOf( v ).iterator() );
+    }
+
+    /** The components, callees before callers. */
+    public List<Component<N>> getComponents() { return components; }
+
+    /** The component of the given method, or null if it is not in the graph. */
+    public Component<N> getComponentOf( Object m ) { return componentOf.get( m ); }
+
+    /** Calls the visitor on every component, on a fork/join pool with the
+     * given number of threads. A component is visited once all components
+     * it calls have been visited, so components are only visited
+     * concurrently if neither calls the other. Returns when all components
+     * are done; the first exception thrown by the visitor is rethrown. */
+    public void visitBottomUp( final Visitor<N> visitor, int threads ) {
+        final Map<Component<N>, AtomicInteger> pending = new HashMap<Component<N>, AtomicInteger>();
+        for( Component<N> c : components )
+            pending.put( c, new AtomicInteger( c.callees.size() ) );
+        final ForkJoinPool pool = new ForkJoinPool( threads );
+        final CountDownLatch done = new CountDownLatch( components.size() );
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        class ComponentTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            final Component<N> c;
+            ComponentTask( Component<N> c ) { this.c = c; }
+            protected void compute() {
+                try {
+                    if( failure.get() == null ) visitor.visit( c );
+                } catch( Throwable t ) {
+                    failure.compareAndSet( null, t );
+                } finally {
+                    // callers are released even after a failure, so that
+                    // the latch always reaches zero
+                    for( Component<N> caller : c.callers )
+                        if( pending.get( caller ).decrementAndGet() == 0 )
+                            new ComponentTask( caller ).fork();
+                    done.countDown();
+                }
+            }
+        }
+        try {
+            for( Component<N> c : components )
+                if( c.callees.isEmpty() ) pool.execute( new ComponentTask( c ) );
+            done.await();
+        } catch( InterruptedException e ) {
+            throw new RuntimeException( e );
+        } finally {
+            pool.shutdown();
+        }
+        Throwable t = failure.get();
+        if( t instanceof RuntimeException ) throw (RuntimeException) t;
+        if( t instanceof Error ) throw (Error) t;
+        if( t != null ) throw new RuntimeException( t );
+    }
+}
@@ -32,6 +32,11 @@ public class Filter implements Iterator<Edge>
     public Filter( EdgePredicate pred ) {
         this.pred = pred;
     }
+    /** Returns true if e belongs to the subset. Unlike wrap(), this can be
+     * used by several threads at once. */
+    public boolean want( Edge e ) {
+        return pred.want( e );
+    }
     public Iterator<Edge> wrap( Iterator<Edge> source ) {
         this.source = source;
         advance();
@@ -29,7 +29,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import heros.solver.CountingThreadPoolExecutor;
 import soot.ArrayType;
 import soot.Body;
 import soot.BooleanType;
@@ -223,6 +226,15 @@ public final class OnFlyCallGraphBuilder {
 		return methodToStringConstants;
 	}
 
+	/**
+	 * Processes the methods that have become reachable. Only the loading of
+	 * their bodies runs in parallel, which is most of the work when bodies
+	 * are not loaded yet. Scanning the bodies and resolving virtual calls
+	 * stay sequential: they resolve method references, which may add
+	 * phantom methods to classes, and update the receiver maps, the
+	 * context-insensitive call graph and the reflection models, none of
+	 * which are thread-safe.
+	 */
 	public void processReachables() {
 		while (true) {
 			if (!worklist.hasNext()) {
@@ -230,14 +242,136 @@ public final class OnFlyCallGraphBuilder {
 				if (!worklist.hasNext())
 					break;
 			}
-			MethodOrMethodContext momc = worklist.next();
+			// Processing a method does not make new methods reachable before
+			// the next update, so everything reachable so far is one batch.
+			// The bodies of the batch are loaded in parallel, and the methods
+			// are then processed in order, so the call graph does not depend
+			// on the number of threads.
+			List<MethodOrMethodContext> batch = new ArrayList<MethodOrMethodContext>();
+			while (worklist.hasNext())
+				batch.add(worklist.next());
+			retrieveBodies(batch);
+			for (MethodOrMethodContext momc : batch) {
+				SootMethod m = momc.method();
+				if (appOnly && !m.getDeclaringClass().isApplicationClass())
+					continue;
+				if (analyzedMethods.add(m))
+					processNewMethod(m);
+				processNewMethodContext(momc);
+			}
+		}
+	}
+
+	private void retrieveBodies(List<MethodOrMethodContext> batch) {
+		// The old coffi front-end is not thread-safe
+		if (Options.v().coffi() || batch.size() < 2)
+			return;
+		List<SootMethod> toLoad = new ArrayList<SootMethod>();
+		for (MethodOrMethodContext momc : batch) {
 			SootMethod m = momc.method();
 			if (appOnly && !m.getDeclaringClass().isApplicationClass())
 				continue;
-			if (analyzedMethods.add(m))
-				processNewMethod(m);
-			processNewMethodContext(momc);
+			if (m.isConcrete() && !m.isPhantom() && !m.hasActiveBody() && !analyzedMethods.contains(m))
+				toLoad.add(m);
+		}
+		if (toLoad.size() < 2)
+			return;
+
+		int threadNum = Math.min(toLoad.size(), Runtime.getRuntime().availableProcessors());
+		CountingThreadPoolExecutor executor = new CountingThreadPoolExecutor(threadNum, threadNum, 30,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		for (final SootMethod m : toLoad) {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						m.retrieveActiveBody();
+					} catch (RuntimeException e) {
+						// reported when the method is processed
+					}
+				}
+
+			});
+		}
+
+		// Wait till all method bodies have been loaded
+		try {
+			executor.awaitCompletion();
+			executor.shutdown();
+		} catch (InterruptedException e) {
+			// Something went horribly wrong
+			throw new RuntimeException("Could not wait for loader threads to " + "finish: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Forgets everything that was derived from the body of the given method,
+	 * so that it can be processed again after its body has changed. The call
+	 * edges that were already reported to the context manager are kept.
+	 */
+	public void forgetMethod(SootMethod m) {
+		analyzedMethods.remove(m);
+		List<Edge> edges = new ArrayList<Edge>();
+		for (Iterator<Edge> it = cicg.edgesOutOf(m); it.hasNext();) {
+			edges.add(it.next());
 		}
+		for (Edge e : edges) {
+			cicg.removeEdge(e);
+		}
+
+		List<Local> receivers = methodToReceivers.get(m);
+		if (receivers != null) {
+			for (Local receiver : receivers) {
+				receiverToSites.put(receiver, null);
+			}
+			methodToReceivers.put(m, null);
+		}
+		List<Local> stringConstants = methodToStringConstants.get(m);
+		if (stringConstants != null) {
+			for (Local stringConst : stringConstants) {
+				stringConstToSites.put(stringConst, null);
+			}
+			methodToStringConstants.put(m, null);
+		}
+		List<Local> bases = methodToInvokeBases.get(m);
+		if (bases != null) {
+			for (Local base : bases) {
+				baseToInvokeSite.remove(base);
+				reachingBaseTypes.remove(base);
+			}
+			methodToInvokeBases.put(m, null);
+		}
+		List<Local> args = methodToInvokeArgs.get(m);
+		if (args != null) {
+			for (Local arg : args) {
+				invokeArgsToInvokeSite.remove(arg);
+				invokeArgsToSize.remove(arg);
+				reachingArgTypes.remove(arg);
+			}
+			methodToInvokeArgs.put(m, null);
+		}
+	}
+
+	/**
+	 * Processes a reachable method again, typically after
+	 * {@link #forgetMethod(SootMethod)}.
+	 */
+	public void reprocessMethod(MethodOrMethodContext momc) {
+		SootMethod m = momc.method();
+		if (appOnly && !m.getDeclaringClass().isApplicationClass())
+			return;
+		if (analyzedMethods.add(m))
+			processNewMethod(m);
+		processNewMethodContext(momc);
+	}
+
+	/**
+	 * Picks up the current class hierarchy, after classes have been added to
+	 * the Scene.
+	 */
+	public void hierarchyChanged() {
+		this.fh = Scene.v().getOrMakeFastHierarchy();
 	}
 
 	public boolean wantTypes(Local receiver) {
@@ -1068,13 +1202,12 @@ public final class OnFlyCallGraphBuilder {
 		 */
 		@Override
 		public void contructorNewInstance(SootMethod container, Stmt newInstanceInvokeStmt) {
-			Set<String> constructorSignatures = reflectionInfo.constructorNewInstanceSignatures(container);
-			if (constructorSignatures == null || constructorSignatures.isEmpty()) {
+			Set<SootMethod> constructors = reflectionInfo.constructorNewInstanceConstructors(container);
+			if (constructors.isEmpty()) {
 				registerGuard(container, newInstanceInvokeStmt,
 						"Constructor.newInstance(..) call site; Soot did not expect this site to be reached");
 			} else {
-				for (String constructorSignature : constructorSignatures) {
-					SootMethod constructor = Scene.v().getMethod(constructorSignature);
+				for (SootMethod constructor : constructors) {
 					addEdge(container, newInstanceInvokeStmt, constructor, Kind.REFL_CONSTR_NEWINSTANCE);
 				}
 			}
@@ -1092,13 +1225,12 @@ public final class OnFlyCallGraphBuilder {
 		 */
 		@Override
 		public void methodInvoke(SootMethod container, Stmt invokeStmt) {
-			Set<String> methodSignatures = reflectionInfo.methodInvokeSignatures(container);
-			if (methodSignatures == null || methodSignatures.isEmpty()) {
+			Set<SootMethod> methods = reflectionInfo.methodInvokeMethods(container);
+			if (methods.isEmpty()) {
 				registerGuard(container, invokeStmt,
 						"Method.invoke(..) call site; Soot did not expect this site to be reached");
 			} else {
-				for (String methodSignature : methodSignatures) {
-					SootMethod method = Scene.v().getMethod(methodSignature);
+				for (SootMethod method : methods) {
 					addEdge(container, invokeStmt, method, Kind.REFL_INVOKE);
 				}
 			}
@@ -59,6 +59,11 @@ public class ReachableMethods
                 reachables.add( m );
             }
     }
+    /** Adds m as an additional entry point. It and the methods reachable
+     * from it are reported on the next call to update(). */
+    public void addEntryPoint( MethodOrMethodContext m ) {
+        addMethod( m );
+    }
     /** Causes the QueueReader objects to be filled up with any methods
      * that have become reachable since the last call. */
     public void update() {
@@ -0,0 +1,436 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.toolkits.callgraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.AnySubType;
+import soot.ArrayType;
+import soot.Body;
+import soot.FastHierarchy;
+import soot.Local;
+import soot.MethodOrMethodContext;
+import soot.RefLikeType;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.CaughtExceptionRef;
+import soot.jimple.ClassConstant;
+import soot.jimple.FieldRef;
+import soot.jimple.IdentityStmt;
+import soot.jimple.NewArrayExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.NewMultiArrayExpr;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.jimple.ThrowStmt;
+import soot.jimple.toolkits.pointer.representations.AbstractObject;
+import soot.jimple.toolkits.pointer.representations.ReferenceVariable;
+import soot.jimple.toolkits.pointer.util.NativeHelper;
+import soot.jimple.toolkits.pointer.util.NativeMethodDriver;
+import soot.toolkits.scalar.Pair;
+import soot.util.queue.QueueReader;
+
+/**
+ * Builds a call graph on the fly from the types instantiated in reachable
+ * methods, using Rapid Type Analysis (RTA) or its refinement XTA.
+ *
+ * RTA keeps one set of instantiated types for the whole program, and a
+ * virtual call may target any type in the set that can be stored in its
+ * receiver. XTA keeps a set per method and per field, and one each for array
+ * elements and exceptions. Types flow from a caller to a callee if they fit
+ * the receiver or a parameter of the callee, back if they fit its return
+ * type, and between methods and fields through writes and reads.
+ *
+ * A type is instantiated by an allocation, a string or class constant, a
+ * reachable constructor of a concrete class, or the return type of a native
+ * or phantom method. Native methods also instantiate the objects of their
+ * models in {@link NativeMethodDriver}, as in the points-to analysis. The VM also instantiates the receivers and parameters
+ * of entry points.
+ *
+ * @see CallGraphBuilder
+ */
+public final class TypeSetCallGraphBuilder {
+	private final boolean xta;
+	private final ReachableMethods reachables;
+	private final OnFlyCallGraphBuilder ofcgb;
+	private final CallGraph cg;
+	private final FastHierarchy fh;
+
+	private final Map<Type, Integer> typeToIndex = new HashMap<Type, Integer>();
+	private final List<Type> indexToType = new ArrayList<Type>();
+
+	/**
+	 * The set of each method or field in XTA; RTA only uses the global set,
+	 * which XTA keeps as the union of all sets.
+	 */
+	private final Map<Object, Node> nodes = new HashMap<Object, Node>();
+	private final Node global = new Node();
+	private final Object arrayElements = new Object();
+	private final Object exceptions = new Object();
+	private final Deque<Node> worklist = new ArrayDeque<Node>();
+
+	private final NativeMethodDriver nativeMethodDriver = new NativeMethodDriver(new TypeSetNativeHelper());
+	private final RefType stringType = RefType.v("java.lang.String");
+	private final RefType classType = RefType.v("java.lang.Class");
+
+	/** A set of types, and the sets and receivers it flows to. */
+	private static final class Node implements ReferenceVariable {
+		final BitSet types = new BitSet();
+		/** Types added since the node was last propagated. */
+		BitSet pending = new BitSet();
+		/** The target sets, each with the types a type must fit one of. */
+		final Map<Node, List<Type>> flows = new HashMap<Node, List<Type>>();
+		/** Receivers of virtual calls, by declared type. */
+		final Map<Type, List<Local>> receivers = new HashMap<Type, List<Local>>();
+	}
+
+	/**
+	 * @param xta
+	 *            true to keep a set of types per method and field, false for
+	 *            a single set (RTA)
+	 */
+	public TypeSetCallGraphBuilder(boolean xta) {
+		this.xta = xta;
+		cg = new CallGraph();
+		Scene.v().setCallGraph(cg);
+		reachables = Scene.v().getReachableMethods();
+		ofcgb = new OnFlyCallGraphBuilder(CallGraphBuilder.makeContextManager(cg), reachables);
+		fh = Scene.v().getOrMakeFastHierarchy();
+	}
+
+	public CallGraph getCallGraph() {
+		return cg;
+	}
+
+	public ReachableMethods reachables() {
+		return reachables;
+	}
+
+	/** Returns the number of distinct types found to be instantiated. */
+	public int instantiatedTypeCount() {
+		return indexToType.size();
+	}
+
+	public void build() {
+		QueueReader<MethodOrMethodContext> newMethods = reachables.listener();
+		QueueReader<Edge> newEdges = cg.listener();
+		for (SootMethod m : Scene.v().getEntryPoints())
+			addEntryPoint(m);
+		while (true) {
+			ofcgb.processReachables();
+			reachables.update();
+			if (!newMethods.hasNext() && !newEdges.hasNext())
+				break;
+			while (newMethods.hasNext())
+				processNewMethod(newMethods.next().method());
+			while (newEdges.hasNext())
+				processNewEdge(newEdges.next());
+			propagate();
+		}
+	}
+
+	private Node nodeOf(Object methodOrField) {
+		if (!xta)
+			return global;
+		Node n = nodes.get(methodOrField);
+		if (n == null)
+			nodes.put(methodOrField, n = new Node());
+		return n;
+	}
+
+	private void addEntryPoint(SootMethod m) {
+		Node n = nodeOf(m);
+		if (!m.isStatic())
+			addInstantiatedType(n, m.getDeclaringClass().getType());
+		for (Type t : m.getParameterTypes()) {
+			addInstantiatedType(n, t);
+			if (t instanceof ArrayType)
+				addInstantiatedType(nodeOf(arrayElements), ((ArrayType) t).getElementType());
+		}
+	}
+
+	private void processNewMethod(SootMethod m) {
+		Node n = nodeOf(m);
+		if (m.isNative() || m.isPhantom()) {
+			addInstantiatedType(n, m.getReturnType());
+			if (m.isNative())
+				nativeMethodDriver.process(m, n, n, nativeParameters(m, n));
+			return;
+		}
+		if (m.isConstructor())
+			addInstantiatedType(n, m.getDeclaringClass().getType());
+
+		List<Local> receivers = ofcgb.methodToReceivers().get(m);
+		if (receivers != null) {
+			for (Local receiver : receivers)
+				addReceiver(n, receiver);
+		}
+		// Like CHA, treat every string as a possible reflection target
+		List<Local> stringConstants = ofcgb.methodToStringConstants().get(m);
+		if (stringConstants != null) {
+			for (Local stringConstant : stringConstants)
+				ofcgb.addStringConstant(stringConstant, null, null);
+		}
+		if (m.hasActiveBody())
+			processBody(n, m.getActiveBody());
+	}
+
+	/** A native method reads its parameters from, and returns, its own set. */
+	private static ReferenceVariable[] nativeParameters(SootMethod m, Node n) {
+		ReferenceVariable[] params = new ReferenceVariable[m.getParameterCount()];
+		for (int i = 0; i < params.length; i++) {
+			if (m.getParameterType(i) instanceof RefLikeType)
+				params[i] = n;
+		}
+		return params;
+	}
+
+	private void processBody(Node n, Body b) {
+		for (Unit u : b.getUnits()) {
+			Stmt s = (Stmt) u;
+			for (ValueBox vb : s.getUseBoxes()) {
+				Value v = vb.getValue();
+				if (v instanceof StringConstant)
+					addType(n, stringType);
+				else if (v instanceof ClassConstant)
+					addType(n, classType);
+			}
+			if (s instanceof AssignStmt) {
+				Value lhs = ((AssignStmt) s).getLeftOp();
+				Value rhs = ((AssignStmt) s).getRightOp();
+				if (rhs instanceof NewExpr || rhs instanceof NewArrayExpr) {
+					addType(n, rhs.getType());
+				} else if (rhs instanceof NewMultiArrayExpr) {
+					for (Type t = rhs.getType(); t instanceof ArrayType; t = ((ArrayType) t).getElementType())
+						addType(n, t);
+				}
+				if (!xta)
+					continue;
+				if (lhs instanceof FieldRef) {
+					Type fieldType = ((FieldRef) lhs).getField().getType();
+					addFlow(n, nodeOf(((FieldRef) lhs).getField()), fieldType);
+				} else if (lhs instanceof ArrayRef) {
+					addFlow(n, nodeOf(arrayElements), rhs.getType());
+				}
+				if (rhs instanceof FieldRef) {
+					Type fieldType = ((FieldRef) rhs).getField().getType();
+					addFlow(nodeOf(((FieldRef) rhs).getField()), n, fieldType);
+				} else if (rhs instanceof ArrayRef) {
+					addFlow(nodeOf(arrayElements), n, lhs.getType());
+				}
+			} else if (xta && s instanceof ThrowStmt) {
+				Value op = ((ThrowStmt) s).getOp();
+				addFlow(n, nodeOf(exceptions), op.getType());
+			} else if (xta && s instanceof IdentityStmt) {
+				IdentityStmt is = (IdentityStmt) s;
+				if (is.getRightOp() instanceof CaughtExceptionRef)
+					addFlow(nodeOf(exceptions), n, is.getLeftOp().getType());
+			}
+		}
+	}
+
+	private void processNewEdge(Edge e) {
+		if (!xta)
+			return;
+		SootMethod tgt = e.tgt();
+		Node caller = nodeOf(e.src());
+		Node callee = nodeOf(tgt);
+		if (!tgt.isStatic())
+			addFlow(caller, callee, tgt.getDeclaringClass().getType());
+		for (Type t : tgt.getParameterTypes())
+			addFlow(caller, callee, t);
+		addFlow(callee, caller, tgt.getReturnType());
+	}
+
+	/** Adds t if objects of exactly this type can exist. */
+	private void addInstantiatedType(Node n, Type t) {
+		if (t instanceof RefType) {
+			SootClass c = ((RefType) t).getSootClass();
+			if (c.isConcrete())
+				addType(n, t);
+		} else if (t instanceof ArrayType) {
+			addType(n, t);
+		}
+	}
+
+	private void addType(Node n, Type t) {
+		Integer i = typeToIndex.get(t);
+		if (i == null) {
+			i = indexToType.size();
+			typeToIndex.put(t, i);
+			indexToType.add(t);
+		}
+		if (n.types.get(i))
+			return;
+		n.types.set(i);
+		if (n.pending.isEmpty())
+			worklist.add(n);
+		n.pending.set(i);
+		if (n != global)
+			addType(global, t);
+	}
+
+	private void addFlow(Node from, Node to, Type filter) {
+		if (from == to || !(filter instanceof RefType || filter instanceof ArrayType))
+			return;
+		List<Type> filters = from.flows.get(to);
+		if (filters == null)
+			from.flows.put(to, filters = new ArrayList<Type>());
+		else if (filters.contains(filter))
+			return;
+		filters.add(filter);
+		// pending types are sent when the node is propagated
+		for (int i = from.types.nextSetBit(0); i >= 0; i = from.types.nextSetBit(i + 1)) {
+			Type t = indexToType.get(i);
+			if (!from.pending.get(i) && fh.canStoreType(t, filter))
+				addType(to, t);
+		}
+	}
+
+	private void addReceiver(Node n, Local receiver) {
+		Type declaredType = receiver.getType();
+		List<Local> locals = n.receivers.get(declaredType);
+		if (locals == null)
+			n.receivers.put(declaredType, locals = new ArrayList<Local>());
+		locals.add(receiver);
+		for (int i = n.types.nextSetBit(0); i >= 0; i = n.types.nextSetBit(i + 1)) {
+			Type t = indexToType.get(i);
+			if (!n.pending.get(i) && fh.canStoreType(t, declaredType))
+				ofcgb.addType(receiver, null, t, null);
+		}
+	}
+
+	/**
+	 * Applies the native method models of the points-to analysis to type
+	 * sets, so that the objects they create, such as the any-subtype objects
+	 * of reflection and Unsafe, are instantiated here too. Every variable is
+	 * the set of the native method, or of the field or array elements it
+	 * names.
+	 */
+	private final class TypeSetNativeHelper extends NativeHelper {
+		@Override
+		protected void assignImpl(ReferenceVariable lhs, ReferenceVariable rhs) {
+			addFlow((Node) rhs, (Node) lhs, Scene.v().getObjectType());
+		}
+
+		@Override
+		protected void assignObjectToImpl(ReferenceVariable lhs, AbstractObject obj) {
+			addObject((Node) lhs, obj.getType());
+		}
+
+		@Override
+		protected void throwExceptionImpl(AbstractObject obj) {
+			addObject(nodeOf(exceptions), obj.getType());
+		}
+
+		/**
+		 * An object of any subtype stands for an existing object, such as one
+		 * read by Unsafe or reflection, so it adds the instantiated types that
+		 * fit its base rather than every subtype.
+		 */
+		private void addObject(Node n, Type t) {
+			if (t instanceof AnySubType)
+				addFlow(global, n, ((AnySubType) t).getBase());
+			else
+				addType(n, t);
+		}
+
+		@Override
+		protected ReferenceVariable arrayElementOfImpl(ReferenceVariable base) {
+			return nodeOf(arrayElements);
+		}
+
+		@Override
+		protected ReferenceVariable cloneObjectImpl(ReferenceVariable source) {
+			return source;
+		}
+
+		@Override
+		protected ReferenceVariable newInstanceOfImpl(ReferenceVariable cls) {
+			Node n = tempNode();
+			for (SootClass c : Scene.v().dynamicClasses())
+				addType(n, c.getType());
+			return n;
+		}
+
+		@Override
+		protected ReferenceVariable staticFieldImpl(String className, String fieldName) {
+			return nodeOf(RefType.v(className).getSootClass().getFieldByName(fieldName));
+		}
+
+		@Override
+		protected ReferenceVariable tempFieldImpl(String fieldsig) {
+			return nodeOf(new Pair<String, String>("tempField", fieldsig));
+		}
+
+		@Override
+		protected ReferenceVariable tempVariableImpl() {
+			return tempNode();
+		}
+
+		@Override
+		protected ReferenceVariable tempLocalVariableImpl(SootMethod method) {
+			return tempNode();
+		}
+
+		private Node tempNode() {
+			return xta ? new Node() : global;
+		}
+	}
+
+	private void propagate() {
+		while (!worklist.isEmpty()) {
+			Node n = worklist.removeFirst();
+			BitSet delta = n.pending;
+			n.pending = new BitSet();
+			for (int i = delta.nextSetBit(0); i >= 0; i = delta.nextSetBit(i + 1)) {
+				Type t = indexToType.get(i);
+				for (Map.Entry<Node, List<Type>> flow : n.flows.entrySet()) {
+					for (Type filter : flow.getValue()) {
+						if (fh.canStoreType(t, filter)) {
+							addType(flow.getKey(), t);
+							break;
+						}
+					}
+				}
+				for (Map.Entry<Type, List<Local>> e : n.receivers.entrySet()) {
+					if (fh.canStoreType(t, e.getKey())) {
+						for (Local receiver : e.getValue())
+							ofcgb.addType(receiver, null, t, null);
+					}
+				}
+			}
+		}
+	}
+}
@@ -25,6 +25,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.AnySubType;
 import soot.ArrayType;
@@ -43,19 +45,26 @@ import soot.options.CGOptions;
 import soot.toolkits.scalar.Pair;
 import soot.util.Chain;
 import soot.util.HashMultiMap;
-import soot.util.LargeNumberedMap;
 import soot.util.MultiMap;
 import soot.util.NumberedString;
-import soot.util.SmallNumberedMap;
 import soot.util.queue.ChunkedQueue;
+import soot.util.queue.QueueReader;
 
 /**
  * Resolves virtual calls.
  * 
+ * Resolutions are memoized: the target of a subsignature on a concrete type
+ * is looked up once per type, including failed lookups, and the targets of a
+ * call on any subtype of a type are computed once per declared type and
+ * subsignature, and recomputed when the hierarchy changes. The targets of a
+ * subsignature are forgotten when a method with it is added to or removed
+ * from a class. Lookups are thread-safe.
+ * 
  * @author Ondrej Lhotak
  */
 public class VirtualCalls {
-	private CGOptions options = new CGOptions(PhaseOptions.v().getPhaseOptions("cg"));
+	/** The options of cg, read when first needed. */
+	private volatile CGOptions options;
 
 	public VirtualCalls(Singletons.Global g) {
 	}
@@ -64,8 +73,20 @@ public class VirtualCalls {
 		return G.v().soot_jimple_toolkits_callgraph_VirtualCalls();
 	}
 
-	private final LargeNumberedMap<Type, SmallNumberedMap<SootMethod>> typeToVtbl = new LargeNumberedMap<Type, SmallNumberedMap<SootMethod>>(
-			Scene.v().getTypeNumberer());
+	/** Marks a subsignature that has no target in a vtable. */
+	private static final Object NO_TARGET = new Object();
+
+	/**
+	 * The vtables, by subsignature first so that the targets of a
+	 * subsignature can be forgotten at once.
+	 */
+	private final ConcurrentMap<NumberedString, ConcurrentMap<Type, Object>> subSigToVtbl = new ConcurrentHashMap<NumberedString, ConcurrentMap<Type, Object>>();
+
+	/** The targets of calls on any subtype, by subsignature first. */
+	private final ConcurrentMap<NumberedString, ConcurrentMap<AnySubTypeCall, List<SootMethod>>> anySubTypeTargets = new ConcurrentHashMap<NumberedString, ConcurrentMap<AnySubTypeCall, List<SootMethod>>>();
+
+	/** The hierarchy the targets of calls on any subtype were computed with. */
+	private volatile FastHierarchy targetsHierarchy;
 
 	public SootMethod resolveSpecial(SpecialInvokeExpr iie, NumberedString subSig, SootMethod container) {
 		return resolveSpecial(iie, subSig, container, false);
@@ -91,17 +112,21 @@ public class VirtualCalls {
 	}
 
 	public SootMethod resolveNonSpecial(RefType t, NumberedString subSig, boolean appOnly) {
-		SmallNumberedMap<SootMethod> vtbl = typeToVtbl.get(t);
+		ConcurrentMap<Type, Object> vtbl = subSigToVtbl.get(subSig);
 		if (vtbl == null) {
-			typeToVtbl.put(t, vtbl = new SmallNumberedMap<SootMethod>());
+			vtbl = new ConcurrentHashMap<Type, Object>();
+			ConcurrentMap<Type, Object> old = subSigToVtbl.putIfAbsent(subSig, vtbl);
+			if (old != null)
+				vtbl = old;
 		}
-		SootMethod ret = vtbl.get(subSig);
-		if (ret != null)
-			return ret;
+		Object cached = vtbl.get(t);
+		if (cached != null)
+			return cached == NO_TARGET ? null : (SootMethod) cached;
 		SootClass cls = t.getSootClass();
 		if (appOnly && cls.isLibraryClass())
 			return null;
 
+		SootMethod ret = null;
 		SootMethod m = cls.getMethodUnsafe(subSig);
 		if (m != null) {
 			if (m.isConcrete() || m.isNative() || m.isPhantom()) {
@@ -112,12 +137,36 @@ public class VirtualCalls {
 				ret = resolveNonSpecial(cls.getSuperclass().getType(), subSig);
 			}
 		}
-		vtbl.put(subSig, ret);
+		vtbl.put(t, ret == null ? NO_TARGET : ret);
+		return ret;
+	}
+
+	/**
+	 * Forgets the targets memoized for the given subsignature. Called by the
+	 * scene when a method with this subsignature is added to or removed from
+	 * a class, since calls may now resolve to another method.
+	 */
+	public void forgetTargets(NumberedString subSig) {
+		subSigToVtbl.remove(subSig);
+		anySubTypeTargets.remove(subSig);
+		// A call resolved by signature may target methods with another
+		// subsignature of the same name, so all of them are forgotten
+		if (!baseToPossibleSubTypes.isEmpty()) {
+			baseToPossibleSubTypes.clear();
+			anySubTypeTargets.clear();
+		}
+	}
+
+	private CGOptions options() {
+		CGOptions ret = options;
+		if (ret == null)
+			options = ret = new CGOptions(PhaseOptions.v().getPhaseOptions("cg"));
 		return ret;
 	}
 
 	protected MultiMap<Type, Type> baseToSubTypes = new HashMultiMap<Type, Type>();
-	protected MultiMap<Pair<Type, NumberedString>, Pair<Type, NumberedString>> baseToPossibleSubTypes = new HashMultiMap<Pair<Type, NumberedString>, Pair<Type, NumberedString>>();
+	/** The types a call may be resolved on by signature, by subsignature first. */
+	protected ConcurrentMap<NumberedString, MultiMap<Type, Pair<Type, NumberedString>>> baseToPossibleSubTypes = new ConcurrentHashMap<NumberedString, MultiMap<Type, Pair<Type, NumberedString>>>();
 
 	public void resolve(Type t, Type declaredType, NumberedString subSig, SootMethod container,
 			ChunkedQueue<SootMethod> targets) {
@@ -173,17 +222,98 @@ public class VirtualCalls {
 			 * Since Java has no multiple inheritance call by signature
 			 * resolution is only activated if the base is an interface.
 			 */
-			if (options.library() == CGOptions.library_signature_resolution && base.getSootClass().isInterface()) {
-				resolveLibrarySignature(declaredType, sigType, subSig, container, targets, appOnly, base);
-			} else {
-				resolveAnySubType(declaredType, sigType, subSig, container, targets, appOnly, base);
-			}
+			for (SootMethod target : anySubTypeTargets(declaredType, sigType, subSig, container, appOnly, base))
+				targets.add(target);
 		} else if (t instanceof NullType) {
 		} else {
 			throw new RuntimeException("oops " + t);
 		}
 	}
 
+	private List<SootMethod> anySubTypeTargets(Type declaredType, Type sigType, NumberedString subSig,
+			SootMethod container, boolean appOnly, RefType base) {
+		FastHierarchy fastHierachy = Scene.v().getOrMakeFastHierarchy();
+		if (targetsHierarchy != fastHierachy) {
+			synchronized (this) {
+				if (targetsHierarchy != fastHierachy) {
+					anySubTypeTargets.clear();
+					baseToSubTypes.clear();
+					baseToPossibleSubTypes.clear();
+					targetsHierarchy = fastHierachy;
+				}
+			}
+		}
+
+		ConcurrentMap<AnySubTypeCall, List<SootMethod>> calls = anySubTypeTargets.get(subSig);
+		if (calls == null) {
+			calls = new ConcurrentHashMap<AnySubTypeCall, List<SootMethod>>();
+			ConcurrentMap<AnySubTypeCall, List<SootMethod>> old = anySubTypeTargets.putIfAbsent(subSig, calls);
+			if (old != null)
+				calls = old;
+		}
+		AnySubTypeCall call = new AnySubTypeCall(base, declaredType, sigType, subSig, appOnly);
+		List<SootMethod> ret = calls.get(call);
+		if (ret != null)
+			return ret;
+
+		// The subtype maps are filled in while resolving, so misses are
+		// resolved one at a time
+		synchronized (this) {
+			ret = calls.get(call);
+			if (ret != null)
+				return ret;
+			ChunkedQueue<SootMethod> queue = new ChunkedQueue<SootMethod>();
+			QueueReader<SootMethod> reader = queue.reader();
+			if (options().library() == CGOptions.library_signature_resolution && base.getSootClass().isInterface()) {
+				resolveLibrarySignature(declaredType, sigType, subSig, container, queue, appOnly, base);
+			} else {
+				resolveAnySubType(declaredType, sigType, subSig, container, queue, appOnly, base);
+			}
+			ret = new ArrayList<SootMethod>();
+			while (reader.hasNext())
+				ret.add(reader.next());
+			calls.put(call, ret);
+			return ret;
+		}
+	}
+
+	/** A call on any subtype of a type, as far as its targets are concerned. */
+	private static final class AnySubTypeCall {
+		private final RefType base;
+		private final Type declaredType;
+		private final Type sigType;
+		private final NumberedString subSig;
+		private final boolean appOnly;
+
+		AnySubTypeCall(RefType base, Type declaredType, Type sigType, NumberedString subSig, boolean appOnly) {
+			this.base = base;
+			this.declaredType = declaredType;
+			this.sigType = sigType;
+			this.subSig = subSig;
+			this.appOnly = appOnly;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = base.hashCode();
+			h = 31 * h + (declaredType == null ? 0 : declaredType.hashCode());
+			h = 31 * h + (sigType == null ? 0 : sigType.hashCode());
+			h = 31 * h + subSig.hashCode();
+			return appOnly ? h + 1 : h;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof AnySubTypeCall))
+				return false;
+			AnySubTypeCall other = (AnySubTypeCall) o;
+			return base.equals(other.base)
+					&& (declaredType == null ? other.declaredType == null : declaredType.equals(other.declaredType))
+					&& (sigType == null ? other.sigType == null : sigType.equals(other.sigType))
+					&& subSig == other.subSig && appOnly == other.appOnly;
+		}
+	}
+
 	protected void resolveAnySubType(Type declaredType, Type sigType, NumberedString subSig, SootMethod container,
 			ChunkedQueue<SootMethod> targets, boolean appOnly, RefType base) {
 		FastHierarchy fastHierachy = Scene.v().getOrMakeFastHierarchy();
@@ -237,16 +367,23 @@ public class VirtualCalls {
 		FastHierarchy fastHierachy = Scene.v().getOrMakeFastHierarchy();
 
 		assert (declaredType instanceof RefType);
-		Pair<Type, NumberedString> pair = new Pair<Type, NumberedString>(base, subSig);
+		MultiMap<Type, Pair<Type, NumberedString>> possibleSubTypes = baseToPossibleSubTypes.get(subSig);
+		if (possibleSubTypes == null) {
+			possibleSubTypes = new HashMultiMap<Type, Pair<Type, NumberedString>>();
+			MultiMap<Type, Pair<Type, NumberedString>> old = baseToPossibleSubTypes.putIfAbsent(subSig,
+					possibleSubTypes);
+			if (old != null)
+				possibleSubTypes = old;
+		}
 		{
-			Set<Pair<Type, NumberedString>> types = baseToPossibleSubTypes.get(pair);
 			// if this type and method has been resolved earlier we can
 			// just retrieve the previous result.
-			if (types != null) {
+			if (possibleSubTypes.containsKey(base)) {
+				Set<Pair<Type, NumberedString>> types = possibleSubTypes.get(base);
 				for (Pair<Type, NumberedString> tuple : types) {
 					Type st = tuple.getO1();
 					if (!fastHierachy.canStoreType(st, declaredType)) {
-						resolve(st, st, sigType, subSig, container, targets, appOnly);
+						resolve(st, st, sigType, tuple.getO2(), container, targets, appOnly);
 					} else {
 						resolve(st, declaredType, sigType, subSig, container, targets, appOnly);
 					}
@@ -316,7 +453,7 @@ public class VirtualCalls {
 				}
 			}
 		}
-		baseToPossibleSubTypes.putAll(pair, types);
+		possibleSubTypes.putAll(base, types);
 	}
 
 	public final NumberedString sigClinit = Scene.v().getSubSigNumberer().findOrAdd("void <clinit>()");
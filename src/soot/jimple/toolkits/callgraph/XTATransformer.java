@@ -0,0 +1,48 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.toolkits.callgraph;
+
+import soot.options.*;
+import soot.*;
+
+import java.util.*;
+
+/** Builds a call graph using XTA, which keeps the instantiated types per method and field. */
+public class XTATransformer extends SceneTransformer
+{
+    public XTATransformer( Singletons.Global g ) {}
+    public static XTATransformer v() { return G.v().soot_jimple_toolkits_callgraph_XTATransformer(); }
+
+    protected void internalTransform(String phaseName, Map<String, String> opts)
+    {
+        XTAOptions options = new XTAOptions( opts );
+        TypeSetCallGraphBuilder cg = new TypeSetCallGraphBuilder( true );
+        cg.build();
+        if( options.verbose() ) {
+            G.v().out.println( "Number of reachable methods: "
+                    +Scene.v().getReachableMethods().size() );
+            G.v().out.println( "Number of call graph edges: "
+                    +cg.getCallGraph().size() );
+            G.v().out.println( "Number of instantiated types: "
+                    +cg.instantiatedTypeCount() );
+        }
+    }
+}
+
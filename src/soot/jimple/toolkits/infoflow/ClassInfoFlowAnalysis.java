@@ -3,6 +3,8 @@ package soot.jimple.toolkits.infoflow;
 import soot.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import soot.toolkits.graph.*;
 import soot.jimple.*;
 
@@ -19,8 +21,13 @@ public class ClassInfoFlowAnalysis
 	SootClass sootClass;
 	InfoFlowAnalysis dfa; // used to access the data flow analyses of other classes
 	
-	Map<SootMethod, SmartMethodInfoFlowAnalysis> methodToInfoFlowAnalysis;
-	Map<SootMethod, HashMutableDirectedGraph<EquivalentValue>> methodToInfoFlowSummary;
+	// Summaries are kept for the whole run, the intra-procedural analyses
+	// that produced them only as long as dfa retains them.  Only final
+	// summaries are published here, see InfoFlowAnalysis.computeInfoFlowSummary.
+	ConcurrentMap<SootMethod, InfoFlowSummary> methodToInfoFlowSummary;
+	// Flow-insensitive summaries, for methods without a body and for
+	// requests that do not ask for the full analysis.
+	ConcurrentMap<SootMethod, InfoFlowSummary> methodToConservativeSummary;
 	
 	public static int methodCount = 0;
 	
@@ -28,78 +35,101 @@ public class ClassInfoFlowAnalysis
 	{
 		 this.sootClass = sootClass;
 		 this.dfa = dfa;
-		 methodToInfoFlowAnalysis = new HashMap<SootMethod, SmartMethodInfoFlowAnalysis>();
-		 methodToInfoFlowSummary = new HashMap<SootMethod, HashMutableDirectedGraph<EquivalentValue>>();
+		 methodToInfoFlowSummary = new ConcurrentHashMap<SootMethod, InfoFlowSummary>();
+		 methodToConservativeSummary = new ConcurrentHashMap<SootMethod, InfoFlowSummary>();
 		 
-//		 doSimpleConservativeDataFlowAnalysis();
 	}
 	
+	/** Returns the flow-sensitive analysis of method, or null if it has no
+	  * body.  If the analysis was evicted since it was last requested, it is
+	  * recomputed. */
 	public SmartMethodInfoFlowAnalysis getMethodInfoFlowAnalysis(SootMethod method)
 	{
-		if(!methodToInfoFlowAnalysis.containsKey(method))
+		SmartMethodInfoFlowAnalysis smdfa = dfa.getRetainedAnalysis(method);
+		if(smdfa == null && method.isConcrete())
 		{
-			methodCount++;
-
-			// First do simple version that doesn't follow invoke expressions
-			// The "smart" version will be computed later, but since it may
-			// request its own DataFlowGraph, we need this simple version first.
-			if(!methodToInfoFlowSummary.containsKey(method))
-			{
-				HashMutableDirectedGraph<EquivalentValue> dataFlowGraph =
-						simpleConservativeInfoFlowAnalysis(method);
-				methodToInfoFlowSummary.put(method, dataFlowGraph);
-			}
-			
-			// Then do smart version that does follow invoke expressions, if possible
-			if(method.isConcrete())
-			{
-				Body b = method.retrieveActiveBody();
-				UnitGraph g = new ExceptionalUnitGraph(b);
-				SmartMethodInfoFlowAnalysis smdfa = new SmartMethodInfoFlowAnalysis(g, dfa);
-
-				methodToInfoFlowAnalysis.put(method, smdfa);
-				methodToInfoFlowSummary.remove(method);
-				methodToInfoFlowSummary.put(method, smdfa.getMethodInfoFlowSummary());
-				return smdfa;
-//				G.v().out.println(method + " has SMART infoFlowGraph: ");
-//				printDataFlowGraph(mdfa.getMethodDataFlowGraph());
-			}
+			// The first request analyses the method with its component.
+			getInfoFlowSummary(method);
+			smdfa = dfa.getRetainedAnalysis(method);
+			if(smdfa == null)
+				smdfa = analyse(method);
 		}
 
-		return methodToInfoFlowAnalysis.get(method);
+		return smdfa;
 	}
 	
 	public MutableDirectedGraph<EquivalentValue> getMethodInfoFlowSummary(SootMethod method) { return getMethodInfoFlowSummary(method, true); }
+	/** Returns a copy of the summary of method, which may be modified. */
 	public HashMutableDirectedGraph<EquivalentValue> getMethodInfoFlowSummary(SootMethod method, boolean doFullAnalysis)
 	{
-		if(!methodToInfoFlowSummary.containsKey(method))
+		return getInfoFlowSummary(method, doFullAnalysis).toMutableGraph();
+	}
+	
+	public InfoFlowSummary getInfoFlowSummary(SootMethod method) { return getInfoFlowSummary(method, true); }
+	/** Returns the summary of method, computing it on the first request.
+	  * Without doFullAnalysis, or if method has no body, this is always the
+	  * flow-insensitive summary.  Otherwise it is the flow-sensitive one;
+	  * recursive calls made while it is computed get the flow-insensitive
+	  * summary, but other threads wait for the final one. */
+	public InfoFlowSummary getInfoFlowSummary(SootMethod method, boolean doFullAnalysis)
+	{
+		if(!method.isConcrete() || !doFullAnalysis)// || !method.getDeclaringClass().isApplicationClass())
+			return getConservativeSummary(method);
+		
+		InfoFlowSummary summary = methodToInfoFlowSummary.get(method);
+		if(summary == null)
+			summary = dfa.computeInfoFlowSummary(method);
+		return summary;
+	}
+	
+	InfoFlowSummary getPublishedSummary(SootMethod method)
+	{
+		return methodToInfoFlowSummary.get(method);
+	}
+	
+	// Publishes the final summary of method and returns it, or returns the
+	// summary another thread published first.
+	InfoFlowSummary publishSummary(SootMethod method, InfoFlowSummary summary)
+	{
+		InfoFlowSummary published = methodToInfoFlowSummary.putIfAbsent(method, summary);
+		if(published != null)
+			return published;
+		methodCount++;
+		return summary;
+	}
+	
+	InfoFlowSummary getConservativeSummary(SootMethod method)
+	{
+		InfoFlowSummary summary = methodToConservativeSummary.get(method);
+		if(summary == null)
 		{
-			methodCount++;
-
-			// First do simple version that doesn't follow invoke expressions
-			// The "smart" version will be computed later, but since it may
-			// request its own DataFlowGraph, we need this simple version first.
-			HashMutableDirectedGraph<EquivalentValue> dataFlowGraph =
-					simpleConservativeInfoFlowAnalysis(method);
-			methodToInfoFlowSummary.put(method, dataFlowGraph);
-			
-			// Then do smart version that does follow invoke expressions, if possible
-			if(method.isConcrete() && doFullAnalysis)// && method.getDeclaringClass().isApplicationClass())
-			{
-				Body b = method.retrieveActiveBody();
-				UnitGraph g = new ExceptionalUnitGraph(b);
-				SmartMethodInfoFlowAnalysis smdfa = new SmartMethodInfoFlowAnalysis(g, dfa);
-
-				methodToInfoFlowAnalysis.put(method, smdfa);
-				methodToInfoFlowSummary.remove(method);
-				methodToInfoFlowSummary.put(method, smdfa.getMethodInfoFlowSummary());
-
-//				G.v().out.println(method + " has SMART infoFlowGraph: ");
-//				printDataFlowGraph(mdfa.getMethodDataFlowGraph());
-			}
+			summary = conservativeSummary(method);
+			InfoFlowSummary cached = methodToConservativeSummary.putIfAbsent(method, summary);
+			if(cached != null)
+				summary = cached;
+			else
+				methodCount++;
 		}
-
-		return methodToInfoFlowSummary.get(method);
+		return summary;
+	}
+	
+	InfoFlowSummary conservativeSummary(SootMethod method)
+	{
+		return new InfoFlowSummary(simpleConservativeInfoFlowAnalysis(method));
+	}
+	
+	InfoFlowSummary analyseSummary(SootMethod method)
+	{
+		return new InfoFlowSummary(analyse(method).getMethodInfoFlowSummary());
+	}
+	
+	private SmartMethodInfoFlowAnalysis analyse(SootMethod method)
+	{
+		Body b = method.retrieveActiveBody();
+		UnitGraph g = new ExceptionalUnitGraph(b);
+		SmartMethodInfoFlowAnalysis smdfa = new SmartMethodInfoFlowAnalysis(g, dfa);
+		dfa.retainAnalysis(method, smdfa);
+		return smdfa;
 	}
 	
 /*	public void doFixedPointDataFlowAnalysis()
@@ -172,11 +202,10 @@ public class ClassInfoFlowAnalysis
 			return triviallyConservativeInfoFlowAnalysis(sm);
 			
 		Body b = sm.retrieveActiveBody();
-		UnitGraph g = new ExceptionalUnitGraph(b);
 		HashSet<EquivalentValue> fieldsStaticsParamsAccessed = new HashSet<EquivalentValue>();		
 
 		// Get list of fields, globals, and parameters that are accessed
-		for (Unit u : g)
+		for (Unit u : b.getUnits())
 		{
 			Stmt s = (Stmt) u;
 			if( s instanceof IdentityStmt )
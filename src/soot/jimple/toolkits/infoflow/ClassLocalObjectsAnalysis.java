@@ -240,10 +240,10 @@ public class ClassLocalObjectsAnalysis
 			SootMethod method = methodsIt.next();
 			
 			// Get data flow summary
-			MutableDirectedGraph dataFlowSummary;
+			InfoFlowSummary dataFlowSummary;
 			if(primitiveDfa != null)
 			{
-				dataFlowSummary = primitiveDfa.getMethodInfoFlowSummary(method);
+				dataFlowSummary = primitiveDfa.getInfoFlowSummary(method);
 				
 				if(printdfgs && method.getDeclaringClass().isApplicationClass())
 				{
@@ -259,7 +259,7 @@ public class ClassLocalObjectsAnalysis
 			}
 			else
 			{
-				dataFlowSummary = dfa.getMethodInfoFlowSummary(method);
+				dataFlowSummary = dfa.getInfoFlowSummary(method);
 				
 				if(printdfgs && method.getDeclaringClass().isApplicationClass())
 				{
@@ -271,10 +271,10 @@ public class ClassLocalObjectsAnalysis
 			}
 				
 			// Iterate through nodes
-			Iterator<Object> nodesIt = dataFlowSummary.getNodes().iterator();
+			Iterator<EquivalentValue> nodesIt = dataFlowSummary.getNodes().iterator();
 			while(nodesIt.hasNext())
 			{
-				EquivalentValue node = (EquivalentValue) nodesIt.next();
+				EquivalentValue node = nodesIt.next();
 				if(node.getValue() instanceof InstanceFieldRef)
 				{
 					InstanceFieldRef ifr = (InstanceFieldRef) node.getValue();
@@ -308,11 +308,11 @@ public class ClassLocalObjectsAnalysis
 					SootField localField = localFieldsIt.next();
 					List sourcesAndSinks = new ArrayList();
 
-					MutableDirectedGraph dataFlowSummary;
+					InfoFlowSummary dataFlowSummary;
 					if(primitiveDfa != null)
-						dataFlowSummary = primitiveDfa.getMethodInfoFlowSummary(method);
+						dataFlowSummary = primitiveDfa.getInfoFlowSummary(method);
 					else
-						dataFlowSummary = dfa.getMethodInfoFlowSummary(method);
+						dataFlowSummary = dfa.getInfoFlowSummary(method);
 					
 					EquivalentValue node = InfoFlowAnalysis.getNodeForFieldRef(method, localField);
 					if(dataFlowSummary.containsNode(node))
@@ -383,11 +383,11 @@ public class ClassLocalObjectsAnalysis
 					SootField localInnerField = localInnerFieldsIt.next();
 					List sourcesAndSinks = new ArrayList();
 
-					MutableDirectedGraph dataFlowSummary;
+					InfoFlowSummary dataFlowSummary;
 					if(primitiveDfa != null)
-						dataFlowSummary = primitiveDfa.getMethodInfoFlowSummary(method);
+						dataFlowSummary = primitiveDfa.getInfoFlowSummary(method);
 					else
-						dataFlowSummary = dfa.getMethodInfoFlowSummary(method);
+						dataFlowSummary = dfa.getInfoFlowSummary(method);
 					
 					EquivalentValue node = InfoFlowAnalysis.getNodeForFieldRef(method, localInnerField);
 					if(dataFlowSummary.containsNode(node))
@@ -574,7 +574,7 @@ public class ClassLocalObjectsAnalysis
 			ie = null;
 			
 		SootMethod callingMethod = e.tgt();
-		CallLocalityContext callingContext = new CallLocalityContext(dfa.getMethodInfoFlowSummary(callingMethod).getNodes()); // just keeps a map from NODE to SHARED/LOCAL
+		CallLocalityContext callingContext = new CallLocalityContext(dfa.getInfoFlowSummary(callingMethod).getNodes()); // just keeps a map from NODE to SHARED/LOCAL
 		
 		// We will use the containing context that we have to determine if base/args are local
 		if(callingMethod.isConcrete())
@@ -651,9 +651,9 @@ public class ClassLocalObjectsAnalysis
 	{
 		CallLocalityContext context;
 		if(includePrimitiveDataFlowIfAvailable)
-			context = new CallLocalityContext(primitiveDfa.getMethodInfoFlowSummary(sm).getNodes());
+			context = new CallLocalityContext(primitiveDfa.getInfoFlowSummary(sm).getNodes());
 		else
-			context = new CallLocalityContext(dfa.getMethodInfoFlowSummary(sm).getNodes());
+			context = new CallLocalityContext(dfa.getInfoFlowSummary(sm).getNodes());
 		
 		// Set context for every parameter that is shared
 		for(int i = 0; i < sm.getParameterCount(); i++) // no need to worry about return value... 
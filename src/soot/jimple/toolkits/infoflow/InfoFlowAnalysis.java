@@ -1,12 +1,15 @@
 package soot.jimple.toolkits.infoflow;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.*;
 import soot.util.dot.*;
 import soot.toolkits.graph.*;
 import soot.jimple.internal.*;
 import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.CallGraphComponents;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.jimple.*;
 
@@ -18,6 +21,12 @@ import soot.jimple.*;
 // large data structure, but that entire structure will be represented only by
 // the parameter's one node in the data flow graph.
 // Provides a high level interface to access the data flow information.
+// Summaries are computed on demand, or in parallel by computeInfoFlowSummaries,
+// and kept for the whole run.  The methods of one strongly connected component
+// of the call graph are analysed together and their summaries are published
+// at once, so no caller sees a summary that is still being refined.
+// The flow-sensitive method analyses that produce the summaries are only kept
+// up to a bound, and recomputed when needed again.
 
 public class InfoFlowAnalysis
 {
@@ -25,7 +34,35 @@ public class InfoFlowAnalysis
 	boolean includeInnerFields;
 	boolean printDebug;
 
-	Map<SootClass, ClassInfoFlowAnalysis> classToClassInfoFlowAnalysis;
+	ConcurrentMap<SootClass, ClassInfoFlowAnalysis> classToClassInfoFlowAnalysis;
+	
+	public static final int DEFAULT_MAX_RETAINED_ANALYSES = 1000;
+	
+	int maxRetainedAnalyses = DEFAULT_MAX_RETAINED_ANALYSES;
+	final Map<SootMethod, SmartMethodInfoFlowAnalysis> retainedAnalyses =
+		new LinkedHashMap<SootMethod, SmartMethodInfoFlowAnalysis>(16, 0.75f, true)
+		{
+			protected boolean removeEldestEntry(Map.Entry<SootMethod, SmartMethodInfoFlowAnalysis> eldest)
+			{
+				return maxRetainedAnalyses >= 0 && size() > maxRetainedAnalyses;
+			}
+		};
+	
+	// The strongly connected components of callGraph, built on the first
+	// request for a flow-sensitive summary.
+	CallGraph callGraph;
+	CallGraphComponents<SootMethod> components;
+	
+	// The summaries of the component the current thread is analysing.  While
+	// a method is analysed, recursive calls get its flow-insensitive summary.
+	final ThreadLocal<Map<SootMethod, InfoFlowSummary>> unpublishedSummaries =
+		new ThreadLocal<Map<SootMethod, InfoFlowSummary>>()
+		{
+			protected Map<SootMethod, InfoFlowSummary> initialValue()
+			{
+				return new HashMap<SootMethod, InfoFlowSummary>();
+			}
+		};
 	
 	public InfoFlowAnalysis(boolean includePrimitiveDataFlow, boolean includeInnerFields)
 	{
@@ -37,7 +74,40 @@ public class InfoFlowAnalysis
 		this.includePrimitiveInfoFlow = includePrimitiveDataFlow;
 		this.includeInnerFields = includeInnerFields;
 		this.printDebug = printDebug;
-		classToClassInfoFlowAnalysis = new HashMap<SootClass, ClassInfoFlowAnalysis>();
+		classToClassInfoFlowAnalysis = new ConcurrentHashMap<SootClass, ClassInfoFlowAnalysis>();
+	}
+	
+	/** Sets how many flow-sensitive method analyses are kept once their
+	  * summaries are stored; the least recently used ones are dropped first.
+	  * A negative bound keeps all of them. */
+	public void setMaxRetainedAnalyses(int maxRetainedAnalyses)
+	{
+		synchronized(retainedAnalyses)
+		{
+			this.maxRetainedAnalyses = maxRetainedAnalyses;
+			Iterator<SootMethod> it = retainedAnalyses.keySet().iterator();
+			while(maxRetainedAnalyses >= 0 && retainedAnalyses.size() > maxRetainedAnalyses)
+			{
+				it.next();
+				it.remove();
+			}
+		}
+	}
+	
+	SmartMethodInfoFlowAnalysis getRetainedAnalysis(SootMethod sm)
+	{
+		synchronized(retainedAnalyses)
+		{
+			return retainedAnalyses.get(sm);
+		}
+	}
+	
+	void retainAnalysis(SootMethod sm, SmartMethodInfoFlowAnalysis smdfa)
+	{
+		synchronized(retainedAnalyses)
+		{
+			retainedAnalyses.put(sm, smdfa);
+		}
 	}
 	
 	public boolean includesPrimitiveInfoFlow()
@@ -88,12 +158,15 @@ public class InfoFlowAnalysis
 
 	private ClassInfoFlowAnalysis getClassInfoFlowAnalysis(SootClass sc)
 	{
-		if(!classToClassInfoFlowAnalysis.containsKey(sc))
+		ClassInfoFlowAnalysis cdfa = classToClassInfoFlowAnalysis.get(sc);
+		if(cdfa == null)
 		{
-			ClassInfoFlowAnalysis cdfa = new ClassInfoFlowAnalysis(sc, this);
-			classToClassInfoFlowAnalysis.put(sc, cdfa);
+			cdfa = new ClassInfoFlowAnalysis(sc, this);
+			ClassInfoFlowAnalysis existing = classToClassInfoFlowAnalysis.putIfAbsent(sc, cdfa);
+			if(existing != null)
+				cdfa = existing;
 		}
-		return classToClassInfoFlowAnalysis.get(sc);
+		return cdfa;
 	}
 	
 	public SmartMethodInfoFlowAnalysis getMethodInfoFlowAnalysis(SootMethod sm)
@@ -102,9 +175,9 @@ public class InfoFlowAnalysis
 		return cdfa.getMethodInfoFlowAnalysis(sm);
 	}
 	
-	/** Returns a BACKED MutableDirectedGraph whose nodes are EquivalentValue 
-	  * wrapped Refs. It's perfectly safe to modify this graph, just so long as 
-	  * new nodes are EquivalentValue wrapped Refs. */
+	/** Returns a copy of the summary of sm as a MutableDirectedGraph whose nodes
+	  * are EquivalentValue wrapped Refs. Modifying it does not affect the stored
+	  * summary. */
 	public HashMutableDirectedGraph<EquivalentValue> getMethodInfoFlowSummary(SootMethod sm) { return getMethodInfoFlowSummary(sm, true); }
 	public HashMutableDirectedGraph<EquivalentValue> getMethodInfoFlowSummary(SootMethod sm, boolean doFullAnalysis)
 	{
@@ -112,6 +185,149 @@ public class InfoFlowAnalysis
 		return cdfa.getMethodInfoFlowSummary(sm, doFullAnalysis);
 	}
 	
+	/** Returns the stored summary of sm, without copying it. */
+	public InfoFlowSummary getInfoFlowSummary(SootMethod sm) { return getInfoFlowSummary(sm, true); }
+	public InfoFlowSummary getInfoFlowSummary(SootMethod sm, boolean doFullAnalysis)
+	{
+		ClassInfoFlowAnalysis cdfa = getClassInfoFlowAnalysis(sm.getDeclaringClass());
+		return cdfa.getInfoFlowSummary(sm, doFullAnalysis);
+	}
+	
+	synchronized CallGraphComponents<SootMethod> getComponents()
+	{
+		CallGraph cg = Scene.v().getCallGraph();
+		if(cg != callGraph)
+		{
+			HashMutableDirectedGraph<SootMethod> calls = new HashMutableDirectedGraph<SootMethod>();
+			for(Edge e : cg)
+			{
+				SootMethod src = e.src(), tgt = e.tgt();
+				if(src == null || tgt == null)
+					continue;
+				if(!calls.containsNode(src))
+					calls.addNode(src);
+				if(!calls.containsNode(tgt))
+					calls.addNode(tgt);
+				calls.addEdge(src, tgt);
+			}
+			components = new CallGraphComponents<SootMethod>(calls);
+			callGraph = cg;
+		}
+		return components;
+	}
+	
+	/** Computes the flow-sensitive summary of the concrete method sm, which
+	  * has no published summary yet.  The methods of its strongly connected
+	  * component are analysed in a fixed order while the component is
+	  * locked, and their summaries are published together.  The callees in
+	  * other components are published before, so every summary is the same
+	  * whichever method of the component and whichever thread asked first. */
+	InfoFlowSummary computeInfoFlowSummary(SootMethod sm)
+	{
+		Map<SootMethod, InfoFlowSummary> unpublished = unpublishedSummaries.get();
+		InfoFlowSummary summary = unpublished.get(sm);
+		if(summary != null)
+			return summary;
+		
+		ClassInfoFlowAnalysis cdfa = getClassInfoFlowAnalysis(sm.getDeclaringClass());
+		CallGraphComponents.Component<SootMethod> c = getComponents().getComponentOf(sm);
+		if(c == null)
+		{
+			// not in the call graph, so it cannot be recursive
+			try
+			{
+				return cdfa.publishSummary(sm, analyseUnpublished(sm, unpublished));
+			}
+			finally
+			{
+				unpublished.remove(sm);
+			}
+		}
+		if(Thread.holdsLock(c))
+			return analyseUnpublished(sm, unpublished); // called from the component being analysed
+		
+		// callers of this component are never analysed while it is locked,
+		// so the locks are taken bottom-up and cannot deadlock
+		synchronized(c)
+		{
+			summary = cdfa.getPublishedSummary(sm);
+			if(summary != null)
+				return summary;
+			try
+			{
+				for(SootMethod m : c.getMethods())
+					analyseUnpublished(m, unpublished);
+				for(SootMethod m : c.getMethods())
+				{
+					ClassInfoFlowAnalysis mcdfa = getClassInfoFlowAnalysis(m.getDeclaringClass());
+					InfoFlowSummary s = mcdfa.publishSummary(m, unpublished.get(m));
+					if(m == sm)
+						summary = s;
+				}
+			}
+			finally
+			{
+				for(SootMethod m : c.getMethods())
+					unpublished.remove(m);
+			}
+		}
+		return summary;
+	}
+	
+	// Analyses sm unless the current thread did already, and keeps its
+	// summary in unpublished.
+	private InfoFlowSummary analyseUnpublished(SootMethod sm, Map<SootMethod, InfoFlowSummary> unpublished)
+	{
+		InfoFlowSummary summary = unpublished.get(sm);
+		if(summary != null)
+			return summary;
+		ClassInfoFlowAnalysis cdfa = getClassInfoFlowAnalysis(sm.getDeclaringClass());
+		summary = cdfa.getPublishedSummary(sm);
+		if(summary != null)
+			return summary;
+		summary = cdfa.conservativeSummary(sm);
+		if(sm.isConcrete())
+		{
+			unpublished.put(sm, summary);
+			summary = cdfa.analyseSummary(sm);
+		}
+		unpublished.put(sm, summary);
+		return summary;
+	}
+	
+	/** Computes the summaries of the given methods on the given number of
+	  * threads.  Methods are analysed bottom-up over the call graph, so the
+	  * summaries of callees are ready when their callers are analysed, and
+	  * methods that do not call each other are analysed concurrently. */
+	public void computeInfoFlowSummaries(Collection<SootMethod> methods, int threads)
+	{
+		CallGraph cg = Scene.v().getCallGraph();
+		HashMutableDirectedGraph<SootMethod> calls = new HashMutableDirectedGraph<SootMethod>();
+		for(SootMethod m : methods)
+		{
+			if(!calls.containsNode(m))
+				calls.addNode(m);
+		}
+		for(SootMethod m : methods)
+		{
+			for(Iterator<Edge> edges = cg.edgesOutOf(m); edges.hasNext();)
+			{
+				SootMethod target = edges.next().tgt();
+				if(calls.containsNode(target))
+					calls.addEdge(m, target);
+			}
+		}
+		
+		new CallGraphComponents<SootMethod>(calls).visitBottomUp(new CallGraphComponents.Visitor<SootMethod>()
+		{
+			public void visit(CallGraphComponents.Component<SootMethod> c)
+			{
+				for(SootMethod m : c.getMethods())
+					getInfoFlowSummary(m);
+			}
+		}, threads);
+	}
+	
 	/** Returns an unmodifiable list of EquivalentValue wrapped Refs that source
 	  * flows to when method sm is called. */
 /*	public List getSinksOf(SootMethod sm, EquivalentValue source)
@@ -190,12 +406,15 @@ public class InfoFlowAnalysis
 		return new CachedEquivalentValue(new ThisRef(sm.getDeclaringClass().getType()));
 	}
 	
-	protected HashMutableDirectedGraph<EquivalentValue> getInvokeInfoFlowSummary(
+	protected InfoFlowSummary getInvokeInfoFlowSummary(
 			InvokeExpr ie, Stmt is, SootMethod context)
 	{
 		// get the data flow graph for each possible target of ie,
 		// then combine them conservatively and return the result.
-		HashMutableDirectedGraph<EquivalentValue> ret = null;
+		// Stored summaries are shared, so they are only copied if there
+		// is more than one target.
+		InfoFlowSummary ret = null;
+		HashMutableDirectedGraph<EquivalentValue> combined = null;
 		
 		SootMethodRef methodRef = ie.getMethodRef();
 		String subSig = methodRef.resolve().getSubSignature();
@@ -208,23 +427,31 @@ public class InfoFlowAnalysis
 			// and not just a class initializer or other unintended control flow.
 			if(target.getSubSignature().equals(subSig))
 			{
-				HashMutableDirectedGraph<EquivalentValue> ifs = getMethodInfoFlowSummary(
+				InfoFlowSummary ifs = getInfoFlowSummary(
 						target, context.getDeclaringClass().isApplicationClass());
 				if(ret == null)
 					ret = ifs;
 				else
 				{
-					for(EquivalentValue node : ifs.getNodes())
+					if(combined == null)
+						combined = ret.toMutableGraph();
+					for(EquivalentValue node : ifs)
 					{
-						if(!ret.containsNode(node))
-							ret.addNode(node);
+						if(!combined.containsNode(node))
+							combined.addNode(node);
 						for(EquivalentValue succ : ifs.getSuccsOf(node))
-							ret.addEdge(node, succ);
+						{
+							if(!combined.containsNode(succ))
+								combined.addNode(succ);
+							combined.addEdge(node, succ);
+						}
 					}
 				}
 			}
 			
 		}
+		if(combined != null)
+			return new InfoFlowSummary(combined);
 		return ret;
 //		return getMethodInfoFlowSummary(methodRef.resolve(), context.getDeclaringClass().isApplicationClass());
 	}
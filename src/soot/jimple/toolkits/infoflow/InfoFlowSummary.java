@@ -0,0 +1,204 @@
+package soot.jimple.toolkits.infoflow;
+
+import java.util.*;
+
+import soot.*;
+import soot.toolkits.graph.*;
+
+/** An immutable information flow summary of one method, whose nodes are
+ *  EquivalentValue wrapped Refs.
+ *
+ *  Nodes are numbered, and edges are kept as arrays of node numbers in both
+ *  directions, so a summary holds no per-node or per-edge objects besides
+ *  the nodes themselves.  Summaries are shared between callers and threads;
+ *  use {@link #toMutableGraph()} to get a copy that can be modified. */
+
+public class InfoFlowSummary implements DirectedGraph<EquivalentValue>
+{
+	private final EquivalentValue[] nodes;
+	private final int[] table; // open addressing hash table of node number + 1
+	private final int[] succStart;
+	private final int[] succs;
+	private final int[] predStart;
+	private final int[] preds;
+
+	public InfoFlowSummary(DirectedGraph<EquivalentValue> g)
+	{
+		int n = g.size();
+		nodes = new EquivalentValue[n];
+		int i = 0;
+		for(EquivalentValue node : g)
+			nodes[i++] = node;
+
+		table = new int[Integer.highestOneBit(Math.max(n, 1) * 2) * 2];
+		for(i = 0; i < n; i++)
+		{
+			int slot = slotOf(nodes[i]);
+			if(table[slot] != 0)
+				throw new RuntimeException("Node already in graph");
+			table[slot] = i + 1;
+		}
+
+		int[][] succsOf = new int[n][];
+		int[] predCount = new int[n];
+		int edgeCount = 0;
+		for(i = 0; i < n; i++)
+		{
+			List<EquivalentValue> s = g.getSuccsOf(nodes[i]);
+			succsOf[i] = new int[s.size()];
+			int k = 0;
+			for(EquivalentValue succ : s)
+			{
+				int j = indexOf(succ);
+				succsOf[i][k++] = j;
+				predCount[j]++;
+			}
+			edgeCount += k;
+		}
+
+		succStart = new int[n + 1];
+		succs = new int[edgeCount];
+		predStart = new int[n + 1];
+		preds = new int[edgeCount];
+		for(i = 0; i < n; i++)
+		{
+			succStart[i + 1] = succStart[i] + succsOf[i].length;
+			System.arraycopy(succsOf[i], 0, succs, succStart[i], succsOf[i].length);
+			predStart[i + 1] = predStart[i] + predCount[i];
+		}
+		int[] fill = Arrays.copyOf(predStart, n);
+		for(i = 0; i < n; i++)
+		{
+			for(int k = succStart[i]; k < succStart[i + 1]; k++)
+				preds[fill[succs[k]]++] = i;
+		}
+	}
+
+	// Returns the slot of node in the table: either its own, or the empty
+	// slot it would be put in.
+	private int slotOf(Object node)
+	{
+		int mask = table.length - 1;
+		int h = node.hashCode();
+		int slot = (h ^ (h >>> 16)) & mask;
+		while(table[slot] != 0 && !nodes[table[slot] - 1].equals(node))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private int indexOf(Object node)
+	{
+		int i = table[slotOf(node)] - 1;
+		if(i < 0)
+			throw new RuntimeException(node + " not in graph!");
+		return i;
+	}
+
+	public boolean containsNode(Object node)
+	{
+		return table[slotOf(node)] != 0;
+	}
+
+	public boolean containsEdge(EquivalentValue from, EquivalentValue to)
+	{
+		int i = indexOf(from);
+		int j = indexOf(to);
+		for(int k = succStart[i]; k < succStart[i + 1]; k++)
+		{
+			if(succs[k] == j)
+				return true;
+		}
+		return false;
+	}
+
+	/** Returns an unmodifiable list of all nodes. */
+	public List<EquivalentValue> getNodes()
+	{
+		return Collections.unmodifiableList(Arrays.asList(nodes));
+	}
+
+	public List<EquivalentValue> getHeads()
+	{
+		List<EquivalentValue> heads = new ArrayList<EquivalentValue>();
+		for(int i = 0; i < nodes.length; i++)
+		{
+			if(predStart[i] == predStart[i + 1])
+				heads.add(nodes[i]);
+		}
+		return heads;
+	}
+
+	public List<EquivalentValue> getTails()
+	{
+		List<EquivalentValue> tails = new ArrayList<EquivalentValue>();
+		for(int i = 0; i < nodes.length; i++)
+		{
+			if(succStart[i] == succStart[i + 1])
+				tails.add(nodes[i]);
+		}
+		return tails;
+	}
+
+	public List<EquivalentValue> getPredsOf(EquivalentValue s)
+	{
+		int i = indexOf(s);
+		return new NodeList(preds, predStart[i], predStart[i + 1]);
+	}
+
+	public List<EquivalentValue> getSuccsOf(EquivalentValue s)
+	{
+		int i = indexOf(s);
+		return new NodeList(succs, succStart[i], succStart[i + 1]);
+	}
+
+	public int size()
+	{
+		return nodes.length;
+	}
+
+	public Iterator<EquivalentValue> iterator()
+	{
+		return getNodes().iterator();
+	}
+
+	/** Returns a new graph with the nodes and edges of this summary. */
+	public HashMutableDirectedGraph<EquivalentValue> toMutableGraph()
+	{
+		HashMutableDirectedGraph<EquivalentValue> g = new MemoryEfficientGraph<EquivalentValue>();
+		for(EquivalentValue node : nodes)
+			g.addNode(node);
+		for(int i = 0; i < nodes.length; i++)
+		{
+			for(int k = succStart[i]; k < succStart[i + 1]; k++)
+				g.addEdge(nodes[i], nodes[succs[k]]);
+		}
+		return g;
+	}
+
+	// A read-only view of a range of an edge array
+	private class NodeList extends AbstractList<EquivalentValue>
+	{
+		private final int[] edges;
+		private final int from;
+		private final int to;
+
+		NodeList(int[] edges, int from, int to)
+		{
+			this.edges = edges;
+			this.from = from;
+			this.to = to;
+		}
+
+		public EquivalentValue get(int index)
+		{
+			if(index < 0 || index >= to - from)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+			return nodes[edges[from + index]];
+		}
+
+		public int size()
+		{
+			return to - from;
+		}
+	}
+}
@@ -571,7 +571,7 @@ public class LocalObjectsAnalysis
 	public boolean hasNonLocalEffects(SootMethod containingMethod, InvokeExpr ie, SootMethod context)
 	{
 		SootMethod target = ie.getMethodRef().resolve();
-		MutableDirectedGraph dataFlowGraph = dfa.getMethodInfoFlowSummary(target); // TODO actually we want a graph that is sensitive to scalar data, too
+		InfoFlowSummary dataFlowGraph = dfa.getInfoFlowSummary(target); // TODO actually we want a graph that is sensitive to scalar data, too
 		
 		// For a static invoke, check if any fields or any shared params are read/written
 		if(ie instanceof StaticInvokeExpr)
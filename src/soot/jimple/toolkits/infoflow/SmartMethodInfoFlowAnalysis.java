@@ -385,7 +385,7 @@ public class SmartMethodInfoFlowAnalysis
 	protected List<Value> handleInvokeExpr(InvokeExpr ie, Stmt is)
 	{
 		// get the data flow graph
-		HashMutableDirectedGraph<EquivalentValue> dataFlowSummary = dfa.getInvokeInfoFlowSummary(ie, is, sm); // must return a graph whose nodes are Refs!!!
+		InfoFlowSummary dataFlowSummary = dfa.getInvokeInfoFlowSummary(ie, is, sm); // must return a graph whose nodes are Refs!!!
 		if(false) // DEBUG!!!
 		{
 			SootMethod method = ie.getMethodRef().resolve();
@@ -504,7 +504,7 @@ public class SmartMethodInfoFlowAnalysis
 				throw new RuntimeException("Unknown Node Type in Data Flow Graph: node " + node + " in InvokeExpr " + ie);
 			}
 			
-			Iterator<EquivalentValue> sinksIt = dataFlowSummary.getSuccsOfAsSet(nodeEqVal).iterator();
+			Iterator<EquivalentValue> sinksIt = dataFlowSummary.getSuccsOf(nodeEqVal).iterator();
 			while(sinksIt.hasNext())
 			{
 				EquivalentValue sinkEqVal = sinksIt.next();
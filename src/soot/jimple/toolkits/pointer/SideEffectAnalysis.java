@@ -21,21 +21,66 @@ package soot.jimple.toolkits.pointer;
 import soot.*;
 import soot.jimple.*;
 import soot.jimple.toolkits.callgraph.*;
+import soot.toolkits.graph.HashMutableDirectedGraph;
+import soot.util.queue.QueueReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
-/** Generates side-effect information from a PointsToAnalysis. */
+/** Generates side-effect information from a PointsToAnalysis.
+ *
+ * Read and write sets are computed lazily per method. After
+ * {@link #precompute()}, the sets of all methods in the call graph are
+ * known, call sites are answered from the transitive sets of their
+ * targets instead of walking the call graph. The analysis can be
+ * queried from several threads at once.
+ *
+ * At most {@link #getCacheLimit()} methods keep their non-transitive sets
+ * cached; the sets of other methods are recomputed when needed. */
 public class SideEffectAnalysis {
     PointsToAnalysis pa;
     CallGraph cg;
-    Map<SootMethod, MethodRWSet> methodToNTReadSet = new HashMap<SootMethod, MethodRWSet>();
-    Map<SootMethod, MethodRWSet> methodToNTWriteSet = new HashMap<SootMethod, MethodRWSet>();
+    Map<SootMethod, MethodRWSet> methodToNTReadSet = new ConcurrentHashMap<SootMethod, MethodRWSet>();
+    Map<SootMethod, MethodRWSet> methodToNTWriteSet = new ConcurrentHashMap<SootMethod, MethodRWSet>();
     int rwsetcount = 0;
     TransitiveTargets tt;
+    Filter filter;
+
+    /** The default number of methods whose non-transitive sets are cached. */
+    public static final int DEFAULT_CACHE_LIMIT = 1 << 16;
+    private volatile int cacheLimit = DEFAULT_CACHE_LIMIT;
+    private final AtomicInteger cachedMethods = new AtomicInteger();
+
+    /** Stands for a null set in the concurrent maps. */
+    private static final MethodRWSet NONE = new MethodRWSet();
+
+    /** Transitive read and write sets, set by precompute(). */
+    private volatile Map<SootMethod, MethodRWSet> methodToReadSet;
+    private volatile Map<SootMethod, MethodRWSet> methodToWriteSet;
     
+    /** Returns the number of methods whose non-transitive sets are cached. */
+    public int getCacheLimit() {
+	return cacheLimit;
+    }
+
+    /** Sets the number of methods whose non-transitive sets are cached.
+     * Sets that are already cached are kept. */
+    public void setCacheLimit( int limit ) {
+	if( limit < 0 ) throw new IllegalArgumentException( "negative cache limit: "+limit );
+	cacheLimit = limit;
+    }
+
     public void findNTRWSets( SootMethod method ) {
-	if( methodToNTReadSet.containsKey( method )
-	    && methodToNTWriteSet.containsKey( method ) ) return;
-	
+	ntRWSets( method );
+    }
+
+    /** Returns the non-transitive read and write sets of method, with NONE
+     * for an empty set, and caches them while the cache limit allows. */
+    private MethodRWSet[] ntRWSets( SootMethod method ) {
+	MethodRWSet cachedRead = methodToNTReadSet.get( method );
+	MethodRWSet cachedWrite = methodToNTWriteSet.get( method );
+	if( cachedRead != null && cachedWrite != null ) return new MethodRWSet[] { cachedRead, cachedWrite };
+
 	MethodRWSet read = null;
 	MethodRWSet write = null;
 	for( Iterator<Unit> sIt = method.retrieveActiveBody().getUnits().iterator(); sIt.hasNext(); ) {
@@ -51,18 +96,158 @@ public class SideEffectAnalysis {
                 write.union( ntw );
             }
 	}
-	methodToNTReadSet.put( method, read );
-	methodToNTWriteSet.put( method, write );
+	MethodRWSet[] ret = { read == null ? NONE : read, write == null ? NONE : write };
+	if( cachedMethods.get() < cacheLimit ) {
+	    // the read set is published first, so that a method whose write set
+	    // is known always has its read set as well
+	    MethodRWSet old = ((ConcurrentHashMap<SootMethod, MethodRWSet>) methodToNTReadSet).putIfAbsent( method, ret[0] );
+	    ((ConcurrentHashMap<SootMethod, MethodRWSet>) methodToNTWriteSet).putIfAbsent( method, ret[1] );
+	    if( old == null ) cachedMethods.incrementAndGet();
+	}
+	return ret;
     }
 
     public RWSet nonTransitiveReadSet( SootMethod method ) {
-	findNTRWSets( method );
-	return methodToNTReadSet.get( method );
+	return orNull( ntRWSets( method )[0] );
     }
 
     public RWSet nonTransitiveWriteSet( SootMethod method ) {
-	findNTRWSets( method );
-	return methodToNTWriteSet.get( method );
+	return orNull( ntRWSets( method )[1] );
+    }
+
+    private static MethodRWSet orNull( MethodRWSet s ) {
+	return s == NONE ? null : s;
+    }
+
+    /** Computes the non-transitive and transitive read and write sets of
+     * all reachable methods. Methods are processed bottom-up over the
+     * strongly connected components of the call graph, independent
+     * components in parallel. A component whose set is the set of a single
+     * callee or method shares it instead of copying it. The cached
+     * non-transitive sets are dropped afterwards. Calling this again has
+     * no effect. */
+    public synchronized void precompute() {
+	if( methodToReadSet != null ) return;
+
+	HashMutableDirectedGraph<SootMethod> g = new HashMutableDirectedGraph<SootMethod>();
+	// methods that call nothing and are never called are nodes as well
+	if( Scene.v().hasCallGraph() && Scene.v().getCallGraph() == cg ) {
+	    for( QueueReader<MethodOrMethodContext> rm = Scene.v().getReachableMethods().listener(); rm.hasNext(); ) {
+		addNode( g, rm.next().method() );
+	    }
+	}
+	for( SootMethod m : methodToNTWriteSet.keySet() ) addNode( g, m );
+	for( Iterator<Edge> eIt = cg.iterator(); eIt.hasNext(); ) {
+	    final Edge e = eIt.next();
+	    addNode( g, e.src() );
+	    addNode( g, e.tgt() );
+	    if( ( filter == null || filter.want( e ) ) && !g.containsEdge( e.src(), e.tgt() ) ) {
+		g.addEdge( e.src(), e.tgt() );
+	    }
+	}
+
+	final Map<SootMethod, MethodRWSet> read = new ConcurrentHashMap<SootMethod, MethodRWSet>();
+	final Map<SootMethod, MethodRWSet> write = new ConcurrentHashMap<SootMethod, MethodRWSet>();
+	new CallGraphComponents<SootMethod>( g ).visitBottomUp( new CallGraphComponents.Visitor<SootMethod>() {
+	    public void visit( CallGraphComponents.Component<SootMethod> c ) {
+		List<MethodRWSet> r = new ArrayList<MethodRWSet>();
+		List<MethodRWSet> w = new ArrayList<MethodRWSet>();
+		for( SootMethod m : c.getMethods() ) {
+		    MethodRWSet[] own = ownSets( m );
+		    addSet( r, own[0] );
+		    addSet( w, own[1] );
+		}
+		for( CallGraphComponents.Component<SootMethod> callee : c.getCallees() ) {
+		    SootMethod m = callee.getMethods().get( 0 );
+		    addSet( r, read.get( m ) );
+		    addSet( w, write.get( m ) );
+		}
+		MethodRWSet rs = unionAll( r );
+		MethodRWSet ws = unionAll( w );
+		for( SootMethod m : c.getMethods() ) {
+		    read.put( m, rs );
+		    write.put( m, ws );
+		}
+	    }
+	}, Runtime.getRuntime().availableProcessors() );
+	methodToWriteSet = write;
+	methodToReadSet = read;
+	methodToNTReadSet.clear();
+	methodToNTWriteSet.clear();
+	cachedMethods.set( 0 );
+    }
+
+    private static void addNode( HashMutableDirectedGraph<SootMethod> g, SootMethod m ) {
+	if( !g.containsNode( m ) ) g.addNode( m );
+    }
+
+    /** Returns the read and write sets of method itself, with NONE for an
+     * empty set; a native method calls native code. */
+    private MethodRWSet[] ownSets( SootMethod method ) {
+	if( method.isNative() ) {
+	    MethodRWSet s = new MethodRWSet();
+	    s.setCallsNative();
+	    return new MethodRWSet[] { s, s };
+	}
+	if( method.isConcrete() ) return ntRWSets( method );
+	return new MethodRWSet[] { NONE, NONE };
+    }
+
+    private static void addSet( List<MethodRWSet> sets, MethodRWSet s ) {
+	if( s == null || s == NONE ) return;
+	for( MethodRWSet other : sets ) {
+	    if( other == s ) return;
+	}
+	sets.add( s );
+    }
+
+    /** Returns the union of sets, which is the only set itself if there is
+     * one; none of the given sets is changed. */
+    private static MethodRWSet unionAll( List<MethodRWSet> sets ) {
+	if( sets.isEmpty() ) return NONE;
+	if( sets.size() == 1 ) return sets.get( 0 );
+	MethodRWSet ret = new MethodRWSet();
+	for( MethodRWSet s : sets ) ret.union( s );
+	return ret;
+    }
+
+    /** Returns the read set of the given method and all methods it calls
+     * transitively, or null if it reads nothing. Requires
+     * {@link #precompute()}. */
+    public RWSet transitiveReadSet( SootMethod method ) {
+	return orNull( transitiveSet( method, methodToReadSet, 0 ) );
+    }
+
+    /** Returns the write set of the given method and all methods it calls
+     * transitively, or null if it writes nothing. Requires
+     * {@link #precompute()}. */
+    public RWSet transitiveWriteSet( SootMethod method ) {
+	return orNull( transitiveSet( method, methodToWriteSet, 1 ) );
+    }
+
+    /** Returns the precomputed set of method; a method that was not
+     * reachable when the sets were precomputed has no edges, so its own
+     * set is its transitive set. */
+    private MethodRWSet transitiveSet( SootMethod method, Map<SootMethod, MethodRWSet> sets, int which ) {
+	if( sets == null ) throw new IllegalStateException( "side-effect sets have not been precomputed" );
+	MethodRWSet ret = sets.get( method );
+	return ret != null ? ret : ownSets( method )[which];
+    }
+
+    /** Unions the transitive sets of the targets of stmt, or returns null
+     * if none of them reads or writes anything. */
+    private RWSet precomputedSiteSet( Stmt stmt, Map<SootMethod, MethodRWSet> sets, int which ) {
+	RWSet ret = null;
+	for( Iterator<Edge> it = cg.edgesOutOf( stmt ); it.hasNext(); ) {
+	    Edge e = it.next();
+	    if( filter != null && !filter.want( e ) ) continue;
+	    MethodRWSet s = transitiveSet( e.tgt(), sets, which );
+	    if( s != NONE ) {
+		if( ret == null ) ret = new SiteRWSet();
+		ret.union( s );
+	    }
+	}
+	return ret;
     }
 
     private SideEffectAnalysis() {
@@ -90,6 +275,29 @@ public class SideEffectAnalysis {
 	this.pa = pa;
 	this.cg = cg;
         this.tt = new TransitiveTargets( cg, filter );
+        this.filter = filter;
+    }
+
+    /** Returns the methods transitively called from stmt, as
+     * TransitiveTargets would. The filter is asked through
+     * {@link Filter#want(Edge)}, since the iterator of
+     * {@link Filter#wrap(Iterator)} is shared by all threads. */
+    private List<SootMethod> transitiveTargets( Stmt stmt ) {
+	Set<SootMethod> seen = new HashSet<SootMethod>();
+	List<SootMethod> worklist = new ArrayList<SootMethod>();
+	addTargets( cg.edgesOutOf( stmt ), seen, worklist );
+	for( int i = 0; i < worklist.size(); i++ ) {
+	    addTargets( cg.edgesOutOf( worklist.get( i ) ), seen, worklist );
+	}
+	return worklist;
+    }
+
+    private void addTargets( Iterator<Edge> edges, Set<SootMethod> seen, List<SootMethod> worklist ) {
+	while( edges.hasNext() ) {
+	    Edge e = edges.next();
+	    if( filter != null && !filter.want( e ) ) continue;
+	    if( seen.add( e.tgt() ) ) worklist.add( e.tgt() );
+	}
     }
 
     private RWSet ntReadSet( SootMethod method, Stmt stmt ) {
@@ -102,9 +310,14 @@ public class SideEffectAnalysis {
     }
     public RWSet readSet( SootMethod method, Stmt stmt ) {
 	RWSet ret = null;
-        Iterator<MethodOrMethodContext> targets = tt.iterator( stmt );
-        while( targets.hasNext() ) {
-            SootMethod target = (SootMethod) targets.next();
+	Map<SootMethod, MethodRWSet> sets = methodToReadSet;
+	if( sets != null ) {
+	    ret = precomputedSiteSet( stmt, sets, 0 );
+	    if( ret == null ) return ntReadSet( method, stmt );
+	    ret.union( ntReadSet( method, stmt ) );
+	    return ret;
+	}
+        for( SootMethod target : transitiveTargets( stmt ) ) {
             if( target.isNative() ) {
                 if( ret == null ) ret = new SiteRWSet();
                 ret.setCallsNative();
@@ -131,9 +344,14 @@ public class SideEffectAnalysis {
     }
     public RWSet writeSet( SootMethod method, Stmt stmt ) {
 	RWSet ret = null;
-        Iterator<MethodOrMethodContext> targets = tt.iterator( stmt );
-        while( targets.hasNext() ) {
-            SootMethod target = (SootMethod) targets.next();
+	Map<SootMethod, MethodRWSet> sets = methodToWriteSet;
+	if( sets != null ) {
+	    ret = precomputedSiteSet( stmt, sets, 1 );
+	    if( ret == null ) return ntWriteSet( method, stmt );
+	    ret.union( ntWriteSet( method, stmt ) );
+	    return ret;
+	}
+        for( SootMethod target : transitiveTargets( stmt ) ) {
             if( target.isNative() ) {
                 if( ret == null ) ret = new SiteRWSet();
                 ret.setCallsNative();
@@ -93,6 +93,9 @@ public class SideEffectTagger extends BodyTransformer
 	initializationStuff( phaseName );
 	SideEffectAnalysis sea = Scene.v().getSideEffectAnalysis();
 	optionNaive = PhaseOptions.getBoolean( options, "naive" );
+	if( PhaseOptions.getBoolean( options, "precompute" ) ) {
+	    sea.precompute();
+	}
 	if( !optionNaive ) {
 	    sea.findNTRWSets( body.getMethod() );
 	}
@@ -25,6 +25,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -35,6 +36,7 @@ import soot.Body;
 import soot.G;
 import soot.Scene;
 import soot.SootClass;
+import soot.SootField;
 import soot.SootMethod;
 import soot.Unit;
 import soot.tagkit.Host;
@@ -57,6 +59,21 @@ public class ReflectionTraceInfo {
 
 	protected Map<SootMethod,Set<String>> fieldGetReceivers;
 
+	/** Interned target strings; a trace repeats them on many lines. */
+	private final Map<String, String> strings = new HashMap<String, String>();
+
+	/** The methods of each source and line number, as "source;line". */
+	private final Map<String, Set<SootMethod>> sourceMethods = new HashMap<String, Set<SootMethod>>();
+
+	/**
+	 * Method and field targets, resolved when first queried. A resolution is
+	 * only reused while its method or field is still declared, so removing it
+	 * from its class makes the next query look it up again.
+	 */
+	private final Map<String, SootMethod> resolvedMethods = new HashMap<String, SootMethod>();
+
+	private final Map<String, SootField> resolvedFields = new HashMap<String, SootField>();
+
 	public ReflectionTraceInfo(String logFile) {
 		classForNameReceivers = new LinkedHashMap<SootMethod, Set<String>>();
 		classNewInstanceReceivers = new LinkedHashMap<SootMethod, Set<String>>();
@@ -68,78 +85,59 @@ public class ReflectionTraceInfo {
 		if(logFile==null) {
 			throw new InternalError("Trace based refection model enabled but no trace file given!?");
 		} else {
+			BufferedReader reader = null;
 			try {
-				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile)));
-				String line;
-				int lines = 0;
+				reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile)), 1 << 16);
 				Set<String> ignoredKinds = new HashSet<String>();
+				String line;
 				while((line=reader.readLine())!=null) {
 					if(line.length()==0) continue;
-					String[] portions = line.split(";",-1);
-					String kind = portions[0];
-					String target = portions[1];
-					String source = portions[2];
-					int lineNumber = portions[3].length()==0 ? -1 : Integer.parseInt(portions[3]);
+					// kind;target;source;line number;...
+					int e0 = line.indexOf(';');
+					int e1 = line.indexOf(';', e0 + 1);
+					int e2 = line.indexOf(';', e1 + 1);
+					int e3 = line.indexOf(';', e2 + 1);
+					// a missing separator makes the next search start over
+					if(e0 < 0 || e1 < 0 || e2 < 0) {
+						throw new RuntimeException("Malformed trace file entry: "+line);
+					}
+					if(e3 < 0) e3 = line.length();
+					String kind = line.substring(0, e0);
 
-					Set<SootMethod> possibleSourceMethods = inferSource(source, lineNumber);
-					for (SootMethod sourceMethod : possibleSourceMethods) {
-						if(kind.equals("Class.forName")) {
-							Set<String> receiverNames;
-							if((receiverNames=classForNameReceivers.get(sourceMethod))==null) {
-								classForNameReceivers.put(sourceMethod, receiverNames = new LinkedHashSet<String>());
-							}
-							receiverNames.add(target);
-						} else if(kind.equals("Class.newInstance")) {
-							Set<String> receiverNames;
-							if((receiverNames=classNewInstanceReceivers.get(sourceMethod))==null) {
-								classNewInstanceReceivers.put(sourceMethod, receiverNames = new LinkedHashSet<String>());
-							}
-							receiverNames.add(target);
-						} else if(kind.equals("Method.invoke")) {
-							if(!Scene.v().containsMethod(target)) {
-								throw new RuntimeException("Unknown method for signature: "+target);
-							}
-							
-							Set<String> receiverNames;
-							if((receiverNames=methodInvokeReceivers.get(sourceMethod))==null) {
-								methodInvokeReceivers.put(sourceMethod, receiverNames = new LinkedHashSet<String>());
-							}
-							receiverNames.add(target);								
-						} else if (kind.equals("Constructor.newInstance")) {
-							if(!Scene.v().containsMethod(target)) {
-								throw new RuntimeException("Unknown method for signature: "+target);
-							}
-							
-							Set<String> receiverNames;
-							if((receiverNames=constructorNewInstanceReceivers.get(sourceMethod))==null) {
-								constructorNewInstanceReceivers.put(sourceMethod, receiverNames = new LinkedHashSet<String>());
-							}
-							receiverNames.add(target);								
-						} else if (kind.equals("Field.set*")) {
-							if(!Scene.v().containsField(target)) {
-								throw new RuntimeException("Unknown method for signature: "+target);
-							}
-							
-							Set<String> receiverNames;
-							if((receiverNames=fieldSetReceivers.get(sourceMethod))==null) {
-								fieldSetReceivers.put(sourceMethod, receiverNames = new LinkedHashSet<String>());
-							}
-							receiverNames.add(target);								
-						} else if (kind.equals("Field.get*")) {
-							if(!Scene.v().containsField(target)) {
-								throw new RuntimeException("Unknown method for signature: "+target);
-							}
-							
-							Set<String> receiverNames;
-							if((receiverNames=fieldGetReceivers.get(sourceMethod))==null) {
-								fieldGetReceivers.put(sourceMethod, receiverNames = new LinkedHashSet<String>());
-							}
-							receiverNames.add(target);								
-						} else {
-							ignoredKinds.add(kind);
-						}							
+					Map<SootMethod,Set<String>> receivers;
+					switch(kind) {
+					case "Class.forName":
+						receivers = classForNameReceivers;
+						break;
+					case "Class.newInstance":
+						receivers = classNewInstanceReceivers;
+						break;
+					case "Method.invoke":
+						receivers = methodInvokeReceivers;
+						break;
+					case "Constructor.newInstance":
+						receivers = constructorNewInstanceReceivers;
+						break;
+					case "Field.set*":
+						receivers = fieldSetReceivers;
+						break;
+					case "Field.get*":
+						receivers = fieldGetReceivers;
+						break;
+					default:
+						ignoredKinds.add(kind);
+						continue;
+					}
+
+					// targets are checked against the Scene when first queried
+					String target = intern(line.substring(e0 + 1, e1));
+					for (SootMethod sourceMethod : possibleSources(line.substring(e1 + 1, e3), e2 - e1 - 1)) {
+						Set<String> receiverNames;
+						if((receiverNames=receivers.get(sourceMethod))==null) {
+							receivers.put(sourceMethod, receiverNames = new LinkedHashSet<String>());
+						}
+						receiverNames.add(target);
 					}
-					lines++;
 				}
 				if(!ignoredKinds.isEmpty()) {
 					G.v().out.println("Encountered reflective calls entries of the following kinds that\n" +
@@ -152,10 +150,49 @@ public class ReflectionTraceInfo {
 				throw new RuntimeException("Trace file not found.",e);
 			} catch (IOException e) {
 				throw new RuntimeException(e);
+			} finally {
+				if(reader != null) {
+					try {
+						reader.close();
+					} catch (IOException e) {
+						// nothing left to read
+					}
+				}
 			}
 		}
 	}
-	
+
+	private String intern(String s) {
+		String interned = strings.get(s);
+		if(interned == null) {
+			strings.put(s, s);
+			return s;
+		}
+		return interned;
+	}
+
+	/**
+	 * Returns the methods a trace entry may come from.
+	 * 
+	 * @param sourceAndLine the source method and line number, separated by ';'
+	 * @param sourceLength the length of the source method name
+	 */
+	private Set<SootMethod> possibleSources(String sourceAndLine, int sourceLength) {
+		Set<SootMethod> methods = sourceMethods.get(sourceAndLine);
+		if(methods == null) {
+			String lineNumber = sourceAndLine.substring(sourceLength + 1);
+			int n;
+			try {
+				n = lineNumber.length()==0 ? -1 : Integer.parseInt(lineNumber);
+			} catch (NumberFormatException e) {
+				throw new RuntimeException("Malformed line number in trace file: "+lineNumber, e);
+			}
+			methods = inferSource(sourceAndLine.substring(0, sourceLength), n);
+			sourceMethods.put(sourceAndLine, methods);
+		}
+		return methods;
+	}
+
 	private Set<SootMethod> inferSource(String source, int lineNumber) {
 		String className = source.substring(0,source.lastIndexOf("."));
 		String methodName = source.substring(source.lastIndexOf(".")+1);
@@ -252,30 +289,49 @@ public class ReflectionTraceInfo {
 	}
 	
 	public Set<String> constructorNewInstanceSignatures(SootMethod container) {
-		if(!constructorNewInstanceReceivers.containsKey(container)) return Collections.emptySet();
-		return constructorNewInstanceReceivers.get(container);
+		return methodSignatures(constructorNewInstanceReceivers, container);
 	}
 	
 	public Set<SootMethod> constructorNewInstanceConstructors(SootMethod container) {
 		Set<SootMethod> result = new LinkedHashSet<SootMethod>();
 		for(String signature: constructorNewInstanceSignatures(container)) {
-			result.add(Scene.v().getMethod(signature));
+			result.add(resolveMethod(signature));
 		}
 		return result;
 	}
 	
 	public Set<String> methodInvokeSignatures(SootMethod container) {
-		if(!methodInvokeReceivers.containsKey(container)) return Collections.emptySet();
-		return methodInvokeReceivers.get(container);
+		return methodSignatures(methodInvokeReceivers, container);
 	}
 
 	public Set<SootMethod> methodInvokeMethods(SootMethod container) {
 		Set<SootMethod> result = new LinkedHashSet<SootMethod>();
 		for(String signature: methodInvokeSignatures(container)) {
-			result.add(Scene.v().getMethod(signature));
+			result.add(resolveMethod(signature));
 		}
 		return result;
 	}
+
+	private Set<String> methodSignatures(Map<SootMethod,Set<String>> receivers, SootMethod container) {
+		Set<String> signatures = receivers.get(container);
+		if(signatures == null) return Collections.emptySet();
+		for(String signature: signatures) {
+			resolveMethod(signature);
+		}
+		return signatures;
+	}
+
+	private SootMethod resolveMethod(String signature) {
+		SootMethod m = resolvedMethods.get(signature);
+		if(m == null || !m.isDeclared()) {
+			m = Scene.v().grabMethod(signature);
+			if(m == null) {
+				throw new RuntimeException("Unknown method for signature: "+signature);
+			}
+			resolvedMethods.put(signature, m);
+		}
+		return m;
+	}
 	
 	public Set<SootMethod> methodsContainingReflectiveCalls() {
 		Set<SootMethod> res = new LinkedHashSet<SootMethod>();
@@ -287,12 +343,26 @@ public class ReflectionTraceInfo {
 	}
 
 	public Set<String> fieldSetSignatures(SootMethod container) {
-		if(!fieldSetReceivers.containsKey(container)) return Collections.emptySet();
-		return fieldSetReceivers.get(container);
+		return fieldSignatures(fieldSetReceivers, container);
 	}
 
 	public Set<String> fieldGetSignatures(SootMethod container) {
-		if(!fieldGetReceivers.containsKey(container)) return Collections.emptySet();
-		return fieldGetReceivers.get(container);
+		return fieldSignatures(fieldGetReceivers, container);
+	}
+
+	private Set<String> fieldSignatures(Map<SootMethod,Set<String>> receivers, SootMethod container) {
+		Set<String> signatures = receivers.get(container);
+		if(signatures == null) return Collections.emptySet();
+		for(String signature: signatures) {
+			SootField f = resolvedFields.get(signature);
+			if(f == null || !f.isDeclared()) {
+				f = Scene.v().grabField(signature);
+				if(f == null) {
+					throw new RuntimeException("Unknown field for signature: "+signature);
+				}
+				resolvedFields.put(signature, f);
+			}
+		}
+		return signatures;
 	}
 }
\ No newline at end of file
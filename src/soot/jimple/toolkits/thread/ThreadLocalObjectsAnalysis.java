@@ -38,6 +38,21 @@ public class ThreadLocalObjectsAnalysis extends LocalObjectsAnalysis implements
 	// might occasionally compute more than is necessary
 	public void precompute()
 	{
+		// Summarize the reachable application methods in parallel first, so
+		// that building the class analyses mostly finds summaries ready
+		List<SootMethod> appMethods = new ArrayList<SootMethod>();
+		for(SootClass appClass : Scene.v().getApplicationClasses())
+		{
+			for(SootMethod method : appClass.getMethods())
+			{
+				if(method.isConcrete() && Scene.v().getReachableMethods().contains(method))
+					appMethods.add(method);
+			}
+		}
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		dfa.computeInfoFlowSummaries(appMethods, threadCount);
+		primitiveDfa.computeInfoFlowSummaries(appMethods, threadCount);
+
 		for(AbstractRuntimeThread thread : threads)
 		{
 			for(Object item : thread.getRunMethods())
@@ -35,6 +35,10 @@ import soot.jimple.toolkits.thread.mhp.stmt.WaitingStmt;
 // now used by the Transactions toolkit.
 //
 // -Richard L. Halpert, 2006-11-30
+//
+// Nothing constructs this analysis: wjtp.mhp and lock allocation use
+// SynchObliviousMhpAnalysis, which computes its thread bodies in parallel
+// and indexes threads in bit sets.
 
 /**
  * @author Lin Li
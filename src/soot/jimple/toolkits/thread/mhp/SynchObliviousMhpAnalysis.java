@@ -16,6 +16,10 @@ import soot.options.SparkOptions;
 import heros.util.SootThreadGroup;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /** UnsynchronizedMhpAnalysis written by Richard L. Halpert 2006-12-09
  *  Calculates May-Happen-in-Parallel (MHP) information as if in the absence
@@ -29,11 +33,17 @@ import java.util.*;
  *  launched and the call graph to determine which methods they may call.
  *  This analysis uses a run-once/run-one-at-a-time/run-many classification to
  *  determine if a thread may be run in parallel with itself.
+ *
+ *  The methods of each thread body are computed once per distinct set of run
+ *  methods, and the bodies of different threads are computed in parallel.
+ *  Queries look up the threads of both methods in bit sets indexed by the
+ *  position of the thread in the thread list.
  */
 
 public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
 {
 	List<AbstractRuntimeThread> threadList;
+	Map<Object, BitSet> methodToThreads; // method -> indices in threadList of the threads that may run it
 	boolean optionPrintDebug;
 	boolean optionThreaded = false; // DOESN'T WORK if set to true... ForwardFlowAnalysis uses a static field in a thread-unsafe way
 	
@@ -42,6 +52,7 @@ public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
 	public SynchObliviousMhpAnalysis()
 	{
 		threadList = new ArrayList<AbstractRuntimeThread>();
+		methodToThreads = new HashMap<Object, BitSet>();
 		optionPrintDebug = false;
 
 		self = null;
@@ -102,6 +113,10 @@ public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
 		Map<Stmt, SootMethod> startToContainingMethod = sjf.getStartToContainingMethod();
 		Map<Stmt, Stmt> startToJoin = sjf.getStartToJoin();
 		
+		// Compute the methods of each distinct thread body
+//		G.v().out.println("    MHP: Building thread bodies");
+		Map<List<SootMethod>, List<SootMethod>> threadBodies = computeThreadBodies(startToRunMethods.values(), pecg, callGraph);
+
 		// Build MHP Lists
 //		G.v().out.println("    MHP: Building MHP Lists");
 		List<AbstractRuntimeThread> runAtOnceCandidates = new ArrayList<AbstractRuntimeThread>();
@@ -120,48 +135,16 @@ public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
 			// Get a list of all possible unique Runnable.run methods for this thread start statement
 			AbstractRuntimeThread thread = new AbstractRuntimeThread(); // provides a list interface to the methods in a thread's sub-call-graph
 			thread.setStartStmt(startStmt);
-//			List threadMethods = new ArrayList();
-			Iterator runMethodsIt = runMethods.iterator();
-			while(runMethodsIt.hasNext())
-			{
-				SootMethod method = (SootMethod) runMethodsIt.next();
-				if(!thread.containsMethod(method))
-				{
-					thread.addMethod(method);
-					thread.addRunMethod(method);
-				}
-			}
+			for(SootMethod method : uniqueRunMethods(runMethods))
+				thread.addRunMethod(method);
 			
 			// Get a list containing all methods in the call graph(s) rooted at the possible run methods for this thread start statement
 			// AKA a list of all methods that might be called by the thread started here
-			int methodNum = 0;
-			while(methodNum < thread.methodCount()) // iterate over all methods in threadMethods, even as new methods are being added to it
-			{
-				Iterator succMethodsIt = pecg.getSuccsOf(thread.getMethod(methodNum)).iterator();
-				while(succMethodsIt.hasNext())
-				{
-					SootMethod method = (SootMethod) succMethodsIt.next();
-					// if all edges into this method are of Kind THREAD, ignore it 
-					// (because it's a run method that won't be called as part of THIS thread) THIS IS NOT OPTIMAL
-					boolean ignoremethod = true;
-					Iterator edgeInIt = callGraph.edgesInto(method);
-					while(edgeInIt.hasNext())
-					{
-						Edge edge = (Edge) edgeInIt.next();
-						if( edge.kind() != Kind.THREAD
-								&& edge.kind() != Kind.EXECUTOR
-								&& edge.kind() != Kind.ASYNCTASK
-								&& thread.containsMethod(edge.src())) // called directly by any of the thread methods?
-							ignoremethod = false;
-					}
-					if(!ignoremethod && !thread.containsMethod(method))
-						thread.addMethod(method);
-				}
-				methodNum++;
-			}
+			for(SootMethod method : threadBodies.get(uniqueRunMethods(runMethods)))
+				thread.addMethod(method);
 			
 			// Add this list of methods to MHPLists
-			threadList.add(thread);
+			addThread(thread);
 			if(optionPrintDebug)
 				System.out.println(thread.toString());
 			
@@ -204,7 +187,7 @@ public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
 			{
 				thread.setJoinStmt(startToJoin.get(startStmt));
 				mayBeRunMultipleTimes = false; // well, actually, we don't know yet
-				methodNum = 0;
+				int methodNum = 0;
 				List<SootMethod> containingMethodCalls = new ArrayList<SootMethod>();
 				containingMethodCalls.add(startStmtMethod);
 				while(methodNum < containingMethodCalls.size()) // iterate over all methods in threadMethods, even as new methods are being added to it
@@ -240,7 +223,7 @@ public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
 					" mayStartMultipleThreadObjects=" + mayStartMultipleThreadObjects + " mayBeRunMultipleTimes=" + mayBeRunMultipleTimes);
 			if(mayStartMultipleThreadObjects && mayBeRunMultipleTimes)
 			{
-				threadList.add(thread); // add another copy
+				addThread(thread); // add another copy
 				thread.setRunsMany();
 				if(optionPrintDebug)
 					System.out.println(thread.toString());
@@ -253,32 +236,13 @@ public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
 		// do same for main method
 		AbstractRuntimeThread mainThread = new AbstractRuntimeThread();
 //		List mainMethods = new ArrayList();
-		threadList.add(mainThread);
 		mainThread.setRunsOnce();
-		mainThread.addMethod(mainMethod);
 		mainThread.addRunMethod(mainMethod);
 		mainThread.setIsMainThread();
 		// get all the successors, add to threadMethods
-		int methodNum = 0;
-		while(methodNum < mainThread.methodCount())
-		{
-			Iterator succMethodsIt = pecg.getSuccsOf(mainThread.getMethod(methodNum)).iterator();
-			while(succMethodsIt.hasNext())
-			{
-				SootMethod method = (SootMethod) succMethodsIt.next();
-				// if all edges into this are of Kind THREAD, ignore it
-				boolean ignoremethod = true;
-				Iterator edgeInIt = callGraph.edgesInto(method);
-				while(edgeInIt.hasNext())
-				{
-					if( ((Edge) edgeInIt.next()).kind() != Kind.THREAD )
-						ignoremethod = false;
-				}
-				if(!ignoremethod && !mainThread.containsMethod(method))
-					mainThread.addMethod(method);
-			}
-			methodNum++;
-		}
+		for(SootMethod method : mainThreadBody(mainMethod, pecg, callGraph))
+			mainThread.addMethod(method);
+		addThread(mainThread);
 		if(optionPrintDebug)
 			G.v().out.println(mainThread.toString());
 			
@@ -294,7 +258,7 @@ public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
 				SootMethod someStartMethod = someThread.getStartStmtMethod();
 				if(mayHappenInParallelInternal(someStartMethod, someStartMethod))
 				{
-					threadList.add(someThread); // add a second copy of it
+					addThread(someThread); // add a second copy of it
 					someThread.setStartMethodMayHappenInParallel();
 					someThread.setRunsMany();
 					it.remove();
@@ -314,6 +278,151 @@ public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
 		}
 	}
 
+	// Returns the run methods without duplicates, in their original order
+	private static List<SootMethod> uniqueRunMethods(List runMethods)
+	{
+		List<SootMethod> unique = new ArrayList<SootMethod>();
+		for(Object method : runMethods)
+		{
+			if(!unique.contains(method))
+				unique.add((SootMethod) method);
+		}
+		return unique;
+	}
+	
+	// Computes the body of every distinct list of run methods. The bodies
+	// only read the call graphs, so they are computed in parallel.
+	private Map<List<SootMethod>, List<SootMethod>> computeThreadBodies(
+		Collection<List<SootMethod>> allRunMethods, final PegCallGraph pecg, final CallGraph callGraph)
+	{
+		Set<List<SootMethod>> distinct = new LinkedHashSet<List<SootMethod>>();
+		for(List<SootMethod> runMethods : allRunMethods)
+			distinct.add(uniqueRunMethods(runMethods));
+		
+		List<List<SootMethod>> keys = new ArrayList<List<SootMethod>>(distinct);
+		List<Callable<List<SootMethod>>> tasks = new ArrayList<Callable<List<SootMethod>>>();
+		for(final List<SootMethod> runMethods : keys)
+		{
+			tasks.add(new Callable<List<SootMethod>>() {
+				public List<SootMethod> call()
+				{
+					return threadBody(runMethods, pecg, callGraph);
+				}
+			});
+		}
+		
+		Map<List<SootMethod>, List<SootMethod>> bodies = new HashMap<List<SootMethod>, List<SootMethod>>();
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			List<Future<List<SootMethod>>> results = pool.invokeAll(tasks);
+			for(int i = 0; i < keys.size(); i++)
+				bodies.put(keys.get(i), results.get(i).get());
+		}
+		catch(InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		return bodies;
+	}
+	
+	// Returns the run methods and all methods they may call as part of the
+	// same thread, in the order they are found
+	private static List<SootMethod> threadBody(List<SootMethod> runMethods, PegCallGraph pecg, CallGraph callGraph)
+	{
+		List<SootMethod> methods = new ArrayList<SootMethod>(runMethods);
+		Set<SootMethod> contained = new HashSet<SootMethod>(runMethods);
+		int methodNum = 0;
+		while(methodNum < methods.size()) // iterate over all methods in threadMethods, even as new methods are being added to it
+		{
+			Iterator succMethodsIt = pecg.getSuccsOf(methods.get(methodNum)).iterator();
+			while(succMethodsIt.hasNext())
+			{
+				SootMethod method = (SootMethod) succMethodsIt.next();
+				if(contained.contains(method))
+					continue;
+				// if all edges into this method are of Kind THREAD, ignore it 
+				// (because it's a run method that won't be called as part of THIS thread) THIS IS NOT OPTIMAL
+				Iterator edgeInIt = callGraph.edgesInto(method);
+				while(edgeInIt.hasNext())
+				{
+					Edge edge = (Edge) edgeInIt.next();
+					if( edge.kind() != Kind.THREAD
+							&& edge.kind() != Kind.EXECUTOR
+							&& edge.kind() != Kind.ASYNCTASK
+							&& contained.contains(edge.src())) // called directly by any of the thread methods?
+					{
+						methods.add(method);
+						contained.add(method);
+						break;
+					}
+				}
+			}
+			methodNum++;
+		}
+		return methods;
+	}
+	
+	private static List<SootMethod> mainThreadBody(SootMethod mainMethod, PegCallGraph pecg, CallGraph callGraph)
+	{
+		List<SootMethod> methods = new ArrayList<SootMethod>();
+		Set<SootMethod> contained = new HashSet<SootMethod>();
+		methods.add(mainMethod);
+		contained.add(mainMethod);
+		int methodNum = 0;
+		while(methodNum < methods.size())
+		{
+			Iterator succMethodsIt = pecg.getSuccsOf(methods.get(methodNum)).iterator();
+			while(succMethodsIt.hasNext())
+			{
+				SootMethod method = (SootMethod) succMethodsIt.next();
+				if(contained.contains(method))
+					continue;
+				// if all edges into this are of Kind THREAD, ignore it
+				Iterator edgeInIt = callGraph.edgesInto(method);
+				while(edgeInIt.hasNext())
+				{
+					if( ((Edge) edgeInIt.next()).kind() != Kind.THREAD )
+					{
+						methods.add(method);
+						contained.add(method);
+						break;
+					}
+				}
+			}
+			methodNum++;
+		}
+		return methods;
+	}
+	
+	// Adds a thread, or another copy of it, to the thread list and indexes its methods
+	private void addThread(AbstractRuntimeThread thread)
+	{
+		int index = threadList.size();
+		threadList.add(thread);
+		for(int i = 0; i < thread.methodCount(); i++)
+		{
+			Object method = thread.getMethod(i);
+			BitSet threads = methodToThreads.get(method);
+			if(threads == null)
+			{
+				threads = new BitSet();
+				methodToThreads.put(method, threads);
+			}
+			threads.set(index);
+		}
+	}
+	
     public boolean mayHappenInParallel(SootMethod m1, Unit u1, SootMethod m2, Unit u2)
     {
    		if(optionThreaded)
@@ -365,21 +474,14 @@ public class SynchObliviousMhpAnalysis implements MhpTester, Runnable
     		return true;
 		}
 
-		int size = threadList.size();
-		for(int i = 0; i < size; i++)
-		{
-			if(threadList.get(i).containsMethod(m1))
-			{
-				for(int j = 0; j < size; j++)
-				{
-					if(threadList.get(j).containsMethod(m2) && i != j)
-					{
-						return true;
-					}
-				}
-			}
-		}
-		return false;
+		// is there a thread running m1 and a different thread running m2?
+		BitSet threads1 = methodToThreads.get(m1);
+		BitSet threads2 = methodToThreads.get(m2);
+		if(threads1 == null || threads2 == null)
+			return false;
+		if(threads1.cardinality() > 1 || threads2.cardinality() > 1)
+			return true;
+		return threads1.nextSetBit(0) != threads2.nextSetBit(0);
 	}
 	
 	public void printMhpSummary()
@@ -1,8 +1,15 @@
 package soot.jimple.toolkits.thread.synchronization;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import soot.Hierarchy;
 import soot.Local;
@@ -69,8 +76,13 @@ public class CriticalSectionInterferenceGraph {
 		}
 		else // calculate separate groups for transactions
 		{
+			// with data dependencies, only the sections that interfere need to be visited
+			List<List<CriticalSection>> interferingSections = null;
+			if(!optionLeaveOriginalLocks)
+				interferingSections = findInterferingSections();
+			
 	    	Iterator<CriticalSection> tnIt1 = criticalSections.iterator();
-	    	while(tnIt1.hasNext())
+	    	for(int tnNum = 0; tnIt1.hasNext(); tnNum++)
 	    	{
 	    		CriticalSection tn1 = tnIt1.next();
 	    		
@@ -88,7 +100,8 @@ public class CriticalSectionInterferenceGraph {
 	    		}
 	    		else
 	    		{
-		        	Iterator<CriticalSection> tnIt2 = criticalSections.iterator();
+		        	Iterator<CriticalSection> tnIt2 = (interferingSections == null ?
+		        		criticalSections : interferingSections.get(tnNum)).iterator();
 		    		while(tnIt2.hasNext())
 		    		{
 		    			CriticalSection tn2 = tnIt2.next();
@@ -162,10 +175,7 @@ public class CriticalSectionInterferenceGraph {
 					    		}
 					    	}
 			    		}
-		    			if((!optionLeaveOriginalLocks && 
-		    				   (tn1.write.hasNonEmptyIntersection(tn2.write) ||
-		    					tn1.write.hasNonEmptyIntersection(tn2.read) ||
-		    					tn1.read.hasNonEmptyIntersection(tn2.write))	) || 
+		    			if((!optionLeaveOriginalLocks && hasDataDependency(tn1, tn2)) || 
 		    			   ( optionLeaveOriginalLocks && typeCompatible && (optionIncludeEmptyPossibleEdges || !emptyEdge) ))
 		    			{
 		    				// Determine the size of the intersection for GraphViz output
@@ -238,6 +248,114 @@ public class CriticalSectionInterferenceGraph {
 		}
 	}
 	
+	// Returns, for each critical section, the sections it has a RW or WW data
+	// dependency with and may happen in parallel with, in list order.
+	// Candidates are taken from an index of the globals and fields each
+	// section reads and writes, so pairs without a common location are never
+	// compared. The sections are checked in parallel.
+	private List<List<CriticalSection>> findInterferingSections()
+	{
+		final List<CriticalSection> sections = new ArrayList<CriticalSection>(criticalSections);
+		final Map<Object, BitSet> readers = new HashMap<Object, BitSet>();
+		final Map<Object, BitSet> writers = new HashMap<Object, BitSet>();
+		for(int i = 0; i < sections.size(); i++)
+		{
+			// CodeBlockRWSets are never full, so their globals and fields are complete
+			index(readers, sections.get(i).read, i);
+			index(writers, sections.get(i).write, i);
+		}
+		if(mhp == null)
+			Scene.v().getReachableMethods(); // built here rather than by the first worker thread
+
+		List<Callable<List<CriticalSection>>> tasks = new ArrayList<Callable<List<CriticalSection>>>();
+		for(final CriticalSection tn1 : sections)
+		{
+			tasks.add(new Callable<List<CriticalSection>>() {
+				public List<CriticalSection> call()
+				{
+					BitSet candidates = new BitSet();
+					addSections(candidates, writers, tn1.write);
+					addSections(candidates, readers, tn1.write);
+					addSections(candidates, writers, tn1.read);
+					
+					List<CriticalSection> interfering = new ArrayList<CriticalSection>();
+					for(int j = candidates.nextSetBit(0); j >= 0; j = candidates.nextSetBit(j + 1))
+					{
+						CriticalSection tn2 = sections.get(j);
+						if(mayHappenInParallel(tn1, tn2) && hasDataDependency(tn1, tn2))
+							interfering.add(tn2);
+					}
+					return interfering;
+				}
+			});
+		}
+		
+		List<List<CriticalSection>> interferingSections = new ArrayList<List<CriticalSection>>(sections.size());
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			for(Future<List<CriticalSection>> result : pool.invokeAll(tasks))
+				interferingSections.add(result.get());
+		}
+		catch(InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		return interferingSections;
+	}
+	
+	private static void index(Map<Object, BitSet> index, CodeBlockRWSet rw, int sectionNum)
+	{
+		for(Object global : rw.getGlobals())
+			section(index, global).set(sectionNum);
+		for(Object field : rw.getFields())
+			section(index, field).set(sectionNum);
+	}
+	
+	private static BitSet section(Map<Object, BitSet> index, Object location)
+	{
+		BitSet sections = index.get(location);
+		if(sections == null)
+		{
+			sections = new BitSet();
+			index.put(location, sections);
+		}
+		return sections;
+	}
+	
+	private static void addSections(BitSet candidates, Map<Object, BitSet> index, CodeBlockRWSet rw)
+	{
+		for(Object global : rw.getGlobals())
+		{
+			BitSet sections = index.get(global);
+			if(sections != null)
+				candidates.or(sections);
+		}
+		for(Object field : rw.getFields())
+		{
+			BitSet sections = index.get(field);
+			if(sections != null)
+				candidates.or(sections);
+		}
+	}
+	
+	private static boolean hasDataDependency(CriticalSection tn1, CriticalSection tn2)
+	{
+		return tn1.write.hasNonEmptyIntersection(tn2.write) ||
+			tn1.write.hasNonEmptyIntersection(tn2.read) ||
+			tn1.read.hasNonEmptyIntersection(tn2.write);
+	}
+	
     public boolean mayHappenInParallel(CriticalSection tn1, CriticalSection tn2)
     {
     	if(mhp == null)
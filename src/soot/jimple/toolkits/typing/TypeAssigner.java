@@ -122,7 +122,8 @@ public class TypeAssigner extends BodyTransformer {
 				TypeResolver.resolve((JimpleBody) b, Scene.v());
 			else
 				(new soot.jimple.toolkits.typing.fast.TypeResolver(
-						(JimpleBody) b)).inferTypes();
+						(JimpleBody) b, opt.union_find_typing(),
+						opt.max_typings())).inferTypes();
 		}
 
 		Date finish = new Date();
@@ -80,9 +80,25 @@ public class TypeResolver
 	private final List<DefinitionStmt> assignments;
 	private final HashMap<Local, BitSet> depends;
 	
+	private final boolean unionFind;
+	private final int maxTypings;
+	
 	public TypeResolver(JimpleBody jb)
+	{
+		this(jb, false, 0);
+	}
+	
+	/**
+	 * @param unionFind first try to type the locals connected by copy
+	 * statements together, see {@link UnionFindTyping}
+	 * @param maxTypings the maximum number of typings that are explored when
+	 * solving the assignment constraints once, or 0 for no limit
+	 */
+	public TypeResolver(JimpleBody jb, boolean unionFind, int maxTypings)
 	{
 		this.jb = jb;
+		this.unionFind = unionFind;
+		this.maxTypings = maxTypings;
 
 		this.assignments = new ArrayList<DefinitionStmt>();
 		this.depends = new HashMap<Local, BitSet>();
@@ -443,6 +459,20 @@ public class TypeResolver
 		if (numAssignments == 0)
 			return sigma;
 		
+		/* Use the typing of the merged locals if it is valid as it is.
+		Otherwise, search all the typings. */
+		if ( this.unionFind )
+		{
+			Typing tgu = new UnionFindTyping(this.jb, this.assignments,
+				this.depends).solve(tg, ef, h);
+			if ( tgu != null && this.insertCasts(tgu, h, true) == 0 )
+			{
+				r.add(tgu);
+				return r;
+			}
+		}
+		
+		int numTypings = 1;
 		HashMap<Typing, BitSet> worklists = new HashMap<Typing, BitSet>();
 		
 		sigma.add(tg);
@@ -522,6 +552,13 @@ public class TypeResolver
 							}
 							else
 							{
+								/* Out of budget, keep only the first candidate.
+								Casts are inserted where it does not fit. */
+								if ( this.maxTypings > 0
+									&& numTypings >= this.maxTypings )
+									continue;
+								numTypings++;
+								
 								// The types do not agree, add all supertype candidates
 								tg_ = new Typing(tg);
 								wl_ = new BitSet(numAssignments - 1);
@@ -0,0 +1,236 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+package soot.jimple.toolkits.typing.fast;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.ArrayType;
+import soot.Local;
+import soot.RefType;
+import soot.Type;
+import soot.Value;
+import soot.jimple.ArrayRef;
+import soot.jimple.CaughtExceptionRef;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.JimpleBody;
+
+/**
+ * Computes a single typing without exploring alternatives. The locals that are
+ * connected by copy statements are merged with union-find, and every group of
+ * merged locals gets one type, which is the least common ancestor of the types
+ * assigned to its members.
+ *
+ * The assignment constraints are solved on dense arrays indexed by group. The
+ * search gives up as soon as two types have more than one least common
+ * ancestor, since that is where the full search of {@link TypeResolver} would
+ * branch.
+ */
+public class UnionFindTyping
+{
+	private static final int MAX_STEPS_PER_ASSIGNMENT = 64;
+
+	private final List<DefinitionStmt> assignments;
+
+	private final Local[] locals;
+	private final Map<Local, Integer> localIndex;
+
+	/* Group of each local, and the members and dependent assignments of
+	each group. */
+	private final int[] groupOf;
+	private final Local[][] members;
+	private final BitSet[] groupDepends;
+
+	public UnionFindTyping(JimpleBody jb, List<DefinitionStmt> assignments,
+		Map<Local, BitSet> depends)
+	{
+		this.assignments = assignments;
+
+		Collection<Local> ls = jb.getLocals();
+		this.locals = ls.toArray(new Local[ls.size()]);
+		this.localIndex = new HashMap<Local, Integer>(this.locals.length * 2);
+		for ( int i = 0; i < this.locals.length; i++ )
+			this.localIndex.put(this.locals[i], i);
+
+		int[] parent = new int[this.locals.length];
+		for ( int i = 0; i < parent.length; i++ )
+			parent[i] = i;
+		for ( DefinitionStmt ds : assignments )
+		{
+			Value lhs = ds.getLeftOp(), rhs = ds.getRightOp();
+			if ( lhs instanceof Local && rhs instanceof Local )
+				union(parent, this.localIndex.get(lhs),
+					this.localIndex.get(rhs));
+		}
+
+		// Number the groups densely
+		this.groupOf = new int[this.locals.length];
+		int[] groupOfRoot = new int[this.locals.length];
+		int numGroups = 0;
+		for ( int i = 0; i < this.locals.length; i++ )
+			if ( find(parent, i) == i )
+				groupOfRoot[i] = numGroups++;
+		int[] sizes = new int[numGroups];
+		for ( int i = 0; i < this.locals.length; i++ )
+		{
+			this.groupOf[i] = groupOfRoot[find(parent, i)];
+			sizes[this.groupOf[i]]++;
+		}
+
+		this.members = new Local[numGroups][];
+		this.groupDepends = new BitSet[numGroups];
+		for ( int g = 0; g < numGroups; g++ )
+		{
+			this.members[g] = new Local[sizes[g]];
+			this.groupDepends[g] = new BitSet();
+			sizes[g] = 0;
+		}
+		for ( int i = 0; i < this.locals.length; i++ )
+		{
+			int g = this.groupOf[i];
+			this.members[g][sizes[g]++] = this.locals[i];
+			BitSet d = depends.get(this.locals[i]);
+			if ( d != null )
+				this.groupDepends[g].or(d);
+		}
+	}
+
+	private static int find(int[] parent, int i)
+	{
+		while ( parent[i] != i )
+		{
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parent, int a, int b)
+	{
+		a = find(parent, a);
+		b = find(parent, b);
+		if ( a < b )
+			parent[b] = a;
+		else if ( b < a )
+			parent[a] = b;
+	}
+
+	/**
+	 * Solves the assignment constraints starting from tg. Returns null if the
+	 * merged locals cannot be typed without choosing between several least
+	 * common ancestors.
+	 */
+	public Typing solve(Typing tg, IEvalFunction ef, IHierarchy h)
+	{
+		final int numGroups = this.members.length;
+		Type[] types = new Type[numGroups];
+		for ( int g = 0; g < numGroups; g++ )
+		{
+			Type t = null;
+			for ( Local v : this.members[g] )
+			{
+				Type tv = tg.get(v);
+				t = t == null ? tv : lca(t, tv, h);
+				if ( t == null )
+					return null;
+			}
+			types[g] = t;
+		}
+
+		Typing r = new Typing(tg);
+		for ( int g = 0; g < numGroups; g++ )
+			setGroup(r, g, types[g]);
+
+		/* The types of a group only grow, but nested array types could grow
+		without bound. */
+		int steps = MAX_STEPS_PER_ASSIGNMENT * (this.assignments.size() + 1);
+		BitSet wl = new BitSet(this.assignments.size());
+		wl.set(0, this.assignments.size());
+		for ( int defIdx = wl.nextSetBit(0); defIdx >= 0;
+			defIdx = wl.nextSetBit(0) )
+		{
+			if ( --steps < 0 )
+				return null;
+			wl.clear(defIdx);
+			DefinitionStmt stmt = this.assignments.get(defIdx);
+			Value lhs = stmt.getLeftOp(), rhs = stmt.getRightOp();
+
+			Local v;
+			if ( lhs instanceof Local )
+				v = (Local)lhs;
+			else
+				v = (Local)((ArrayRef)lhs).getBase();
+			int g = this.groupOf[this.localIndex.get(v)];
+
+			Type told = types[g], tnew = told;
+			for ( Type t_ : ef.eval(r, rhs, stmt) )
+			{
+				if ( lhs instanceof ArrayRef )
+				{
+					// See TypeResolver.applyAssignmentConstraints
+					if ( !(t_ instanceof RefType || t_ instanceof ArrayType) )
+						continue;
+					t_ = t_.makeArrayType();
+				}
+
+				if ( rhs instanceof CaughtExceptionRef
+					&& !TypeResolver.typesEqual(tnew, t_)
+					&& tnew instanceof RefType && t_ instanceof RefType
+					&& (((RefType)tnew).getSootClass().isPhantom()
+						|| ((RefType)t_).getSootClass().isPhantom()) )
+				{
+					tnew = RefType.v("java.lang.Throwable");
+					continue;
+				}
+
+				Collection<Type> lcas = h.lcas(tnew, t_);
+				if ( lcas.size() > 1 )
+					return null;
+				if ( lcas.size() == 1 )
+					tnew = lcas.iterator().next();
+			}
+
+			if ( !TypeResolver.typesEqual(told, tnew) )
+			{
+				types[g] = tnew;
+				setGroup(r, g, tnew);
+				wl.or(this.groupDepends[g]);
+			}
+		}
+		return r;
+	}
+
+	private void setGroup(Typing tg, int g, Type t)
+	{
+		for ( Local v : this.members[g] )
+			tg.set(v, t);
+	}
+
+	/* Returns the unique least common ancestor of a and b, or null. */
+	private static Type lca(Type a, Type b, IHierarchy h)
+	{
+		Collection<Type> lcas = h.lcas(a, b);
+		if ( lcas.size() != 1 )
+			return null;
+		return lcas.iterator().next();
+	}
+}
@@ -12,11 +12,11 @@ import soot.jimple.InstanceFieldRef;
 import soot.jimple.StaticFieldRef;
 import soot.jimple.Stmt;
 import soot.util.Chain;
-import soot.validation.BodyValidator;
 import soot.validation.UnitValidationException;
+import soot.validation.UnitValidator;
 import soot.validation.ValidationException;
 
-public enum FieldRefValidator implements BodyValidator {
+public enum FieldRefValidator implements UnitValidator {
 	INSTANCE;	
 	
 	public static FieldRefValidator v() {
@@ -36,44 +36,49 @@ public enum FieldRefValidator implements BodyValidator {
 		Chain<Unit> units = body.getUnits().getNonPatchingChain();
 
 		for (Unit unit : units) {
-			Stmt s = (Stmt) unit;
-			if (!s.containsFieldRef()) {
-				continue;
-			}
-			FieldRef fr = s.getFieldRef();
+			validate(body, unit, exception);
+		}
+    }
+
+	@Override
+	public void validate(Body body, Unit unit, List<ValidationException> exception) {
+		Stmt s = (Stmt) unit;
+		if (!s.containsFieldRef()) {
+			return;
+		}
+		FieldRef fr = s.getFieldRef();
 
-			if (fr instanceof StaticFieldRef) {
-				StaticFieldRef v = (StaticFieldRef) fr;
-				try {
-					SootField field = v.getField();
-					if (field == null)
-						exception.add(new UnitValidationException(unit, body, "Resolved field is null: " + fr.toString()));
+		if (fr instanceof StaticFieldRef) {
+			StaticFieldRef v = (StaticFieldRef) fr;
+			try {
+				SootField field = v.getField();
+				if (field == null)
+					exception.add(new UnitValidationException(unit, body, "Resolved field is null: " + fr.toString()));
 
-					if (!field.isStatic() && !field.isPhantom()) {
-						exception.add(new UnitValidationException(unit, body, "Trying to get a static field which is non-static: " + v));
-					}
-				} catch (ResolutionFailedException e) {
+				if (!field.isStatic() && !field.isPhantom()) {
 					exception.add(new UnitValidationException(unit, body, "Trying to get a static field which is non-static: " + v));
 				}
-			} else if (fr instanceof InstanceFieldRef) {
-				InstanceFieldRef v = (InstanceFieldRef) fr;
+			} catch (ResolutionFailedException e) {
+				exception.add(new UnitValidationException(unit, body, "Trying to get a static field which is non-static: " + v));
+			}
+		} else if (fr instanceof InstanceFieldRef) {
+			InstanceFieldRef v = (InstanceFieldRef) fr;
 
-				try {
-					SootField field = v.getField();
-					if (field == null)
-						exception.add(new UnitValidationException(unit, body, "Resolved field is null: " + fr.toString()));
-					
-					if (field.isStatic() && !field.isPhantom()) {
-						exception.add(new UnitValidationException(unit, body, "Trying to get an instance field which is static: " + v));
-					}
-				} catch (ResolutionFailedException e) {
+			try {
+				SootField field = v.getField();
+				if (field == null)
+					exception.add(new UnitValidationException(unit, body, "Resolved field is null: " + fr.toString()));
+				
+				if (field.isStatic() && !field.isPhantom()) {
 					exception.add(new UnitValidationException(unit, body, "Trying to get an instance field which is static: " + v));
 				}
-			} else {
-				throw new RuntimeException("unknown field ref");
+			} catch (ResolutionFailedException e) {
+				exception.add(new UnitValidationException(unit, body, "Trying to get an instance field which is static: " + v));
 			}
+		} else {
+			throw new RuntimeException("unknown field ref");
 		}
-    }
+	}
 
 
 	@Override
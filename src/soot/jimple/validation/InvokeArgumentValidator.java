@@ -7,7 +7,7 @@ import soot.SootMethod;
 import soot.Unit;
 import soot.jimple.InvokeExpr;
 import soot.jimple.Stmt;
-import soot.validation.BodyValidator;
+import soot.validation.UnitValidator;
 import soot.validation.ValidationException;
 
 /**
@@ -16,7 +16,7 @@ import soot.validation.ValidationException;
  * 
  * @author Steven Arzt
  */
-public enum InvokeArgumentValidator implements BodyValidator {
+public enum InvokeArgumentValidator implements UnitValidator {
 	INSTANCE;
 
 	public static InvokeArgumentValidator v() {
@@ -25,14 +25,18 @@ public enum InvokeArgumentValidator implements BodyValidator {
 
 	@Override
 	public void validate(Body body, List<ValidationException> exceptions) {
-		for (Unit u : body.getUnits()) {
-			Stmt s = (Stmt) u;
-			if (s.containsInvokeExpr()) {
-				InvokeExpr iinvExpr = s.getInvokeExpr();
-				SootMethod callee = iinvExpr.getMethod();
-				if (callee != null && iinvExpr.getArgCount() != callee.getParameterCount())
-					exceptions.add(new ValidationException(s, "Invalid number of arguments"));
-			}
+		for (Unit u : body.getUnits())
+			validate(body, u, exceptions);
+	}
+
+	@Override
+	public void validate(Body body, Unit unit, List<ValidationException> exceptions) {
+		Stmt s = (Stmt) unit;
+		if (s.containsInvokeExpr()) {
+			InvokeExpr iinvExpr = s.getInvokeExpr();
+			SootMethod callee = iinvExpr.getMethod();
+			if (callee != null && iinvExpr.getArgCount() != callee.getParameterCount())
+				exceptions.add(new ValidationException(s, "Invalid number of arguments"));
 		}
 	}
 
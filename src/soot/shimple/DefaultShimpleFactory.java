@@ -46,10 +46,22 @@ public class DefaultShimpleFactory implements ShimpleFactory
     protected DominatorTree<Block> rdTree;
     protected DominanceFrontier<Block> rdFrontier;
     protected DominatorsFinder<Block> rdFinder;
+
+    /**
+     * Whether the dominators and dominance frontiers are computed with
+     * the algorithms of Cooper, Harvey and Kennedy.
+     **/
+    protected final boolean chk;
     
     public DefaultShimpleFactory(Body body)
+    {
+    	this(body, false);
+    }
+
+    public DefaultShimpleFactory(Body body, boolean chk)
     {
     	this.body = body;
+    	this.chk = chk;
     }
     
     public void clearCache()
@@ -93,7 +105,10 @@ public class DefaultShimpleFactory implements ShimpleFactory
         if(rdFinder != null)
             return rdFinder;
 
-        rdFinder = new SimpleDominatorsFinder<Block>(getReverseBlockGraph());
+        if(chk)
+            rdFinder = new CHKDominatorsFinder<Block>(getReverseBlockGraph());
+        else
+            rdFinder = new SimpleDominatorsFinder<Block>(getReverseBlockGraph());
         return rdFinder;
     }
 
@@ -111,7 +126,10 @@ public class DefaultShimpleFactory implements ShimpleFactory
         if(rdFrontier != null)
             return rdFrontier;
 
-        rdFrontier = new CytronDominanceFrontier<Block>(getReverseDominatorTree());
+        if(chk)
+            rdFrontier = new CHKDominanceFrontier<Block>(getReverseDominatorTree());
+        else
+            rdFrontier = new CytronDominanceFrontier<Block>(getReverseDominatorTree());
         return rdFrontier;
     }
     
@@ -141,7 +159,10 @@ public class DefaultShimpleFactory implements ShimpleFactory
         if(dFinder != null)
             return dFinder;
 
-        dFinder = new SimpleDominatorsFinder<Block>(getBlockGraph());
+        if(chk)
+            dFinder = new CHKDominatorsFinder<Block>(getBlockGraph());
+        else
+            dFinder = new SimpleDominatorsFinder<Block>(getBlockGraph());
         return dFinder;
     }
 
@@ -159,7 +180,10 @@ public class DefaultShimpleFactory implements ShimpleFactory
         if(dFrontier != null)
             return dFrontier;
 
-        dFrontier = new CytronDominanceFrontier<Block>(getDominatorTree());
+        if(chk)
+            dFrontier = new CHKDominanceFrontier<Block>(getDominatorTree());
+        else
+            dFrontier = new CytronDominanceFrontier<Block>(getDominatorTree());
         return dFrontier;
     }
 
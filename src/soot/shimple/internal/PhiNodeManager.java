@@ -65,6 +65,10 @@ public class PhiNodeManager
      *
      * <p>Special Java case: If a variable is not defined along all
      * paths of entry to a node, a Phi node is not needed.</p>
+     *
+     * <p>With the fast-ssa option, Phi nodes are only inserted for
+     * locals that are used in some block before being defined there
+     * (semi-pruned SSA form).</p>
      **/
     public boolean insertTrivialPhiNodes()
     {
@@ -72,10 +76,22 @@ public class PhiNodeManager
 		boolean change = false;
 		varToBlocks = new HashMultiMap<Local, Block>();
 		Map<Local, List<Block>> localsToDefPoints = new HashMap<Local, List<Block>>();
+		boolean semiPruned = body.getOptions().fast_ssa();
+		Set<Local> liveIn = new HashSet<Local>();
+		Set<Local> blockDefs = new HashSet<Local>();
 
 		// compute localsToDefPoints and varToBlocks
 		for (Block block : cfg) {
+			blockDefs.clear();
 			for (Unit unit : block) {
+				if (semiPruned) {
+					for (ValueBox vb : unit.getUseBoxes()) {
+						Value use = vb.getValue();
+						if (use instanceof Local && !blockDefs.contains(use))
+							liveIn.add((Local) use);
+					}
+				}
+
 				List<ValueBox> defBoxes = unit.getDefBoxes();
 				for (ValueBox vb : defBoxes) {
 					Value def = vb.getValue();
@@ -89,6 +105,7 @@ public class PhiNodeManager
 							localsToDefPoints.put(local, def_points);
 						}
 						def_points.add(block);
+						blockDefs.add(local);
 					}
 				}
 
@@ -103,11 +120,7 @@ public class PhiNodeManager
         int iterCount = 0;
         Stack<Block> workList = new Stack<Block>();
 
-        Map<Integer, Integer> has_already = new HashMap<Integer, Integer>();
-        for(Iterator<Block> blocksIt = cfg.iterator(); blocksIt.hasNext(); ){
-          Block block = blocksIt.next();
-          has_already.put(block.getIndexInMethod(), 0);
-        }
+        int[] has_already = new int[cfg.size()];
 
         /* Main Cytron algorithm. */
         
@@ -122,6 +135,10 @@ public class PhiNodeManager
                     if(def_points.size() == 1){
                       continue;
                     }
+                    //a local that never lives across blocks needs none either
+                    if(semiPruned && !liveIn.contains(local)){
+                      continue;
+                    }
                     for(Block block : def_points){
                         workFlags[block.getIndexInMethod()] = iterCount;
                         workList.push(block);
@@ -142,9 +159,9 @@ public class PhiNodeManager
                           continue;
                         }
                         
-                        if(has_already.get(frontierBlock.getIndexInMethod()) < iterCount)
+                        if(has_already[fBIndex] < iterCount)
                         {
-                            has_already.put(frontierBlock.getIndexInMethod(), iterCount);
+                            has_already[fBIndex] = iterCount;
                             prependTrivialPhiNode(local, frontierBlock);
                             change = true;
 
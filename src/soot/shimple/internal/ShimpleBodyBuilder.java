@@ -78,11 +78,11 @@ public class ShimpleBodyBuilder
     public ShimpleBodyBuilder(ShimpleBody body)
     {
         this.body = body;
-        sf = new DefaultShimpleFactory(body);
+        options = body.getOptions();
+        sf = new DefaultShimpleFactory(body, options.fast_ssa());
         sf.clearCache();
         phi = new PhiNodeManager(body, sf);
         pi = new PiNodeManager(body, false, sf);
-        options = body.getOptions();
         makeUniqueLocalNames();
     }
     
@@ -171,8 +171,19 @@ public class ShimpleBodyBuilder
      **/
     protected Map<Local,Local> newLocalsToOldLocal;
 
+    /**
+     * Maps original Locals to their index in origLocals.
+     **/
+    protected Map<Local,Integer> origLocalToIndex;
+
     protected int[] assignmentCounters;
-    protected Stack<Integer>[] namingStacks;
+
+    /**
+     * The subscripts currently in scope for each original Local, as
+     * stacks of the given sizes.
+     **/
+    protected int[][] namingStacks;
+    protected int[] namingStackSizes;
     
     /**
      * Variable Renaming Algorithm from Cytron et al 91, P26-8,
@@ -184,12 +195,16 @@ public class ShimpleBodyBuilder
         update();
         newLocals = new HashMap<String, Local>();
         newLocalsToOldLocal = new HashMap<Local, Local>();
+        origLocalToIndex = new HashMap<Local, Integer>(origLocals.size() * 2 + 1, 0.7f);
+        for(int i = 0; i < origLocals.size(); i++)
+            origLocalToIndex.put(origLocals.get(i), i);
 
         assignmentCounters = new int[origLocals.size()];
-        namingStacks = new Stack[origLocals.size()];
+        namingStacks = new int[origLocals.size()][];
+        namingStackSizes = new int[origLocals.size()];
 
         for(int i = 0; i < namingStacks.length; i++)
-            namingStacks[i] = new Stack<Integer>();
+            namingStacks[i] = new int[4];
 
         List<Block> heads = cfg.getHeads();
 
@@ -204,25 +219,56 @@ public class ShimpleBodyBuilder
     }
 
     /**
-     * Driven by renameLocals().
+     * Driven by renameLocals().  Walks the dominator tree below block
+     * with an explicit stack, since very long methods have very deep
+     * dominator trees.
      **/
     public void renameLocalsSearch(Block block)
+    {
+        Stack<Iterator<DominatorNode<Block>>> children = new Stack<Iterator<DominatorNode<Block>>>();
+        Stack<int[]> lhsLocals = new Stack<int[]>();
+
+        DominatorNode<Block> node = dt.getDode(block);
+        lhsLocals.push(renameBlock(block));
+        children.push(node.getChildren().iterator());
+
+        while(!children.empty()){
+            Iterator<DominatorNode<Block>> childrenIt = children.peek();
+
+            // Step 3 of 4 -- Recurse over children.
+            if(childrenIt.hasNext()){
+                DominatorNode<Block> childNode = childrenIt.next();
+                lhsLocals.push(renameBlock(childNode.getGode()));
+                children.push(childNode.getChildren().iterator());
+                continue;
+            }
+
+            // Step 4 of 4 -- Tricky name stack updates.
+            for(int lhsLocalIndex : lhsLocals.pop())
+                namingStackSizes[lhsLocalIndex]--;
+            children.pop();
+        }
+
+        /* And we're done.  The renaming process is complete. */
+    }
+
+    /**
+     * Steps 1 and 2 of the renaming of block.  Returns the indices of
+     * the Locals whose subscripts were pushed, to be popped in Step 4.
+     **/
+    protected int[] renameBlock(Block block)
     {
         // accumulated in Step 1 to be re-processed in Step 4
-        List<Local> lhsLocals = new ArrayList<Local>();
+        int[] lhsLocals = new int[4];
+        int numLhsLocals = 0;
         
         // Step 1 of 4 -- Rename block's uses (ordinary) and defs
         {
             // accumulated and re-processed in a later loop
         	for (Unit unit : block) {
                 // Step 1/2 of 1
-                {
-                    List<ValueBox> useBoxes = new ArrayList<ValueBox>();
-
-                    if(!Shimple.isPhiNode(unit))
-                        useBoxes.addAll(unit.getUseBoxes());
-
-                    for (ValueBox useBox : useBoxes) {
+                if(!Shimple.isPhiNode(unit)){
+                    for (ValueBox useBox : unit.getUseBoxes()) {
                         Value use = useBox.getValue();
                         int localIndex = indexOfLocal(use);
 
@@ -232,10 +278,10 @@ public class ShimpleBodyBuilder
 
                         Local localUse = (Local) use;
 
-                        if(namingStacks[localIndex].empty())
+                        if(namingStackSizes[localIndex] == 0)
                             continue;
 
-                        Integer subscript = namingStacks[localIndex].peek();
+                        int subscript = namingStacks[localIndex][namingStackSizes[localIndex] - 1];
 
                         Local renamedLocal = fetchNewLocal(localUse, subscript);
                         useBox.setValue(renamedLocal);
@@ -252,25 +298,29 @@ public class ShimpleBodyBuilder
                     Value lhsValue = defStmt.getLeftOp();
                     
                     // not something we're interested in
-                    if(!origLocals.contains(lhsValue))
+                    Integer lhsIndex = origLocalToIndex.get(lhsValue);
+                    if(lhsIndex == null)
                         continue;
 
                     ValueBox lhsLocalBox = defStmt.getLeftOpBox();
                     Local lhsLocal = (Local) lhsValue;
+                    int localIndex = lhsIndex;
 
                     // re-processed in Step 4
-                    lhsLocals.add(lhsLocal);
+                    if(numLhsLocals == lhsLocals.length)
+                        lhsLocals = Arrays.copyOf(lhsLocals, numLhsLocals * 2);
+                    lhsLocals[numLhsLocals++] = localIndex;
 
-                    int localIndex = indexOfLocal(lhsLocal);
-                    if(localIndex == -1)
-                        throw new RuntimeException("Assertion failed.");
-                
-                    Integer subscript = assignmentCounters[localIndex];
+                    int subscript = assignmentCounters[localIndex];
 
                     Local newLhsLocal = fetchNewLocal(lhsLocal, subscript);
                     lhsLocalBox.setValue(newLhsLocal);
 
-                    namingStacks[localIndex].push(subscript);
+                    int size = namingStackSizes[localIndex];
+                    if(size == namingStacks[localIndex].length)
+                        namingStacks[localIndex] = Arrays.copyOf(namingStacks[localIndex], size * 2);
+                    namingStacks[localIndex][size] = subscript;
+                    namingStackSizes[localIndex]++;
                     assignmentCounters[localIndex]++;                    
                     
                 }
@@ -303,10 +353,10 @@ public class ShimpleBodyBuilder
                     if(localIndex == -1)
                         throw new RuntimeException("Assertion failed.");
                     
-                    if(namingStacks[localIndex].empty())
+                    if(namingStackSizes[localIndex] == 0)
                         continue;
 
-                    Integer subscript = namingStacks[localIndex].peek();
+                    int subscript = namingStacks[localIndex][namingStackSizes[localIndex] - 1];
                     
                     Local newPhiArg = fetchNewLocal(phiArg, subscript);
                     phiArgBox.setValue(newPhiArg);
@@ -314,37 +364,7 @@ public class ShimpleBodyBuilder
             }
         }
 
-        // Step 3 of 4 -- Recurse over children.
-        {
-            DominatorNode<Block> node = dt.getDode(block);
-
-            // now we recurse over children
-
-            Iterator<DominatorNode<Block>> childrenIt = dt.getChildrenOf(node).iterator();
-
-            while(childrenIt.hasNext()){
-                DominatorNode<Block> childNode = childrenIt.next();
-
-                renameLocalsSearch(childNode.getGode());
-            }
-        }
-
-        // Step 4 of 4 -- Tricky name stack updates.
-        {
-            Iterator<Local> lhsLocalsIt = lhsLocals.iterator();
-
-            while(lhsLocalsIt.hasNext()){
-                Local lhsLocal = lhsLocalsIt.next();
-
-                int lhsLocalIndex = indexOfLocal(lhsLocal);
-                if(lhsLocalIndex == -1)
-                    throw new RuntimeException("Assertion failed.");
-                
-                namingStacks[lhsLocalIndex].pop();
-            }
-        }
-
-        /* And we're done.  The renaming process is complete. */
+        return Arrays.copyOf(lhsLocals, numLhsLocals);
     }
 
     /**
@@ -355,7 +375,7 @@ public class ShimpleBodyBuilder
     {
         Local oldLocal = local;
         
-        if(!origLocals.contains(local))
+        if(!origLocalToIndex.containsKey(local))
             oldLocal = newLocalsToOldLocal.get(local);
         
         if(subscript.intValue() == 0)
@@ -386,16 +406,16 @@ public class ShimpleBodyBuilder
      **/
     protected int indexOfLocal(Value local)
     {
-        int localIndex = origLocals.indexOf(local);
+        Integer localIndex = origLocalToIndex.get(local);
 
-        if(localIndex == -1){
+        if(localIndex == null){
             // might be null
             Local oldLocal = newLocalsToOldLocal.get(local);
 
-            localIndex = origLocals.indexOf(oldLocal);
+            localIndex = oldLocal == null ? null : origLocalToIndex.get(oldLocal);
         }
         
-        return localIndex;
+        return localIndex == null ? -1 : localIndex;
     }
 
     /**
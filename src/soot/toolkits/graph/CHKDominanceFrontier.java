@@ -0,0 +1,100 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.toolkits.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the dominance frontiers with the algorithm of Cooper, Harvey and
+ * Kennedy. For every node Y, the dominator tree is walked up from each
+ * predecessor of Y until the immediate dominator of Y is reached, and Y is
+ * added to the frontier of every node on the way. Unlike
+ * {@link CytronDominanceFrontier}, no frontier is copied into the frontier of
+ * its parent.
+ *
+ * <p> The tree is walked on int arrays, and the frontiers are the same sets
+ * as the ones computed by {@link CytronDominanceFrontier}.
+ *
+ * @see <a href="http://www.cs.rice.edu/~keith/EMBED/dom.pdf">A Simple, Fast
+ * Dominance Algorithm</a>
+ **/
+public class CHKDominanceFrontier<N> implements DominanceFrontier<N>
+{
+    protected DominatorTree<N> dt;
+    protected Map<DominatorNode<N>, List<DominatorNode<N>>> nodeToFrontier;
+
+    public CHKDominanceFrontier(DominatorTree<N> dt)
+    {
+        this.dt = dt;
+
+        final int size = dt.size();
+        List<DominatorNode<N>> dodes = new ArrayList<DominatorNode<N>>(size);
+        Map<DominatorNode<N>, Integer> dodeToIndex = new HashMap<DominatorNode<N>, Integer>(size * 2 + 1, 0.7f);
+        for (DominatorNode<N> dode : dt) {
+            dodeToIndex.put(dode, dodes.size());
+            dodes.add(dode);
+        }
+
+        int[] parents = new int[size];
+        for (int i = 0; i < size; i++) {
+            DominatorNode<N> parent = dodes.get(i).getParent();
+            parents[i] = parent == null ? -1 : dodeToIndex.get(parent);
+        }
+
+        // lastAdded[x] is the last node added to the frontier of x
+        int[] lastAdded = new int[size];
+        for (int i = 0; i < size; i++)
+            lastAdded[i] = -1;
+        List<List<DominatorNode<N>>> frontiers = new ArrayList<List<DominatorNode<N>>>(size);
+        for (int i = 0; i < size; i++)
+            frontiers.add(new ArrayList<DominatorNode<N>>(2));
+
+        for (int y = 0; y < size; y++) {
+            DominatorNode<N> dode = dodes.get(y);
+            for (N pred : dt.graph.getPredsOf(dode.getGode())) {
+                int runner = dodeToIndex.get(dt.getDode(pred));
+                while (runner != -1 && runner != parents[y]) {
+                    // The rest of the way up was walked from another predecessor
+                    if (lastAdded[runner] == y)
+                        break;
+                    lastAdded[runner] = y;
+                    frontiers.get(runner).add(dode);
+                    runner = parents[runner];
+                }
+            }
+        }
+
+        nodeToFrontier = new HashMap<DominatorNode<N>, List<DominatorNode<N>>>(size * 2 + 1, 0.7f);
+        for (int i = 0; i < size; i++)
+            nodeToFrontier.put(dodes.get(i), Collections.unmodifiableList(frontiers.get(i)));
+    }
+
+    public List<DominatorNode<N>> getDominanceFrontierOf(DominatorNode<N> node)
+    {
+        List<DominatorNode<N>> frontier = nodeToFrontier.get(node);
+        if(frontier == null)
+            throw new RuntimeException("Frontier not defined for node: " + node);
+        return frontier;
+    }
+}
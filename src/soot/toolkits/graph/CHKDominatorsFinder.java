@@ -0,0 +1,248 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.toolkits.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates dominators with the iterative algorithm of Cooper, Harvey and
+ * Kennedy. Only the immediate dominator of each node is stored, in an array
+ * indexed by reverse postorder number, so no dominator sets are built.
+ *
+ * <p> The heads of the graph are children of a virtual root and have no
+ * immediate dominator. As in {@link MHGDominatorsFinder}, a node that cannot
+ * be reached from the heads is dominated by every node. It has no immediate
+ * dominator either, so it is a head of the dominator tree.
+ *
+ * <p> Dominance queries are answered in constant time from the preorder and
+ * postorder numbers of the nodes in the dominator tree.
+ *
+ * @see <a href="http://www.cs.rice.edu/~keith/EMBED/dom.pdf">A Simple, Fast
+ * Dominance Algorithm</a>
+ **/
+public class CHKDominatorsFinder<N> implements DominatorsFinder<N>
+{
+    protected DirectedGraph<N> graph;
+
+    /* Index 0 is the virtual root, the reachable nodes follow in reverse
+     * postorder, and then the unreachable ones. */
+    protected Map<N, Integer> nodeToIndex;
+    protected List<N> indexToNode;
+    protected int reachable;
+    protected int[] idoms;
+
+    /* Numbering of the dominator tree, for isDominatedBy. */
+    protected int[] treePre;
+    protected int[] treePost;
+
+    public CHKDominatorsFinder(DirectedGraph<N> graph)
+    {
+        this.graph = graph;
+        doAnalysis();
+    }
+
+    protected void doAnalysis()
+    {
+        List<N> postorder = new ArrayList<N>(graph.size());
+        Map<N, Integer> visited = new HashMap<N, Integer>(graph.size() * 2 + 1, 0.7f);
+        for (N head : graph.getHeads())
+            depthFirst(head, visited, postorder);
+
+        nodeToIndex = visited;
+        indexToNode = new ArrayList<N>(graph.size() + 1);
+        indexToNode.add(null);
+        for (int i = postorder.size() - 1; i >= 0; i--) {
+            N n = postorder.get(i);
+            nodeToIndex.put(n, indexToNode.size());
+            indexToNode.add(n);
+        }
+        reachable = indexToNode.size();
+        for (N n : graph) {
+            if (!nodeToIndex.containsKey(n)) {
+                nodeToIndex.put(n, indexToNode.size());
+                indexToNode.add(n);
+            }
+        }
+        final int size = indexToNode.size();
+
+        // The heads hang off the virtual root, whatever their predecessors
+        boolean[] isRoot = new boolean[reachable];
+        for (N head : graph.getHeads())
+            isRoot[nodeToIndex.get(head)] = true;
+        int[][] preds = new int[reachable][];
+        for (int i = 1; i < reachable; i++) {
+            List<N> ps = graph.getPredsOf(indexToNode.get(i));
+            preds[i] = new int[ps.size()];
+            int k = 0;
+            for (N p : ps)
+                preds[i][k++] = nodeToIndex.get(p);
+        }
+
+        // Unreachable nodes hang off the virtual root too, but are never
+        // used as predecessors
+        idoms = new int[size];
+        for (int i = 1; i < reachable; i++)
+            idoms[i] = isRoot[i] ? 0 : -1;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < reachable; i++) {
+                if (isRoot[i])
+                    continue;
+                int newIdom = -1;
+                for (int p : preds[i]) {
+                    if (p >= reachable || idoms[p] == -1)
+                        continue;
+                    newIdom = newIdom == -1 ? p : intersect(p, newIdom);
+                }
+                if (newIdom != -1 && idoms[i] != newIdom) {
+                    idoms[i] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+
+        numberTree(size);
+    }
+
+    private void depthFirst(N start, Map<N, Integer> visited, List<N> postorder)
+    {
+        if (visited.containsKey(start))
+            return;
+        List<N> nodeStack = new ArrayList<N>();
+        List<Integer> succStack = new ArrayList<Integer>();
+        visited.put(start, -1);
+        nodeStack.add(start);
+        succStack.add(0);
+        while (!nodeStack.isEmpty()) {
+            int top = nodeStack.size() - 1;
+            N n = nodeStack.get(top);
+            List<N> succs = graph.getSuccsOf(n);
+            int k = succStack.get(top);
+            if (k < succs.size()) {
+                succStack.set(top, k + 1);
+                N s = succs.get(k);
+                if (!visited.containsKey(s)) {
+                    visited.put(s, -1);
+                    nodeStack.add(s);
+                    succStack.add(0);
+                }
+            } else {
+                nodeStack.remove(top);
+                succStack.remove(top);
+                postorder.add(n);
+            }
+        }
+    }
+
+    private int intersect(int a, int b)
+    {
+        while (a != b) {
+            while (a > b)
+                a = idoms[a];
+            while (b > a)
+                b = idoms[b];
+        }
+        return a;
+    }
+
+    private void numberTree(int size)
+    {
+        int[] childCount = new int[size];
+        for (int i = 1; i < size; i++)
+            childCount[idoms[i]]++;
+        int[][] children = new int[size][];
+        for (int i = 0; i < size; i++)
+            children[i] = new int[childCount[i]];
+        int[] filled = new int[size];
+        for (int i = 1; i < size; i++)
+            children[idoms[i]][filled[idoms[i]]++] = i;
+
+        treePre = new int[size];
+        treePost = new int[size];
+        int[] stack = new int[size];
+        int[] next = new int[size];
+        int sp = 0, pre = 0, post = 0;
+        stack[0] = 0;
+        treePre[0] = pre++;
+        while (sp >= 0) {
+            int n = stack[sp];
+            if (next[n] < children[n].length) {
+                int c = children[n][next[n]++];
+                treePre[c] = pre++;
+                stack[++sp] = c;
+            } else {
+                treePost[n] = post++;
+                sp--;
+            }
+        }
+    }
+
+    protected int indexOf(N node)
+    {
+        Integer index = nodeToIndex.get(node);
+        if (index == null)
+            throw new RuntimeException("Node " + node + " is not in the graph");
+        return index;
+    }
+
+    public DirectedGraph<N> getGraph()
+    {
+        return graph;
+    }
+
+    public List<N> getDominators(N node)
+    {
+        int n = indexOf(node);
+        if (n >= reachable)
+            return new ArrayList<N>(indexToNode.subList(1, indexToNode.size()));
+        List<N> result = new ArrayList<N>();
+        for (int i = n; i != 0; i = idoms[i])
+            result.add(indexToNode.get(i));
+        return result;
+    }
+
+    public N getImmediateDominator(N node)
+    {
+        return indexToNode.get(idoms[indexOf(node)]);
+    }
+
+    public boolean isDominatedBy(N node, N dominator)
+    {
+        int n = indexOf(node), d = indexOf(dominator);
+        if (n >= reachable)
+            return true;
+        return treePre[d] <= treePre[n] && treePost[n] <= treePost[d];
+    }
+
+    public boolean isDominatedByAll(N node, Collection<N> dominators)
+    {
+        for (N dominator : dominators) {
+            if (!isDominatedBy(node, dominator))
+                return false;
+        }
+        return true;
+    }
+}
@@ -29,6 +29,7 @@ import java.util.*;
 public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E> {
     protected E[] numberToObj;
     protected int lastNumber;
+    protected int removed;
     
     @SuppressWarnings("unchecked")
     public ArrayNumberer() {
@@ -56,6 +57,16 @@ public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E>
         o.setNumber( lastNumber );
     }
 
+    /** Forgets o. Its number is not given to another object, so that bitsets
+     * over the remaining objects stay valid. */
+    public synchronized boolean remove( E o ) {
+        int number = o.getNumber();
+        if( number == 0 || number > lastNumber || numberToObj[number] != o ) return false;
+        numberToObj[number] = null;
+        ++removed;
+        return true;
+    }
+
     public long get( E o ) {
         if( o == null ) return 0;
         int ret = o.getNumber();
@@ -70,15 +81,24 @@ public class ArrayNumberer<E extends Numberable> implements IterableNumberer<E>
         return ret;
     }
 
+    /** Returns the number of objects that have not been removed. */
     public int size() { 
-    	return lastNumber; 
+    	return lastNumber - removed; 
+    }
+
+    /** Returns the highest number given out so far. Removed objects keep
+     * their numbers, so this bounds the numbers of all objects. */
+    public int getLastNumber() {
+    	return lastNumber;
     }
 
     public Iterator<E> iterator() {
         return new Iterator<E>() {
             int cur = 1;
             public final boolean hasNext() {
-                return cur <= lastNumber && cur < numberToObj.length && numberToObj[cur] != null;
+                // skip the numbers of removed objects
+                while( cur <= lastNumber && cur < numberToObj.length && numberToObj[cur] == null ) cur++;
+                return cur <= lastNumber && cur < numberToObj.length;
             }
 
     		public final E next() { 
@@ -55,16 +55,53 @@ public class EscapedWriter extends FilterWriter
     /** Write a segment of the given String. */
     public void write(String s, int off, int len) throws IOException
     {
-        for(int i = off; i < off + len; i++)
-            write(s.charAt(i));
+        // Runs of characters that need no escaping are passed on at once
+        int start = off;
+        for(int i = off; i < off + len; i++) {
+            char ch = s.charAt(i);
+            if (needsEscape(ch)) {
+                if (i > start)
+                    out.write(s, start, i - start);
+                writeEscaped(ch);
+                start = i + 1;
+            }
+        }
+        if (start < off + len)
+            out.write(s, start, off + len - start);
+    }
+
+    /** Write a segment of the given character array. */
+    public void write(char[] cbuf, int off, int len) throws IOException
+    {
+        int start = off;
+        for(int i = off; i < off + len; i++) {
+            char ch = cbuf[i];
+            if (needsEscape(ch)) {
+                if (i > start)
+                    out.write(cbuf, start, i - start);
+                writeEscaped(ch);
+                start = i + 1;
+            }
+        }
+        if (start < off + len)
+            out.write(cbuf, start, off + len - start);
     }
   
     /** Write a single character. */
     public void write(int ch) throws IOException
     {
-        if (ch >= 32 && ch <= 126 || ch == cr || ch == lf || ch == ' ')
+        if (!needsEscape(ch))
             { super.write(ch); return; }
-        
+        writeEscaped(ch);
+    }
+
+    private boolean needsEscape(int ch)
+    {
+        return !(ch >= 32 && ch <= 126 || ch == cr || ch == lf || ch == ' ');
+    }
+
+    private void writeEscaped(int ch) throws IOException
+    {
         mini.setLength(0);
         mini.append(Integer.toHexString(ch));
 
@@ -72,7 +109,6 @@ public class EscapedWriter extends FilterWriter
             mini.insert(0, "0");
 
         mini.insert(0, "\\u");
-        for (int i = 0; i < mini.length(); i++)
-            super.write(mini.charAt(i));
+        out.write(mini.toString());
     }
 }
@@ -8,7 +8,7 @@ import soot.Unit;
 import soot.jimple.InvokeExpr;
 import soot.jimple.Stmt;
 
-public enum CheckEscapingValidator implements BodyValidator {
+public enum CheckEscapingValidator implements UnitValidator {
 	INSTANCE;
 	
 	public static CheckEscapingValidator v() {
@@ -17,19 +17,23 @@ public enum CheckEscapingValidator implements BodyValidator {
 	
 	@Override
 	public void validate(Body body, List<ValidationException> exception) {
-		for (Unit u : body.getUnits()) {
-			if (u instanceof Stmt) {
-				Stmt stmt = (Stmt) u;
-				if (stmt.containsInvokeExpr()) {
-					InvokeExpr iexpr = stmt.getInvokeExpr();
-					SootMethod sm = iexpr.getMethod();
-					if (sm.getName().contains("'")
-							|| sm.getDeclaringClass().getName().contains("'"))
+		for (Unit u : body.getUnits())
+			validate(body, u, exception);
+	}
+
+	@Override
+	public void validate(Body body, Unit unit, List<ValidationException> exception) {
+		if (unit instanceof Stmt) {
+			Stmt stmt = (Stmt) unit;
+			if (stmt.containsInvokeExpr()) {
+				InvokeExpr iexpr = stmt.getInvokeExpr();
+				SootMethod sm = iexpr.getMethod();
+				if (sm.getName().contains("'")
+						|| sm.getDeclaringClass().getName().contains("'"))
+					throw new ValidationException(stmt, "Escaped name in signature found");
+				for (int i = 0; i < sm.getParameterCount(); i++)
+					if (sm.getParameterType(i).toString().contains("'"))
 						throw new ValidationException(stmt, "Escaped name in signature found");
-					for (int i = 0; i < sm.getParameterCount(); i++)
-						if (sm.getParameterType(i).toString().contains("'"))
-							throw new ValidationException(stmt, "Escaped name in signature found");
-				}
 			}
 		}
 	}
@@ -22,7 +22,7 @@ import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InvokeExpr;
 import soot.jimple.Stmt;
 
-public enum CheckTypesValidator implements BodyValidator {
+public enum CheckTypesValidator implements UnitValidator {
 	INSTANCE;
 
 	public static CheckTypesValidator v() {
@@ -31,57 +31,66 @@ public enum CheckTypesValidator implements BodyValidator {
 
 	@Override
 	public void validate(Body body, List<ValidationException> exception) {
-		for (Unit u : body.getUnits()) {
-			String errorSuffix = " at " + u + " in " + body.getMethod();
-			
-			if (u instanceof DefinitionStmt) {
-				DefinitionStmt astmt = (DefinitionStmt) u;
-				if (!(astmt.getRightOp() instanceof CaughtExceptionRef)) {
-					Type leftType = Type.toMachineType(astmt.getLeftOp()
-							.getType());
-					Type rightType = Type.toMachineType(astmt.getRightOp()
-							.getType());
-
-					checkCopy(astmt, body, exception, leftType, rightType,
-							errorSuffix);
-				}
+		for (Unit u : body.getUnits())
+			validate(body, u, exception);
+	}
+
+	@Override
+	public void validate(Body body, Unit u, List<ValidationException> exception) {
+		if (u instanceof DefinitionStmt) {
+			DefinitionStmt astmt = (DefinitionStmt) u;
+			if (!(astmt.getRightOp() instanceof CaughtExceptionRef)) {
+				Type leftType = Type.toMachineType(astmt.getLeftOp()
+						.getType());
+				Type rightType = Type.toMachineType(astmt.getRightOp()
+						.getType());
+
+				checkCopy(astmt, body, exception, leftType, rightType, "");
 			}
-			
-			if (u instanceof Stmt) {
-				Stmt stmt = (Stmt) u;
-				if (stmt.containsInvokeExpr()) {
-					SootMethodRef called = stmt.getInvokeExpr().getMethodRef();
-					InvokeExpr iexpr = stmt.getInvokeExpr();
-					
-					if (iexpr instanceof InstanceInvokeExpr) {
-						InstanceInvokeExpr iiexpr = (InstanceInvokeExpr) iexpr;
-						checkCopy(stmt, body, exception, called.declaringClass()
-								.getType(), iiexpr.getBase().getType(),
-								" in receiver of call" + errorSuffix);
-					}
-	
-					if (called.parameterTypes().size() != iexpr.getArgCount())
-						exception
-								.add(new ValidationException(
-										stmt,
-										"Argument count does not match the signature of the called function",
-										"Warning: Argument count doesn't match up with signature in call"
-												+ errorSuffix + " in "
-												+ body.getMethod()));
-					else
-						for (int i = 0; i < iexpr.getArgCount(); i++)
-							checkCopy(stmt, body, exception,
-									Type.toMachineType(called.parameterType(i)),
-									Type.toMachineType(iexpr.getArg(i).getType()),
-									" in argument " + i + " of call" + errorSuffix);
+		}
+		
+		if (u instanceof Stmt) {
+			Stmt stmt = (Stmt) u;
+			if (stmt.containsInvokeExpr()) {
+				SootMethodRef called = stmt.getInvokeExpr().getMethodRef();
+				InvokeExpr iexpr = stmt.getInvokeExpr();
+				
+				if (iexpr instanceof InstanceInvokeExpr) {
+					InstanceInvokeExpr iiexpr = (InstanceInvokeExpr) iexpr;
+					checkCopy(stmt, body, exception, called.declaringClass()
+							.getType(), iiexpr.getBase().getType(),
+							" in receiver of call");
 				}
+
+				if (called.parameterTypes().size() != iexpr.getArgCount())
+					exception
+							.add(new ValidationException(
+									stmt,
+									"Argument count does not match the signature of the called function",
+									"Warning: Argument count doesn't match up with signature in call"
+											+ errorSuffix(stmt, body, "") + " in "
+											+ body.getMethod()));
+				else
+					for (int i = 0; i < iexpr.getArgCount(); i++)
+						checkCopy(stmt, body, exception,
+								Type.toMachineType(called.parameterType(i)),
+								Type.toMachineType(iexpr.getArg(i).getType()),
+								" in argument " + i + " of call");
 			}
 		}
 	}
 
+	/**
+	 * Builds the location part of an error message. Printing the unit is
+	 * expensive, so this is only done once an error has been found.
+	 */
+	private static String errorSuffix(Unit stmt, Body body, String where) {
+		return where + " at " + stmt + " in " + body.getMethod();
+	}
+
 	private void checkCopy(Unit stmt, Body body,
 			List<ValidationException> exception, Type leftType, Type rightType,
-			String errorSuffix) {
+			String where) {
 		if (leftType instanceof PrimType || rightType instanceof PrimType) {
 			if (leftType instanceof IntType && rightType instanceof IntType)
 				return;
@@ -93,7 +102,7 @@ public enum CheckTypesValidator implements BodyValidator {
 					&& rightType instanceof DoubleType)
 				return;
 			exception.add(new ValidationException(stmt, "",
-					"Warning: Bad use of primitive type" + errorSuffix + " in "
+					"Warning: Bad use of primitive type" + errorSuffix(stmt, body, where) + " in "
 							+ body.getMethod()));
 		}
 
@@ -117,7 +126,7 @@ public enum CheckTypesValidator implements BodyValidator {
 			}
 
 			exception.add(new ValidationException(stmt,
-					"Warning: Bad use of array type" + errorSuffix + " in "
+					"Warning: Bad use of array type" + errorSuffix(stmt, body, where) + " in "
 							+ body.getMethod()));
 		}
 
@@ -135,7 +144,7 @@ public enum CheckTypesValidator implements BodyValidator {
 							.isInterfaceSubinterfaceOf(rightClass, leftClass)))
 						exception.add(new ValidationException(stmt,
 								"Warning: Bad use of interface type"
-										+ errorSuffix + " in "
+										+ errorSuffix(stmt, body, where) + " in "
 										+ body.getMethod()));
 				} else {
 					// No quick way to check this for now.
@@ -144,19 +153,19 @@ public enum CheckTypesValidator implements BodyValidator {
 				if (rightClass.isInterface()) {
 					exception.add(new ValidationException(stmt,
 							"Warning: trying to use interface type where non-Object class expected"
-									+ errorSuffix + " in " + body.getMethod()));
+									+ errorSuffix(stmt, body, where) + " in " + body.getMethod()));
 				} else {
 					if (!Scene.v().getActiveHierarchy()
 							.isClassSubclassOfIncluding(rightClass, leftClass))
 						exception.add(new ValidationException(stmt,
-								"Warning: Bad use of class type" + errorSuffix
+								"Warning: Bad use of class type" + errorSuffix(stmt, body, where)
 										+ " in " + body.getMethod()));
 				}
 			}
 			return;
 		}
 		exception.add(new ValidationException(stmt, "Warning: Bad types"
-				+ errorSuffix + " in " + body.getMethod()));
+				+ errorSuffix(stmt, body, where) + " in " + body.getMethod()));
 	}
 
 	@Override
@@ -4,10 +4,11 @@ import java.util.List;
 
 import soot.Body;
 import soot.Local;
+import soot.Unit;
 import soot.Value;
 import soot.ValueBox;
 
-public enum LocalsValidator implements BodyValidator {
+public enum LocalsValidator implements UnitValidator {
 	INSTANCE;	
 	
 	public static LocalsValidator v() {
@@ -18,10 +19,17 @@ public enum LocalsValidator implements BodyValidator {
 	@Override
 	/** Verifies that each Local of getUseAndDefBoxes() is in this body's locals Chain. */
 	public void validate(Body body, List<ValidationException> exception) {
-        for (ValueBox vb : body.getUseBoxes()) {
+        for (Unit u : body.getUnits()) {
+            validate(body, u, exception);
+        }
+    }
+
+	@Override
+	public void validate(Body body, Unit unit, List<ValidationException> exception) {
+        for (ValueBox vb : unit.getUseBoxes()) {
             validateLocal(body, vb, exception);
         }
-        for (ValueBox vb : body.getDefBoxes()) {
+        for (ValueBox vb : unit.getDefBoxes()) {
             validateLocal(body, vb, exception);
         }
     }
@@ -0,0 +1,23 @@
+package soot.validation;
+
+import java.util.List;
+
+import soot.Body;
+import soot.Unit;
+
+/**
+ * Implement this interface if your body validator checks each unit on its
+ * own. The unit validators of a body are run together in a single pass over
+ * its units.
+ */
+public interface UnitValidator extends BodyValidator {
+	/**
+	 * Validates a single unit of the given body and saves all validation
+	 * errors in the given list. Calling this for every unit of the body must
+	 * find the same errors as {@link #validate(Body, List)}.
+	 * @param body the body the unit belongs to
+	 * @param unit the unit to check
+	 * @param exceptions the list of exceptions
+	 */
+	public void validate(Body body, Unit unit, List<ValidationException> exceptions);
+}
@@ -0,0 +1,101 @@
+package soot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Writes the same classes to a directory and to a jar, which is generated
+ * concurrently, and compares the class files.
+ */
+public class JarOutputTest {
+
+	// Relay has enough methods for its Baf bodies to be built in parallel
+	private static final String[] TARGET_CLASSES = { "soot.jimple.spark.targets.Relay",
+			"soot.jimple.spark.targets.Shapes", "soot.asm.backend.targets.ControlStructures",
+			"soot.asm.backend.targets.TryCatch", "soot.asm.backend.targets.Stores" };
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void jarHasTheClassFiles() throws IOException {
+		File dir = Files.createTempDirectory("classes").toFile();
+		run("-d", dir.getPath());
+		Map<String, byte[]> jar = readJar(writeJar());
+		Assert.assertEquals(TARGET_CLASSES.length, jar.size());
+		for (Map.Entry<String, byte[]> e : jar.entrySet()) {
+			File file = new File(dir, e.getKey());
+			Assert.assertTrue(file.getPath(), file.exists());
+			Assert.assertArrayEquals(e.getKey(), Files.readAllBytes(file.toPath()), e.getValue());
+		}
+	}
+
+	@Test
+	public void jarLayoutRepeats() throws IOException {
+		Map<String, byte[]> first = readJar(writeJar());
+		Map<String, byte[]> second = readJar(writeJar());
+		Assert.assertEquals(new ArrayList<String>(first.keySet()), new ArrayList<String>(second.keySet()));
+		for (String name : first.keySet())
+			Assert.assertArrayEquals(name, first.get(name), second.get(name));
+	}
+
+	private static File writeJar() throws IOException {
+		File jar = new File(Files.createTempDirectory("jar").toFile(), "out.jar");
+		run("-outjar", "-d", jar.getPath());
+		return jar;
+	}
+
+	private static void run(String... options) throws IOException {
+		G.reset();
+		File f = SceneSetup.classPath();
+		List<String> args = new ArrayList<String>();
+		args.add("-cp");
+		args.add(f.getCanonicalPath());
+		args.add("-pp");
+		args.add("-allow-phantom-refs");
+		args.add("-asm-backend");
+		args.add("-f");
+		args.add("class");
+		for (String option : options)
+			args.add(option);
+		for (String c : TARGET_CLASSES)
+			args.add(c);
+		Main.v().run(args.toArray(new String[args.size()]));
+		G.reset();
+	}
+
+	/** Returns the entries of the given jar in the order in which they were written. */
+	private static Map<String, byte[]> readJar(File jar) throws IOException {
+		Map<String, byte[]> ret = new LinkedHashMap<String, byte[]>();
+		JarInputStream in = new JarInputStream(new FileInputStream(jar));
+		try {
+			JarEntry entry;
+			byte[] buffer = new byte[4096];
+			while ((entry = in.getNextJarEntry()) != null) {
+				ByteArrayOutputStream data = new ByteArrayOutputStream();
+				int n;
+				while ((n = in.read(buffer)) > 0)
+					data.write(buffer, 0, n);
+				ret.put(entry.getName(), data.toByteArray());
+			}
+		} finally {
+			in.close();
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,99 @@
+package soot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+
+/**
+ * Checks that bodies which are written out in chunks, and classes which are
+ * written concurrently, are printed as a whole.
+ */
+public class PrinterTest {
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void largeBodyIsPrintedInOrder() {
+		G.reset();
+		SootClass c = new SootClass("Large");
+		Scene.v().addClass(c);
+		SootMethod m = new SootMethod("m", Collections.<Type> emptyList(), VoidType.v(), Modifier.STATIC);
+		c.addMethod(m);
+		JimpleBody body = Jimple.v().newBody(m);
+		m.setActiveBody(body);
+		Local l = Jimple.v().newLocal("i0", IntType.v());
+		body.getLocals().add(l);
+		// Several times the size of a chunk
+		int count = 3000;
+		for (int k = 0; k < count; k++)
+			body.getUnits().add(Jimple.v().newAssignStmt(l, IntConstant.v(k)));
+		body.getUnits().add(Jimple.v().newReturnVoidStmt());
+
+		StringWriter sw = new StringWriter();
+		PrintWriter out = new PrintWriter(sw);
+		Printer.v().printTo(body, out);
+		out.flush();
+		String printed = sw.toString();
+		Assert.assertTrue(printed.length() > 3 * 8192);
+
+		List<String> statements = new ArrayList<String>();
+		for (String line : printed.split("\r?\n")) {
+			if (line.startsWith("        i0 = ") || line.startsWith("        return"))
+				statements.add(line.trim());
+		}
+		Assert.assertEquals(count + 1, statements.size());
+		for (int k = 0; k < count; k++)
+			Assert.assertEquals("i0 = " + k + ";", statements.get(k));
+		Assert.assertEquals("return;", statements.get(count));
+		Assert.assertTrue(printed.trim().endsWith("}"));
+	}
+
+	@Test
+	public void concurrentJimpleOutput() throws IOException {
+		File f = SceneSetup.classPath();
+		File dir = new File(f, "soot/asm/backend/targets");
+		List<String> classes = new ArrayList<String>();
+		for (String name : dir.list()) {
+			if (name.endsWith(".class"))
+				classes.add("soot.asm.backend.targets." + name.substring(0, name.length() - 6));
+		}
+		Collections.sort(classes);
+		Assert.assertTrue(classes.size() > 10);
+
+		File together = writeJimple(f, classes);
+		for (String name : classes) {
+			// Nothing is written concurrently with a single class
+			File alone = writeJimple(f, Collections.singletonList(name));
+			Assert.assertArrayEquals(name, Files.readAllBytes(new File(alone, name + ".jimple").toPath()),
+					Files.readAllBytes(new File(together, name + ".jimple").toPath()));
+		}
+	}
+
+	private static File writeJimple(File classPath, List<String> classes) throws IOException {
+		File out = Files.createTempDirectory("jimple").toFile();
+		List<String> args = new ArrayList<String>();
+		Collections.addAll(args, "-cp", classPath.getCanonicalPath(), "-pp", "-allow-phantom-refs", "-f", "J", "-d",
+				out.getPath());
+		args.addAll(classes);
+		G.reset();
+		Main.v().run(args.toArray(new String[args.size()]));
+		G.reset();
+		return out;
+	}
+}
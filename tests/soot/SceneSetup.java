@@ -0,0 +1,53 @@
+package soot;
+
+import java.io.File;
+import java.io.IOException;
+
+import soot.options.Options;
+
+/**
+ * Sets up the scene the way most tests need it: the compiled test classes on
+ * the Soot class path and, for whole-program tests, a main class.
+ */
+public final class SceneSetup {
+
+	private SceneSetup() {
+	}
+
+	/**
+	 * Returns the directory holding the compiled test classes, as laid out by
+	 * Maven or by the Ant build.
+	 */
+	public static File classPath() {
+		File f = new File("./target/test-classes");
+		if (!f.exists() || f.list().length == 0)
+			f = new File("./testclasses");
+		return f;
+	}
+
+	/**
+	 * Resets Soot and sets the options for a whole-program run over the test
+	 * classes that produces no output. Phase options are set by the caller.
+	 */
+	public static void resetWholeProgram() throws IOException {
+		G.reset();
+		Options.v().set_soot_classpath(classPath().getCanonicalPath());
+		Options.v().set_prepend_classpath(true);
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_output_format(Options.output_format_none);
+	}
+
+	/**
+	 * Resolves the given class as an application class, loads the classes the
+	 * scene needs and makes it the main class.
+	 */
+	public static SootClass loadMainClass(String mainClass) {
+		SootClass c = Scene.v().forceResolve(mainClass, SootClass.BODIES);
+		c.setApplicationClass();
+		Scene.v().loadNecessaryClasses();
+		Scene.v().setMainClass(c);
+		return c;
+	}
+}
@@ -0,0 +1,88 @@
+package soot;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that a timer may run on several threads at once, but is started
+ * only once per thread, and that the phase metrics count allocations.
+ */
+public class TimerTest {
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void startedTwiceOnOneThread() {
+		Timer t = new Timer("twice");
+		t.start();
+		try {
+			t.start();
+			Assert.fail("Started a running timer");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("already been started"));
+		}
+		t.end();
+		try {
+			t.end();
+			Assert.fail("Ended a stopped timer");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("has not been started"));
+		}
+	}
+
+	@Test
+	public void startedOnSeveralThreads() throws Exception {
+		final Timer t = new Timer("shared");
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch ended = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread other = new Thread() {
+			public void run() {
+				try {
+					t.start();
+					started.countDown();
+					ended.await();
+					t.end();
+				} catch (Throwable e) {
+					failure.set(e);
+					started.countDown();
+				}
+			}
+		};
+		other.start();
+		started.await();
+		t.start();
+		// The other thread cannot end the start of this one
+		t.end();
+		ended.countDown();
+		other.join();
+		Assert.assertNull(failure.get());
+		try {
+			t.end();
+			Assert.fail("Ended a stopped timer");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("has not been started"));
+		}
+	}
+
+	@Test
+	public void phaseMetricsCountAllocations() {
+		PhaseMetrics metrics = PhaseMetrics.v();
+		metrics.setEnabled(true);
+		PhaseMetrics.Sample s = metrics.begin();
+		Object[] allocated = new Object[100000];
+		metrics.end(s, "test.phase", null);
+		Assert.assertEquals(100000, allocated.length);
+		PhaseMetrics.Statistics stats = metrics.getPhaseStatistics("test.phase");
+		Assert.assertEquals(1, stats.getCount());
+		// A JVM without allocation counters reports 0 bytes
+		Assert.assertTrue(stats.getAllocatedBytes() == 0 || stats.getAllocatedBytes() >= 400000);
+	}
+}
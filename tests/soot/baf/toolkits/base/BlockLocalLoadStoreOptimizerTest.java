@@ -0,0 +1,280 @@
+package soot.baf.toolkits.base;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Main;
+import soot.Modifier;
+import soot.RefType;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.baf.Baf;
+import soot.baf.BafBody;
+import soot.jimple.IntConstant;
+import soot.options.Options;
+
+/**
+ * Runs the block-local mode of the load/store optimizer on small Baf bodies,
+ * and on whole classes that are then loaded and run.
+ */
+public class BlockLocalLoadStoreOptimizerTest {
+
+	private static final IntType INT = IntType.v();
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void storeLoadPair() {
+		BafBody body = newBody();
+		Local x = local(body, "x");
+		add(body, push(1), store(x), load(x), ret());
+		optimize(body);
+		Assert.assertEquals(describe(push(1), ret()), describe(body));
+	}
+
+	@Test
+	public void trioConsumingTheFirstLoad() {
+		BafBody body = newBody();
+		Local x = local(body, "x");
+		add(body, push(1), store(x), load(x), load(x), Baf.v().newAddInst(INT), ret());
+		optimize(body);
+		Assert.assertEquals(describe(push(1), Baf.v().newDup1Inst(INT), Baf.v().newAddInst(INT), ret()),
+				describe(body));
+	}
+
+	@Test
+	public void trioKeepingTheFirstLoad() {
+		BafBody body = newBody();
+		Local x = local(body, "x");
+		add(body, push(1), store(x), load(x), push(2), Baf.v().newPopInst(INT), load(x), Baf.v().newAddInst(INT),
+				ret());
+		optimize(body);
+		Assert.assertEquals(describe(push(1), Baf.v().newDup1Inst(INT), push(2), Baf.v().newPopInst(INT),
+				Baf.v().newAddInst(INT), ret()), describe(body));
+	}
+
+	@Test
+	public void trioThatReachesBelowTheFirstLoad() {
+		// The add between the loads consumes a value from below the first
+		// load, so a dup1 would leave the stack in a different order
+		BafBody body = newBody();
+		Local x = local(body, "x");
+		add(body, push(5), push(1), store(x), load(x), Baf.v().newAddInst(INT), push(3), load(x),
+				Baf.v().newAddInst(INT), Baf.v().newAddInst(INT), ret());
+		String before = describe(body);
+		optimize(body);
+		Assert.assertEquals(before, describe(body));
+	}
+
+	@Test
+	public void valueUsedInAnotherBlockIsKept() {
+		BafBody body = newBody();
+		Local x = local(body, "x");
+		Unit target = push(0);
+		add(body, push(1), store(x), load(x), Baf.v().newIfEqInst(target), load(x), ret(), target, ret());
+		String before = describe(body);
+		optimize(body);
+		Assert.assertEquals(before, describe(body));
+	}
+
+	@Test
+	public void redefinedValueIsRemoved() {
+		// x is live at the end of the block, but only with its second value
+		BafBody body = newBody();
+		Local x = local(body, "x");
+		Unit target = push(0);
+		add(body, push(1), store(x), load(x), Baf.v().newPopInst(INT), push(2), store(x), load(x),
+				Baf.v().newIfEqInst(target), load(x), ret(), target, ret());
+		optimize(body);
+		Assert.assertEquals(describe(push(1), Baf.v().newPopInst(INT), push(2), store(x), load(x),
+				Baf.v().newIfEqInst(target), load(x), ret(), push(0), ret()), describe(body));
+	}
+
+	@Test
+	public void pairAcrossTrapBoundaryIsKept() {
+		BafBody body = newBody();
+		Local x = local(body, "x");
+		Local e = local(body, "e");
+		Unit begin = load(x);
+		Unit end = ret();
+		Unit handler = Baf.v().newStoreInst(RefType.v("java.lang.Throwable"), e);
+		add(body, push(1), store(x), begin, end, handler, push(0), ret());
+		body.getTraps().add(Baf.v().newTrap(Scene.v().getSootClass("java.lang.Throwable"), begin, end, handler));
+		String before = describe(body);
+		optimize(body);
+		Assert.assertEquals(before, describe(body));
+	}
+
+	@Test
+	public void valueReadByHandlerIsKept() {
+		BafBody body = newBody();
+		Local x = local(body, "x");
+		Local e = local(body, "e");
+		Unit begin = push(1);
+		Unit end = ret();
+		Unit handler = Baf.v().newStoreInst(RefType.v("java.lang.Throwable"), e);
+		add(body, begin, store(x), load(x), end, handler, load(x), ret());
+		body.getTraps().add(Baf.v().newTrap(Scene.v().getSootClass("java.lang.Throwable"), begin, end, handler));
+		String before = describe(body);
+		optimize(body);
+		Assert.assertEquals(before, describe(body));
+	}
+
+	@Test
+	public void sameResultAsDefaultOptimizer() {
+		for (boolean blockLocal : new boolean[] { false, true }) {
+			BafBody body = newBody();
+			Local x = local(body, "x");
+			Local y = local(body, "y");
+			add(body, push(1), store(x), load(x), load(x), Baf.v().newAddInst(INT), store(y), load(y), ret());
+			Map<String, String> options = new HashMap<String, String>();
+			options.put("enabled", "true");
+			options.put("sl", "true");
+			options.put("sll", "true");
+			options.put("block-local", String.valueOf(blockLocal));
+			LoadStoreOptimizer.v().transform(body, "bb.lso", options);
+			Assert.assertEquals(describe(push(1), Baf.v().newDup1Inst(INT), Baf.v().newAddInst(INT), ret()),
+					describe(body));
+		}
+	}
+
+	@Test
+	public void optimizedClassesRunTheSame() throws Exception {
+		String[] classes = { "soot.asm.backend.targets.ArithmeticLib", "soot.asm.backend.targets.ControlStructures",
+				"soot.asm.backend.targets.Dups", "soot.asm.backend.targets.TryCatch" };
+		File out = Files.createTempDirectory("lso").toFile();
+		List<String> args = new ArrayList<String>();
+		Collections.addAll(args, "-cp", SceneSetup.classPath().getCanonicalPath(), "-pp", "-allow-phantom-refs",
+				"-asm-backend", "-f", "class", "-d", out.getPath(), "-p", "bb.lso", "block-local:true");
+		Collections.addAll(args, classes);
+		G.reset();
+		Main.v().run(args.toArray(new String[args.size()]));
+
+		URLClassLoader original = new URLClassLoader(new URL[] { SceneSetup.classPath().toURI().toURL() }, null);
+		URLClassLoader optimized = new URLClassLoader(new URL[] { out.toURI().toURL() }, null);
+		for (String c : classes)
+			Assert.assertEquals(c, runAll(original.loadClass(c)), runAll(optimized.loadClass(c)));
+	}
+
+	/** Calls every public method with a few arguments and records the results. */
+	private static List<String> runAll(Class<?> c) throws Exception {
+		List<String> ret = new ArrayList<String>();
+		List<Method> methods = new ArrayList<Method>();
+		for (Method m : c.getDeclaredMethods())
+			methods.add(m);
+		Collections.sort(methods, new java.util.Comparator<Method>() {
+			public int compare(Method a, Method b) {
+				return a.toString().compareTo(b.toString());
+			}
+		});
+		Object instance = c.newInstance();
+		for (Method m : methods) {
+			m.setAccessible(true);
+			for (int i : new int[] { 0, 1, 2, 3, 10, 100, 1000, -7 }) {
+				Object[] actuals = new Object[m.getParameterTypes().length];
+				for (int k = 0; k < actuals.length; k++)
+					actuals[k] = argument(m.getParameterTypes()[k], i);
+				String result;
+				try {
+					Object r = m.invoke(instance, actuals);
+					result = r == null || r.getClass() == Object.class ? "object" : r.toString();
+				} catch (InvocationTargetException e) {
+					result = e.getCause().getClass().getName();
+				}
+				ret.add(m.getName() + "(" + i + ") = " + result);
+			}
+		}
+		return ret;
+	}
+
+	private static Object argument(Class<?> type, int i) {
+		if (type == int.class)
+			return i;
+		if (type == long.class)
+			return (long) i;
+		if (type == float.class)
+			return (float) i;
+		if (type == double.class)
+			return (double) i;
+		return i == 0 ? null : new Object();
+	}
+
+	private static BafBody newBody() {
+		G.reset();
+		Options.v().set_soot_classpath(SceneSetup.classPath().getPath());
+		Options.v().set_prepend_classpath(true);
+		Scene.v().loadNecessaryClasses();
+		SootClass c = new SootClass("LsoTest");
+		Scene.v().addClass(c);
+		SootMethod m = new SootMethod("m", Collections.<Type> emptyList(), INT, Modifier.STATIC);
+		c.addMethod(m);
+		BafBody body = Baf.v().newBody(m);
+		m.setActiveBody(body);
+		return body;
+	}
+
+	private static Local local(BafBody body, String name) {
+		Local l = Baf.v().newLocal(name, INT);
+		body.getLocals().add(l);
+		return l;
+	}
+
+	private static void add(BafBody body, Unit... units) {
+		for (Unit u : units)
+			body.getUnits().add(u);
+	}
+
+	private static void optimize(BafBody body) {
+		new BlockLocalLoadStoreOptimizer(body, true, true).optimize();
+	}
+
+	private static Unit push(int i) {
+		return Baf.v().newPushInst(IntConstant.v(i));
+	}
+
+	private static Unit store(Local l) {
+		return Baf.v().newStoreInst(l.getType(), l);
+	}
+
+	private static Unit load(Local l) {
+		return Baf.v().newLoadInst(l.getType(), l);
+	}
+
+	private static Unit ret() {
+		return Baf.v().newReturnInst(INT);
+	}
+
+	private static String describe(BafBody body) {
+		return describe(body.getUnits().toArray(new Unit[body.getUnits().size()]));
+	}
+
+	private static String describe(Unit... units) {
+		StringBuilder sb = new StringBuilder();
+		for (Unit u : units)
+			sb.append(u).append('\n');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,153 @@
+package soot.dava;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Main;
+import soot.Modifier;
+import soot.PatchingChain;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.VoidType;
+import soot.grimp.Grimp;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.Stmt;
+
+/**
+ * Decompiles classes with and without a tight budget, and checks that Dava
+ * still produces their source files.
+ */
+public class DavaBudgetTest {
+
+	private static final String[] TARGET_CLASSES = { "soot.asm.backend.targets.ControlStructures",
+			"soot.asm.backend.targets.TryCatch" };
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void defaultBudget() throws IOException {
+		String log = decompile();
+		for (String c : TARGET_CLASSES) {
+			Assert.assertTrue(log, log.contains("Decompiling " + c));
+			Assert.assertFalse(log, log.contains("Transforming " + c));
+		}
+		Assert.assertTrue(source(TARGET_CLASSES[0]).contains("switch"));
+		Assert.assertTrue(source(TARGET_CLASSES[1]).contains("catch"));
+	}
+
+	@Test
+	public void tightBudget() throws IOException {
+		decompile("-p", "db", "max-iterations:1");
+		Assert.assertTrue(source(TARGET_CLASSES[0]).contains("class ControlStructures"));
+		Assert.assertTrue(source(TARGET_CLASSES[1]).contains("class TryCatch"));
+	}
+
+	@Test
+	public void shortTimeout() throws IOException {
+		decompile("-p", "db", "method-timeout:1");
+		Assert.assertTrue(source(TARGET_CLASSES[0]).contains("class ControlStructures"));
+		Assert.assertTrue(source(TARGET_CLASSES[1]).contains("class TryCatch"));
+	}
+
+	@Test
+	public void irreducibleLoops() throws IOException {
+		DavaBody body = decompileLoops(4, "max-iterations:0");
+		Assert.assertTrue(body.getDiagnostics().isEmpty());
+		Assert.assertFalse(body.getUnits().getFirst().toString().contains("could not decompile"));
+	}
+
+	@Test
+	public void irreducibleLoopsTightBudget() throws IOException {
+		// every loop with two entries restarts the structuring
+		DavaBody body = decompileLoops(4, "max-iterations:1");
+		Assert.assertEquals(body.getDiagnostics().toString(), 2, body.getDiagnostics().size());
+		Unit ast = body.getUnits().getFirst();
+		Assert.assertTrue(ast.toString(), ast.toString().contains("could not decompile <Loops: void loops(int,int)>"));
+	}
+
+	private File outputDir;
+
+	/**
+	 * Builds a method with the given number of loops that have two entries
+	 * each, and decompiles it with the given db option.
+	 */
+	private DavaBody decompileLoops(int loops, String option) throws IOException {
+		SceneSetup.resetWholeProgram();
+		PhaseOptions.v().setPhaseOption("db", option);
+		Scene.v().loadNecessaryClasses();
+
+		SootClass c = new SootClass("Loops", Modifier.PUBLIC);
+		c.setSuperclass(Scene.v().getSootClass("java.lang.Object"));
+		Scene.v().addClass(c);
+		SootMethod m = new SootMethod("loops", Arrays.<Type> asList(IntType.v(), IntType.v()), VoidType.v(),
+				Modifier.PUBLIC | Modifier.STATIC);
+		c.addMethod(m);
+
+		JimpleBody body = Jimple.v().newBody(m);
+		PatchingChain<Unit> units = body.getUnits();
+		Local a = Jimple.v().newLocal("a", IntType.v());
+		Local b = Jimple.v().newLocal("b", IntType.v());
+		body.getLocals().add(a);
+		body.getLocals().add(b);
+		units.add(Jimple.v().newIdentityStmt(a, Jimple.v().newParameterRef(IntType.v(), 0)));
+		units.add(Jimple.v().newIdentityStmt(b, Jimple.v().newParameterRef(IntType.v(), 1)));
+		for (int i = 0; i < loops; i++) {
+			// the test falls through to the first step and jumps to the second
+			Stmt first = Jimple.v().newAssignStmt(b, Jimple.v().newAddExpr(b, IntConstant.v(1)));
+			Stmt second = Jimple.v().newAssignStmt(b, Jimple.v().newAddExpr(b, IntConstant.v(2)));
+			units.add(Jimple.v().newIfStmt(Jimple.v().newEqExpr(a, IntConstant.v(i)), second));
+			units.add(first);
+			units.add(second);
+			units.add(Jimple.v().newIfStmt(Jimple.v().newLtExpr(b, IntConstant.v(10 * (i + 1))), first));
+		}
+		units.add(Jimple.v().newReturnVoidStmt());
+		m.setActiveBody(body);
+		return Dava.v().newBody(Grimp.v().newBody(body, "gb"));
+	}
+
+	/** Decompiles the target classes and returns what Soot printed. */
+	private String decompile(String... options) throws IOException {
+		G.reset();
+		File f = SceneSetup.classPath();
+		outputDir = Files.createTempDirectory("dava").toFile();
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		G.v().out = new PrintStream(log);
+
+		String[] args = { "-cp", f.getCanonicalPath(), "-pp", "-allow-phantom-refs", "-f", "dava", "-d",
+				outputDir.getPath() };
+		String[] all = new String[args.length + options.length + TARGET_CLASSES.length];
+		System.arraycopy(args, 0, all, 0, args.length);
+		System.arraycopy(options, 0, all, args.length, options.length);
+		System.arraycopy(TARGET_CLASSES, 0, all, args.length + options.length, TARGET_CLASSES.length);
+		Main.v().run(all);
+		G.v().out.flush();
+		return log.toString();
+	}
+
+	private String source(String className) throws IOException {
+		File java = new File(outputDir, "dava/src/" + className.replace('.', '/') + ".java");
+		Assert.assertTrue(java.getPath(), java.exists());
+		return new String(Files.readAllBytes(java.toPath()), "UTF-8");
+	}
+}
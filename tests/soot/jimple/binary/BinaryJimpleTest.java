@@ -0,0 +1,192 @@
+package soot.jimple.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.Main;
+import soot.Printer;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+import soot.toolkits.scalar.ConstantValueToInitializerTransformer;
+
+/**
+ * Writes the backend fixtures as binary Jimple and as textual Jimple, and
+ * checks that reading the binary files back gives the textual ones.
+ */
+public class BinaryJimpleTest {
+
+	private static File jimpleDir, binaryDir;
+	private static List<String> classes;
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		Map<String, String> read = read(1);
+		Assert.assertEquals(classes.size(), read.size());
+		for (String name : classes) {
+			File file = new File(jimpleDir, name + ".jimple");
+			Assert.assertEquals(name, new String(Files.readAllBytes(file.toPath()), "UTF-8"), read.get(name));
+		}
+	}
+
+	@Test
+	public void bodiesReadConcurrently() throws Exception {
+		Assert.assertEquals(read(1), read(4));
+	}
+
+	@Test
+	public void newerVersionIsRejected() throws IOException {
+		assertRejected(withVersion(BinaryJimpleFormat.VERSION + 1), "version");
+	}
+
+	@Test
+	public void versionZeroIsRejected() throws IOException {
+		assertRejected(withVersion(0), "version");
+	}
+
+	@Test
+	public void otherFilesAreRejected() throws IOException {
+		byte[] data = binaryFile();
+		data[0] = 'X';
+		assertRejected(data, "Not a binary Jimple file");
+	}
+
+	private static void assertRejected(byte[] data, String message) throws IOException {
+		try {
+			new BinaryJimpleReader(new ByteArrayInputStream(data));
+			Assert.fail("Read a file with a wrong header");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	/** Returns a written file, with the given version after the magic number. */
+	private static byte[] withVersion(int version) throws IOException {
+		byte[] data = binaryFile();
+		// The current version fits in the single byte of its varint
+		Assert.assertEquals(BinaryJimpleFormat.VERSION, data[4]);
+		data[4] = (byte) version;
+		return data;
+	}
+
+	private static byte[] binaryFile() throws IOException {
+		writeFixtures();
+		byte[] data = Files.readAllBytes(new File(binaryDir, classes.get(0) + ".bjimple").toPath());
+		// The file as it was written is accepted
+		new BinaryJimpleReader(new ByteArrayInputStream(data));
+		return data;
+	}
+
+	/**
+	 * Reads the fixtures from their binary files, decoding the bodies with
+	 * the given number of threads, and prints the classes. The jb pack is
+	 * disabled, since it renames the locals.
+	 */
+	private static Map<String, String> read(int threads) throws Exception {
+		writeFixtures();
+		G.reset();
+		Options.v().set_soot_classpath(binaryDir.getCanonicalPath());
+		Options.v().set_prepend_classpath(true);
+		Options.v().set_src_prec(Options.src_prec_binary_jimple);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_output_format(Options.output_format_none);
+		Options.v().setPhaseOption("jb", "enabled:false");
+		List<SootClass> resolved = new ArrayList<SootClass>();
+		for (String name : classes) {
+			SootClass c = Scene.v().forceResolve(name, SootClass.BODIES);
+			c.setApplicationClass();
+			resolved.add(c);
+		}
+		Scene.v().loadNecessaryClasses();
+
+		List<SootMethod> methods = new ArrayList<SootMethod>();
+		for (SootClass c : resolved) {
+			for (SootMethod m : c.getMethods())
+				if (m.isConcrete())
+					methods.add(m);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final SootMethod m : methods) {
+				futures.add(executor.submit(new Runnable() {
+					public void run() {
+						m.retrieveActiveBody();
+					}
+				}));
+			}
+			for (Future<?> f : futures)
+				f.get();
+		} finally {
+			executor.shutdown();
+		}
+
+		Map<String, String> ret = new TreeMap<String, String>();
+		for (SootClass c : resolved) {
+			// Binary Jimple keeps the constant value tags, which are turned
+			// into static initializers only for textual Jimple
+			ConstantValueToInitializerTransformer.v().transformClass(c);
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			Printer.v().printTo(c, pw);
+			pw.flush();
+			ret.put(c.getName(), sw.toString());
+		}
+		return ret;
+	}
+
+	/** Writes the backend fixtures in both formats, once for all the tests. */
+	private static void writeFixtures() throws IOException {
+		if (classes != null)
+			return;
+		File f = new File("./target/test-classes");
+		if (!f.exists() || f.list().length == 0)
+			f = new File("./testclasses");
+		File dir = new File(f, "soot/asm/backend/targets");
+		List<String> names = new ArrayList<String>();
+		for (String name : dir.list()) {
+			if (name.endsWith(".class"))
+				names.add("soot.asm.backend.targets." + name.substring(0, name.length() - 6));
+		}
+		Collections.sort(names);
+
+		jimpleDir = write(f, names, "J");
+		binaryDir = write(f, names, "binary-jimple");
+		classes = names;
+	}
+
+	private static File write(File classPath, List<String> names, String format) throws IOException {
+		File out = Files.createTempDirectory("jimple").toFile();
+		List<String> args = new ArrayList<String>();
+		Collections.addAll(args, "-cp", classPath.getCanonicalPath(), "-pp", "-allow-phantom-refs", "-f", format,
+				"-d", out.getPath());
+		args.addAll(names);
+		G.reset();
+		Main.v().run(args.toArray(new String[args.size()]));
+		G.reset();
+		return out;
+	}
+}
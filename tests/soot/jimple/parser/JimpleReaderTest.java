@@ -0,0 +1,177 @@
+package soot.jimple.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.Local;
+import soot.Main;
+import soot.Printer;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Trap;
+import soot.Unit;
+import soot.options.Options;
+
+/**
+ * Writes the backend fixtures as Jimple, reads them back with the
+ * hand-written reader and with the SableCC parser, and compares the bodies
+ * and the printed classes.
+ */
+public class JimpleReaderTest {
+
+	private static File jimpleDir;
+	private static List<String> classes;
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void sameBodiesAsSableCC() throws Exception {
+		read(false, 1);
+		Map<String, List<String>> sableCC = describeBodies();
+		Assert.assertTrue(sableCC.size() > classes.size());
+		read(true, 1);
+		Assert.assertEquals(sableCC, describeBodies());
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		Map<String, String> fast = read(true, 1);
+		for (String name : classes) {
+			File file = new File(jimpleDir, name + ".jimple");
+			Assert.assertEquals(name, new String(Files.readAllBytes(file.toPath()), "UTF-8"), fast.get(name));
+		}
+	}
+
+	@Test
+	public void bodiesReadConcurrently() throws Exception {
+		Assert.assertEquals(read(true, 1), read(true, 4));
+	}
+
+	/**
+	 * Reads the fixtures from their Jimple files, retrieving the bodies with
+	 * the given number of threads, and prints the classes. The jb pack is
+	 * disabled, since it renames the locals depending on their order.
+	 */
+	private static Map<String, String> read(boolean fastReader, int threads) throws Exception {
+		writeJimple();
+		G.reset();
+		Options.v().set_soot_classpath(jimpleDir.getCanonicalPath());
+		Options.v().set_prepend_classpath(true);
+		Options.v().set_src_prec(Options.src_prec_jimple);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_output_format(Options.output_format_none);
+		Options.v().set_fast_jimple_reader(fastReader);
+		Options.v().setPhaseOption("jb", "enabled:false");
+		List<SootClass> resolved = new ArrayList<SootClass>();
+		for (String name : classes)
+			resolved.add(Scene.v().forceResolve(name, SootClass.BODIES));
+		Scene.v().loadNecessaryClasses();
+
+		List<SootMethod> methods = new ArrayList<SootMethod>();
+		for (SootClass c : resolved) {
+			for (SootMethod m : c.getMethods())
+				if (m.isConcrete())
+					methods.add(m);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final SootMethod m : methods) {
+				futures.add(executor.submit(new Runnable() {
+					public void run() {
+						m.retrieveActiveBody();
+					}
+				}));
+			}
+			for (Future<?> f : futures)
+				f.get();
+		} finally {
+			executor.shutdown();
+		}
+
+		Map<String, String> ret = new TreeMap<String, String>();
+		for (SootClass c : resolved) {
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			Printer.v().printTo(c, pw);
+			pw.flush();
+			ret.put(c.getName(), sw.toString());
+		}
+		return ret;
+	}
+
+	/**
+	 * Describes the bodies of the fixtures in the Scene independently of the
+	 * order of their locals, which the SableCC parser declares differently.
+	 */
+	private static Map<String, List<String>> describeBodies() {
+		Map<String, List<String>> ret = new TreeMap<String, List<String>>();
+		for (String name : classes) {
+			for (SootMethod m : Scene.v().getSootClass(name).getMethods()) {
+				if (!m.hasActiveBody())
+					continue;
+				Body b = m.getActiveBody();
+				List<String> locals = new ArrayList<String>();
+				for (Local l : b.getLocals())
+					locals.add(l.getType() + " " + l);
+				Collections.sort(locals);
+				List<String> desc = new ArrayList<String>(locals);
+				for (Unit u : b.getUnits())
+					desc.add(u.toString());
+				for (Trap t : b.getTraps())
+					desc.add(t.getException() + " " + t.getBeginUnit() + " " + t.getEndUnit() + " "
+							+ t.getHandlerUnit());
+				ret.put(m.getSignature(), desc);
+			}
+		}
+		return ret;
+	}
+
+	/** Writes the backend fixtures as Jimple, once for all the tests. */
+	private static void writeJimple() throws IOException {
+		if (jimpleDir != null)
+			return;
+		File f = new File("./target/test-classes");
+		if (!f.exists() || f.list().length == 0)
+			f = new File("./testclasses");
+		File dir = new File(f, "soot/asm/backend/targets");
+		List<String> names = new ArrayList<String>();
+		for (String name : dir.list()) {
+			if (name.endsWith(".class"))
+				names.add("soot.asm.backend.targets." + name.substring(0, name.length() - 6));
+		}
+		Collections.sort(names);
+
+		File out = Files.createTempDirectory("jimple").toFile();
+		List<String> args = new ArrayList<String>();
+		Collections.addAll(args, "-cp", f.getCanonicalPath(), "-pp", "-allow-phantom-refs", "-f", "J", "-d",
+				out.getPath());
+		args.addAll(names);
+		G.reset();
+		Main.v().run(args.toArray(new String[args.size()]));
+		G.reset();
+		jimpleDir = out;
+		classes = names;
+	}
+}
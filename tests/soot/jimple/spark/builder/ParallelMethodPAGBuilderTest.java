@@ -0,0 +1,86 @@
+package soot.jimple.spark.builder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.PointsToSet;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.Options;
+
+/**
+ * Builds the PAG of a program with one and with several threads, and compares
+ * the points-to sets.
+ */
+public class ParallelMethodPAGBuilderTest {
+
+	private static final String TARGET_CLASS = "soot.jimple.spark.targets.Relay";
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void sameResultsWithThreads() throws IOException {
+		Map<String, List<String>> sequential = run(1);
+		Assert.assertTrue(sequential.get("field sink")
+				.contains("<" + TARGET_CLASS + ": void main(java.lang.String[])> new java.lang.Object"));
+		Assert.assertEquals(sequential, run(4));
+		Assert.assertEquals(sequential, run(4));
+	}
+
+	/** Runs Spark and describes the points-to set of every local. */
+	private static Map<String, List<String>> run(int threads) throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption("cg.spark", "on");
+		Options.v().setPhaseOption("cg.spark", "on-fly-cg:false");
+		Options.v().setPhaseOption("cg.spark", "build-threads:" + threads);
+
+		SootClass c = SceneSetup.loadMainClass(TARGET_CLASS);
+		PackManager.v().getPack("cg").apply();
+
+		PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+		Map<String, List<String>> ret = new TreeMap<String, List<String>>();
+		ret.put("field sink", describe(pag.reachingObjects(c.getFieldByName("sink"))));
+		for (SootMethod m : c.getMethods()) {
+			if (!m.hasActiveBody())
+				continue;
+			for (Local l : m.getActiveBody().getLocals())
+				if (l.getType() instanceof RefLikeType)
+					ret.put(m.getSignature() + " " + l, describe(pag.reachingObjects(l)));
+		}
+		return ret;
+	}
+
+	private static List<String> describe(PointsToSet s) {
+		final List<String> ret = new ArrayList<String>();
+		((PointsToSetInternal) s).forall(new P2SetVisitor() {
+			public void visit(Node n) {
+				AllocNode an = (AllocNode) n;
+				ret.add(an.getMethod() + " " + an.getNewExpr());
+			}
+		});
+		Collections.sort(ret);
+		return ret;
+	}
+}
@@ -0,0 +1,95 @@
+package soot.jimple.spark.geom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.PointsToAnalysis;
+import soot.PointsToSet;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.spark.geom.geomPA.GeomPointsTo;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.Options;
+
+/**
+ * Checks that solving the geometric constraints of independent components in
+ * parallel gives the points-to sets of the sequential solver.
+ */
+public class GeomParallelSolverTest {
+
+	private static final String TARGET_CLASS = "soot.jimple.spark.targets.Shapes";
+
+	@Test
+	public void sameResultsWithThreads() throws IOException {
+		for (String encoding : new String[] { "heapins", "ptins", "geom" }) {
+			Map<String, List<String>> sequential = run(encoding, 1);
+			Assert.assertFalse(sequential.isEmpty());
+			Assert.assertTrue(sequential.values().contains(Collections.singletonList(
+					"<" + TARGET_CLASS + ": void main(java.lang.String[])> new " + TARGET_CLASS + "$Box")));
+			Assert.assertEquals(encoding, sequential, run(encoding, 4));
+		}
+	}
+
+	@Test
+	public void sequentialResultsRepeat() throws IOException {
+		Assert.assertEquals(run("geom", 1), run("geom", 1));
+	}
+
+	/** Runs the geometric analysis and describes the points-to set of every local. */
+	private Map<String, List<String>> run(String encoding, int threads) throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption("cg.spark", "on");
+		Options.v().setPhaseOption("cg.spark", "geom-pta:true");
+		Options.v().setPhaseOption("cg.spark", "geom-encoding:" + encoding);
+		Options.v().setPhaseOption("cg.spark", "geom-threads:" + threads);
+
+		SceneSetup.loadMainClass(TARGET_CLASS);
+		PackManager.v().getPack("cg").apply();
+
+		PointsToAnalysis pta = Scene.v().getPointsToAnalysis();
+		Assert.assertTrue(pta instanceof GeomPointsTo);
+		Map<String, List<String>> ret = new TreeMap<String, List<String>>();
+		for (SootClass cl : Scene.v().getApplicationClasses()) {
+			for (SootMethod m : cl.getMethods()) {
+				if (!m.hasActiveBody())
+					continue;
+				for (Local l : m.getActiveBody().getLocals()) {
+					if (l.getType() instanceof RefLikeType)
+						ret.put(m.getSignature() + " " + l, describe(pta.reachingObjects(l)));
+				}
+			}
+		}
+		G.reset();
+		return ret;
+	}
+
+	private static List<String> describe(PointsToSet s) {
+		final List<String> ret = new ArrayList<String>();
+		if (s instanceof PointsToSetInternal) {
+			((PointsToSetInternal) s).forall(new P2SetVisitor() {
+				public void visit(Node n) {
+					AllocNode an = (AllocNode) n;
+					ret.add(an.getMethod() + " " + an.getNewExpr());
+				}
+			});
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+}
@@ -0,0 +1,234 @@
+package soot.jimple.spark.ondemand;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.PointsToSet;
+import soot.RefLikeType;
+import soot.RefType;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Jimple;
+import soot.jimple.spark.ondemand.pautil.ContextSensitiveInfo;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.Options;
+
+/**
+ * Writes the results of demand-driven queries to a journal and reads them back
+ * in a fresh cache.
+ */
+public class DemandQueryCacheTest {
+
+	private static final String TARGET_CLASS = "soot.jimple.spark.targets.Shapes";
+
+	private static PAG pag;
+	private static List<Local> locals;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption("cg.spark", "on");
+
+		SootClass c = SceneSetup.loadMainClass(TARGET_CLASS);
+		PackManager.v().getPack("cg").apply();
+		pag = (PAG) Scene.v().getPointsToAnalysis();
+
+		locals = new ArrayList<Local>();
+		for (SootMethod m : c.getMethods()) {
+			if (!m.hasActiveBody())
+				continue;
+			for (Local l : m.getActiveBody().getLocals())
+				if (l.getType() instanceof RefLikeType && pag.findLocalVarNode(l) != null)
+					locals.add(l);
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void journalRoundTrip() throws IOException {
+		File journal = File.createTempFile("demand", ".journal");
+		try {
+			DemandQueryCache writer = new DemandQueryCache(pag);
+			writer.useJournal(journal);
+			for (Local l : locals)
+				writer.put(l, true, HeuristicType.INCR, wrap(pag.reachingObjects(l)));
+			writer.close();
+
+			DemandQueryCache reader = new DemandQueryCache(pag);
+			reader.useJournal(journal);
+			for (Local l : locals) {
+				PointsToSet read = reader.get(l, true, HeuristicType.INCR);
+				Assert.assertNotNull(l.toString(), read);
+				Assert.assertEquals(l.toString(), allocs(pag.reachingObjects(l)), allocs(read));
+				// results with other settings are kept apart
+				Assert.assertNull(reader.get(l, false, HeuristicType.INCR));
+			}
+			Assert.assertEquals(locals.size(), reader.getJournalHitCount());
+			reader.close();
+		} finally {
+			journal.delete();
+		}
+	}
+
+	@Test
+	public void changedMethodsAreNotReused() throws IOException {
+		File journal = File.createTempFile("demand", ".journal");
+		SootMethod make = Scene.v().getSootClass(TARGET_CLASS).getMethodByName("make");
+		Unit nop = Jimple.v().newNopStmt();
+		try {
+			DemandQueryCache writer = new DemandQueryCache(pag);
+			writer.useJournal(journal);
+			for (Local l : locals)
+				writer.put(l, true, HeuristicType.INCR, wrap(pag.reachingObjects(l)));
+			writer.close();
+
+			make.getActiveBody().getUnits().addFirst(nop);
+			DemandQueryCache reader = new DemandQueryCache(pag);
+			reader.useJournal(journal);
+			int reused = 0;
+			for (Local l : locals) {
+				PointsToSet read = reader.get(l, true, HeuristicType.INCR);
+				boolean fromMake = false;
+				for (AllocNode an : allocs(pag.reachingObjects(l)))
+					fromMake |= an.getMethod() == make;
+				if (fromMake || make.getActiveBody().getLocals().contains(l))
+					Assert.assertNull(l.toString(), read);
+				else if (read != null)
+					reused++;
+			}
+			Assert.assertTrue(reused > 0);
+			reader.close();
+		} finally {
+			make.getActiveBody().getUnits().remove(nop);
+			journal.delete();
+		}
+	}
+
+	@Test
+	public void newAllocationSitesKeepJournal() throws IOException {
+		File journal = File.createTempFile("demand", ".journal");
+		try {
+			DemandQueryCache writer = new DemandQueryCache(pag);
+			writer.useJournal(journal);
+			for (Local l : locals)
+				writer.put(l, true, HeuristicType.INCR, wrap(pag.reachingObjects(l)));
+			writer.close();
+
+			pag.makeAllocNode("DemandQueryCacheTest", RefType.v("java.lang.Object"), null);
+			DemandQueryCache reader = new DemandQueryCache(pag);
+			reader.useJournal(journal);
+			for (Local l : locals) {
+				PointsToSet read = reader.get(l, true, HeuristicType.INCR);
+				Assert.assertNotNull(l.toString(), read);
+				Assert.assertEquals(l.toString(), allocs(pag.reachingObjects(l)), allocs(read));
+			}
+			reader.close();
+		} finally {
+			journal.delete();
+		}
+	}
+
+	@Test
+	public void replacedBodiesAreNotReused() throws IOException {
+		File journal = File.createTempFile("demand", ".journal");
+		SootMethod make = Scene.v().getSootClass(TARGET_CLASS).getMethodByName("make");
+		Body original = make.getActiveBody();
+		List<Local> makeLocals = new ArrayList<Local>();
+		for (Local l : locals)
+			if (original.getLocals().contains(l))
+				makeLocals.add(l);
+		Assert.assertTrue(makeLocals.size() > 1);
+		try {
+			DemandQueryCache writer = new DemandQueryCache(pag);
+			writer.useJournal(journal);
+			for (Local l : makeLocals)
+				writer.put(l, true, HeuristicType.INCR, wrap(pag.reachingObjects(l)));
+			writer.close();
+
+			DemandQueryCache reader = new DemandQueryCache(pag);
+			reader.useJournal(journal);
+			Assert.assertNotNull(reader.get(makeLocals.get(0), true, HeuristicType.INCR));
+
+			Body changed = (Body) original.clone();
+			changed.getUnits().addFirst(Jimple.v().newNopStmt());
+			make.setActiveBody(changed);
+			for (Local l : makeLocals.subList(1, makeLocals.size()))
+				Assert.assertNull(l.toString(), reader.get(l, true, HeuristicType.INCR));
+			reader.close();
+		} finally {
+			make.setActiveBody(original);
+			journal.delete();
+		}
+	}
+
+	@Test
+	public void demandQueriesUseJournal() throws IOException {
+		File journal = File.createTempFile("demand", ".journal");
+		try {
+			DemandQueryCache first = new DemandQueryCache(pag);
+			first.useJournal(journal);
+			DemandCSPointsTo dcs = new DemandCSPointsTo(new ContextSensitiveInfo(pag), pag,
+					DemandCSPointsTo.DEFAULT_MAX_TRAVERSAL, DemandCSPointsTo.DEFAULT_MAX_PASSES, false, first);
+			List<Set<AllocNode>> expected = new ArrayList<Set<AllocNode>>();
+			for (Local l : locals)
+				expected.add(allocs(dcs.reachingObjects(l)));
+			first.close();
+
+			DemandQueryCache second = new DemandQueryCache(pag);
+			second.useJournal(journal);
+			dcs = new DemandCSPointsTo(new ContextSensitiveInfo(pag), pag, DemandCSPointsTo.DEFAULT_MAX_TRAVERSAL,
+					DemandCSPointsTo.DEFAULT_MAX_PASSES, false, second);
+			for (int i = 0; i < locals.size(); i++)
+				Assert.assertEquals(expected.get(i), allocs(dcs.reachingObjects(locals.get(i))));
+			Assert.assertTrue(second.getJournalHitCount() > 0);
+			second.close();
+		} finally {
+			journal.delete();
+		}
+	}
+
+	private static PointsToSet wrap(PointsToSet s) {
+		return s instanceof PointsToSetInternal ? new WrappedPointsToSet((PointsToSetInternal) s) : s;
+	}
+
+	private static Set<AllocNode> allocs(PointsToSet s) {
+		final Set<AllocNode> ret = new HashSet<AllocNode>();
+		if (s instanceof WrappedPointsToSet)
+			s = ((WrappedPointsToSet) s).getWrapped();
+		if (s instanceof AllocAndContextSet) {
+			for (AllocAndContext ac : (AllocAndContextSet) s)
+				ret.add(ac.alloc);
+		} else if (s instanceof PointsToSetInternal) {
+			((PointsToSetInternal) s).forall(new P2SetVisitor() {
+				public void visit(Node n) {
+					ret.add((AllocNode) n);
+				}
+			});
+		}
+		return ret;
+	}
+}
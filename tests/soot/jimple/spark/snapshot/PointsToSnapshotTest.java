@@ -0,0 +1,186 @@
+package soot.jimple.spark.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.PointsToSet;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.ClassConstantNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.StringConstantNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+
+/**
+ * Writes a points-to snapshot of a Spark run, loads it again and compares its
+ * answers with the ones of the live PAG.
+ */
+public class PointsToSnapshotTest {
+
+	private static final String TARGET_CLASS = "soot.jimple.spark.targets.Shapes";
+
+	private static PAG pag;
+	private static File file;
+	private static SnapshotPointsToAnalysis snapshot;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption("cg.spark", "on");
+
+		SceneSetup.loadMainClass(TARGET_CLASS);
+		PackManager.v().getPack("cg").apply();
+		pag = (PAG) Scene.v().getPointsToAnalysis();
+
+		file = File.createTempFile("spark", ".snapshot");
+		new PointsToSnapshotWriter(pag, file).dump();
+		snapshot = new SnapshotPointsToAnalysis(file);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		file.delete();
+		G.reset();
+	}
+
+	@Test
+	public void locals() {
+		int compared = 0;
+		for (SootClass c : Scene.v().getApplicationClasses()) {
+			for (SootMethod m : c.getMethods()) {
+				if (!m.hasActiveBody())
+					continue;
+				for (Local l : m.getActiveBody().getLocals()) {
+					if (!(l.getType() instanceof RefLikeType))
+						continue;
+					Assert.assertEquals(m + " " + l, describe(pag.reachingObjects(l)),
+							describe(snapshot.reachingObjects(l)));
+					compared++;
+				}
+			}
+		}
+		Assert.assertTrue(compared > 10);
+	}
+
+	@Test
+	public void fields() {
+		SootClass shapes = Scene.v().getSootClass(TARGET_CLASS);
+		SootField last = shapes.getFieldByName("last");
+		Assert.assertFalse(pag.reachingObjects(last).isEmpty());
+		Assert.assertEquals(describe(pag.reachingObjects(last)), describe(snapshot.reachingObjects(last)));
+
+		SootField content = Scene.v().getSootClass(TARGET_CLASS + "$Box").getFieldByName("content");
+		Local box = local(shapes.getMethodByName("main"), TARGET_CLASS + "$Box");
+		PointsToSet live = pag.reachingObjects(box, content);
+		Assert.assertFalse(live.isEmpty());
+		Assert.assertEquals(describe(live), describe(snapshot.reachingObjects(box, content)));
+
+		Local all = local(shapes.getMethodByName("main"), TARGET_CLASS + "$Shape[]");
+		Assert.assertEquals(describe(pag.reachingObjectsOfArrayElement(pag.reachingObjects(all))),
+				describe(snapshot.reachingObjectsOfArrayElement(snapshot.reachingObjects(all))));
+	}
+
+	@Test
+	public void callGraph() {
+		Assert.assertEquals(edges(Scene.v().getCallGraph()), edges(snapshot.loadCallGraph()));
+	}
+
+	@Test
+	public void concurrentQueries() throws InterruptedException {
+		final SnapshotPointsToAnalysis fresh = new SnapshotPointsToAnalysis(file);
+		final List<Local> locals = new ArrayList<Local>();
+		for (SootMethod m : Scene.v().getSootClass(TARGET_CLASS).getMethods())
+			if (m.hasActiveBody())
+				locals.addAll(m.getActiveBody().getLocals());
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (Local l : locals)
+							Assert.assertEquals(describe(snapshot.reachingObjects(l)), describe(fresh.reachingObjects(l)));
+					} catch (Throwable t) {
+						failures.add(t);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		Assert.assertEquals(Collections.emptyList(), failures);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void rejectsOtherFiles() throws IOException {
+		File other = File.createTempFile("spark", ".snapshot");
+		try {
+			new SnapshotPointsToAnalysis(other);
+		} finally {
+			other.delete();
+		}
+	}
+
+	private static Local local(SootMethod m, String type) {
+		for (Local l : m.getActiveBody().getLocals())
+			if (l.getType().toString().equals(type))
+				return l;
+		throw new AssertionError("No local of type " + type + " in " + m);
+	}
+
+	/** Describes the allocation sites of a set independently of numbering. */
+	private static List<String> describe(PointsToSet s) {
+		final List<String> ret = new ArrayList<String>();
+		if (s instanceof SnapshotPointsToSet) {
+			for (int e : ((SnapshotPointsToSet) s).getElements())
+				ret.add(snapshot.getAllocMethod(e) + " " + snapshot.getAllocDescription(e));
+		} else if (s instanceof PointsToSetInternal) {
+			((PointsToSetInternal) s).forall(new P2SetVisitor() {
+				public void visit(Node n) {
+					AllocNode an = (AllocNode) n;
+					String desc;
+					if (an instanceof StringConstantNode)
+						desc = ((StringConstantNode) an).getString();
+					else if (an instanceof ClassConstantNode)
+						desc = ((ClassConstantNode) an).getClassConstant().getValue();
+					else
+						desc = String.valueOf(an.getNewExpr());
+					ret.add((an.getMethod() == null ? null : an.getMethod().getSignature()) + " " + desc);
+				}
+			});
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	private static Set<String> edges(CallGraph cg) {
+		Set<String> ret = new HashSet<String>();
+		for (Edge e : cg)
+			ret.add(e.src() + " " + e.srcUnit() + " " + e.tgt() + " " + e.kind());
+		return ret;
+	}
+}
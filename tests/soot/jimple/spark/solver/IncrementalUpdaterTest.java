@@ -0,0 +1,235 @@
+package soot.jimple.spark.solver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.FastHierarchy;
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.PointsToSet;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.AssignStmt;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.ClassConstantNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.StringConstantNode;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+
+/**
+ * Edits a program between two runs of Spark with the incremental option, and
+ * compares the updated results with the ones of a run from scratch on the
+ * edited program.
+ */
+public class IncrementalUpdaterTest {
+
+	private static final String TARGET_CLASS = "soot.jimple.spark.targets.Drawing";
+
+	private static final int ADD_CALL = 0;
+	private static final int REMOVE_STORE = 1;
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void addedCall() throws IOException {
+		Result scratch = fromScratch(ADD_CALL);
+		Result updated = incremental(ADD_CALL);
+		Assert.assertTrue(
+				scratch.sets.containsKey("<" + TARGET_CLASS + "$Brush: java.lang.Object use(java.lang.Object)> r0"));
+		Assert.assertEquals(scratch.sets, updated.sets);
+		Assert.assertEquals(scratch.edges, updated.edges);
+	}
+
+	@Test
+	public void removedStore() throws IOException {
+		Result scratch = fromScratch(REMOVE_STORE);
+		Result updated = incremental(REMOVE_STORE);
+		Assert.assertTrue(updated.sets.keySet().containsAll(scratch.sets.keySet()));
+		for (Map.Entry<String, List<String>> e : scratch.sets.entrySet()) {
+			List<String> after = updated.sets.get(e.getKey());
+			// Only the changed method and what it stores to is as precise as
+			// from scratch, since call edges are not retracted
+			if (e.getKey().startsWith("<" + TARGET_CLASS + ": void main") || e.getKey().startsWith("field "))
+				Assert.assertEquals(e.getKey(), e.getValue(), after);
+			else
+				Assert.assertTrue(e.getKey(), after.containsAll(e.getValue()));
+		}
+		Assert.assertTrue(updated.sets.get("field current").isEmpty());
+		Assert.assertTrue(updated.edges.containsAll(scratch.edges));
+	}
+
+	@Test
+	public void unchangedProgram() throws IOException {
+		setUp(true);
+		PackManager.v().getPack("cg").apply();
+		Result first = describe();
+		PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+		PackManager.v().getPack("cg").apply();
+		Assert.assertSame(pag, Scene.v().getPointsToAnalysis());
+		Assert.assertEquals(first.sets, describe().sets);
+		Assert.assertEquals(first.edges, describe().edges);
+	}
+
+	@Test
+	public void removedNodesAreUnregistered() throws IOException {
+		setUp(true);
+		PackManager.v().getPack("cg").apply();
+		PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+		SootMethod main = Scene.v().getSootClass(TARGET_CLASS).getMethodByName("main");
+		Set<Node> old = new HashSet<Node>();
+		for (Local l : main.getActiveBody().getLocals())
+			if (pag.findLocalVarNode(l) != null)
+				old.add(pag.findLocalVarNode(l));
+		Assert.assertFalse(old.isEmpty());
+
+		edit(REMOVE_STORE);
+		PackManager.v().getPack("cg").apply();
+		for (Iterator<VarNode> it = pag.getVarNodeNumberer().iterator(); it.hasNext();)
+			Assert.assertFalse(old.contains(it.next()));
+		for (Local l : main.getActiveBody().getLocals())
+			Assert.assertFalse(old.contains(pag.findLocalVarNode(l)));
+
+		// The numberers no longer count the removed nodes
+		int varNodes = 0;
+		for (Iterator<VarNode> it = pag.getVarNodeNumberer().iterator(); it.hasNext(); it.next())
+			varNodes++;
+		Assert.assertEquals(varNodes, pag.getVarNodeNumberer().size());
+		Assert.assertTrue(varNodes < pag.getVarNodeNumberer().getLastNumber());
+	}
+
+	@Test
+	public void changedSupertypesRefreshHierarchy() throws IOException {
+		setUp(true);
+		PackManager.v().getPack("cg").apply();
+		FastHierarchy before = Scene.v().getOrMakeFastHierarchy();
+		PackManager.v().getPack("cg").apply();
+		Assert.assertSame(before, Scene.v().getFastHierarchy());
+
+		// The number of classes stays the same
+		SootClass brush = Scene.v().getSootClass(TARGET_CLASS + "$Brush");
+		brush.removeInterface(Scene.v().getSootClass(TARGET_CLASS + "$Tool"));
+		PackManager.v().getPack("cg").apply();
+		Assert.assertNotSame(before, Scene.v().getFastHierarchy());
+	}
+
+	private Result fromScratch(int change) throws IOException {
+		setUp(false);
+		edit(change);
+		PackManager.v().getPack("cg").apply();
+		Result ret = describe();
+		G.reset();
+		return ret;
+	}
+
+	private Result incremental(int change) throws IOException {
+		setUp(true);
+		PackManager.v().getPack("cg").apply();
+		edit(change);
+		PackManager.v().getPack("cg").apply();
+		Result ret = describe();
+		G.reset();
+		return ret;
+	}
+
+	private static void setUp(boolean incremental) throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption("cg.spark", "on");
+		Options.v().setPhaseOption("cg.spark", "incremental:" + incremental);
+
+		SceneSetup.loadMainClass(TARGET_CLASS);
+	}
+
+	private static void edit(int change) {
+		SootClass c = Scene.v().getSootClass(TARGET_CLASS);
+		JimpleBody main = (JimpleBody) c.getMethodByName("main").retrieveActiveBody();
+		if (change == ADD_CALL) {
+			SootMethod extra = c.getMethodByName("extra");
+			main.getUnits().insertBefore(Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(extra.makeRef())),
+					main.getFirstNonIdentityStmt());
+		} else {
+			for (Unit u : main.getUnits()) {
+				if (u instanceof AssignStmt && ((AssignStmt) u).getLeftOp() instanceof StaticFieldRef
+						&& ((StaticFieldRef) ((AssignStmt) u).getLeftOp()).getField().getName().equals("current")) {
+					main.getUnits().remove(u);
+					return;
+				}
+			}
+			Assert.fail("No store to current in " + main);
+		}
+	}
+
+	private static class Result {
+		final Map<String, List<String>> sets = new TreeMap<String, List<String>>();
+		final Set<String> edges = new HashSet<String>();
+	}
+
+	/** Describes the points-to sets and the call graph independently of numbering. */
+	private static Result describe() {
+		PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+		Result ret = new Result();
+		for (SootClass c : Scene.v().getClasses()) {
+			if (!c.getName().startsWith(TARGET_CLASS))
+				continue;
+			for (SootField f : c.getFields())
+				if (f.isStatic() && f.getType() instanceof RefLikeType)
+					ret.sets.put("field " + f.getName(), describe(pag.reachingObjects(f)));
+			for (SootMethod m : c.getMethods()) {
+				if (!m.hasActiveBody() || !Scene.v().getReachableMethods().contains(m))
+					continue;
+				for (Local l : m.getActiveBody().getLocals())
+					if (l.getType() instanceof RefLikeType)
+						ret.sets.put(m.getSignature() + " " + l, describe(pag.reachingObjects(l)));
+			}
+		}
+		for (Edge e : Scene.v().getCallGraph())
+			ret.edges.add(e.src() + " " + e.srcUnit() + " " + e.tgt() + " " + e.kind());
+		return ret;
+	}
+
+	private static List<String> describe(PointsToSet s) {
+		final List<String> ret = new ArrayList<String>();
+		((PointsToSetInternal) s).forall(new P2SetVisitor() {
+			public void visit(Node n) {
+				AllocNode an = (AllocNode) n;
+				String desc;
+				if (an instanceof StringConstantNode)
+					desc = ((StringConstantNode) an).getString();
+				else if (an instanceof ClassConstantNode)
+					desc = ((ClassConstantNode) an).getClassConstant().getValue();
+				else
+					desc = String.valueOf(an.getNewExpr());
+				ret.add((an.getMethod() == null ? null : an.getMethod().getSignature()) + " " + desc);
+			}
+		});
+		Collections.sort(ret);
+		return ret;
+	}
+}
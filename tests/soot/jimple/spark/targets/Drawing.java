@@ -0,0 +1,46 @@
+package soot.jimple.spark.targets;
+
+/**
+ * Small whole program that the incremental points-to test edits between two
+ * runs of Spark.
+ */
+public class Drawing {
+
+	interface Tool {
+		Object use(Object o);
+	}
+
+	static class Pen implements Tool {
+		Object ink;
+
+		public Object use(Object o) {
+			ink = o;
+			return this;
+		}
+	}
+
+	static class Brush implements Tool {
+		public Object use(Object o) {
+			return o;
+		}
+	}
+
+	static Tool current;
+	static Object drawn;
+
+	static Tool pick() {
+		return new Pen();
+	}
+
+	/** Only reachable once the test adds a call to it. */
+	static void extra() {
+		current = new Brush();
+	}
+
+	public static void main(String[] args) {
+		current = pick();
+		Object[] sheets = new Object[] { new Object(), args };
+		drawn = current.use(sheets[args.length]);
+		System.out.println(drawn);
+	}
+}
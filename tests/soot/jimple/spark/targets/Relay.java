@@ -0,0 +1,141 @@
+package soot.jimple.spark.targets;
+
+/**
+ * Whole program with enough reachable methods for the PAG to be built by
+ * several threads: an object is passed through a chain of methods, each of
+ * which stores it in a fresh cell.
+ */
+public class Relay {
+
+	static class Cell {
+		Object value;
+	}
+
+	static Object sink;
+
+	static Object s00(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s01(c.value);
+	}
+
+	static Object s01(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s02(c.value);
+	}
+
+	static Object s02(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s03(c.value);
+	}
+
+	static Object s03(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s04(c.value);
+	}
+
+	static Object s04(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s05(c.value);
+	}
+
+	static Object s05(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s06(c.value);
+	}
+
+	static Object s06(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s07(c.value);
+	}
+
+	static Object s07(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s08(c.value);
+	}
+
+	static Object s08(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s09(c.value);
+	}
+
+	static Object s09(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s10(c.value);
+	}
+
+	static Object s10(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s11(c.value);
+	}
+
+	static Object s11(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s12(c.value);
+	}
+
+	static Object s12(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s13(c.value);
+	}
+
+	static Object s13(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s14(c.value);
+	}
+
+	static Object s14(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s15(c.value);
+	}
+
+	static Object s15(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s16(c.value);
+	}
+
+	static Object s16(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s17(c.value);
+	}
+
+	static Object s17(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s18(c.value);
+	}
+
+	static Object s18(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return s19(c.value);
+	}
+
+	static Object s19(Object o) {
+		Cell c = new Cell();
+		c.value = o;
+		return c.value;
+	}
+
+	public static void main(String[] args) {
+		sink = s00(new Object());
+		Object other = s10(args);
+		System.out.println(other);
+	}
+}
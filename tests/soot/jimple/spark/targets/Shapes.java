@@ -0,0 +1,62 @@
+package soot.jimple.spark.targets;
+
+/**
+ * Small whole program for the points-to tests: allocations flowing through
+ * fields, arrays, a static field and virtual calls.
+ */
+public class Shapes {
+
+	interface Shape {
+		Shape copy();
+	}
+
+	static class Circle implements Shape {
+		Object label;
+
+		public Shape copy() {
+			Circle c = new Circle();
+			c.label = label;
+			return c;
+		}
+	}
+
+	static class Square implements Shape {
+		public Shape copy() {
+			return this;
+		}
+	}
+
+	static class Box {
+		Shape content;
+
+		void put(Shape s) {
+			content = s;
+		}
+
+		Shape get() {
+			return content;
+		}
+	}
+
+	static Shape last;
+
+	static Shape make(boolean round) {
+		if (round)
+			return new Circle();
+		return new Square();
+	}
+
+	public static void main(String[] args) {
+		Box b1 = new Box();
+		Box b2 = new Box();
+		Shape c = make(args.length > 0);
+		Circle named = new Circle();
+		named.label = "named";
+		b1.put(named);
+		b2.put(c.copy());
+		Shape[] all = new Shape[] { b1.get(), b2.get() };
+		last = all[args.length];
+		Object o = last.copy();
+		System.out.println(o);
+	}
+}
@@ -0,0 +1,84 @@
+package soot.jimple.toolkit.callgraph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.MethodOrMethodContext;
+import soot.PackManager;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+
+/**
+ * Checks that loading the bodies of newly reachable methods in parallel
+ * batches gives the call graph of loading them one at a time.
+ */
+public class OnFlyCallGraphBuilderTest {
+
+	private static final String[] CLASSES = { "soot.jimple.spark.targets.Relay", "soot.jimple.spark.targets.Drawing" };
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void sameCallGraphAsWithLoadedBodies() throws IOException {
+		for (String name : CLASSES) {
+			for (String phase : new String[] { "cg.cha", "cg.spark" }) {
+				List<String> parallel = callGraph(name, phase, false);
+				List<String> sequential = callGraph(name, phase, true);
+				Assert.assertTrue(name + " " + phase, parallel.size() > 10);
+				Assert.assertEquals(name + " " + phase, sequential, parallel);
+			}
+		}
+	}
+
+	@Test
+	public void sameCallGraphInEveryRun() throws IOException {
+		List<String> first = callGraph(CLASSES[0], "cg.cha", false);
+		for (int i = 0; i < 3; i++)
+			Assert.assertEquals(first, callGraph(CLASSES[0], "cg.cha", false));
+	}
+
+	/**
+	 * Builds the call graph of the fixture and describes its edges and
+	 * reachable methods. They are sorted, since the targets of a virtual call
+	 * come in the order of hash sets of classes. If preload is set, the
+	 * bodies of the fixture are loaded beforehand, one at a time, so the
+	 * builder has nothing to load.
+	 */
+	private static List<String> callGraph(String mainClass, String phase, boolean preload) throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption(phase, "on");
+
+		SceneSetup.loadMainClass(mainClass);
+		if (preload) {
+			for (SootClass sc : new ArrayList<SootClass>(Scene.v().getClasses()))
+				if (sc.getName().startsWith(mainClass))
+					for (SootMethod m : sc.getMethods())
+						if (m.isConcrete())
+							m.retrieveActiveBody();
+		}
+		PackManager.v().getPack("cg").apply();
+
+		List<String> ret = new ArrayList<String>();
+		for (Edge e : Scene.v().getCallGraph())
+			ret.add(e.src() + " " + e.srcStmt() + " " + e.kind() + " " + e.tgt());
+		for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();)
+			ret.add("reachable " + it.next());
+		Collections.sort(ret);
+		return ret;
+	}
+}
@@ -0,0 +1,173 @@
+package soot.jimple.toolkit.callgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.toolkits.reflection.ReflectionTraceInfo;
+import soot.options.Options;
+
+/**
+ * This class contains tests for reading trace files with {@link ReflectionTraceInfo}.
+ */
+public class ReflectionTraceInfoTest {
+
+    private static final String DRAWING = "soot.jimple.spark.targets.Drawing";
+    private static final String EXTRA = "<" + DRAWING + ": void extra()>";
+
+    private SootMethod main;
+    private SootMethod extra;
+
+    @Before
+    public void setUp() throws IOException {
+        G.reset();
+        File f = SceneSetup.classPath();
+        Options.v().set_soot_classpath(f.getCanonicalPath());
+        Options.v().set_prepend_classpath(true);
+        Options.v().set_allow_phantom_refs(true);
+        SootClass c = Scene.v().forceResolve(DRAWING, SootClass.BODIES);
+        Scene.v().loadNecessaryClasses();
+        main = c.getMethodByName("main");
+        extra = c.getMethodByName("extra");
+    }
+
+    @After
+    public void tearDown() {
+        G.reset();
+    }
+
+    /**
+     * Checks that entries are read with and without line numbers, and that blank lines and unknown kinds are skipped.
+     */
+    @Test
+    public void entriesWithAndWithoutLineNumbers() throws IOException {
+        ReflectionTraceInfo info = read(
+                "Class.forName;" + DRAWING + "$Pen;" + DRAWING + ".main;42",
+                "",
+                "Class.newInstance;" + DRAWING + "$Brush;" + DRAWING + ".extra;",
+                "Method.invoke;" + EXTRA + ";" + DRAWING + ".main;;extra fields",
+                "Array.newInstance;java.lang.Object;" + DRAWING + ".main;43");
+        Assert.assertEquals(Collections.singleton(DRAWING + "$Pen"), info.classForNameClassNames(main));
+        Assert.assertEquals(Collections.singleton(DRAWING + "$Brush"), info.classNewInstanceClassNames(extra));
+        Assert.assertEquals(Collections.singleton(EXTRA), info.methodInvokeSignatures(main));
+        Assert.assertEquals(Collections.singleton(extra), info.methodInvokeMethods(main));
+        Assert.assertEquals(Collections.emptySet(), info.classForNameClassNames(extra));
+        Assert.assertEquals(Arrays.asList(main, extra), Arrays.asList(info.methodsContainingReflectiveCalls().toArray()));
+    }
+
+    /**
+     * Checks that a target that appears on several lines is kept as a single string.
+     */
+    @Test
+    public void targetsAreInterned() throws IOException {
+        ReflectionTraceInfo info = read(
+                "Class.forName;" + DRAWING + "$Pen;" + DRAWING + ".main;1",
+                "Class.forName;" + DRAWING + "$Pen;" + DRAWING + ".extra;2",
+                "Class.forName;" + DRAWING + "$Brush;" + DRAWING + ".main;3",
+                "Class.forName;" + DRAWING + "$Pen;" + DRAWING + ".main;4");
+        Iterator<String> fromMain = info.classForNameClassNames(main).iterator();
+        String pen = fromMain.next();
+        Assert.assertEquals(DRAWING + "$Pen", pen);
+        Assert.assertEquals(DRAWING + "$Brush", fromMain.next());
+        Assert.assertFalse(fromMain.hasNext());
+        Assert.assertSame(pen, info.classForNameClassNames(extra).iterator().next());
+    }
+
+    @Test
+    public void malformedLines() throws IOException {
+        assertMalformed("Class.forName");
+        assertMalformed("Class.forName;" + DRAWING + "$Pen");
+        assertMalformed("Class.forName;" + DRAWING + "$Pen;" + DRAWING + ".main");
+        assertMalformed("Class.forName;" + DRAWING + "$Pen;" + DRAWING + ".main;line");
+    }
+
+    /**
+     * Checks that targets are only looked up when queried, so a trace with an unknown target can be read.
+     */
+    @Test
+    public void unknownTargets() throws IOException {
+        ReflectionTraceInfo info = read(
+                "Method.invoke;<" + DRAWING + ": void missing()>;" + DRAWING + ".main;",
+                "Field.get*;<" + DRAWING + ": int missing>;" + DRAWING + ".extra;");
+        try {
+            info.methodInvokeMethods(main);
+            Assert.fail("Resolved an unknown method");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Unknown method"));
+        }
+        try {
+            info.methodInvokeSignatures(main);
+            Assert.fail("Returned an unknown method");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Unknown method"));
+        }
+        try {
+            info.fieldGetSignatures(extra);
+            Assert.fail("Returned an unknown field");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Unknown field"));
+        }
+        try {
+            read("Class.forName;" + DRAWING + "$Pen;" + DRAWING + ".missing;");
+            Assert.fail("Read a trace with an unknown source");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("unknown method with name missing"));
+        }
+    }
+
+    /**
+     * Checks that a resolved target is looked up again once it has been removed from its class.
+     */
+    @Test
+    public void removedTargets() throws IOException {
+        ReflectionTraceInfo info = read("Method.invoke;" + EXTRA + ";" + DRAWING + ".main;");
+        Assert.assertEquals(Collections.singleton(extra), info.methodInvokeMethods(main));
+        SootClass c = extra.getDeclaringClass();
+        c.removeMethod(extra);
+        try {
+            info.methodInvokeMethods(main);
+            Assert.fail("Resolved a removed method");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Unknown method"));
+        }
+        SootMethod replacement = new SootMethod(extra.getName(), extra.getParameterTypes(), extra.getReturnType(),
+                extra.getModifiers());
+        c.addMethod(replacement);
+        Assert.assertEquals(Collections.singleton(replacement), info.methodInvokeMethods(main));
+    }
+
+    private void assertMalformed(String line) throws IOException {
+        try {
+            read(line);
+            Assert.fail("Read a malformed trace: " + line);
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed"));
+        }
+    }
+
+    private static ReflectionTraceInfo read(String... lines) throws IOException {
+        File trace = File.createTempFile("refl", ".log");
+        trace.deleteOnExit();
+        PrintWriter writer = new PrintWriter(trace);
+        try {
+            for (String line : lines)
+                writer.println(line);
+        } finally {
+            writer.close();
+        }
+        return new ReflectionTraceInfo(trace.getPath());
+    }
+}
@@ -0,0 +1,134 @@
+package soot.jimple.toolkit.callgraph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.Main;
+import soot.PackManager;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootMethod;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+
+/**
+ * Checks that the call graphs of RTA and XTA lie between the ones of CHA and
+ * Spark: every call graph has the edges of the more precise ones.
+ */
+public class TypeSetCallGraphBuilderTest {
+
+	private static final String ZOO = "soot.jimple.toolkit.callgraph.targets.Zoo";
+
+	private static final String[] CLASSES = { ZOO, "soot.jimple.spark.targets.Shapes",
+			"soot.jimple.spark.targets.Drawing", "soot.jimple.spark.targets.Relay" };
+
+	private static final String HEAR_DOG = "<" + ZOO + ": java.lang.String hearDog()>";
+	private static final String HEAR = "<" + ZOO + ": java.lang.String hear(" + ZOO + "$Animal)>";
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void eachCallGraphHasTheEdgesOfTheMorePreciseOnes() throws IOException {
+		String[] phases = { "cg.cha", "cg.rta", "cg.xta", "cg.spark" };
+		for (String name : CLASSES) {
+			Set<String> previous = null;
+			for (String phase : phases) {
+				Set<String> edges = edges(name, phase);
+				Assert.assertFalse(name + " " + phase, edges.isEmpty());
+				if (previous != null) {
+					Set<String> missing = new TreeSet<String>(edges);
+					missing.removeAll(previous);
+					Assert.assertEquals(name + " " + phase, new TreeSet<String>(), missing);
+				}
+				previous = edges;
+			}
+		}
+	}
+
+	@Test
+	public void receiversOfTheFixture() throws IOException {
+		Set<String> cha = edges(ZOO, "cg.cha");
+		Set<String> rta = edges(ZOO, "cg.rta");
+		Set<String> xta = edges(ZOO, "cg.xta");
+
+		// Cow is never instantiated
+		String cow = HEAR + " -> <" + ZOO + "$Cow: java.lang.String sound()>";
+		Assert.assertTrue(cha.toString(), cha.contains(cow));
+		Assert.assertFalse(rta.toString(), rta.contains(cow));
+
+		// hearDog only gets a Dog
+		String dog = HEAR_DOG + " -> <" + ZOO + "$Dog: java.lang.String sound()>";
+		String cat = HEAR_DOG + " -> <" + ZOO + "$Cat: java.lang.String sound()>";
+		Assert.assertTrue(rta.toString(), rta.contains(dog));
+		Assert.assertTrue(rta.toString(), rta.contains(cat));
+		Assert.assertTrue(xta.toString(), xta.contains(dog));
+		Assert.assertFalse(xta.toString(), xta.contains(cat));
+
+		// hear gets the Cat of main
+		Assert.assertTrue(xta.toString(), xta.contains(HEAR + " -> <" + ZOO + "$Cat: java.lang.String sound()>"));
+		Assert.assertFalse(xta.toString(), xta.contains(HEAR + " -> <" + ZOO + "$Dog: java.lang.String sound()>"));
+
+		// the thread of the native model may be any instantiated thread
+		String keeper = "<" + ZOO + ": void wake()> -> <" + ZOO + "$Keeper: void run()>";
+		Assert.assertTrue(rta.toString(), rta.contains(keeper));
+		Assert.assertTrue(xta.toString(), xta.contains(keeper));
+	}
+
+	@Test
+	public void phasesRunFromTheCommandLine() throws IOException {
+		for (String phase : new String[] { "cg.rta", "cg.xta" }) {
+			G.reset();
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			G.v().out = new PrintStream(baos);
+			String[] args = { "-cp", SceneSetup.classPath().getCanonicalPath(), "-pp", "-w", "-allow-phantom-refs",
+					"-no-bodies-for-excluded", "-f", "n", "-p", phase, "on", "-p", phase, "verbose:true", ZOO };
+			Main.v().run(args);
+			G.v().out.flush();
+			String output = baos.toString();
+			Assert.assertTrue(phase + "\n" + output, output.contains("Number of call graph edges: "));
+			Assert.assertTrue(phase + "\n" + output, output.contains("Number of instantiated types: "));
+			Assert.assertTrue(phase, describeFixtureEdges().contains(HEAR_DOG + " -> <" + ZOO
+					+ "$Dog: java.lang.String sound()>"));
+		}
+	}
+
+	/** Builds the call graph with the given phase and describes the edges of the fixture. */
+	private static Set<String> edges(String mainClass, String phase) throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption(phase, "on");
+
+		SceneSetup.loadMainClass(mainClass);
+		PackManager.v().getPack("cg").apply();
+		return describeFixtureEdges();
+	}
+
+	/**
+	 * Describes the edges between methods of the fixtures, since the builders
+	 * model the library differently. Spark, for one, dispatches the thread of
+	 * the native model to every library thread class.
+	 */
+	private static Set<String> describeFixtureEdges() {
+		Set<String> ret = new TreeSet<String>();
+		for (Edge e : Scene.v().getCallGraph()) {
+			if (e.src() == null || !isFixture(e.src()) || !isFixture(e.tgt()))
+				continue;
+			ret.add(e.src() + " -> " + e.tgt());
+		}
+		return ret;
+	}
+
+	private static boolean isFixture(SootMethod m) {
+		return m.getDeclaringClass().getName().contains(".targets.");
+	}
+}
@@ -0,0 +1,152 @@
+package soot.jimple.toolkit.callgraph;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.AnySubType;
+import soot.FastHierarchy;
+import soot.G;
+import soot.Modifier;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.VoidType;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.toolkits.callgraph.VirtualCalls;
+import soot.options.Options;
+import soot.util.queue.ChunkedQueue;
+import soot.util.queue.QueueReader;
+
+/**
+ * Checks that the memoized dispatch targets follow methods that are added to
+ * or removed from a class after they were resolved.
+ */
+public class VirtualCallsTest {
+
+	private SootClass base;
+	private SootClass sub;
+
+	@Before
+	public void setUp() {
+		G.reset();
+		File f = SceneSetup.classPath();
+		Options.v().set_soot_classpath(f.getPath());
+		Options.v().set_prepend_classpath(true);
+		Scene.v().loadNecessaryClasses();
+		base = newClass("DispatchBase", Scene.v().getSootClass("java.lang.Object"));
+		sub = newClass("DispatchSub", base);
+	}
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void addedMethodIsFound() {
+		SootMethod missing = newMethod("missing");
+		// No class declares the method yet
+		Assert.assertNull(resolve(sub, missing));
+		base.addMethod(missing);
+		Assert.assertSame(missing, resolve(sub, missing));
+		Assert.assertSame(missing, resolve(base, missing));
+	}
+
+	@Test
+	public void addedOverrideIsFound() {
+		SootMethod inherited = newMethod("foo");
+		base.addMethod(inherited);
+		Assert.assertSame(inherited, resolve(sub, inherited));
+		SootMethod override = newMethod("foo");
+		sub.addMethod(override);
+		Assert.assertSame(override, resolve(sub, inherited));
+		Assert.assertSame(inherited, resolve(base, inherited));
+	}
+
+	@Test
+	public void removedMethodIsForgotten() {
+		SootMethod inherited = newMethod("foo");
+		base.addMethod(inherited);
+		SootMethod override = newMethod("foo");
+		sub.addMethod(override);
+		Assert.assertSame(override, resolve(sub, inherited));
+		sub.removeMethod(override);
+		Assert.assertSame(inherited, resolve(sub, inherited));
+		base.removeMethod(inherited);
+		Assert.assertNull(VirtualCalls.v().resolveNonSpecial(sub.getType(), inherited.getNumberedSubSignature()));
+	}
+
+	@Test
+	public void concreteDispatchFollowsAddedMethods() {
+		FastHierarchy hierarchy = Scene.v().getOrMakeFastHierarchy();
+		SootMethod inherited = newMethod("foo");
+		// The method is not in a class yet, so there is no target
+		Assert.assertNull(hierarchy.resolveConcreteDispatch(sub, inherited));
+		base.addMethod(inherited);
+		Assert.assertSame(inherited, hierarchy.resolveConcreteDispatch(sub, inherited));
+		SootMethod override = newMethod("foo");
+		sub.addMethod(override);
+		Assert.assertSame(hierarchy, Scene.v().getFastHierarchy());
+		Assert.assertSame(override, hierarchy.resolveConcreteDispatch(sub, inherited));
+		sub.removeMethod(override);
+		Assert.assertSame(inherited, hierarchy.resolveConcreteDispatch(sub, inherited));
+	}
+
+	@Test
+	public void callsOnAnySubtypeFollowAddedMethods() {
+		SootMethod inherited = newMethod("foo");
+		base.addMethod(inherited);
+		Assert.assertEquals(Collections.singleton(inherited), anySubTypeTargets(inherited));
+		SootMethod override = newMethod("foo");
+		sub.addMethod(override);
+		Assert.assertEquals(new HashSet<SootMethod>(Arrays.asList(inherited, override)),
+				anySubTypeTargets(inherited));
+		sub.removeMethod(override);
+		Assert.assertEquals(Collections.singleton(inherited), anySubTypeTargets(inherited));
+	}
+
+	/** Returns the targets of a call of the method on any subtype of the base class. */
+	private Set<SootMethod> anySubTypeTargets(SootMethod m) {
+		ChunkedQueue<SootMethod> targets = new ChunkedQueue<SootMethod>();
+		QueueReader<SootMethod> reader = targets.reader();
+		VirtualCalls.v().resolve(AnySubType.v(base.getType()), base.getType(), m.getNumberedSubSignature(), m,
+				targets);
+		Set<SootMethod> ret = new HashSet<SootMethod>();
+		while (reader.hasNext())
+			ret.add(reader.next());
+		return ret;
+	}
+
+	/** Resolves the method on the given class, checking both resolutions. */
+	private static SootMethod resolve(SootClass c, SootMethod m) {
+		SootMethod ret = VirtualCalls.v().resolveNonSpecial(c.getType(), m.getNumberedSubSignature());
+		Assert.assertSame(ret, Scene.v().getOrMakeFastHierarchy().resolveConcreteDispatch(c, m));
+		return ret;
+	}
+
+	private static SootClass newClass(String name, SootClass superclass) {
+		SootClass c = new SootClass(name, Modifier.PUBLIC);
+		c.setSuperclass(superclass);
+		Scene.v().addClass(c);
+		return c;
+	}
+
+	private static SootMethod newMethod(String name) {
+		SootMethod m = new SootMethod(name, Collections.<Type> emptyList(), VoidType.v(), Modifier.PUBLIC);
+		JimpleBody body = Jimple.v().newBody(m);
+		body.getUnits().add(Jimple.v().newReturnVoidStmt());
+		m.setActiveBody(body);
+		return m;
+	}
+}
@@ -0,0 +1,78 @@
+package soot.jimple.toolkit.callgraph.targets;
+
+/**
+ * Small whole program for the call graph tests: a virtual call whose
+ * receivers differ between CHA, RTA and XTA.
+ */
+public class Zoo {
+
+	static abstract class Animal {
+		abstract String sound();
+	}
+
+	static class Dog extends Animal {
+		String sound() {
+			return "woof";
+		}
+	}
+
+	static class Cat extends Animal {
+		String sound() {
+			return "meow";
+		}
+	}
+
+	/** Only instantiated by an unreachable method, so only CHA calls it. */
+	static class Cow extends Animal {
+		String sound() {
+			return "moo";
+		}
+	}
+
+	static class Keeper extends Thread {
+		public void run() {
+			heard = "keeper";
+		}
+	}
+
+	static String heard;
+
+	static Thread keeper;
+
+	static Animal dog() {
+		return new Dog();
+	}
+
+	static Animal cat() {
+		return new Cat();
+	}
+
+	static Animal cow() {
+		return new Cow();
+	}
+
+	static String hear(Animal a) {
+		return a.sound();
+	}
+
+	/** Only gets a Dog, but RTA also calls Cat.sound() here. */
+	static String hearDog() {
+		Animal a = dog();
+		return a.sound();
+	}
+
+	/**
+	 * The native model of currentThread returns an existing thread, which
+	 * may be a Keeper.
+	 */
+	static void wake() {
+		Thread.currentThread().run();
+	}
+
+	public static void main(String[] args) {
+		heard = hear(cat());
+		heard = hearDog();
+		keeper = new Keeper();
+		wake();
+	}
+}
@@ -0,0 +1,165 @@
+package soot.jimple.toolkits.annotation.purity;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+
+public class AbstractInterproceduralAnalysisTest {
+
+	/**
+	 * Computes the methods a method calls, directly or not, and records the
+	 * threads it runs on.
+	 */
+	private static class CalleeAnalysis extends AbstractInterproceduralAnalysis {
+		final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+
+		CalleeAnalysis(CallGraph cg, SootMethod head, boolean threadSafe) {
+			super(cg, new SootMethodFilter() {
+				public boolean want(SootMethod m) {
+					return true;
+				}
+			}, Collections.singleton(head).iterator(), false, threadSafe);
+			doAnalysis(false);
+		}
+
+		protected Object newInitialSummary() {
+			return new HashSet<SootMethod>();
+		}
+
+		protected Object summaryOfUnanalysedMethod(SootMethod method) {
+			return Collections.singleton(method);
+		}
+
+		protected void analyseMethod(SootMethod method, Object dst) {
+			threads.add(Thread.currentThread());
+			int now = running.incrementAndGet();
+			if (now > maxRunning.get())
+				maxRunning.set(now);
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			summary(dst).add(method);
+			for (Unit u : method.getActiveBody().getUnits()) {
+				Stmt s = (Stmt) u;
+				if (s.containsInvokeExpr()) {
+					Object call = newInitialSummary();
+					analyseCall(dst, s, call);
+					merge(dst, call, dst);
+				}
+			}
+			running.decrementAndGet();
+		}
+
+		protected void applySummary(Object src, Stmt callStmt, Object summary, Object dst) {
+			summary(dst).addAll(summary(summary));
+		}
+
+		protected void merge(Object in1, Object in2, Object out) {
+			Set<SootMethod> union = new HashSet<SootMethod>(summary(in1));
+			union.addAll(summary(in2));
+			copy(union, out);
+		}
+
+		protected void copy(Object src, Object dst) {
+			Set<SootMethod> s = new HashSet<SootMethod>(summary(src));
+			summary(dst).clear();
+			summary(dst).addAll(s);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static Set<SootMethod> summary(Object o) {
+			return (Set<SootMethod>) o;
+		}
+	}
+
+	private SootClass c;
+	private CallGraph cg;
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	/**
+	 * main calls eight leaves and a recursive pair, the leaves call the
+	 * same bottom method.
+	 */
+	private SootMethod buildCallGraph() {
+		G.reset();
+		c = new SootClass("Calls", Modifier.PUBLIC);
+		Scene.v().addClass(c);
+		cg = new CallGraph();
+
+		SootMethod main = newMethod("main");
+		SootMethod bottom = newMethod("bottom");
+		for (int i = 0; i < 8; i++) {
+			SootMethod leaf = newMethod("leaf" + i);
+			addCall(main, leaf);
+			addCall(leaf, bottom);
+		}
+		SootMethod even = newMethod("even");
+		SootMethod odd = newMethod("odd");
+		addCall(main, even);
+		addCall(even, odd);
+		addCall(odd, even);
+		for (SootMethod m : c.getMethods())
+			m.getActiveBody().getUnits().add(Jimple.v().newReturnVoidStmt());
+		return main;
+	}
+
+	private SootMethod newMethod(String name) {
+		SootMethod m = new SootMethod(name, Collections.<Type> emptyList(), VoidType.v(),
+				Modifier.PUBLIC | Modifier.STATIC);
+		c.addMethod(m);
+		JimpleBody body = Jimple.v().newBody(m);
+		m.setActiveBody(body);
+		return m;
+	}
+
+	private void addCall(SootMethod src, SootMethod tgt) {
+		Stmt s = Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(tgt.makeRef()));
+		src.getActiveBody().getUnits().add(s);
+		cg.addEdge(new Edge(src, s, tgt));
+	}
+
+	@Test
+	public void testSequentialByDefault() {
+		SootMethod main = buildCallGraph();
+		CalleeAnalysis analysis = new CalleeAnalysis(cg, main, false);
+		Assert.assertEquals(Collections.singleton(Thread.currentThread()), analysis.threads);
+		Assert.assertEquals(1, analysis.maxRunning.get());
+		Assert.assertEquals(new HashSet<SootMethod>(c.getMethods()), analysis.getSummaryFor(main));
+	}
+
+	@Test
+	public void testThreadSafe() {
+		SootMethod main = buildCallGraph();
+		CalleeAnalysis analysis = new CalleeAnalysis(cg, main, true);
+		Assert.assertEquals(new HashSet<SootMethod>(c.getMethods()), analysis.getSummaryFor(main));
+		Assert.assertEquals(2, ((Set<?>) analysis.getSummaryFor(c.getMethodByName("even"))).size());
+	}
+}
@@ -0,0 +1,120 @@
+package soot.jimple.toolkits.callgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.jimple.toolkits.callgraph.CallGraphComponents.Component;
+import soot.toolkits.graph.HashMutableDirectedGraph;
+import soot.toolkits.graph.StronglyConnectedComponentsFast;
+
+public class CallGraphComponentsTest {
+
+	/**
+	 * 0 calls 1 and 2, 1 -> 3 -> 4 -> 1 is a cycle that calls 5, 2 calls 5
+	 * and 6, and 6 calls itself.
+	 */
+	private static HashMutableDirectedGraph<Integer> graph() {
+		HashMutableDirectedGraph<Integer> g = new HashMutableDirectedGraph<Integer>();
+		for (int i = 0; i < 7; i++)
+			g.addNode(i);
+		g.addEdge(0, 1);
+		g.addEdge(0, 2);
+		g.addEdge(1, 3);
+		g.addEdge(3, 4);
+		g.addEdge(4, 1);
+		g.addEdge(4, 5);
+		g.addEdge(2, 5);
+		g.addEdge(2, 6);
+		g.addEdge(6, 6);
+		return g;
+	}
+
+	@Test
+	public void testBottomUpOrder() {
+		CallGraphComponents<Integer> components = new CallGraphComponents<Integer>(graph());
+		List<Component<Integer>> order = components.getComponents();
+		Assert.assertEquals(5, order.size());
+
+		Set<Component<Integer>> done = new HashSet<Component<Integer>>();
+		for (Component<Integer> c : order) {
+			Assert.assertTrue(done.containsAll(c.getCallees()));
+			done.add(c);
+		}
+		Assert.assertSame(order.get(order.size() - 1), components.getComponentOf(0));
+
+		Component<Integer> cycle = components.getComponentOf(1);
+		Assert.assertEquals(set(1, 3, 4), set(cycle.getMethods()));
+		Assert.assertTrue(cycle.isRecursive());
+		Assert.assertSame(cycle, components.getComponentOf(4));
+		Assert.assertEquals(Collections.singletonList(components.getComponentOf(5)), cycle.getCallees());
+		Assert.assertEquals(Collections.singletonList(components.getComponentOf(0)), cycle.getCallers());
+
+		Assert.assertTrue(components.getComponentOf(6).isRecursive());
+		Assert.assertFalse(components.getComponentOf(2).isRecursive());
+		Assert.assertFalse(components.getComponentOf(5).isRecursive());
+		Assert.assertEquals(2, components.getComponentOf(5).getCallers().size());
+	}
+
+	@Test
+	public void testSameComponentsAsSCCFast() {
+		HashMutableDirectedGraph<Integer> g = graph();
+		Set<Set<Integer>> expected = new HashSet<Set<Integer>>();
+		for (List<Integer> c : new StronglyConnectedComponentsFast<Integer>(g).getComponents())
+			expected.add(set(c));
+		Set<Set<Integer>> actual = new HashSet<Set<Integer>>();
+		for (Component<Integer> c : new CallGraphComponents<Integer>(g).getComponents())
+			actual.add(set(c.getMethods()));
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitBottomUp() {
+		CallGraphComponents<Integer> components = new CallGraphComponents<Integer>(graph());
+		final Set<Component<Integer>> visited = Collections
+				.newSetFromMap(new ConcurrentHashMap<Component<Integer>, Boolean>());
+		final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+		components.visitBottomUp(new CallGraphComponents.Visitor<Integer>() {
+			public void visit(Component<Integer> c) {
+				if (!visited.containsAll(c.getCallees()))
+					errors.add("visited before its callees: " + set(c.getMethods()));
+				if (!visited.add(c))
+					errors.add("visited twice: " + set(c.getMethods()));
+			}
+		}, 4);
+		Assert.assertEquals(Collections.emptyList(), errors);
+		Assert.assertEquals(new HashSet<Component<Integer>>(components.getComponents()), visited);
+	}
+
+	@Test
+	public void testVisitorFailureIsRethrown() {
+		final CallGraphComponents<Integer> components = new CallGraphComponents<Integer>(graph());
+		final Component<Integer> failing = components.getComponentOf(5);
+		try {
+			components.visitBottomUp(new CallGraphComponents.Visitor<Integer>() {
+				public void visit(Component<Integer> c) {
+					if (c == failing)
+						throw new IllegalStateException("failed");
+				}
+			}, 2);
+			Assert.fail("The failure of the visitor was lost");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("failed", e.getMessage());
+		}
+	}
+
+	private static Set<Integer> set(Integer... nodes) {
+		return set(Arrays.asList(nodes));
+	}
+
+	private static Set<Integer> set(List<Integer> nodes) {
+		return new HashSet<Integer>(nodes);
+	}
+}
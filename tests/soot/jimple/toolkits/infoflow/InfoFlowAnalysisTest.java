@@ -0,0 +1,151 @@
+package soot.jimple.toolkits.infoflow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.EquivalentValue;
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+
+/**
+ * Checks that summaries computed in parallel, or after their method analyses
+ * were dropped, are the ones computed on demand on a single thread.
+ */
+public class InfoFlowAnalysisTest {
+
+	private static final String[] CLASSES = { "soot.jimple.spark.targets.Relay", "soot.jimple.spark.targets.Drawing" };
+	private static final String PARITY = "soot.jimple.toolkits.infoflow.targets.Parity";
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void parallelSummariesAreTheOnDemandOnes() throws IOException {
+		for (String name : CLASSES) {
+			setUp(name);
+			Map<String, List<String>> expected = describe(new InfoFlowAnalysis(false, true));
+			Assert.assertTrue(name, expected.size() > 3);
+
+			InfoFlowAnalysis parallel = new InfoFlowAnalysis(false, true);
+			parallel.computeInfoFlowSummaries(methods(), 4);
+			Assert.assertEquals(name, expected, describe(parallel));
+		}
+	}
+
+	@Test
+	public void primitiveFlows() throws IOException {
+		setUp(CLASSES[1]);
+		Map<String, List<String>> expected = describe(new InfoFlowAnalysis(true, true));
+		InfoFlowAnalysis parallel = new InfoFlowAnalysis(true, true);
+		parallel.computeInfoFlowSummaries(methods(), 4);
+		Assert.assertEquals(expected, describe(parallel));
+	}
+
+	@Test
+	public void droppedAnalysesAreRecomputed() throws IOException {
+		setUp(CLASSES[0]);
+		Map<String, List<String>> expected = describe(new InfoFlowAnalysis(false, true));
+		InfoFlowAnalysis bounded = new InfoFlowAnalysis(false, true);
+		bounded.setMaxRetainedAnalyses(0);
+		Assert.assertEquals(expected, describe(bounded));
+		Assert.assertTrue(bounded.retainedAnalyses.isEmpty());
+		// Asking again finds the stored summaries
+		Assert.assertEquals(expected, describe(bounded));
+	}
+
+	@Test
+	public void summariesAreShared() throws IOException {
+		setUp(CLASSES[0]);
+		InfoFlowAnalysis dfa = new InfoFlowAnalysis(false, true);
+		SootMethod m = methods().get(0);
+		InfoFlowSummary s = dfa.getInfoFlowSummary(m);
+		Assert.assertSame(s, dfa.getInfoFlowSummary(m));
+		// The graph returned for modification is a copy
+		dfa.getMethodInfoFlowSummary(m).addNode(new CachedEquivalentValue(soot.jimple.NullConstant.v()));
+		Assert.assertSame(s, dfa.getInfoFlowSummary(m));
+		Assert.assertEquals(describe(s), describe(dfa.getInfoFlowSummary(m)));
+		Assert.assertFalse(s.containsNode(new CachedEquivalentValue(soot.jimple.NullConstant.v())));
+	}
+
+	@Test
+	public void recursiveSummariesDoNotDependOnRequestOrder() throws IOException {
+		setUp(PARITY);
+		SootClass c = Scene.v().getSootClass(PARITY);
+		InfoFlowAnalysis evenFirst = new InfoFlowAnalysis(false, true);
+		evenFirst.getInfoFlowSummary(c.getMethodByName("even"));
+		InfoFlowAnalysis oddFirst = new InfoFlowAnalysis(false, true);
+		oddFirst.getInfoFlowSummary(c.getMethodByName("odd"));
+		Assert.assertEquals(describe(evenFirst), describe(oddFirst));
+
+		InfoFlowAnalysis parallel = new InfoFlowAnalysis(false, true);
+		parallel.computeInfoFlowSummaries(methods(), 4);
+		Assert.assertEquals(describe(evenFirst), describe(parallel));
+	}
+
+	@Test
+	public void flowInsensitiveRequestsIgnoreFinishedSummaries() throws IOException {
+		setUp(PARITY);
+		SootMethod even = Scene.v().getSootClass(PARITY).getMethodByName("even");
+		List<String> expected = describe(new InfoFlowAnalysis(false, true).getInfoFlowSummary(even, false));
+		InfoFlowAnalysis dfa = new InfoFlowAnalysis(false, true);
+		Assert.assertNotEquals(expected, describe(dfa.getInfoFlowSummary(even)));
+		Assert.assertEquals(expected, describe(dfa.getInfoFlowSummary(even, false)));
+	}
+
+	private static void setUp(String mainClass) throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption("cg.cha", "on");
+
+		SceneSetup.loadMainClass(mainClass);
+		// The nested classes of the fixture are analysed as well
+		for (SootClass nested : Scene.v().getClasses())
+			if (nested.getName().startsWith(mainClass + "$"))
+				nested.setApplicationClass();
+		PackManager.v().getPack("cg").apply();
+	}
+
+	/** Returns the reachable methods of the fixture. */
+	private static List<SootMethod> methods() {
+		List<SootMethod> ret = new ArrayList<SootMethod>();
+		for (SootClass c : Scene.v().getApplicationClasses())
+			for (SootMethod m : c.getMethods())
+				if (m.isConcrete() && Scene.v().getReachableMethods().contains(m))
+					ret.add(m);
+		return ret;
+	}
+
+	private static Map<String, List<String>> describe(InfoFlowAnalysis dfa) {
+		Map<String, List<String>> ret = new TreeMap<String, List<String>>();
+		for (SootMethod m : methods())
+			ret.put(m.getSignature(), describe(dfa.getInfoFlowSummary(m)));
+		return ret;
+	}
+
+	/** Describes the edges and lone nodes of a summary. */
+	private static List<String> describe(InfoFlowSummary s) {
+		List<String> ret = new ArrayList<String>();
+		for (EquivalentValue node : s) {
+			if (s.getSuccsOf(node).isEmpty() && s.getPredsOf(node).isEmpty())
+				ret.add(node.toString());
+			for (EquivalentValue succ : s.getSuccsOf(node))
+				ret.add(node + " -> " + succ);
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+}
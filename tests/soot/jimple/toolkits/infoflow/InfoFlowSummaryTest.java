@@ -0,0 +1,103 @@
+package soot.jimple.toolkits.infoflow;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.EquivalentValue;
+import soot.G;
+import soot.IntType;
+import soot.jimple.ParameterRef;
+import soot.toolkits.graph.HashMutableDirectedGraph;
+
+/**
+ * Checks that the compact summary graph has the nodes and edges of the graph
+ * it was built from, and that copies of it are independent.
+ */
+public class InfoFlowSummaryTest {
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	/** Returns the graph 0 -> 1, 0 -> 2, 1 -> 2, 2 -> 2 and the lone node 3. */
+	private static HashMutableDirectedGraph<EquivalentValue> graph(EquivalentValue[] p) {
+		HashMutableDirectedGraph<EquivalentValue> g = new HashMutableDirectedGraph<EquivalentValue>();
+		for (EquivalentValue node : p)
+			g.addNode(node);
+		g.addEdge(p[0], p[1]);
+		g.addEdge(p[0], p[2]);
+		g.addEdge(p[1], p[2]);
+		g.addEdge(p[2], p[2]);
+		return g;
+	}
+
+	private static EquivalentValue[] params(int n) {
+		EquivalentValue[] ret = new EquivalentValue[n];
+		for (int i = 0; i < n; i++)
+			ret[i] = new CachedEquivalentValue(new ParameterRef(IntType.v(), i));
+		return ret;
+	}
+
+	@Test
+	public void sameNodesAndEdges() {
+		EquivalentValue[] p = params(4);
+		HashMutableDirectedGraph<EquivalentValue> g = graph(p);
+		InfoFlowSummary s = new InfoFlowSummary(g);
+		Assert.assertEquals(4, s.size());
+		Assert.assertEquals(new HashSet<EquivalentValue>(g.getNodes()), new HashSet<EquivalentValue>(s.getNodes()));
+		for (EquivalentValue from : p) {
+			Assert.assertTrue(s.containsNode(from));
+			// An equal but different object finds the same node
+			Assert.assertTrue(s.containsNode(new CachedEquivalentValue(from.getValue())));
+			Assert.assertEquals(new HashSet<EquivalentValue>(g.getSuccsOf(from)),
+					new HashSet<EquivalentValue>(s.getSuccsOf(from)));
+			Assert.assertEquals(new HashSet<EquivalentValue>(g.getPredsOf(from)),
+					new HashSet<EquivalentValue>(s.getPredsOf(from)));
+			for (EquivalentValue to : p)
+				Assert.assertEquals(g.containsEdge(from, to), s.containsEdge(from, to));
+		}
+		Assert.assertEquals(new HashSet<EquivalentValue>(Arrays.asList(p[0], p[3])),
+				new HashSet<EquivalentValue>(s.getHeads()));
+		Assert.assertEquals(Collections.singletonList(p[3]), s.getTails());
+		Assert.assertFalse(s.containsNode(params(5)[4]));
+	}
+
+	@Test
+	public void emptyGraph() {
+		InfoFlowSummary s = new InfoFlowSummary(new HashMutableDirectedGraph<EquivalentValue>());
+		Assert.assertEquals(0, s.size());
+		Assert.assertFalse(s.iterator().hasNext());
+		Assert.assertFalse(s.containsNode(params(1)[0]));
+		Assert.assertEquals(0, s.toMutableGraph().size());
+	}
+
+	@Test
+	public void copiesAreIndependent() {
+		EquivalentValue[] p = params(4);
+		HashMutableDirectedGraph<EquivalentValue> g = graph(p);
+		InfoFlowSummary s = new InfoFlowSummary(g);
+		// Changing the source graph does not change the summary
+		g.removeEdge(p[0], p[1]);
+		Assert.assertTrue(s.containsEdge(p[0], p[1]));
+
+		HashMutableDirectedGraph<EquivalentValue> copy = s.toMutableGraph();
+		Assert.assertTrue(copy.containsEdge(p[0], p[1]));
+		Assert.assertTrue(copy.containsEdge(p[2], p[2]));
+		copy.addEdge(p[3], p[0]);
+		Assert.assertFalse(s.containsEdge(p[3], p[0]));
+		Assert.assertEquals(Collections.singletonList(p[3]), s.getTails());
+
+		try {
+			s.getNodes().add(p[0]);
+			Assert.fail("The nodes of a summary were modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+}
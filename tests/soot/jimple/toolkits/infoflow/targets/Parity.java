@@ -0,0 +1,31 @@
+package soot.jimple.toolkits.infoflow.targets;
+
+/**
+ * Small whole program for the info flow tests: two mutually recursive
+ * methods whose flows differ, so the summary of each depends on what the
+ * other is assumed to do while the recursion is analysed.
+ */
+public class Parity {
+
+	Object kept;
+
+	Object even(Object x, Object y, int n) {
+		if (n == 0)
+			return x;
+		return odd(x, y, n - 1);
+	}
+
+	Object odd(Object x, Object y, int n) {
+		if (n == 0) {
+			kept = y;
+			return null;
+		}
+		return even(x, y, n - 1);
+	}
+
+	public static void main(String[] args) {
+		Parity p = new Parity();
+		p.even(new Object(), new Object(), args.length);
+		p.odd(new Object(), new Object(), args.length);
+	}
+}
@@ -0,0 +1,160 @@
+package soot.jimple.toolkits.pointer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.callgraph.ExplicitEdgesPred;
+import soot.jimple.toolkits.callgraph.Filter;
+import soot.options.Options;
+
+/**
+ * Compares the read and write sets that the side-effect analysis computes
+ * lazily with the ones it answers after precomputing the sets of all
+ * methods.
+ */
+public class SideEffectAnalysisTest {
+
+	private static final String[] CLASSES = { "soot.jimple.spark.targets.Drawing", "soot.jimple.spark.targets.Relay" };
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void precomputedSetsAreTheLazyOnes() throws IOException {
+		for (String name : CLASSES) {
+			setUp(name);
+			SideEffectAnalysis lazy = newAnalysis(null);
+			SideEffectAnalysis precomputed = newAnalysis(null);
+			precomputed.precompute();
+			Map<String, String> expected = describe(lazy);
+			Assert.assertTrue(name, expected.toString().contains("global"));
+			Assert.assertEquals(name, expected, describe(precomputed));
+		}
+	}
+
+	@Test
+	public void filteredEdges() throws IOException {
+		setUp(CLASSES[0]);
+		Filter explicit = new Filter(new ExplicitEdgesPred());
+		SideEffectAnalysis lazy = newAnalysis(explicit);
+		SideEffectAnalysis precomputed = newAnalysis(explicit);
+		precomputed.precompute();
+		Assert.assertEquals(describe(lazy), describe(precomputed));
+	}
+
+	@Test
+	public void lazyQueriesFromSeveralThreads() throws Exception {
+		setUp(CLASSES[1]);
+		Map<String, String> expected = describe(newAnalysis(new Filter(new ExplicitEdgesPred())));
+		final SideEffectAnalysis shared = newAnalysis(new Filter(new ExplicitEdgesPred()));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Map<String, String>>> futures = new ArrayList<Future<Map<String, String>>>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(new Callable<Map<String, String>>() {
+					public Map<String, String> call() {
+						return describe(shared);
+					}
+				}));
+			}
+			for (Future<Map<String, String>> f : futures)
+				Assert.assertEquals(expected, f.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void uncachedSetsAreRecomputed() throws IOException {
+		setUp(CLASSES[1]);
+		Map<String, String> expected = describe(newAnalysis(null));
+		SideEffectAnalysis uncached = newAnalysis(null);
+		uncached.setCacheLimit(0);
+		Assert.assertEquals(expected, describe(uncached));
+		Assert.assertTrue(uncached.methodToNTReadSet.isEmpty());
+		Assert.assertTrue(uncached.methodToNTWriteSet.isEmpty());
+	}
+
+	@Test
+	public void methodsWithoutEdges() throws IOException {
+		setUp(CLASSES[0]);
+		SideEffectAnalysis sea = newAnalysis(null);
+		sea.precompute();
+		// extra() is never called and calls nothing
+		SootMethod extra = Scene.v().getSootClass(CLASSES[0]).getMethodByName("extra");
+		Assert.assertFalse(Scene.v().getReachableMethods().contains(extra));
+		Assert.assertEquals(describe(sea.nonTransitiveWriteSet(extra)), describe(sea.transitiveWriteSet(extra)));
+		Assert.assertTrue(describe(sea.transitiveWriteSet(extra)).contains("current"));
+		// main() is an entry point that nothing calls
+		SootMethod main = Scene.v().getSootClass(CLASSES[0]).getMethodByName("main");
+		Assert.assertTrue(describe(sea.transitiveWriteSet(main)).contains("drawn"));
+	}
+
+	private static void setUp(String mainClass) throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption("cg.spark", "on");
+
+		SceneSetup.loadMainClass(mainClass);
+		PackManager.v().getPack("cg").apply();
+	}
+
+	private static SideEffectAnalysis newAnalysis(Filter filter) {
+		if (filter == null)
+			return new SideEffectAnalysis(Scene.v().getPointsToAnalysis(), Scene.v().getCallGraph());
+		return new SideEffectAnalysis(Scene.v().getPointsToAnalysis(), Scene.v().getCallGraph(), filter);
+	}
+
+	/** Describes the read and write sets of every statement of the fixtures. */
+	private static Map<String, String> describe(SideEffectAnalysis sea) {
+		Map<String, String> ret = new TreeMap<String, String>();
+		for (SootClass c : Scene.v().getApplicationClasses()) {
+			for (SootMethod m : c.getMethods()) {
+				if (!m.hasActiveBody())
+					continue;
+				int i = 0;
+				for (Unit u : m.getActiveBody().getUnits()) {
+					Stmt s = (Stmt) u;
+					String key = m.getSignature() + " " + (i++) + " " + s;
+					ret.put(key, "read " + describe(sea.readSet(m, s)) + " write " + describe(sea.writeSet(m, s)));
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static String describe(RWSet s) {
+		if (s == null)
+			return "[]";
+		List<String> ret = new ArrayList<String>();
+		for (Object global : s.getGlobals())
+			ret.add("global " + global);
+		for (Object field : s.getFields())
+			ret.add("field " + field);
+		if (s.getCallsNative())
+			ret.add("native");
+		Collections.sort(ret);
+		return ret.toString();
+	}
+}
@@ -0,0 +1,179 @@
+package soot.jimple.toolkits.thread.mhp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.Kind;
+import soot.PackManager;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.jimple.toolkits.thread.AbstractRuntimeThread;
+import soot.jimple.toolkits.thread.mhp.pegcallgraph.PegCallGraph;
+import soot.options.Options;
+
+/**
+ * Compares the thread bodies and the answers of the MHP analysis with the
+ * ones of the list-based algorithm it replaced.
+ */
+public class SynchObliviousMhpAnalysisTest {
+
+	private static final String TARGET_CLASS = "soot.jimple.toolkits.thread.mhp.targets.Workers";
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void threadBodiesAreTheOldOnes() throws IOException {
+		setUp();
+		SynchObliviousMhpAnalysis mhp = new SynchObliviousMhpAnalysis();
+		CallGraph cg = Scene.v().getCallGraph();
+		PegCallGraph pecg = new PegCallGraph(cg);
+		SootMethod main = method("main");
+		Assert.assertTrue(mhp.getThreads().size() >= 3);
+		for (AbstractRuntimeThread thread : mhp.getThreads()) {
+			List<Object> expected = thread.getRunMethods().contains(main) ? oldMainThreadBody(main, pecg, cg)
+					: oldThreadBody(thread.getRunMethods(), pecg, cg);
+			Assert.assertEquals(expected, methods(thread));
+		}
+	}
+
+	@Test
+	public void answersAreTheOldPairScan() throws IOException {
+		setUp();
+		SynchObliviousMhpAnalysis mhp = new SynchObliviousMhpAnalysis();
+		Set<SootMethod> methods = new LinkedHashSet<SootMethod>();
+		for (AbstractRuntimeThread thread : mhp.getThreads())
+			for (Object m : methods(thread))
+				methods.add((SootMethod) m);
+		// a method that no thread runs
+		methods.add(method("<init>"));
+		// getThreads() leaves out the copies of threads that run many times
+		Assert.assertTrue(mhp.threadList.size() > mhp.getThreads().size());
+		for (SootMethod m1 : methods)
+			for (SootMethod m2 : methods)
+				Assert.assertEquals(m1 + " " + m2, oldMayHappenInParallel(mhp.threadList, m1, m2),
+						mhp.mayHappenInParallel(m1, m2));
+
+		Assert.assertTrue(mhp.mayHappenInParallel(method("update"), method("update")));
+		Assert.assertTrue(mhp.mayHappenInParallel(method("onlyOnce"), method("afterJoin")));
+		Assert.assertTrue(mhp.mayHappenInParallel(method("onlyMany"), method("onlyMany")));
+		Assert.assertFalse(mhp.mayHappenInParallel(method("onlyOnce"), method("onlyOnce")));
+		Assert.assertFalse(mhp.mayHappenInParallel(method("beforeStart"), method("afterJoin")));
+	}
+
+	@Test
+	public void sameThreadsInEveryRun() throws IOException {
+		setUp();
+		List<List<Object>> first = describe(new SynchObliviousMhpAnalysis());
+		for (int i = 0; i < 3; i++)
+			Assert.assertEquals(first, describe(new SynchObliviousMhpAnalysis()));
+	}
+
+	private static void setUp() throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption("cg.spark", "on");
+
+		SceneSetup.loadMainClass(TARGET_CLASS);
+		for (SootClass nested : Scene.v().getClasses())
+			if (nested.getName().startsWith(TARGET_CLASS + "$"))
+				nested.setApplicationClass();
+		PackManager.v().getPack("cg").apply();
+	}
+
+	private static SootMethod method(String name) {
+		return Scene.v().getSootClass(TARGET_CLASS).getMethodByName(name);
+	}
+
+	private static List<Object> methods(AbstractRuntimeThread thread) {
+		List<Object> ret = new ArrayList<Object>();
+		for (int i = 0; i < thread.methodCount(); i++)
+			ret.add(thread.getMethod(i));
+		return ret;
+	}
+
+	private static List<List<Object>> describe(SynchObliviousMhpAnalysis mhp) {
+		List<List<Object>> ret = new ArrayList<List<Object>>();
+		for (AbstractRuntimeThread thread : mhp.getThreads())
+			ret.add(methods(thread));
+		return ret;
+	}
+
+	/** The thread body traversal before thread bodies were shared. */
+	private static List<Object> oldThreadBody(List<Object> runMethods, PegCallGraph pecg, CallGraph callGraph) {
+		AbstractRuntimeThread thread = new AbstractRuntimeThread();
+		for (Object method : runMethods)
+			if (!thread.containsMethod(method))
+				thread.addMethod(method);
+		int methodNum = 0;
+		while (methodNum < thread.methodCount()) {
+			Iterator<?> succMethodsIt = pecg.getSuccsOf(thread.getMethod(methodNum)).iterator();
+			while (succMethodsIt.hasNext()) {
+				SootMethod method = (SootMethod) succMethodsIt.next();
+				boolean ignoremethod = true;
+				Iterator<Edge> edgeInIt = callGraph.edgesInto(method);
+				while (edgeInIt.hasNext()) {
+					Edge edge = edgeInIt.next();
+					if (edge.kind() != Kind.THREAD && edge.kind() != Kind.EXECUTOR && edge.kind() != Kind.ASYNCTASK
+							&& thread.containsMethod(edge.src()))
+						ignoremethod = false;
+				}
+				if (!ignoremethod && !thread.containsMethod(method))
+					thread.addMethod(method);
+			}
+			methodNum++;
+		}
+		return methods(thread);
+	}
+
+	private static List<Object> oldMainThreadBody(SootMethod mainMethod, PegCallGraph pecg, CallGraph callGraph) {
+		AbstractRuntimeThread mainThread = new AbstractRuntimeThread();
+		mainThread.addMethod(mainMethod);
+		int methodNum = 0;
+		while (methodNum < mainThread.methodCount()) {
+			Iterator<?> succMethodsIt = pecg.getSuccsOf(mainThread.getMethod(methodNum)).iterator();
+			while (succMethodsIt.hasNext()) {
+				SootMethod method = (SootMethod) succMethodsIt.next();
+				boolean ignoremethod = true;
+				Iterator<Edge> edgeInIt = callGraph.edgesInto(method);
+				while (edgeInIt.hasNext()) {
+					if (edgeInIt.next().kind() != Kind.THREAD)
+						ignoremethod = false;
+				}
+				if (!ignoremethod && !mainThread.containsMethod(method))
+					mainThread.addMethod(method);
+			}
+			methodNum++;
+		}
+		return methods(mainThread);
+	}
+
+	/** The scan over all pairs of threads before threads were indexed. */
+	private static boolean oldMayHappenInParallel(List<AbstractRuntimeThread> threadList, SootMethod m1,
+			SootMethod m2) {
+		int size = threadList.size();
+		for (int i = 0; i < size; i++) {
+			if (threadList.get(i).containsMethod(m1)) {
+				for (int j = 0; j < size; j++) {
+					if (threadList.get(j).containsMethod(m2) && i != j)
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,56 @@
+package soot.jimple.toolkits.thread.mhp.targets;
+
+/**
+ * Small whole program for the MHP test: one thread is started once and
+ * joined, another kind is started in a loop, and some methods are called
+ * both by the main thread and by the started ones.
+ */
+public class Workers {
+
+	static int shared;
+
+	static class Once extends Thread {
+		public void run() {
+			update();
+			onlyOnce();
+		}
+	}
+
+	static class Many implements Runnable {
+		public void run() {
+			update();
+			onlyMany();
+		}
+	}
+
+	static void update() {
+		shared++;
+	}
+
+	static void onlyOnce() {
+		shared = 1;
+	}
+
+	static void onlyMany() {
+		shared = 2;
+	}
+
+	static void beforeStart() {
+		shared = 3;
+	}
+
+	static void afterJoin() {
+		shared = 4;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		beforeStart();
+		Once once = new Once();
+		once.start();
+		for (int i = 0; i < args.length; i++)
+			new Thread(new Many()).start();
+		update();
+		once.join();
+		afterJoin();
+	}
+}
@@ -0,0 +1,193 @@
+package soot.jimple.toolkits.thread.synchronization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.IntType;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.toolkits.pointer.CodeBlockRWSet;
+import soot.jimple.toolkits.pointer.FullObjectSet;
+import soot.jimple.toolkits.thread.AbstractRuntimeThread;
+import soot.jimple.toolkits.thread.mhp.MhpTester;
+
+/**
+ * Compares the interference graph, which only compares sections that share
+ * a location, with the comparison of all pairs of sections it replaced.
+ */
+public class CriticalSectionInterferenceGraphTest {
+
+	private SootField[] locations;
+	private SootMethod[] methods;
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	/** The first method never runs in parallel with anything. */
+	private final MhpTester mhp = new MhpTester() {
+		public boolean mayHappenInParallel(SootMethod m1, SootMethod m2) {
+			return m1 != methods[0] && m2 != methods[0];
+		}
+
+		public boolean mayHappenInParallel(SootMethod m1, Unit u1, SootMethod m2, Unit u2) {
+			return mayHappenInParallel(m1, m2);
+		}
+
+		public void printMhpSummary() {
+		}
+
+		public List<AbstractRuntimeThread> getThreads() {
+			return Collections.emptyList();
+		}
+	};
+
+	@Test
+	public void sameGroupsAndEdgesAsAllPairs() {
+		setUp();
+		for (long seed = 0; seed < 20; seed++) {
+			List<CriticalSection> indexed = sections(seed);
+			List<CriticalSection> allPairs = sections(seed);
+			CriticalSectionInterferenceGraph graph = new CriticalSectionInterferenceGraph(indexed, mhp, false, false,
+					false);
+			int groups = allPairsGroups(allPairs);
+			Assert.assertEquals(groups, graph.groupCount());
+			for (int i = 0; i < indexed.size(); i++) {
+				Assert.assertEquals(seed + " " + i, allPairs.get(i).setNumber, indexed.get(i).setNumber);
+				Assert.assertEquals(seed + " " + i, edges(allPairs, allPairs.get(i)), edges(indexed, indexed.get(i)));
+			}
+		}
+	}
+
+	@Test
+	public void sectionsWithoutCommonLocations() {
+		setUp();
+		List<CriticalSection> sections = new ArrayList<CriticalSection>();
+		for (int i = 0; i < 4; i++) {
+			// sections 0 and 2 do not even interfere with themselves
+			CriticalSection tn = new CriticalSection(false, methods[i % 2 == 0 ? 0 : 1], 1);
+			tn.write.addGlobal(locations[i]);
+			sections.add(tn);
+		}
+		// sections 1 and 3 share a location
+		sections.get(3).read.addGlobal(locations[1]);
+		CriticalSectionInterferenceGraph graph = new CriticalSectionInterferenceGraph(sections, mhp, false, false,
+				false);
+		Assert.assertEquals(2, graph.groupCount());
+		Assert.assertEquals(-1, sections.get(0).setNumber);
+		Assert.assertEquals(1, sections.get(1).setNumber);
+		Assert.assertEquals(-1, sections.get(2).setNumber);
+		Assert.assertEquals(1, sections.get(3).setNumber);
+	}
+
+	private void setUp() {
+		G.reset();
+		SootClass c = new SootClass("Sections");
+		Scene.v().addClass(c);
+		locations = new SootField[8];
+		for (int i = 0; i < locations.length; i++) {
+			locations[i] = new SootField("f" + i, IntType.v(), Modifier.STATIC);
+			c.addField(locations[i]);
+		}
+		methods = new SootMethod[4];
+		for (int i = 0; i < methods.length; i++) {
+			methods[i] = new SootMethod("m" + i, Collections.<Type> emptyList(), VoidType.v(), Modifier.STATIC);
+			c.addMethod(methods[i]);
+		}
+	}
+
+	/**
+	 * Returns sections that read and write random globals and fields, the
+	 * same ones for the same seed.
+	 */
+	private List<CriticalSection> sections(long seed) {
+		Random random = new Random(seed);
+		List<CriticalSection> ret = new ArrayList<CriticalSection>();
+		for (int i = 0; i < 40; i++) {
+			CriticalSection tn = new CriticalSection(false, methods[random.nextInt(methods.length)], 1);
+			addLocations(random, tn.read);
+			addLocations(random, tn.write);
+			ret.add(tn);
+		}
+		return ret;
+	}
+
+	private void addLocations(Random random, CodeBlockRWSet rw) {
+		int count = random.nextInt(3);
+		for (int i = 0; i < count; i++) {
+			SootField location = locations[random.nextInt(locations.length)];
+			if (random.nextBoolean())
+				rw.addGlobal(location);
+			else
+				rw.addFieldRef(FullObjectSet.v(), location);
+		}
+	}
+
+	private static List<String> edges(List<CriticalSection> sections, CriticalSection tn) {
+		List<String> ret = new ArrayList<String>();
+		for (CriticalSectionDataDependency edge : tn.edges)
+			ret.add(sections.indexOf(edge.other) + ":" + edge.size);
+		Collections.sort(ret);
+		return ret;
+	}
+
+	/**
+	 * Groups the sections as the interference graph did before it had an
+	 * index, and returns the number of groups.
+	 */
+	private int allPairsGroups(List<CriticalSection> sections) {
+		int nextGroup = 1;
+		for (CriticalSection tn1 : sections) {
+			if (tn1.setNumber == -1)
+				continue;
+			if (tn1.read.size() == 0 && tn1.write.size() == 0) {
+				tn1.setNumber = -1;
+				continue;
+			}
+			for (CriticalSection tn2 : sections) {
+				if (tn2.setNumber == -1 || !mhp.mayHappenInParallel(tn1.method, tn2.method))
+					continue;
+				if (tn1.write.hasNonEmptyIntersection(tn2.write) || tn1.write.hasNonEmptyIntersection(tn2.read)
+						|| tn1.read.hasNonEmptyIntersection(tn2.write)) {
+					CodeBlockRWSet rw = tn1.write.intersection(tn2.write);
+					rw.union(tn1.write.intersection(tn2.read));
+					rw.union(tn1.read.intersection(tn2.write));
+					tn1.edges.add(new CriticalSectionDataDependency(tn2, rw.size(), rw));
+					if (rw.size() > 0) {
+						if (tn1.setNumber > 0) {
+							if (tn2.setNumber == 0)
+								tn1.group.add(tn2);
+							else if (tn2.setNumber > 0 && tn1.setNumber != tn2.setNumber)
+								tn1.group.mergeGroups(tn2.group);
+						} else if (tn1.setNumber == 0) {
+							if (tn2.setNumber == 0) {
+								CriticalSectionGroup newGroup = new CriticalSectionGroup(nextGroup++);
+								newGroup.add(tn1);
+								newGroup.add(tn2);
+							} else if (tn2.setNumber > 0) {
+								tn2.group.add(tn1);
+							}
+						}
+					}
+				}
+			}
+			if (tn1.setNumber == 0)
+				tn1.setNumber = -1;
+		}
+		return nextGroup;
+	}
+}
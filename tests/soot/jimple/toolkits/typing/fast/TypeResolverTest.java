@@ -0,0 +1,112 @@
+package soot.jimple.toolkits.typing.fast;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+
+/**
+ * Types the methods of the test fixtures with the different settings of the
+ * fast type assigner, and compares the results with the ones of the default
+ * search.
+ */
+public class TypeResolverTest {
+
+	private static final String[] PACKAGES = { "soot.asm.backend.targets", "soot.jimple.spark.targets" };
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void defaultsDoNotChangeTypes() throws IOException {
+		Map<String, List<String>> search = type();
+		Assert.assertTrue(search.size() > 100);
+		Assert.assertEquals(search, type("union-find-typing:false", "max-typings:0"));
+		Assert.assertEquals(search, type("max-typings:1000"));
+	}
+
+	@Test
+	public void unionFindKeepsReferenceTypes() throws IOException {
+		// The merged locals may get a wider integer type than the search finds
+		Assert.assertEquals(widenIntegers(type()), widenIntegers(type("union-find-typing:true")));
+	}
+
+	@Test
+	public void smallBudgetStillTypesEveryLocal() throws IOException {
+		Map<String, List<String>> search = type();
+		Map<String, List<String>> budget = type("max-typings:1");
+		Assert.assertEquals(search.keySet(), budget.keySet());
+		for (List<String> types : budget.values())
+			Assert.assertFalse(types.toString(), types.contains("unknown"));
+	}
+
+	private static Map<String, List<String>> widenIntegers(Map<String, List<String>> typings) {
+		Map<String, List<String>> ret = new TreeMap<String, List<String>>();
+		for (Map.Entry<String, List<String>> e : typings.entrySet()) {
+			List<String> types = new ArrayList<String>();
+			for (String t : e.getValue())
+				types.add(t.equals("byte") || t.equals("short") || t.equals("char") ? "int" : t);
+			Collections.sort(types);
+			ret.put(e.getKey(), types);
+		}
+		return ret;
+	}
+
+	/**
+	 * Types all the methods of the fixtures with the given jb.tr options, and
+	 * returns the sorted types of their locals.
+	 */
+	private static Map<String, List<String>> type(String... options) throws IOException {
+		G.reset();
+		File f = SceneSetup.classPath();
+		Options.v().set_soot_classpath(f.getCanonicalPath());
+		Options.v().set_prepend_classpath(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_output_format(Options.output_format_none);
+		Options.v().setPhaseOption("jb.tr", "use-older-type-assigner:false");
+		for (String option : options)
+			Options.v().setPhaseOption("jb.tr", option);
+
+		List<SootClass> classes = new ArrayList<SootClass>();
+		for (String pkg : PACKAGES) {
+			File dir = new File(f, pkg.replace('.', File.separatorChar));
+			for (String name : dir.list()) {
+				if (name.endsWith(".class"))
+					classes.add(Scene.v().forceResolve(pkg + "." + name.substring(0, name.length() - 6),
+							SootClass.BODIES));
+			}
+		}
+		Scene.v().loadNecessaryClasses();
+
+		Map<String, List<String>> ret = new TreeMap<String, List<String>>();
+		for (SootClass c : classes) {
+			for (SootMethod m : c.getMethods()) {
+				if (!m.isConcrete())
+					continue;
+				List<String> types = new ArrayList<String>();
+				for (Local l : m.retrieveActiveBody().getLocals())
+					types.add(l.getType().toString());
+				Collections.sort(types);
+				ret.put(m.getSignature(), types);
+			}
+		}
+		return ret;
+	}
+}
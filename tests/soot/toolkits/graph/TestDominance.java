@@ -37,6 +37,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
@@ -251,6 +252,110 @@ public class TestDominance {
         kids = kid_ids(m);
         assertThat(kids.size(), is(0));
     }
+
+    /**
+     * Compares CHKDominatorsFinder and CHKDominanceFrontier with
+     * MHGDominatorsFinder and CytronDominanceFrontier on random graphs with
+     * loops, diamonds and several tails.
+     */
+    @Test
+    public void TestRandomGraphsMatchMHG() {
+        Random random = new Random(20160118L);
+        for (int round = 0; round < 3000; round++) {
+            Node[] nodes = randomGraph(random, 2 + random.nextInt(40), 0);
+            compareWithMHG(new Graph(nodes[0]), nodes, nodes.length);
+        }
+    }
+
+    /**
+     * Nodes that cannot be reached from the head are dominated by every node,
+     * as in MHGDominatorsFinder, and do not change the dominators of the
+     * nodes they jump into.
+     */
+    @Test
+    public void TestUnreachableNodesMatchMHG() {
+        Random random = new Random(20160119L);
+        for (int round = 0; round < 1000; round++) {
+            int size = 2 + random.nextInt(30);
+            Node[] nodes = randomGraph(random, size, 2 + random.nextInt(4));
+            CHKDominatorsFinder<Node> chk = compareWithMHG(new Graph(nodes[0]), nodes, size);
+            for (int i = size; i < nodes.length; i++) {
+                assertThat(chk.getImmediateDominator(nodes[i]), is((Node) null));
+            }
+        }
+    }
+
+    /**
+     * Builds a graph whose first reachable nodes are reachable from node 0.
+     * The unreachable nodes that follow only have edges into earlier nodes
+     * and among themselves.
+     */
+    private Node[] randomGraph(Random random, int reachable, int unreachable) {
+        int size = reachable + unreachable;
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = new Node(i);
+        }
+        // a random spanning tree keeps every node reachable from the root
+        for (int i = 1; i < reachable; i++) {
+            nodes[random.nextInt(i)].addkid(nodes[i]);
+        }
+        // and an edge to an earlier node keeps the graph connected
+        for (int i = reachable; i < size; i++) {
+            nodes[i].addkid(nodes[1 + random.nextInt(i - 1)]);
+        }
+        int extra = random.nextInt(2 * size);
+        for (int i = 0; i < extra; i++) {
+            int from = random.nextInt(size);
+            int to = 1 + random.nextInt(size - 1);
+            if (from < reachable && to >= reachable) {
+                continue;
+            }
+            if (!nodes[from].succs.contains(nodes[to])) {
+                nodes[from].addkid(nodes[to]);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Checks every dominator set and dominance answer, and the immediate
+     * dominators of the reachable nodes. MHG makes the unreachable nodes
+     * immediate dominators of each other, so its tree has cycles that
+     * CytronDominanceFrontier cannot walk. The frontiers are therefore
+     * compared on the tree of CHK, which has the same reachable part.
+     */
+    private CHKDominatorsFinder<Node> compareWithMHG(Graph g, Node[] nodes, int reachable) {
+        MHGDominatorsFinder<Node> mhg = new MHGDominatorsFinder<Node>(g);
+        CHKDominatorsFinder<Node> chk = new CHKDominatorsFinder<Node>(g);
+        for (Node n : nodes) {
+            assertThat(new HashSet<Node>(chk.getDominators(n)), is(new HashSet<Node>(mhg.getDominators(n))));
+            for (Node d : nodes) {
+                assertThat(chk.isDominatedBy(n, d), is(mhg.isDominatedBy(n, d)));
+            }
+        }
+        for (int i = 0; i < reachable; i++) {
+            assertThat(chk.getImmediateDominator(nodes[i]), is(mhg.getImmediateDominator(nodes[i])));
+        }
+
+        DominatorTree<Node> chkTree = new DominatorTree<Node>(chk);
+        CytronDominanceFrontier<Node> cytron = new CytronDominanceFrontier<Node>(chkTree);
+        CHKDominanceFrontier<Node> fast = new CHKDominanceFrontier<Node>(chkTree);
+        for (Node n : nodes) {
+            DominatorNode<Node> dode = chkTree.getDode(n);
+            assertThat(frontier_ids(fast.getDominanceFrontierOf(dode)),
+                    is(frontier_ids(cytron.getDominanceFrontierOf(dode))));
+        }
+        return chk;
+    }
+
+    private Set<Integer> frontier_ids(List<DominatorNode<Node>> frontier) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (DominatorNode<Node> dn : frontier) {
+            ids.add(dn.getGode().id);
+        }
+        return ids;
+    }
 }
 
 class Graph implements DirectedGraph<Node> {
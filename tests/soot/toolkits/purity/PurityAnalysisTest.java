@@ -0,0 +1,98 @@
+package soot.toolkits.purity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+import soot.tagkit.StringTag;
+import soot.tagkit.Tag;
+
+/**
+ * Runs the purity analysis, whose call-graph components are analysed in
+ * parallel, on the example of {@link PurityTest} and compares the results
+ * with the ones of the paper.
+ */
+public class PurityAnalysisTest {
+
+	private static final String[] CLASSES = { "soot.toolkits.purity.PurityTest", "soot.toolkits.purity.List",
+			"soot.toolkits.purity.ListItr", "soot.toolkits.purity.Cell", "soot.toolkits.purity.Point" };
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void resultsOfThePaper() throws IOException {
+		Map<String, List<String>> results = run();
+		Assert.assertEquals(Arrays.asList("param0: safe", "purity: pure"),
+				results.get("<soot.toolkits.purity.PurityTest: float sumX(soot.toolkits.purity.List)>"));
+		Assert.assertEquals(Arrays.asList("param0: read/write", "purity: impure"),
+				results.get("<soot.toolkits.purity.PurityTest: void flipAll(soot.toolkits.purity.List)>"));
+		Assert.assertEquals(Arrays.asList("param0: safe", "purity: impure"),
+				results.get("<soot.toolkits.purity.PurityTest: void print(soot.toolkits.purity.List)>"));
+		Assert.assertEquals(Arrays.asList("purity: pure", "this: read-only"),
+				results.get("<soot.toolkits.purity.List: soot.toolkits.purity.Iterator iterator()>"));
+		Assert.assertEquals(Arrays.asList("purity: pure", "this: Safe"),
+				results.get("<soot.toolkits.purity.ListItr: boolean hasNext()>"));
+		Assert.assertEquals(Arrays.asList("purity: impure", "this: read/write"),
+				results.get("<soot.toolkits.purity.ListItr: java.lang.Object next()>"));
+		Assert.assertEquals(Arrays.asList("purity: impure", "this: read/write"),
+				results.get("<soot.toolkits.purity.Point: void flip()>"));
+	}
+
+	@Test
+	public void sameResultsInEveryRun() throws IOException {
+		Map<String, List<String>> first = run();
+		for (int i = 0; i < 3; i++)
+			Assert.assertEquals(first, run());
+	}
+
+	/** Runs the purity analysis and describes the tags of every method. */
+	private static Map<String, List<String>> run() throws IOException {
+		SceneSetup.resetWholeProgram();
+		Options.v().setPhaseOption("cg.cha", "on");
+		Options.v().setPhaseOption("wjap.purity", "on");
+
+		List<SootClass> classes = new ArrayList<SootClass>();
+		for (String name : CLASSES) {
+			SootClass c = Scene.v().forceResolve(name, SootClass.BODIES);
+			c.setApplicationClass();
+			classes.add(c);
+		}
+		Scene.v().loadNecessaryClasses();
+		Scene.v().setMainClass(classes.get(0));
+		PackManager.v().getPack("cg").apply();
+		PackManager.v().getPack("wjap").apply();
+
+		Map<String, List<String>> ret = new TreeMap<String, List<String>>();
+		for (SootClass c : classes) {
+			for (SootMethod m : c.getMethods()) {
+				List<String> tags = new ArrayList<String>();
+				for (Tag t : m.getTags())
+					if (t instanceof StringTag)
+						tags.add(((StringTag) t).getInfo());
+				Collections.sort(tags);
+				if (!tags.isEmpty())
+					ret.put(m.getSignature(), tags);
+			}
+		}
+		Assert.assertTrue(ret.size() > 10);
+		return ret;
+	}
+}
@@ -0,0 +1,69 @@
+package soot.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class EscapedWriterTest {
+
+	private static final String TEXT = "plain été\ttab € end\u0001" + System.getProperty("line.separator")
+			+ "next ￿";
+
+	/** Writes the text one character at a time, which escapes each by itself. */
+	private static String escapedByChars(String s) throws IOException {
+		StringWriter sw = new StringWriter();
+		EscapedWriter w = new EscapedWriter(sw);
+		for (int i = 0; i < s.length(); i++)
+			w.write(s.charAt(i));
+		w.flush();
+		return sw.toString();
+	}
+
+	@Test
+	public void testEscapes() throws IOException {
+		String escaped = escapedByChars(TEXT);
+		assertTrue(escaped.startsWith("plain \\u00e9t\\u00e9\\u0009tab \\u20ac end\\u0001"));
+		assertTrue(escaped.endsWith("next \\uffff"));
+	}
+
+	@Test
+	public void testString() throws IOException {
+		StringWriter sw = new StringWriter();
+		EscapedWriter w = new EscapedWriter(sw);
+		w.write(TEXT);
+		w.flush();
+		assertEquals(escapedByChars(TEXT), sw.toString());
+	}
+
+	@Test
+	public void testStringSegment() throws IOException {
+		StringWriter sw = new StringWriter();
+		EscapedWriter w = new EscapedWriter(sw);
+		w.write(TEXT, 3, 12);
+		w.flush();
+		assertEquals(escapedByChars(TEXT.substring(3, 15)), sw.toString());
+	}
+
+	@Test
+	public void testCharArray() throws IOException {
+		StringWriter sw = new StringWriter();
+		EscapedWriter w = new EscapedWriter(sw);
+		char[] chars = TEXT.toCharArray();
+		w.write(chars, 0, 5);
+		w.write(chars, 5, chars.length - 5);
+		w.flush();
+		assertEquals(escapedByChars(TEXT), sw.toString());
+	}
+
+	@Test
+	public void testNothingToEscape() throws IOException {
+		StringWriter sw = new StringWriter();
+		EscapedWriter w = new EscapedWriter(sw);
+		w.write("only printable text");
+		w.flush();
+		assertEquals("only printable text", sw.toString());
+	}
+}
@@ -0,0 +1,192 @@
+package soot.validation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.Body;
+import soot.BodyTransformer;
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Main;
+import soot.Modifier;
+import soot.PackManager;
+import soot.RefType;
+import soot.Scene;
+import soot.SceneSetup;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Transform;
+import soot.Type;
+import soot.VoidType;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.validation.FieldRefValidator;
+import soot.jimple.validation.IdentityStatementsValidator;
+import soot.jimple.validation.IdentityValidator;
+import soot.jimple.validation.InvokeArgumentValidator;
+import soot.jimple.validation.JimpleTrapValidator;
+import soot.jimple.validation.NewValidator;
+import soot.jimple.validation.ReturnStatementsValidator;
+import soot.jimple.validation.TypesValidator;
+import soot.options.Options;
+
+/**
+ * Checks that validating the units in a single pass finds the same errors as
+ * running the validators one after the other, and that the errors of all
+ * methods of a class are reported.
+ */
+public class ValidationTest {
+
+	@After
+	public void tearDown() {
+		G.reset();
+	}
+
+	@Test
+	public void singlePassFindsTheSameErrors() {
+		G.reset();
+		Options.v().set_soot_classpath(SceneSetup.classPath().getPath());
+		Options.v().set_prepend_classpath(true);
+		Options.v().set_validate(true);
+		Scene.v().loadNecessaryClasses();
+		JimpleBody body = brokenBody();
+
+		List<ValidationException> together = new ArrayList<ValidationException>();
+		body.validate(together);
+
+		BodyValidator[] validators = { LocalsValidator.v(), TrapsValidator.v(), UnitBoxesValidator.v(),
+				UsesValidator.v(), ValueBoxesValidator.v(), CheckTypesValidator.v(), CheckVoidLocalesValidator.v(),
+				CheckEscapingValidator.v(), IdentityStatementsValidator.v(), TypesValidator.v(),
+				ReturnStatementsValidator.v(), InvokeArgumentValidator.v(), FieldRefValidator.v(), NewValidator.v(),
+				JimpleTrapValidator.v(), IdentityValidator.v() };
+		List<ValidationException> separately = new ArrayList<ValidationException>();
+		for (BodyValidator validator : validators)
+			validator.validate(body, separately);
+
+		List<String> expected = describe(separately);
+		Assert.assertTrue(expected.toString(), containsError(expected, "Local not in chain"));
+		Assert.assertTrue(expected.toString(), containsError(expected, "Invalid number of arguments"));
+		Assert.assertTrue(expected.toString(), containsError(expected, "Bad use of primitive type"));
+		// Only the order of the errors differs
+		Assert.assertEquals(expected, describe(together));
+	}
+
+	@Test
+	public void validBodyHasNoErrors() {
+		G.reset();
+		Options.v().set_soot_classpath(SceneSetup.classPath().getPath());
+		Options.v().set_prepend_classpath(true);
+		Options.v().set_validate(true);
+		Scene.v().loadNecessaryClasses();
+		SootMethod m = newMethod("valid");
+		JimpleBody body = Jimple.v().newBody(m);
+		m.setActiveBody(body);
+		Local i = Jimple.v().newLocal("i", IntType.v());
+		body.getLocals().add(i);
+		body.getUnits().add(Jimple.v().newAssignStmt(i, IntConstant.v(1)));
+		body.getUnits().add(Jimple.v().newReturnVoidStmt());
+
+		List<ValidationException> errors = new ArrayList<ValidationException>();
+		body.validate(errors);
+		Assert.assertEquals(Collections.emptyList(), describe(errors));
+	}
+
+	@Test
+	public void errorsOfAllMethodsAreReported() throws IOException {
+		G.reset();
+		// Every body gets an int assigned to an object after jtp
+		final List<String> broken = Collections.synchronizedList(new ArrayList<String>());
+		PackManager.v().getPack("jtp").add(new Transform("jtp.break", new BodyTransformer() {
+			@Override
+			protected void internalTransform(Body b, String phaseName, Map<String, String> options) {
+				Local o = Jimple.v().newLocal("object", RefType.v("java.lang.Object"));
+				b.getLocals().add(o);
+				b.getUnits().insertBefore(Jimple.v().newAssignStmt(o, IntConstant.v(0)), b.getUnits().getLast());
+				broken.add(b.getMethod().getSignature());
+			}
+		}));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		G.v().out = new PrintStream(baos);
+		String[] args = { "-cp", SceneSetup.classPath().getCanonicalPath(), "-pp", "-allow-phantom-refs", "-validate", "-f",
+				"J", "-d", java.nio.file.Files.createTempDirectory("validation").toString(),
+				"soot.asm.backend.targets.ControlStructures" };
+		try {
+			Main.v().run(args);
+			Assert.fail("Validated a broken body");
+		} catch (ValidationException e) {
+			Assert.assertTrue(e.toString(), e.toString().contains("Bad use of primitive type"));
+		}
+		G.v().out.flush();
+		String output = baos.toString();
+		Assert.assertTrue(broken.size() > 1);
+		Matcher matcher = Pattern
+				.compile("Validation of soot.asm.backend.targets.ControlStructures failed with (\\d+) error\\(s\\):")
+				.matcher(output);
+		Assert.assertTrue(output, matcher.find());
+		Assert.assertEquals(broken.size(), Integer.parseInt(matcher.group(1)));
+		for (String signature : broken)
+			Assert.assertTrue(signature, output.contains("in " + signature));
+	}
+
+	/**
+	 * Returns a body that refers to a local which is not in its chain, passes
+	 * too few arguments to a method and assigns an int to an object.
+	 */
+	private static JimpleBody brokenBody() {
+		SootMethod m = newMethod("broken");
+		JimpleBody body = Jimple.v().newBody(m);
+		m.setActiveBody(body);
+		Local i = Jimple.v().newLocal("i", IntType.v());
+		Local o = Jimple.v().newLocal("o", RefType.v("java.lang.Object"));
+		Local missing = Jimple.v().newLocal("missing", IntType.v());
+		body.getLocals().add(i);
+		body.getLocals().add(o);
+		body.getUnits().add(Jimple.v().newAssignStmt(i, Jimple.v().newAddExpr(missing, IntConstant.v(1))));
+		body.getUnits().add(Jimple.v().newAssignStmt(o, IntConstant.v(2)));
+		SootClass integer = Scene.v().getSootClass("java.lang.Integer");
+		body.getUnits().add(Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(
+				Scene.v().makeMethodRef(integer, "valueOf", Collections.<Type> singletonList(IntType.v()),
+						integer.getType(), true),
+				Collections.<soot.Value> emptyList())));
+		body.getUnits().add(Jimple.v().newReturnVoidStmt());
+		return body;
+	}
+
+	private static SootMethod newMethod(String name) {
+		SootClass c = new SootClass("ValidationTarget");
+		c.setSuperclass(Scene.v().getSootClass("java.lang.Object"));
+		Scene.v().addClass(c);
+		SootMethod m = new SootMethod(name, Collections.<Type> emptyList(), VoidType.v(), Modifier.STATIC);
+		c.addMethod(m);
+		return m;
+	}
+
+	private static boolean containsError(List<String> errors, String message) {
+		for (String e : errors)
+			if (e.contains(message))
+				return true;
+		return false;
+	}
+
+	/** Describes the errors in an order that does not depend on the validators. */
+	private static List<String> describe(List<ValidationException> errors) {
+		List<String> ret = new ArrayList<String>();
+		for (ValidationException e : errors)
+			ret.add(e.getConcerned() + ": " + e.getRawMessage() + " " + e);
+		Collections.sort(ret);
+		return ret;
+	}
+}